@@ -0,0 +1,209 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * EventsFormatBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.events;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.events.algorithms.EventWriterXML;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.misc.Time;
+import org.matsim.vehicles.Vehicle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to write and read the events of the equil scenario as XML ({@link EventWriterXML},
+ * {@link MatsimEventsReader}) and in the format of {@link BinaryEventsWriter}.
+ * <p>
+ * The events are those of the selected plans of <code>scenarios/equil/plans100.xml</code> driven at
+ * free speed, repeated for <code>replicas</code> copies of every person. The number of events and the
+ * file sizes are printed in the setup. Example:<br>
+ * <code>java -jar target/benchmarks.jar EventsFormatBenchmark -p replicas=100</code>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx8g" })
+@State(Scope.Benchmark)
+public class EventsFormatBenchmark {
+
+	@Param({ "10", "100" })
+	public int replicas;
+
+	private List<Event> events;
+	private File directory;
+	private File xmlFile;
+	private File binaryFile;
+	private EventsManager eventsManager;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		Scenario scenario = ScenarioUtils.loadScenario(ConfigUtils.loadConfig("scenarios/equil/config.xml"));
+		this.events = createEvents(scenario, this.replicas);
+		this.directory = Files.createTempDirectory("events").toFile();
+		this.xmlFile = new File(this.directory, "events.xml");
+		this.binaryFile = new File(this.directory, "events.bin");
+		writeXml();
+		writeBinary();
+		this.eventsManager = EventsUtils.createEventsManager();
+		this.eventsManager.addHandler(new BasicEventHandler() {
+			@Override
+			public void handleEvent(final Event event) {
+			}
+
+			@Override
+			public void reset(final int iteration) {
+			}
+		});
+		System.out.println(this.events.size() + " events, " + this.xmlFile.length() + " bytes as XML, "
+				+ this.binaryFile.length() + " bytes binary");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.xmlFile.delete();
+		this.binaryFile.delete();
+		this.directory.delete();
+	}
+
+	@Benchmark
+	public void writeXml() {
+		EventWriterXML writer = new EventWriterXML(this.xmlFile.getPath());
+		for (Event event : this.events) {
+			writer.handleEvent(event);
+		}
+		writer.closeFile();
+	}
+
+	@Benchmark
+	public void writeBinary() {
+		BinaryEventsWriter writer = new BinaryEventsWriter(this.binaryFile.getPath());
+		for (Event event : this.events) {
+			writer.handleEvent(event);
+		}
+		writer.closeFile();
+	}
+
+	@Benchmark
+	public void readXml() {
+		new MatsimEventsReader(this.eventsManager).readFile(this.xmlFile.getPath());
+	}
+
+	@Benchmark
+	public void readBinary() {
+		try (BinaryEventsReader reader = new BinaryEventsReader(this.binaryFile)) {
+			reader.readEvents(this.eventsManager);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Drives the car legs of the selected plans at free speed, without any interaction, and returns
+	 * the events sorted by time.
+	 */
+	private static List<Event> createEvents(final Scenario scenario, final int replicas) {
+		List<Event> events = new ArrayList<>();
+		for (int r = 0; r < replicas; r++) {
+			for (Person person : scenario.getPopulation().getPersons().values()) {
+				Id<Person> personId = Id.createPersonId(person.getId() + "_" + r);
+				Id<Vehicle> vehicleId = Id.create(personId.toString(), Vehicle.class);
+				double time = 0;
+				for (PlanElement element : person.getSelectedPlan().getPlanElements()) {
+					if (element instanceof Activity) {
+						Activity activity = (Activity) element;
+						if (time > 0) {
+							events.add(new ActivityStartEvent(time, personId, activity.getLinkId(), null, activity.getType()));
+						}
+						if (activity.getEndTime() != Time.UNDEFINED_TIME) {
+							time = Math.max(time, activity.getEndTime());
+						} else if (activity.getMaximumDuration() != Time.UNDEFINED_TIME) {
+							time += activity.getMaximumDuration();
+						} else {
+							break;
+						}
+						events.add(new ActivityEndEvent(time, personId, activity.getLinkId(), null, activity.getType()));
+					} else {
+						Leg leg = (Leg) element;
+						NetworkRoute route = (NetworkRoute) leg.getRoute();
+						events.add(new PersonDepartureEvent(time, personId, route.getStartLinkId(), leg.getMode()));
+						List<Id<Link>> linkIds = new ArrayList<>(route.getLinkIds());
+						if (!linkIds.isEmpty() || !route.getEndLinkId().equals(route.getStartLinkId())) {
+							linkIds.add(route.getEndLinkId());
+						}
+						Id<Link> previous = route.getStartLinkId();
+						for (Id<Link> linkId : linkIds) {
+							time += 1;
+							events.add(new LinkLeaveEvent(time, vehicleId, previous));
+							events.add(new LinkEnterEvent(time, vehicleId, linkId));
+							Link link = scenario.getNetwork().getLinks().get(linkId);
+							previous = linkId;
+							if (!linkId.equals(route.getEndLinkId())) {
+								time += Math.ceil(link.getLength() / link.getFreespeed());
+							}
+						}
+						events.add(new PersonArrivalEvent(time, personId, route.getEndLinkId(), leg.getMode()));
+					}
+				}
+			}
+		}
+		events.sort(Comparator.comparingDouble(Event::getTime));
+		return events;
+	}
+}
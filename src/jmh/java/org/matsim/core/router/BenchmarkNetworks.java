@@ -0,0 +1,196 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BenchmarkNetworks.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.scenario.ScenarioUtils;
+
+/**
+ * Networks the router benchmarks run on.  A network is named by a spec string:
+ * <ul>
+ * <li><code>equil</code>: <code>scenarios/equil/network.xml</code></li>
+ * <li><code>grid-N</code>: a square grid with about N nodes and links in both directions</li>
+ * <li><code>rgg-N</code>: a random geometric graph with N nodes, every node being connected in both
+ * directions to all nodes within a radius that yields an average degree of about 8</li>
+ * <li><code>file:path</code>: any MATSim network file, e.g. the Anglesea network</li>
+ * </ul>
+ * Synthetic networks are deterministic for a given spec, link lengths are never shorter than the
+ * euclidean distance of their nodes, so all A* variants stay exact.
+ */
+public final class BenchmarkNetworks {
+
+	/*package*/ static final double SPACING = 100.0;
+	private static final double[] FREESPEEDS = { 50 / 3.6, 60 / 3.6, 80 / 3.6, 100 / 3.6 };
+	private static final long SEED = 4711;
+
+	private BenchmarkNetworks() {
+	}
+
+	public static Network load(final String spec) {
+		Network network = ScenarioUtils.createScenario(ConfigUtils.createConfig()).getNetwork();
+		if (spec.equals("equil")) {
+			new MatsimNetworkReader(network).readFile("scenarios/equil/network.xml");
+		} else if (spec.startsWith("file:")) {
+			new MatsimNetworkReader(network).readFile(spec.substring("file:".length()));
+		} else if (spec.startsWith("grid-")) {
+			createGrid(network, Integer.parseInt(spec.substring("grid-".length())));
+		} else if (spec.startsWith("rgg-")) {
+			createRandomGeometric(network, Integer.parseInt(spec.substring("rgg-".length())));
+		} else {
+			throw new IllegalArgumentException("unknown network spec: " + spec);
+		}
+		return network;
+	}
+
+	private static void createGrid(final Network network, final int nodeCount) {
+		final int side = (int) Math.ceil(Math.sqrt(nodeCount));
+		final Random random = new Random(SEED);
+		Node[] nodes = new Node[side * side];
+		NetworkFactory factory = network.getFactory();
+		for (int row = 0; row < side; row++) {
+			for (int col = 0; col < side; col++) {
+				Node node = factory.createNode(Id.createNodeId(row * side + col), new Coord(col * SPACING, row * SPACING));
+				network.addNode(node);
+				nodes[row * side + col] = node;
+			}
+		}
+		for (int row = 0; row < side; row++) {
+			for (int col = 0; col < side; col++) {
+				Node node = nodes[row * side + col];
+				if (col + 1 < side) {
+					connect(network, node, nodes[row * side + col + 1], SPACING, random);
+				}
+				if (row + 1 < side) {
+					connect(network, node, nodes[(row + 1) * side + col], SPACING, random);
+				}
+			}
+		}
+	}
+
+	private static void createRandomGeometric(final Network network, final int nodeCount) {
+		final Random random = new Random(SEED);
+		final double extent = Math.sqrt(nodeCount) * SPACING;
+		// n * pi * r^2 / extent^2 = 8
+		final double radius = SPACING * Math.sqrt(8 / Math.PI);
+		final int cells = Math.max(1, (int) (extent / radius));
+		final double cellSize = extent / cells;
+
+		NetworkFactory factory = network.getFactory();
+		Node[] nodes = new Node[nodeCount];
+		double[] xs = new double[nodeCount];
+		double[] ys = new double[nodeCount];
+		List<List<Integer>> buckets = new ArrayList<>(cells * cells);
+		for (int i = 0; i < cells * cells; i++) {
+			buckets.add(new ArrayList<Integer>());
+		}
+		for (int i = 0; i < nodeCount; i++) {
+			xs[i] = random.nextDouble() * extent;
+			ys[i] = random.nextDouble() * extent;
+			nodes[i] = factory.createNode(Id.createNodeId(i), new Coord(xs[i], ys[i]));
+			network.addNode(nodes[i]);
+			buckets.get(cell(ys[i], cellSize, cells) * cells + cell(xs[i], cellSize, cells)).add(i);
+		}
+		for (int i = 0; i < nodeCount; i++) {
+			int cx = cell(xs[i], cellSize, cells);
+			int cy = cell(ys[i], cellSize, cells);
+			for (int y = Math.max(0, cy - 1); y <= Math.min(cells - 1, cy + 1); y++) {
+				for (int x = Math.max(0, cx - 1); x <= Math.min(cells - 1, cx + 1); x++) {
+					for (int j : buckets.get(y * cells + x)) {
+						if (j <= i) {
+							continue;
+						}
+						double distance = Math.hypot(xs[i] - xs[j], ys[i] - ys[j]);
+						if (distance <= radius) {
+							connect(network, nodes[i], nodes[j], Math.max(distance, 1.0), random);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private static int cell(final double value, final double cellSize, final int cells) {
+		return Math.min(cells - 1, (int) (value / cellSize));
+	}
+
+	private static void connect(final Network network, final Node a, final Node b, final double length, final Random random) {
+		double freespeed = FREESPEEDS[random.nextInt(FREESPEEDS.length)];
+		network.addLink(createLink(network, a, b, length, freespeed));
+		network.addLink(createLink(network, b, a, length, freespeed));
+	}
+
+	private static Link createLink(final Network network, final Node from, final Node to, final double length, final double freespeed) {
+		Link link = network.getFactory().createLink(Id.createLinkId(from.getId() + "_" + to.getId()), from, to);
+		link.setLength(length);
+		link.setFreespeed(freespeed);
+		link.setCapacity(1800);
+		link.setNumberOfLanes(1);
+		link.setAllowedModes(Collections.singleton("car"));
+		return link;
+	}
+
+	/**
+	 * Draws random origin-destination pairs from the nodes reachable from an arbitrary start node. On
+	 * networks with two-way links (all synthetic ones) every pair then has a path, even on random
+	 * geometric graphs that fall apart into several components.
+	 *
+	 * @return <code>count</code> pairs, <code>pairs[i][0]</code> being the origin and <code>pairs[i][1]</code> the destination.
+	 */
+	public static Node[][] randomOdPairs(final Network network, final int count, final long seed) {
+		Node start = network.getNodes().values().iterator().next();
+		List<Node> reachable = new ArrayList<>();
+		Set<Node> seen = new HashSet<>();
+		ArrayDeque<Node> queue = new ArrayDeque<>();
+		queue.add(start);
+		seen.add(start);
+		while (!queue.isEmpty()) {
+			Node node = queue.poll();
+			reachable.add(node);
+			for (Link link : node.getOutLinks().values()) {
+				if (seen.add(link.getToNode())) {
+					queue.add(link.getToNode());
+				}
+			}
+		}
+		Random random = new Random(seed);
+		Node[][] pairs = new Node[count][2];
+		for (int i = 0; i < count; i++) {
+			pairs[i][0] = reachable.get(random.nextInt(reachable.size()));
+			pairs[i][1] = reachable.get(random.nextInt(reachable.size()));
+		}
+		return pairs;
+	}
+}
@@ -0,0 +1,180 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * PendingNodesQueueBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.core.router;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.utils.collections.PseudoRemovePriorityQueue;
+import org.matsim.core.utils.collections.RouterPriorityQueue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Replays the queue operations of Dijkstra queries on the pending nodes queue of the Record routers:
+ * MATSim's default <code>PseudoRemovePriorityQueue</code>, created per query, against one
+ * {@link IndexedFourAryHeap} from {@link IndexedFourAryHeap#createForNodes(RoutingGraph)}, reset per
+ * query. Improved nodes are removed and added again, as <code>Dijkstra.revisitNode</code> does. The
+ * operations are recorded once, so the score is the cost of the queue alone, node lookups included:<br>
+ * <code>java -jar target/benchmarks.jar PendingNodesQueueBenchmark -p network=grid-100000</code>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+@State(Scope.Thread)
+public class PendingNodesQueueBenchmark {
+
+	private static final int QUERIES = 64;
+
+	private static final byte ADD = 0;
+	private static final byte REMOVE = 1;
+	private static final byte POLL = 2;
+
+	@Param({ "pseudoRemove", "fourAryHeap" })
+	public String queue;
+
+	@Param({ "grid-10000" })
+	public String network;
+
+	private IndexedFourAryHeap<Node> heap;
+	private byte[][] operations;
+	private Node[][] nodes;
+	private double[][] keys;
+	private int next = 0;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		Network net = BenchmarkNetworks.load(this.network);
+		RoutingGraph graph = RoutingGraph.createFromNetwork(net);
+		this.heap = IndexedFourAryHeap.createForNodes(graph);
+		Node[][] odPairs = BenchmarkNetworks.randomOdPairs(net, QUERIES, 4711);
+		this.operations = new byte[QUERIES][];
+		this.nodes = new Node[QUERIES][];
+		this.keys = new double[QUERIES][];
+		for (int q = 0; q < QUERIES; q++) {
+			record(graph, graph.getNodeIndex(odPairs[q][0]), graph.getNodeIndex(odPairs[q][1]), q);
+		}
+	}
+
+	@Benchmark
+	public int query() {
+		final int q = this.next;
+		this.next = (this.next + 1) % QUERIES;
+		final RouterPriorityQueue<Node> pending;
+		if (this.queue.equals("fourAryHeap")) {
+			this.heap.reset();
+			pending = this.heap;
+		} else {
+			pending = new PseudoRemovePriorityQueue<>(500);
+		}
+		final byte[] ops = this.operations[q];
+		final Node[] opNodes = this.nodes[q];
+		final double[] opKeys = this.keys[q];
+		int polled = 0;
+		for (int i = 0; i < ops.length; i++) {
+			switch (ops[i]) {
+				case ADD:
+					pending.add(opNodes[i], opKeys[i]);
+					break;
+				case REMOVE:
+					pending.remove(opNodes[i]);
+					break;
+				default:
+					if (pending.poll() != null) {
+						polled++;
+					}
+			}
+		}
+		return polled;
+	}
+
+	/**
+	 * Runs a free-speed Dijkstra from <code>from</code> to <code>to</code> and stores its queue
+	 * operations as query <code>q</code>.
+	 */
+	private void record(final RoutingGraph graph, final int from, final int to, final int q) {
+		int size = 0;
+		byte[] ops = new byte[1024];
+		Node[] opNodes = new Node[1024];
+		double[] opKeys = new double[1024];
+
+		double[] cost = new double[graph.getNodeCount()];
+		Arrays.fill(cost, Double.POSITIVE_INFINITY);
+		boolean[] settled = new boolean[graph.getNodeCount()];
+		PriorityQueue<double[]> queue = new PriorityQueue<>((a, b) -> Double.compare(a[0], b[0]));
+		cost[from] = 0.0;
+		queue.add(new double[] { 0.0, from });
+		ops[size] = ADD;
+		opNodes[size] = graph.getNode(from);
+		size++;
+		while (!queue.isEmpty()) {
+			double[] entry = queue.poll();
+			int node = (int) entry[1];
+			if (settled[node]) {
+				continue;
+			}
+			settled[node] = true;
+			if (size + 2 * (graph.getOutEnd(node) - graph.getOutStart(node)) + 1 > ops.length) {
+				ops = Arrays.copyOf(ops, ops.length * 2 + 16);
+				opNodes = Arrays.copyOf(opNodes, ops.length);
+				opKeys = Arrays.copyOf(opKeys, ops.length);
+			}
+			ops[size++] = POLL;
+			if (node == to) {
+				break;
+			}
+			for (int l = graph.getOutStart(node); l < graph.getOutEnd(node); l++) {
+				int toNode = graph.getToNode(l);
+				double c = entry[0] + graph.getLength(l) / graph.getFreespeed(l);
+				if (c < cost[toNode]) {
+					if (cost[toNode] != Double.POSITIVE_INFINITY) {
+						ops[size] = REMOVE;
+						opNodes[size] = graph.getNode(toNode);
+						size++;
+					}
+					cost[toNode] = c;
+					queue.add(new double[] { c, toNode });
+					ops[size] = ADD;
+					opNodes[size] = graph.getNode(toNode);
+					opKeys[size] = c;
+					size++;
+				}
+			}
+		}
+		this.operations[q] = Arrays.copyOf(ops, size);
+		this.nodes[q] = Arrays.copyOf(opNodes, size);
+		this.keys[q] = Arrays.copyOf(opKeys, size);
+	}
+}
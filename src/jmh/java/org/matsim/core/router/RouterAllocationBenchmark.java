@@ -0,0 +1,86 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RouterAllocationBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.core.router;
+
+import java.util.concurrent.TimeUnit;
+
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.router.costcalculators.OnlyTimeDependentTravelDisutility;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Steady-state rerouting of a few OD pairs, for measuring what a query allocates besides the returned
+ * path. Run it with the gc profiler; <code>gc.alloc.rate.norm</code> is the number of bytes allocated
+ * per query, which should be about the size of the path (two lists of node and link references):<br>
+ * <code>java -jar target/benchmarks.jar RouterAllocationBenchmark -prof gc</code>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+@State(Scope.Thread)
+public class RouterAllocationBenchmark {
+
+	private static final int OD_PAIRS = 64;
+
+	@Param({ "astarLandmarks", "graphAStarLandmarks" })
+	public String router;
+
+	@Param({ "grid-10000" })
+	public String network;
+
+	private LeastCostPathCalculator calculator;
+	private Node[][] odPairs;
+	private int next = 0;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		Network net = BenchmarkNetworks.load(this.network);
+		TravelTime travelTime = new FreeSpeedTravelTime();
+		TravelDisutility travelDisutility = new OnlyTimeDependentTravelDisutility(travelTime);
+		this.calculator = RouterBenchmark.createFactory(this.router).createPathCalculator(net, travelDisutility, travelTime);
+		this.odPairs = BenchmarkNetworks.randomOdPairs(net, OD_PAIRS, 4711);
+	}
+
+	@Benchmark
+	public Path reroute() {
+		Node[] od = this.odPairs[this.next];
+		this.next = (this.next + 1) % OD_PAIRS;
+		return this.calculator.calcLeastCostPath(od[0], od[1], 8 * 3600, null, null);
+	}
+}
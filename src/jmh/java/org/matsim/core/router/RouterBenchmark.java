@@ -0,0 +1,158 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RouterBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.concurrent.TimeUnit;
+
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.router.costcalculators.OnlyTimeDependentTravelDisutility;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Single-query routing benchmark for the Record routers.
+ * <p>
+ * Throughput and the latency distribution (p50, p99, ...) come from the two benchmark modes,
+ * the allocation rate from running with <code>-prof gc</code>, and the visited-node count per query
+ * is reported as the secondary result <code>visitedNodes</code>. Example:<br>
+ * <code>java -jar target/benchmarks.jar RouterBenchmark -p network=grid-100000 -prof gc</code>
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx8g" })
+@State(Scope.Thread)
+public class RouterBenchmark {
+
+	private static final int OD_PAIRS = 1024;
+
+	@Param({ "dijkstra", "astarEuclidean", "astarLandmarks", "dijkstraFourAryHeap", "astarEuclideanFourAryHeap",
+		"astarLandmarksFourAryHeap", "graphDijkstra", "graphAStarEuclidean", "graphAStarLandmarks",
+		"graphBidirectionalAStarLandmarks", "contractionHierarchies", "graphAStarArcFlags" })
+	public String router;
+
+	@Param({ "equil", "grid-10000", "grid-100000", "grid-1000000", "rgg-10000", "rgg-100000", "rgg-1000000" })
+	public String network;
+
+	private LeastCostPathCalculator calculator;
+	private Node[][] odPairs;
+	private int next = 0;
+
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	@State(Scope.Thread)
+	public static class Counters {
+		public long visitedNodes;
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		Network net = BenchmarkNetworks.load(this.network);
+		TravelTime travelTime = new FreeSpeedTravelTime();
+		TravelDisutility travelDisutility = new OnlyTimeDependentTravelDisutility(travelTime);
+		this.calculator = createFactory(this.router).createPathCalculator(net, travelDisutility, travelTime);
+		this.odPairs = BenchmarkNetworks.randomOdPairs(net, OD_PAIRS, 4711);
+	}
+
+	/*package*/ static LeastCostPathCalculatorFactory createFactory(final String router) {
+		switch (router) {
+			case "dijkstra":
+				return new DijkstraRecordFactory();
+			case "astarEuclidean":
+				return new AStarEuclideanRecordFactory();
+			case "astarLandmarks":
+				return new AStarLandmarksRecordFactory(Runtime.getRuntime().availableProcessors());
+			case "dijkstraFourAryHeap": {
+				DijkstraRecordFactory factory = new DijkstraRecordFactory();
+				factory.setUseFourAryHeap(true);
+				return factory;
+			}
+			case "astarEuclideanFourAryHeap": {
+				AStarEuclideanRecordFactory factory = new AStarEuclideanRecordFactory();
+				factory.setUseFourAryHeap(true);
+				return factory;
+			}
+			case "astarLandmarksFourAryHeap": {
+				AStarLandmarksRecordFactory factory = new AStarLandmarksRecordFactory(Runtime.getRuntime().availableProcessors());
+				factory.setUseFourAryHeap(true);
+				return factory;
+			}
+			case "graphDijkstra":
+				return new GraphDijkstraFactory();
+			case "graphAStarEuclidean":
+				return new GraphAStarEuclideanFactory();
+			case "graphAStarLandmarks":
+				return new GraphAStarLandmarksFactory(Runtime.getRuntime().availableProcessors());
+			case "graphBidirectionalAStarLandmarks":
+				return new GraphBidirectionalAStarLandmarksFactory();
+			case "contractionHierarchies":
+				return new ContractionHierarchiesFactory();
+			case "graphAStarArcFlags":
+				return new GraphAStarArcFlagsFactory(Runtime.getRuntime().availableProcessors());
+			default:
+				throw new IllegalArgumentException("unknown router: " + router);
+		}
+	}
+
+	@Benchmark
+	public Path route(final Counters counters) {
+		Node[] od = this.odPairs[this.next];
+		this.next = (this.next + 1) % OD_PAIRS;
+		Path path = this.calculator.calcLeastCostPath(od[0], od[1], 8 * 3600, null, null);
+		counters.visitedNodes += getVisitedNodes(this.calculator);
+		return path;
+	}
+
+	private static int getVisitedNodes(final LeastCostPathCalculator calculator) {
+		if (calculator instanceof DijkstraRecord) {
+			return ((DijkstraRecord) calculator).getVisitedNodes();
+		} else if (calculator instanceof AStarLandmarksRecord) {
+			return ((AStarLandmarksRecord) calculator).getVisitedNodes();
+		} else if (calculator instanceof AStarEuclideanRecord) {
+			return ((AStarEuclideanRecord) calculator).getVisitedNodes();
+		} else if (calculator instanceof GraphDijkstra) {
+			return ((GraphDijkstra) calculator).getVisitedNodes();
+		} else if (calculator instanceof GraphBidirectionalAStarLandmarks) {
+			return ((GraphBidirectionalAStarLandmarks) calculator).getVisitedNodes();
+		} else if (calculator instanceof ContractionHierarchiesRouter) {
+			return ((ContractionHierarchiesRouter) calculator).getVisitedNodes();
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,89 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TravelTimeMatrixBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.router;
+
+import java.util.concurrent.TimeUnit;
+
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.router.costcalculators.OnlyTimeDependentTravelDisutility;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to calculate a {@link TravelTimeMatrix} of <code>size</code> random origins and destinations,
+ * in the common <code>ForkJoinPool</code>. For the Anglesea network:<br>
+ * <code>java -jar target/benchmarks.jar TravelTimeMatrixBenchmark -p network=file:path/to/anglesea/network.xml</code>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx8g" })
+@State(Scope.Benchmark)
+public class TravelTimeMatrixBenchmark {
+
+	@Param({ "equil", "grid-100000" })
+	public String network;
+
+	@Param({ "1000" })
+	public int size;
+
+	private RoutingGraph graph;
+	private Node[] origins;
+	private Node[] destinations;
+	private TravelTime travelTime;
+	private TravelDisutility travelDisutility;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		Network net = BenchmarkNetworks.load(this.network);
+		this.graph = RoutingGraph.createFromNetwork(net);
+		this.travelTime = new FreeSpeedTravelTime();
+		this.travelDisutility = new OnlyTimeDependentTravelDisutility(this.travelTime);
+		Node[][] pairs = BenchmarkNetworks.randomOdPairs(net, this.size, 4711);
+		this.origins = new Node[this.size];
+		this.destinations = new Node[this.size];
+		for (int i = 0; i < this.size; i++) {
+			this.origins[i] = pairs[i][0];
+			this.destinations[i] = pairs[i][1];
+		}
+	}
+
+	@Benchmark
+	public TravelTimeMatrix matrix() {
+		return TravelTimeMatrix.calculate(this.graph, this.origins, this.destinations, 8 * 3600, this.travelDisutility, this.travelTime);
+	}
+}
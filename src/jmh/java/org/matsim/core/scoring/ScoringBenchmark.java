@@ -0,0 +1,155 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ScoringBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.scoring;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.scoring.functions.CharyparNagelScoringFunctionFactory;
+import org.matsim.core.utils.misc.Time;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to score one iteration of <code>agents</code> h-w-h days with the planCalcScore parameters of
+ * equil, with a {@link CharyparNagelScoringFunctionFactory} and with a
+ * {@link ParallelScoringFunctionFactory}: creating the scoring functions, handing them the
+ * activities and legs, and getting all scores. The parallel factory uses the common
+ * <code>ForkJoinPool</code>. Example:<br>
+ * <code>java -jar target/benchmarks.jar ScoringBenchmark -p agents=100000</code>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+@State(Scope.Benchmark)
+public class ScoringBenchmark {
+
+	@Param({ "100000" })
+	public int agents;
+
+	private List<Person> persons;
+	private List<List<PlanElement>> days;
+	private ScoringFunctionFactory charyparNagelFactory;
+	private ScoringFunctionFactory parallelFactory;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.loadConfig("scenarios/equil/config.xml"));
+		PopulationFactory factory = scenario.getPopulation().getFactory();
+		Random random = new Random(4711);
+		this.persons = new ArrayList<>(this.agents);
+		this.days = new ArrayList<>(this.agents);
+		for (int i = 0; i < this.agents; i++) {
+			this.persons.add(factory.createPerson(Id.createPersonId(i)));
+			this.days.add(createDay(factory, random));
+		}
+		this.charyparNagelFactory = new CharyparNagelScoringFunctionFactory(scenario);
+		this.parallelFactory = new ParallelScoringFunctionFactory(scenario);
+	}
+
+	@Benchmark
+	public double charyparNagel() {
+		return score(this.charyparNagelFactory);
+	}
+
+	@Benchmark
+	public double parallel() {
+		return score(this.parallelFactory);
+	}
+
+	private double score(final ScoringFunctionFactory factory) {
+		ScoringFunction[] functions = new ScoringFunction[this.agents];
+		for (int i = 0; i < this.agents; i++) {
+			ScoringFunction function = factory.createNewScoringFunction(this.persons.get(i));
+			for (PlanElement element : this.days.get(i)) {
+				if (element instanceof Activity) {
+					function.handleActivity((Activity) element);
+				} else {
+					function.handleLeg((Leg) element);
+				}
+			}
+			functions[i] = function;
+		}
+		double sum = 0;
+		for (ScoringFunction function : functions) {
+			function.finish();
+			sum += function.getScore();
+		}
+		return sum;
+	}
+
+	/**
+	 * Home until 6 to 8, a car leg of 20 to 40 minutes, work for 8 to 9 hours, and back home.
+	 */
+	private static List<PlanElement> createDay(final PopulationFactory factory, final Random random) {
+		List<PlanElement> day = new ArrayList<>();
+		double time = 6 * 3600.0 + random.nextInt(2 * 3600);
+		day.add(createActivity(factory, "h", Time.UNDEFINED_TIME, time));
+		double travelTime = 1200.0 + random.nextInt(1200);
+		day.add(createLeg(factory, time, travelTime));
+		time += travelTime;
+		double workEnd = time + 8 * 3600.0 + random.nextInt(3600);
+		day.add(createActivity(factory, "w", time, workEnd));
+		day.add(createLeg(factory, workEnd, travelTime));
+		day.add(createActivity(factory, "h", workEnd + travelTime, Time.UNDEFINED_TIME));
+		return day;
+	}
+
+	private static Activity createActivity(final PopulationFactory factory, final String type, final double startTime,
+			final double endTime) {
+		Activity activity = factory.createActivityFromLinkId(type, Id.createLinkId(1));
+		activity.setStartTime(startTime);
+		activity.setEndTime(endTime);
+		return activity;
+	}
+
+	private static Leg createLeg(final PopulationFactory factory, final double departureTime, final double travelTime) {
+		Leg leg = factory.createLeg(TransportMode.car);
+		leg.setDepartureTime(departureTime);
+		leg.setTravelTime(travelTime);
+		return leg;
+	}
+}
@@ -0,0 +1,69 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BinaryEventsOutput.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.events;
+
+import org.apache.log4j.Logger;
+import org.matsim.core.controler.events.AfterMobsimEvent;
+import org.matsim.core.controler.events.BeforeMobsimEvent;
+import org.matsim.core.controler.listener.AfterMobsimListener;
+import org.matsim.core.controler.listener.BeforeMobsimListener;
+
+/**
+ * Writes the events of every <code>interval</code>-th iteration to
+ * <code>ITERS/it.N/N.events.bin</code> with a {@link BinaryEventsWriter}.
+ */
+public class BinaryEventsOutput implements BeforeMobsimListener, AfterMobsimListener {
+	private static final Logger log = Logger.getLogger( BinaryEventsOutput.class ) ;
+
+	public static final String FILENAME = "events.bin";
+
+	private final int interval;
+	private BinaryEventsWriter writer = null;
+
+	public BinaryEventsOutput(final int interval) {
+		if (interval <= 0) {
+			throw new IllegalArgumentException("interval must be positive, but is " + interval);
+		}
+		this.interval = interval;
+	}
+
+	@Override
+	public void notifyBeforeMobsim(final BeforeMobsimEvent event) {
+		if (event.getIteration() % this.interval != 0) {
+			return;
+		}
+		String filename = event.getServices().getControlerIO().getIterationFilename(event.getIteration(), FILENAME);
+		log.info("writing binary events to " + filename);
+		this.writer = new BinaryEventsWriter(filename);
+		event.getServices().getEvents().addHandler(this.writer);
+	}
+
+	@Override
+	public void notifyAfterMobsim(final AfterMobsimEvent event) {
+		if (this.writer == null) {
+			return;
+		}
+		event.getServices().getEvents().removeHandler(this.writer);
+		this.writer.closeFile();
+		this.writer = null;
+	}
+}
@@ -0,0 +1,302 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BinaryEventsReader.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.events;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Stack;
+
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.xml.sax.helpers.AttributesImpl;
+
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+/**
+ * Reads an events file written by {@link BinaryEventsWriter} block by block. Reading a time window
+ * only decompresses the blocks whose time range overlaps the window, as told by the index.
+ *
+ * <p>The records are turned into the same typed events as the XML events reader produces, by passing
+ * their attributes through {@link EventsReaderXMLv1}.</p>
+ */
+public final class BinaryEventsReader implements Closeable {
+
+	private static final String EVENT = "event";
+
+	private final FileChannel channel;
+	private final LZ4FastDecompressor decompressor = LZ4Factory.fastestInstance().fastDecompressor();
+	private final long[] offsets;
+	private final int[] eventCounts;
+	private final double[] minTimes;
+	private final double[] maxTimes;
+
+	private byte[] stored = new byte[0];
+	private byte[] raw = new byte[0];
+
+	public BinaryEventsReader(final String filename) {
+		this(new File(filename));
+	}
+
+	public BinaryEventsReader(final File file) {
+		try {
+			this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+			ByteBuffer header = read(0, BinaryEventsWriter.HEADER_BYTES);
+			if (header.getInt() != BinaryEventsWriter.MAGIC) {
+				throw new IllegalArgumentException(file + " is not a binary events file");
+			}
+			int version = header.getInt();
+			if (version != BinaryEventsWriter.VERSION) {
+				throw new IllegalArgumentException("unsupported version " + version + " of " + file);
+			}
+			long size = this.channel.size();
+			ByteBuffer trailer = read(size - BinaryEventsWriter.TRAILER_BYTES, BinaryEventsWriter.TRAILER_BYTES);
+			long indexOffset = trailer.getLong();
+			if (trailer.getInt() != BinaryEventsWriter.MAGIC) {
+				throw new IllegalArgumentException(file + " has no index, it was not closed properly");
+			}
+			ByteBuffer index = read(indexOffset, (int) (size - BinaryEventsWriter.TRAILER_BYTES - indexOffset));
+			int blockCount = index.getInt();
+			this.offsets = new long[blockCount];
+			this.eventCounts = new int[blockCount];
+			this.minTimes = new double[blockCount];
+			this.maxTimes = new double[blockCount];
+			for (int b = 0; b < blockCount; b++) {
+				this.offsets[b] = index.getLong();
+				this.eventCounts[b] = index.getInt();
+				this.minTimes[b] = index.getDouble();
+				this.maxTimes[b] = index.getDouble();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("could not read " + file, e);
+		}
+	}
+
+	/**
+	 * Passes all events to the events manager.
+	 */
+	public void readEvents(final EventsManager events) {
+		readEvents(events, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * Passes the events with <code>fromTime &lt;= time &lt;= toTime</code> to the events manager.
+	 */
+	public void readEvents(final EventsManager events, final double fromTime, final double toTime) {
+		EventsReaderXMLv1 converter = new EventsReaderXMLv1(events);
+		Stack<String> context = new Stack<>();
+		Block block = new Block();
+		for (int b = 0; b < this.offsets.length; b++) {
+			if (this.maxTimes[b] < fromTime || this.minTimes[b] > toTime) {
+				continue;
+			}
+			int count = loadBlock(b, block);
+			for (int i = 0; i < count; i++) {
+				AttributesImpl attributes = block.next();
+				if (block.time >= fromTime && block.time <= toTime) {
+					converter.startTag(EVENT, attributes, context);
+				}
+			}
+		}
+	}
+
+	public int getBlockCount() {
+		return this.offsets.length;
+	}
+
+	public long getEventCount() {
+		long count = 0;
+		for (int eventCount : this.eventCounts) {
+			count += eventCount;
+		}
+		return count;
+	}
+
+	/**
+	 * @return The time of the earliest event, or positive infinity if there are no events.
+	 */
+	public double getMinTime() {
+		double min = Double.POSITIVE_INFINITY;
+		for (double time : this.minTimes) {
+			min = Math.min(min, time);
+		}
+		return min;
+	}
+
+	/**
+	 * @return The time of the latest event, or negative infinity if there are no events.
+	 */
+	public double getMaxTime() {
+		double max = Double.NEGATIVE_INFINITY;
+		for (double time : this.maxTimes) {
+			max = Math.max(max, time);
+		}
+		return max;
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.channel.close();
+	}
+
+	private int loadBlock(final int b, final Block block) {
+		try {
+			ByteBuffer header = read(this.offsets[b], BinaryEventsWriter.BLOCK_HEADER_BYTES);
+			int rawLength = header.getInt();
+			int storedLength = header.getInt();
+			int eventCount = header.getInt();
+			if (this.stored.length < storedLength) {
+				this.stored = new byte[storedLength];
+			}
+			ByteBuffer buffer = ByteBuffer.wrap(this.stored, 0, storedLength);
+			long position = this.offsets[b] + BinaryEventsWriter.BLOCK_HEADER_BYTES;
+			while (buffer.hasRemaining()) {
+				int read = this.channel.read(buffer, position);
+				if (read < 0) {
+					throw new IOException("unexpected end of file in block " + b);
+				}
+				position += read;
+			}
+			if (storedLength == rawLength) {
+				block.reset(this.stored);
+			} else {
+				if (this.raw.length < rawLength) {
+					this.raw = new byte[rawLength];
+				}
+				this.decompressor.decompress(this.stored, 0, this.raw, 0, rawLength);
+				block.reset(this.raw);
+			}
+			return eventCount;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private ByteBuffer read(final long position, final int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		long offset = position;
+		while (buffer.hasRemaining()) {
+			int read = this.channel.read(buffer, offset);
+			if (read < 0) {
+				throw new IOException("unexpected end of file at " + offset);
+			}
+			offset += read;
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Decodes the records of one block.
+	 */
+	private static final class Block {
+		private final List<String> strings = new ArrayList<>();
+		private byte[] bytes;
+		private int position;
+		private long previousTime;
+		double time;
+
+		void reset(final byte[] bytes) {
+			this.bytes = bytes;
+			this.position = 0;
+			this.previousTime = 0;
+			this.strings.clear();
+		}
+
+		AttributesImpl next() {
+			AttributesImpl attributes = new AttributesImpl();
+			long typeRef = readVarLong();
+			String type = readString(typeRef);
+			if ((typeRef & 3) == BinaryEventsWriter.TAG_TIME_RAW) {
+				this.time = readDouble();
+			} else {
+				this.previousTime += unzigzag(readVarLong());
+				this.time = this.previousTime;
+			}
+			attributes.addAttribute(null, null, Event.ATTRIBUTE_TIME, null, Double.toString(this.time));
+			attributes.addAttribute(null, null, Event.ATTRIBUTE_TYPE, null, type);
+			int count = (int) readVarLong();
+			for (int i = 0; i < count; i++) {
+				long keyRef = readVarLong();
+				String key = readString(keyRef);
+				String value;
+				switch ((int) (keyRef & 3)) {
+				case BinaryEventsWriter.TAG_LONG:
+					value = Long.toString(unzigzag(readVarLong()));
+					break;
+				case BinaryEventsWriter.TAG_DOUBLE:
+					value = Double.toString(readDouble());
+					break;
+				default:
+					value = readString(readVarLong());
+				}
+				attributes.addAttribute(null, null, key, null, value);
+			}
+			return attributes;
+		}
+
+		private String readString(final long ref) {
+			int id = (int) (ref >>> 2);
+			if (id < this.strings.size()) {
+				return this.strings.get(id);
+			}
+			int length = (int) readVarLong();
+			String string = new String(this.bytes, this.position, length, StandardCharsets.UTF_8);
+			this.position += length;
+			this.strings.add(string);
+			return string;
+		}
+
+		private long readVarLong() {
+			long value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = this.bytes[this.position++];
+				value |= (long) (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+			return value;
+		}
+
+		private double readDouble() {
+			long bits = 0;
+			for (int i = 0; i < 8; i++) {
+				bits |= (this.bytes[this.position++] & 0xFFL) << (8 * i);
+			}
+			return Double.longBitsToDouble(bits);
+		}
+
+		private static long unzigzag(final long value) {
+			return (value >>> 1) ^ -(value & 1);
+		}
+	}
+}
@@ -0,0 +1,451 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BinaryEventsWriter.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.events;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.events.algorithms.EventWriter;
+import org.matsim.core.events.handler.BasicEventHandler;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+
+/**
+ * Writes events into a binary file of LZ4-compressed blocks with an index of the blocks at the end,
+ * which {@link BinaryEventsReader} reads back, optionally only a time window.
+ *
+ * <p>The events are handed over in batches through a bounded queue to a writer thread, which encodes
+ * and compresses them; the thread creating the events only waits when the queue is full.</p>
+ *
+ * <p>Layout, little endian:</p>
+ * <pre>
+ *   int    magic "MEVT"
+ *   int    version
+ *   per block:
+ *     int  raw length         (bytes of the encoded records)
+ *     int  stored length      (bytes that follow; equal to the raw length if not compressed)
+ *     int  event count
+ *     byte[stored length]     records
+ *   index:
+ *     int  block count
+ *     per block: long offset, int event count, double min time, double max time
+ *   long   index offset
+ *   int    magic "MEVT"
+ * </pre>
+ *
+ * <p>A record is the event type as a string reference whose tag tells whether the time follows as
+ * an 8 byte double or, for whole seconds, as the zigzag varint difference to the time of the previous
+ * record; then the number of further attributes, each a key as a string reference tagged with the type
+ * of the value: a string reference, a zigzag varint or an 8 byte double. A string reference is the
+ * varint <code>id &lt;&lt; 2 | tag</code> into the strings of the block so far; an id one past the last
+ * is followed by the varint length and UTF-8 bytes of a new string. Every block starts with no strings
+ * and time 0, so that it can be decoded on its own. Numbers are only stored as such if they turn back
+ * into the same attribute string.</p>
+ */
+public final class BinaryEventsWriter implements EventWriter, BasicEventHandler {
+
+	/*package*/ static final int MAGIC = 0x5456454D; // "MEVT" in little endian
+	/*package*/ static final int VERSION = 1;
+	/*package*/ static final int HEADER_BYTES = 8;
+	/*package*/ static final int BLOCK_HEADER_BYTES = 12;
+	/*package*/ static final int INDEX_ENTRY_BYTES = 28;
+	/*package*/ static final int TRAILER_BYTES = 12;
+
+	/*package*/ static final int TAG_STRING = 0;
+	/*package*/ static final int TAG_LONG = 1;
+	/*package*/ static final int TAG_DOUBLE = 2;
+	/*package*/ static final int TAG_TIME_DELTA = 0;
+	/*package*/ static final int TAG_TIME_RAW = 1;
+
+	public static final int DEFAULT_BLOCK_SIZE = 1 << 18;
+	private static final int BATCH_SIZE = 512;
+	private static final int QUEUE_CAPACITY = 64;
+	private static final Event[] END = new Event[0];
+
+	private final BlockingQueue<Event[]> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+	private final Thread thread;
+	private final Encoder encoder;
+	private Event[] batch = new Event[BATCH_SIZE];
+	private int batchSize = 0;
+	private boolean closed = false;
+
+	public BinaryEventsWriter(final String filename) {
+		this(new File(filename), true, DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * @param compress Whether to LZ4-compress the blocks.
+	 * @param blockSize The number of encoded bytes after which a block is completed.
+	 */
+	public BinaryEventsWriter(final File file, final boolean compress, final int blockSize) {
+		try {
+			this.encoder = new Encoder(file, compress, blockSize);
+		} catch (IOException e) {
+			throw new UncheckedIOException("could not open " + file, e);
+		}
+		this.thread = new Thread(this.encoder, "binary-events-writer");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	@Override
+	public void handleEvent(final Event event) {
+		this.batch[this.batchSize++] = event;
+		if (this.batchSize == BATCH_SIZE) {
+			handOver(this.batch);
+			this.batch = new Event[BATCH_SIZE];
+			this.batchSize = 0;
+		}
+	}
+
+	@Override
+	public void reset(final int iteration) {
+	}
+
+	/**
+	 * Waits until all events are written, then writes the index and closes the file.
+	 */
+	@Override
+	public void closeFile() {
+		if (this.closed) {
+			return;
+		}
+		this.closed = true;
+		if (this.batchSize > 0) {
+			handOver(Arrays.copyOf(this.batch, this.batchSize));
+			this.batchSize = 0;
+		}
+		handOver(END);
+		try {
+			this.thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+		if (this.encoder.error != null) {
+			throw new UncheckedIOException("could not write events", this.encoder.error);
+		}
+	}
+
+	private void handOver(final Event[] events) {
+		if (this.encoder.error != null && events != END) {
+			// the writer thread is gone, nothing would take the batch
+			return;
+		}
+		try {
+			this.queue.put(events);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Runs on the writer thread: encodes the events into blocks and writes them.
+	 */
+	private final class Encoder implements Runnable {
+		private final FileChannel channel;
+		private final LZ4Compressor compressor;
+		private final int blockSize;
+		private final Map<String, Integer> strings = new HashMap<>();
+
+		private byte[] buffer;
+		private int length = 0;
+		private byte[] compressed = new byte[0];
+		private long previousTime = 0;
+		private int eventCount = 0;
+		private double minTime = Double.POSITIVE_INFINITY;
+		private double maxTime = Double.NEGATIVE_INFINITY;
+
+		private long position = HEADER_BYTES;
+		private ByteBuffer index = ByteBuffer.allocate(4 + 64 * INDEX_ENTRY_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		private int blockCount = 0;
+
+		volatile IOException error = null;
+
+		Encoder(final File file, final boolean compress, final int blockSize) throws IOException {
+			this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+			this.compressor = compress ? LZ4Factory.fastestInstance().fastCompressor() : null;
+			this.blockSize = blockSize;
+			this.buffer = new byte[blockSize + 1024];
+			this.index.putInt(0);
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(MAGIC).putInt(VERSION);
+			header.flip();
+			write(header, 0);
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					Event[] events = queue.take();
+					if (events == END) {
+						break;
+					}
+					for (Event event : events) {
+						encode(event);
+						if (this.length >= this.blockSize) {
+							flushBlock();
+						}
+					}
+				}
+				flushBlock();
+				writeIndex();
+			} catch (IOException e) {
+				this.error = e;
+				// let the producer finish, the events are lost anyway
+				drainQueue();
+			} catch (InterruptedException e) {
+				this.error = new IOException("interrupted while writing events", e);
+			} finally {
+				try {
+					this.channel.close();
+				} catch (IOException e) {
+					if (this.error == null) {
+						this.error = e;
+					}
+				}
+			}
+		}
+
+		private void drainQueue() {
+			try {
+				while (queue.take() != END) {
+					// discard
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		private void encode(final Event event) {
+			final double time = event.getTime();
+			final Map<String, String> attributes = event.getAttributes();
+			final long seconds = (long) time;
+			final boolean wholeSeconds = seconds == time && Math.abs(seconds) < (1L << 52);
+			writeString(event.getEventType(), wholeSeconds ? TAG_TIME_DELTA : TAG_TIME_RAW);
+			if (wholeSeconds) {
+				writeVarLong(zigzag(seconds - this.previousTime));
+				this.previousTime = seconds;
+			} else {
+				writeDouble(time);
+			}
+			int count = attributes.size();
+			if (attributes.containsKey(Event.ATTRIBUTE_TIME)) {
+				count--;
+			}
+			if (attributes.containsKey(Event.ATTRIBUTE_TYPE)) {
+				count--;
+			}
+			writeVarLong(count);
+			for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+				final String key = attribute.getKey();
+				if (Event.ATTRIBUTE_TIME.equals(key) || Event.ATTRIBUTE_TYPE.equals(key)) {
+					continue;
+				}
+				writeValue(key, attribute.getValue());
+			}
+			this.eventCount++;
+			this.minTime = Math.min(this.minTime, time);
+			this.maxTime = Math.max(this.maxTime, time);
+		}
+
+		private void writeValue(final String key, final String value) {
+			switch (numberKind(value)) {
+			case TAG_LONG:
+				writeString(key, TAG_LONG);
+				writeVarLong(zigzag(Long.parseLong(value)));
+				return;
+			case TAG_DOUBLE:
+				try {
+					double number = Double.parseDouble(value);
+					if (Double.toString(number).equals(value)) {
+						writeString(key, TAG_DOUBLE);
+						writeDouble(number);
+						return;
+					}
+				} catch (NumberFormatException e) {
+					// a string after all
+				}
+				break;
+			default:
+			}
+			writeString(key, TAG_STRING);
+			writeString(value, 0);
+		}
+
+		private void writeString(final String string, final int tag) {
+			final String value = string == null ? "" : string;
+			Integer id = this.strings.get(value);
+			if (id != null) {
+				writeVarLong(((long) id << 2) | tag);
+				return;
+			}
+			final int newId = this.strings.size();
+			this.strings.put(value, newId);
+			writeVarLong(((long) newId << 2) | tag);
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			writeVarLong(bytes.length);
+			ensureCapacity(bytes.length);
+			System.arraycopy(bytes, 0, this.buffer, this.length, bytes.length);
+			this.length += bytes.length;
+		}
+
+		private void writeVarLong(long value) {
+			ensureCapacity(10);
+			while ((value & ~0x7FL) != 0) {
+				this.buffer[this.length++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			this.buffer[this.length++] = (byte) value;
+		}
+
+		private void writeDouble(final double value) {
+			ensureCapacity(8);
+			long bits = Double.doubleToRawLongBits(value);
+			for (int i = 0; i < 8; i++) {
+				this.buffer[this.length++] = (byte) (bits >>> (8 * i));
+			}
+		}
+
+		private void ensureCapacity(final int bytes) {
+			if (this.length + bytes > this.buffer.length) {
+				this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2, this.length + bytes));
+			}
+		}
+
+		private void flushBlock() throws IOException {
+			if (this.eventCount == 0) {
+				return;
+			}
+			byte[] stored = this.buffer;
+			int storedLength = this.length;
+			if (this.compressor != null) {
+				int maxLength = this.compressor.maxCompressedLength(this.length);
+				if (this.compressed.length < maxLength) {
+					this.compressed = new byte[maxLength];
+				}
+				int compressedLength = this.compressor.compress(this.buffer, 0, this.length, this.compressed, 0, maxLength);
+				if (compressedLength < this.length) {
+					stored = this.compressed;
+					storedLength = compressedLength;
+				}
+			}
+			ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(this.length).putInt(storedLength).putInt(this.eventCount);
+			header.flip();
+			addIndexEntry();
+			write(header, this.position);
+			write(ByteBuffer.wrap(stored, 0, storedLength), this.position + BLOCK_HEADER_BYTES);
+			this.position += BLOCK_HEADER_BYTES + storedLength;
+
+			this.length = 0;
+			this.eventCount = 0;
+			this.previousTime = 0;
+			this.minTime = Double.POSITIVE_INFINITY;
+			this.maxTime = Double.NEGATIVE_INFINITY;
+			this.strings.clear();
+		}
+
+		private void addIndexEntry() {
+			if (this.index.remaining() < INDEX_ENTRY_BYTES) {
+				ByteBuffer larger = ByteBuffer.allocate(this.index.capacity() * 2).order(ByteOrder.LITTLE_ENDIAN);
+				this.index.flip();
+				larger.put(this.index);
+				this.index = larger;
+			}
+			this.index.putLong(this.position).putInt(this.eventCount).putDouble(this.minTime).putDouble(this.maxTime);
+			this.blockCount++;
+		}
+
+		private void writeIndex() throws IOException {
+			this.index.putInt(0, this.blockCount);
+			this.index.flip();
+			long indexOffset = this.position;
+			write(this.index, indexOffset);
+			ByteBuffer trailer = ByteBuffer.allocate(TRAILER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			trailer.putLong(indexOffset).putInt(MAGIC);
+			trailer.flip();
+			write(trailer, indexOffset + this.index.limit());
+		}
+
+		private void write(final ByteBuffer buffer, final long position) throws IOException {
+			long offset = position;
+			while (buffer.hasRemaining()) {
+				offset += this.channel.write(buffer, offset);
+			}
+		}
+	}
+
+	/**
+	 * @return {@link #TAG_LONG} if the value is a long written without leading zeros or plus sign,
+	 *  {@link #TAG_DOUBLE} if it may be a double, {@link #TAG_STRING} otherwise.
+	 */
+	private static int numberKind(final String value) {
+		final int length = value == null ? 0 : value.length();
+		if (length == 0 || length > 20) {
+			return TAG_STRING;
+		}
+		int start = value.charAt(0) == '-' ? 1 : 0;
+		if (start == length) {
+			return TAG_STRING;
+		}
+		boolean integral = true;
+		for (int i = start; i < length; i++) {
+			char c = value.charAt(i);
+			if (c < '0' || c > '9') {
+				if (c != '.' && c != 'E' && c != '-') {
+					return TAG_STRING;
+				}
+				integral = false;
+			}
+		}
+		if (!integral) {
+			char first = value.charAt(start);
+			return first >= '0' && first <= '9' ? TAG_DOUBLE : TAG_STRING;
+		}
+		if (value.charAt(start) == '0' && (length > start + 1 || start == 1)) {
+			return TAG_STRING;
+		}
+		// 18 digits always fit into a long
+		return length - start <= 18 ? TAG_LONG : TAG_STRING;
+	}
+
+	private static long zigzag(final long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+}
@@ -0,0 +1,352 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RingBufferEventsManager.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.events;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.handler.EventHandler;
+
+/**
+ * An <code>EventsManager</code> that takes the dispatch of events off the thread that creates them.
+ *
+ * <p>Events are collected in batches of a fixed size, and every full batch is published into a ring
+ * of batches. The handlers are spread over a number of lanes, each with its own thread and its own
+ * <code>EventsManager</code> as returned by <code>EventsUtils.createEventsManager()</code>. Every lane
+ * reads the whole ring in order, so each handler still sees all events in the order they were created,
+ * while handlers in different lanes run in parallel. The creating thread only waits when the slowest
+ * lane is a full ring behind.</p>
+ *
+ * <p>Handlers may be added and removed, and {@link #resetHandlers(int)} and
+ * {@link #finishProcessing()} called, at any time; all of them first wait until the lanes have
+ * handled every event created before. Exceptions of handlers are rethrown from the next of these
+ * calls, and the failed lane skips the events until then. <code>afterSimStep</code> does not wait,
+ * so handlers may lag behind the mobsim within an iteration.</p>
+ */
+public final class RingBufferEventsManager implements EventsManager {
+	private static final Logger log = Logger.getLogger( RingBufferEventsManager.class ) ;
+
+	public static final int DEFAULT_BATCH_SIZE = 1024;
+	public static final int DEFAULT_RING_SIZE = 64;
+
+	/* how often a waiting thread yields before it parks */
+	private static final int YIELDS = 100;
+	private static final long PARK_NANOS = 50_000;
+
+	private final Lane[] lanes;
+	private final int batchSize;
+	private final int mask;
+	private final Event[][] ring;
+	private final int[] sizes;
+	private final AtomicLong published = new AtomicLong();
+	private final Map<EventHandler, Lane> handlerLanes = new IdentityHashMap<>();
+
+	/* producer state, guarded by this */
+	private Event[] current;
+	private int currentSize = 0;
+	private long minConsumed = 0;
+	private boolean started = false;
+	private long producerWaits = 0;
+	private long batches = 0;
+	private long eventCount = 0;
+
+	/**
+	 * @param numberOfLanes The number of threads the handlers are spread over.
+	 * @param batchSize The number of events published at once.
+	 * @param ringSize The number of batches the slowest lane may be behind, rounded up to a power of two.
+	 */
+	public RingBufferEventsManager(final int numberOfLanes, final int batchSize, final int ringSize) {
+		if (numberOfLanes < 1 || batchSize < 1 || ringSize < 1) {
+			throw new IllegalArgumentException("numberOfLanes, batchSize and ringSize must be positive, but are "
+					+ numberOfLanes + ", " + batchSize + " and " + ringSize);
+		}
+		int capacity = Integer.highestOneBit(ringSize);
+		if (capacity < ringSize) {
+			capacity <<= 1;
+		}
+		this.batchSize = batchSize;
+		this.mask = capacity - 1;
+		this.ring = new Event[capacity][];
+		for (int i = 0; i < capacity; i++) {
+			this.ring[i] = new Event[batchSize];
+		}
+		this.sizes = new int[capacity];
+		this.current = new Event[batchSize];
+		this.lanes = new Lane[numberOfLanes];
+		for (int i = 0; i < numberOfLanes; i++) {
+			this.lanes[i] = new Lane(i);
+		}
+	}
+
+	public RingBufferEventsManager(final int numberOfLanes) {
+		this(numberOfLanes, DEFAULT_BATCH_SIZE, DEFAULT_RING_SIZE);
+	}
+
+	@Override
+	public synchronized void processEvent(final Event event) {
+		this.current[this.currentSize++] = event;
+		if (this.currentSize == this.batchSize) {
+			publish();
+		}
+	}
+
+	/**
+	 * Adds the handler to the lane with the fewest handlers.
+	 */
+	@Override
+	public synchronized void addHandler(final EventHandler handler) {
+		drain();
+		Lane lane = this.lanes[0];
+		for (Lane candidate : this.lanes) {
+			if (candidate.handlerCount < lane.handlerCount) {
+				lane = candidate;
+			}
+		}
+		lane.events.addHandler(handler);
+		lane.handlerCount++;
+		this.handlerLanes.put(handler, lane);
+	}
+
+	@Override
+	public synchronized void removeHandler(final EventHandler handler) {
+		drain();
+		Lane lane = this.handlerLanes.remove(handler);
+		if (lane != null) {
+			lane.events.removeHandler(handler);
+			lane.handlerCount--;
+		}
+	}
+
+	@Override
+	public synchronized void resetHandlers(final int iteration) {
+		drain();
+		for (Lane lane : this.lanes) {
+			lane.events.resetHandlers(iteration);
+		}
+	}
+
+	@Override
+	public synchronized void initProcessing() {
+		drain();
+		for (Lane lane : this.lanes) {
+			lane.events.initProcessing();
+			lane.busyNanos = 0;
+		}
+		this.producerWaits = 0;
+		this.batches = 0;
+		this.eventCount = 0;
+	}
+
+	@Override
+	public void afterSimStep(final double time) {
+	}
+
+	@Override
+	public synchronized void finishProcessing() {
+		drain();
+		for (Lane lane : this.lanes) {
+			lane.events.finishProcessing();
+		}
+		StringBuilder busy = new StringBuilder();
+		for (Lane lane : this.lanes) {
+			busy.append(' ').append(lane.handlerCount).append(" handlers ").append(lane.busyNanos / 1000000).append(" ms;");
+		}
+		log.info("dispatched " + this.eventCount + " events in " + this.batches + " batches on " + this.lanes.length
+				+ " lanes, waited " + this.producerWaits + " times for the slowest lane, busy:" + busy);
+	}
+
+	/**
+	 * Stops the lane threads after the lanes have handled all events; later events start them again.
+	 */
+	public synchronized void shutdown() {
+		drain();
+		if (!this.started) {
+			return;
+		}
+		for (Lane lane : this.lanes) {
+			lane.stopped = true;
+			LockSupport.unpark(lane.thread);
+		}
+		for (Lane lane : this.lanes) {
+			try {
+				lane.thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			lane.thread = null;
+			lane.stopped = false;
+		}
+		this.started = false;
+	}
+
+	public int getNumberOfLanes() {
+		return this.lanes.length;
+	}
+
+	private void publish() {
+		if (this.currentSize == 0) {
+			return;
+		}
+		if (!this.started) {
+			for (Lane lane : this.lanes) {
+				lane.start(this.published.get());
+			}
+			this.started = true;
+		}
+		final long sequence = this.published.get();
+		// the slot is free once every lane has read the batch a full ring before
+		int spins = 0;
+		while (sequence - this.mask > this.minConsumed) {
+			this.minConsumed = computeMinConsumed();
+			if (sequence - this.mask > this.minConsumed) {
+				if (spins == 0) {
+					this.producerWaits++;
+				}
+				if (++spins < YIELDS) {
+					Thread.yield();
+				} else {
+					LockSupport.parkNanos(PARK_NANOS);
+				}
+			}
+		}
+		final int slot = (int) (sequence & this.mask);
+		final Event[] free = this.ring[slot];
+		this.ring[slot] = this.current;
+		this.sizes[slot] = this.currentSize;
+		this.published.set(sequence + 1);
+		this.eventCount += this.currentSize;
+		this.current = free;
+		this.currentSize = 0;
+		this.batches++;
+		for (Lane lane : this.lanes) {
+			if (lane.waiting) {
+				LockSupport.unpark(lane.thread);
+			}
+		}
+	}
+
+	private long computeMinConsumed() {
+		long min = Long.MAX_VALUE;
+		for (Lane lane : this.lanes) {
+			min = Math.min(min, lane.consumed.get());
+		}
+		return min;
+	}
+
+	/**
+	 * Publishes the current batch and waits until every lane has handled all published batches.
+	 */
+	private void drain() {
+		publish();
+		if (this.started) {
+			final long sequence = this.published.get();
+			int spins = 0;
+			while (computeMinConsumed() < sequence) {
+				if (++spins < YIELDS) {
+					Thread.yield();
+				} else {
+					LockSupport.parkNanos(PARK_NANOS);
+				}
+			}
+			this.minConsumed = sequence;
+		}
+		for (Lane lane : this.lanes) {
+			Throwable error = lane.error;
+			if (error != null) {
+				lane.error = null;
+				throw new RuntimeException("an event handler on lane " + lane.index + " failed", error);
+			}
+		}
+	}
+
+	private final class Lane implements Runnable {
+		final int index;
+		final EventsManager events = EventsUtils.createEventsManager();
+		final AtomicLong consumed = new AtomicLong();
+		int handlerCount = 0;
+		Thread thread = null;
+		volatile boolean waiting = false;
+		volatile boolean stopped = false;
+		volatile Throwable error = null;
+		/* written by the lane thread before it marks a batch consumed, read after drain() */
+		long busyNanos = 0;
+
+		Lane(final int index) {
+			this.index = index;
+		}
+
+		void start(final long sequence) {
+			this.consumed.set(sequence);
+			this.thread = new Thread(this, "events-lane-" + this.index);
+			this.thread.setDaemon(true);
+			this.thread.start();
+		}
+
+		@Override
+		public void run() {
+			long next = this.consumed.get();
+			int spins = 0;
+			while (true) {
+				final long available = RingBufferEventsManager.this.published.get();
+				if (next == available) {
+					if (this.stopped) {
+						return;
+					}
+					if (++spins < YIELDS) {
+						Thread.yield();
+					} else {
+						this.waiting = true;
+						if (RingBufferEventsManager.this.published.get() == next && !this.stopped) {
+							LockSupport.parkNanos(PARK_NANOS);
+						}
+						this.waiting = false;
+					}
+					continue;
+				}
+				spins = 0;
+				for (; next < available; next++) {
+					final long start = System.nanoTime();
+					final int slot = (int) (next & RingBufferEventsManager.this.mask);
+					final Event[] batch = RingBufferEventsManager.this.ring[slot];
+					final int size = RingBufferEventsManager.this.sizes[slot];
+					if (this.error == null) {
+						try {
+							for (int i = 0; i < size; i++) {
+								this.events.processEvent(batch[i]);
+							}
+						} catch (RuntimeException | Error e) {
+							this.error = e;
+						}
+					}
+					this.busyNanos += System.nanoTime() - start;
+					this.consumed.set(next + 1);
+				}
+			}
+		}
+	}
+}
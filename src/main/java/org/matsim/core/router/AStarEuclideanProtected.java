@@ -24,9 +24,12 @@ import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.router.LinkRelaxationCounters.Kind;
 import org.matsim.core.router.util.*;
 import org.matsim.core.utils.collections.RouterPriorityQueue;
 import org.matsim.core.utils.geometry.CoordUtils;
+import org.matsim.vehicles.Vehicle;
 
 /**
  * Implements the <a href="http://en.wikipedia.org/wiki/A%2A">A* router algorithm</a>
@@ -78,6 +81,10 @@ public class AStarEuclideanProtected extends Dijkstra {
 
 	private double minTravelCostPerLength;
 
+	private LinkRelaxationCounters linkRelaxationCounters = null;
+	/** the counters while the current query is sampled, <code>null</code> otherwise */
+	private LinkRelaxationCounters sampledCounters = null;
+
 	/**
 	 * Default constructor; sets the overdo factor to 1.
 	 * @param network
@@ -145,10 +152,25 @@ public class AStarEuclideanProtected extends Dijkstra {
 		data.setExpectedRemainingCost(estimateRemainingTravelCost(fromNode, toNode));
 	}
 
+	@Override
+	public Path calcLeastCostPath(final Node fromNode, final Node toNode, final double startTime, final Person person, final Vehicle vehicle) {
+		final LinkRelaxationCounters counters = this.linkRelaxationCounters;
+		this.sampledCounters = counters != null && counters.sampleQuery() ? counters : null;
+		try {
+			return super.calcLeastCostPath(fromNode, toNode, startTime, person, vehicle);
+		} finally {
+			this.sampledCounters = null;
+		}
+	}
+
 	@Override
 	protected boolean addToPendingNodes(final Link l, final Node n, final RouterPriorityQueue<Node> pendingNodes,
 			final double currTime, final double currCost, final Node toNode) {
 
+		final LinkRelaxationCounters counters = this.sampledCounters;
+		if (counters != null) {
+			counters.count(l, Kind.relaxed);
+		}
 		final double travelTime = this.timeFunction.getLinkTravelTime(l, currTime, this.person, this.vehicle);
 		final double travelCost = this.costFunction.getLinkTravelDisutility(l, currTime, this.person, this.vehicle);		
 		final AStarNodeData data = getData(n);
@@ -161,11 +183,17 @@ public class AStarEuclideanProtected extends Dijkstra {
 		final double nCost = data.getCost();
 		final double totalCost = currCost + travelCost;
 		if (totalCost < nCost) {
+			if (counters != null) {
+				counters.count(l, Kind.improved);
+			}
 			revisitNode(n, data, pendingNodes, currTime + travelTime, totalCost, l);
 			return true;
 		} else if (totalCost == nCost) {
 			// Special case: a node can be reached from two links with exactly the same costs.
 			// Decide based on the linkId which one to take... just have to common criteria to be deterministic.
+			if (counters != null) {
+				counters.count(l, totalCost == 0. ? Kind.zeroCostTied : Kind.tied);
+			}
 			
 			if ( totalCost==0. ) {
 				log.warn( "finding totalCost=" + totalCost + "; this will often (or always?) lead to a null " +
@@ -234,6 +262,15 @@ public class AStarEuclideanProtected extends Dijkstra {
 		return new AStarNodeData();
 	}
 	
+	/**
+	 * Lets this router count link relaxations, cost improvements and ties in a sample of its queries.
+	 *
+	 * @param counters The counters for the network of this router, or <code>null</code> to stop counting.
+	 */
+	public void setLinkRelaxationCounters(final LinkRelaxationCounters counters) {
+		this.linkRelaxationCounters = counters;
+	}
+
 	/**
 	 * Sets minTravelCostPerLength to the given value.
 	 * 
@@ -20,7 +20,6 @@
 
 package org.matsim.core.router;
 
-import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.api.core.v01.network.Node;
@@ -79,9 +78,7 @@ import org.matsim.vehicles.Vehicle;
  * @author lnicolas
  */
 public class AStarEuclideanRecord extends AStarEuclideanProtected {
-	private static final Logger log = Logger.getLogger( AStarEuclideanRecord.class ) ;
-
-    private int visitedNodes = 0;
+    private final RecordRouterState state = new RecordRouterState("AStarEuclideanRecord");
 
     AStarEuclideanRecord(final Network network,
                 final PreProcessEuclidean preProcessData,
@@ -104,18 +101,48 @@ public class AStarEuclideanRecord extends AStarEuclideanProtected {
 	protected void visitNode(final Node n, final AStarNodeData data, final RouterPriorityQueue<Node> pendingNodes,
 			final double time, final double cost, final double expectedRemainingCost, final Link outLink) {
         super.visitNode(n, data, pendingNodes, time, cost, expectedRemainingCost, outLink);
-        visitedNodes += 1;
+        this.state.nodeVisited();
 	}
 	
     @Override
     public Path calcLeastCostPath(final Node fromNode, final Node toNode, final double startTime, final Person person2, final Vehicle vehicle2) {
+        this.state.startQuery();
         Path finalPath = super.calcLeastCostPath(fromNode, toNode, startTime, person2, vehicle2);
-        log.info(String.format("AAA ROUTE LENGTH LINKS: %d", finalPath.links.size()));
-        log.info(String.format("AAA ROUTE LENGTH NODES: %d", finalPath.nodes.size()));
-        log.info(String.format("AAA ROUTE TRAVEL TIME: %f", finalPath.travelTime));
-        log.info(String.format("AAA ROUTE TRAVEL COST: %f", finalPath.travelCost));
-        log.info(String.format("AAA VISITED NODES: %d", visitedNodes));
+        this.state.endQuery();
         return finalPath;
     }
 
+    @Override
+    protected boolean addToPendingNodes(final Link l, final Node n, final RouterPriorityQueue<Node> pendingNodes,
+            final double currTime, final double currCost, final Node toNode) {
+        return this.state.linkRelaxed(super.addToPendingNodes(l, n, pendingNodes, currTime, currCost, toNode));
+    }
+
+    @Override
+    protected void relaxNode(final Node outNode, final Node toNode, final RouterPriorityQueue<Node> pendingNodes) {
+        this.state.nodeRelaxed();
+        super.relaxNode(outNode, toNode, pendingNodes);
+    }
+
+    /**
+     * Makes this router reuse the given heap as its queue of pending nodes in every query, instead of
+     * creating a new queue per query.
+     */
+    /*package*/ void setPendingNodesHeap(final IndexedFourAryHeap<Node> heap) {
+        this.state.setPendingNodesHeap(heap);
+    }
+
+    @Override
+    protected RouterPriorityQueue<? extends Node> createRouterPriorityQueue() {
+        IndexedFourAryHeap<Node> heap = this.state.resetPendingNodesHeap();
+        return heap == null ? super.createRouterPriorityQueue() : heap;
+    }
+
+    /**
+     * @return The number of nodes visited while calculating the last path.
+     */
+    public int getVisitedNodes() {
+        return this.state.getVisitedNodes();
+    }
+
 }
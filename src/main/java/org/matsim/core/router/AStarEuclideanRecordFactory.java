@@ -19,9 +19,6 @@
  * *********************************************************************** */
 package org.matsim.core.router;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.core.router.util.LeastCostPathCalculator;
 import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
@@ -34,7 +31,10 @@ import org.matsim.core.router.util.TravelTime;
  */
 public class AStarEuclideanRecordFactory implements LeastCostPathCalculatorFactory {
 
-	private final Map<Network, PreProcessEuclidean> preProcessData = new HashMap<>();
+	private final PreProcessCache<Network, PreProcessEuclidean> preProcessData = new PreProcessCache<>();
+	private final PreProcessCache<Network, RoutingGraph> graphs = new PreProcessCache<>();
+	private volatile boolean useFourAryHeap = false;
+	private volatile LinkRelaxationCounters linkRelaxationCounters = null;
 	private final double overdoFactor;
 
 	public AStarEuclideanRecordFactory() {
@@ -46,15 +46,38 @@ public class AStarEuclideanRecordFactory implements LeastCostPathCalculatorFacto
 	}
 
 	@Override
-	public synchronized LeastCostPathCalculator createPathCalculator(final Network network,
+	public LeastCostPathCalculator createPathCalculator(final Network network,
 			final TravelDisutility travelCosts, final TravelTime travelTimes) {
-		PreProcessEuclidean preProcessEuclidean = this.preProcessData.get(network);
-		if (preProcessEuclidean == null) {
-			preProcessEuclidean = new PreProcessEuclidean(travelCosts);
-			preProcessEuclidean.run(network);
-			this.preProcessData.put(network, preProcessEuclidean);
+		PreProcessEuclidean preProcessEuclidean = this.preProcessData.get(network, n -> {
+			PreProcessEuclidean data = new PreProcessEuclidean(travelCosts);
+			data.run(n);
+			return data;
+		});
+
+		AStarEuclideanRecord router = new AStarEuclideanRecord(network, preProcessEuclidean, travelCosts, travelTimes, overdoFactor);
+		if (this.useFourAryHeap) {
+			router.setPendingNodesHeap(IndexedFourAryHeap.createForNodes(this.graphs.get(network, RoutingGraph::createFromNetwork)));
+		}
+		LinkRelaxationCounters counters = this.linkRelaxationCounters;
+		if (counters != null && counters.getNetwork() == network) {
+			router.setLinkRelaxationCounters(counters);
 		}
+		return router;
+	}
+
+	/**
+	 * Lets the routers use an {@link IndexedFourAryHeap} with in-place decrease-key as their queue of
+	 * pending nodes instead of MATSim's default queue.
+	 */
+	public void setUseFourAryHeap(final boolean useFourAryHeap) {
+		this.useFourAryHeap = useFourAryHeap;
+	}
 
-		return new AStarEuclideanRecord(network, preProcessEuclidean, travelCosts, travelTimes, overdoFactor);
+	/**
+	 * Lets the routers created from now on for the network of the given counters count their link
+	 * relaxations, see {@link LinkRelaxationCounters}.
+	 */
+	public void setLinkRelaxationCounters(final LinkRelaxationCounters counters) {
+		this.linkRelaxationCounters = counters;
 	}
 }
@@ -20,9 +20,8 @@
 
 package org.matsim.core.router;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.List;
 
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.api.core.v01.network.Node;
@@ -66,13 +65,23 @@ import org.matsim.vehicles.Vehicle;
  */
 public class AStarLandmarksProtected extends AStarEuclideanProtected {
 
-	protected int[] activeLandmarkIndexes;
+	/** The active landmarks are the first {@link #activeLandmarkCount} entries. */
+	protected final int[] activeLandmarkIndexes;
+	protected int activeLandmarkCount = 0;
 
 	protected final Node[] landmarks;
 
-	/*package*/ static final int controlInterval = 40;
+	/*package*/ static final int DEFAULT_CONTROL_INTERVAL = 40;
+	/*package*/ static final int DEFAULT_INITIAL_ACTIVE_LANDMARKS = 2;
+	/*package*/ int controlInterval = DEFAULT_CONTROL_INTERVAL;
+	/*package*/ int initialActiveLandmarks = DEFAULT_INITIAL_ACTIVE_LANDMARKS;
 	/*package*/ int controlCounter = 0;
 
+	/* scratch buffers, reused by every query so that routing does not allocate */
+	private final double[] estTravelTimes;
+	private Node[] nodesToBeUpdated = new Node[64];
+	private double[] newEstRemTravCosts = new double[64];
+
 	/**
 	 * Default constructor; sets the overdo factor to 1.
 	 * @param network Where we do the routing.
@@ -111,24 +120,35 @@ public class AStarLandmarksProtected extends AStarEuclideanProtected {
 		super(network, preProcessData, costFunction, timeFunction, overdoFactor);
 
 		this.landmarks = preProcessData.getLandmarks();
+		this.activeLandmarkIndexes = new int[this.landmarks.length];
+		this.estTravelTimes = new double[this.landmarks.length];
+	}
+
+	/**
+	 * Sets how many landmarks a path calculation starts with (2 by default) and after how many relaxed
+	 * nodes it checks whether another landmark estimates better (40 by default).
+	 */
+	/*package*/ void setLandmarkControl(final int initialActiveLandmarks, final int controlInterval) {
+		if (initialActiveLandmarks < 1 || controlInterval < 1) {
+			throw new IllegalArgumentException("initialActiveLandmarks and controlInterval must be positive, but are "
+					+ initialActiveLandmarks + " and " + controlInterval);
+		}
+		this.initialActiveLandmarks = initialActiveLandmarks;
+		this.controlInterval = controlInterval;
 	}
 
 	@Override
 	public Path calcLeastCostPath(final Node fromNode, final Node toNode, final double startTime, final Person person, final Vehicle vehicle) {
 		this.controlCounter = 0;	// reset counter for each calculated path!
 		
-		if (this.landmarks.length >= 2) {
-			initializeActiveLandmarks(fromNode, toNode, 2);
-		} else {
-			initializeActiveLandmarks(fromNode, toNode, this.landmarks.length);
-		}
+		initializeActiveLandmarks(fromNode, toNode, Math.min(this.initialActiveLandmarks, this.landmarks.length));
 		return super.calcLeastCostPath(fromNode, toNode, startTime, person, vehicle);
 	}
 
 	@Override
 	protected void relaxNode(final Node outNode, final Node toNode, final RouterPriorityQueue<Node> pendingNodes) {
 		this.controlCounter++;
-		if (this.controlCounter == controlInterval) {
+		if (this.controlCounter == this.controlInterval) {
 			int newLandmarkIndex = checkToAddLandmark(outNode, toNode);
 			if (newLandmarkIndex > 0) {
 				updatePendingNodes(newLandmarkIndex, toNode, pendingNodes);
@@ -150,17 +170,15 @@ public class AStarLandmarksProtected extends AStarEuclideanProtected {
 		final PreProcessLandmarks.LandmarksData toData = getPreProcessData(toNode);
 
 		// Sort the landmarks according to the accuracy of their distance estimation they yield.
-		double[] estTravelTimes = new double[actLandmarkCount];
-		this.activeLandmarkIndexes = new int[actLandmarkCount];
-		for (int i = 0; i < estTravelTimes.length; i++) {
-			estTravelTimes[i] = Time.UNDEFINED_TIME;
-		}
+		final double[] estTravelTimes = this.estTravelTimes;
+		Arrays.fill(estTravelTimes, 0, actLandmarkCount, Time.UNDEFINED_TIME);
+		this.activeLandmarkCount = actLandmarkCount;
 		double tmpTravTime;
 		for (int i = 0; i < this.landmarks.length; i++) {
 			tmpTravTime = estimateRemainingTravelCost(fromData, toData, i);
-			for (int j = 0; j < estTravelTimes.length; j++) {
+			for (int j = 0; j < actLandmarkCount; j++) {
 				if (tmpTravTime > estTravelTimes[j]) {
-					for (int k = estTravelTimes.length - 1; k > j; k--) {
+					for (int k = actLandmarkCount - 1; k > j; k--) {
 						estTravelTimes[k] = estTravelTimes[k - 1];
 						this.activeLandmarkIndexes[k] = this.activeLandmarkIndexes[k - 1];
 					}
@@ -191,7 +209,7 @@ public class AStarLandmarksProtected extends AStarEuclideanProtected {
 		PreProcessLandmarks.LandmarksData toRole = getPreProcessData(toNode);
 		double tmpTravCost;
 		double travCost = 0;
-		for (int i = 0, n = this.activeLandmarkIndexes.length; i < n; i++) {
+		for (int i = 0, n = this.activeLandmarkCount; i < n; i++) {
 			tmpTravCost = estimateRemainingTravelCost(fromRole, toRole, this.activeLandmarkIndexes[i]);
 			if (tmpTravCost > travCost) {
 				travCost = tmpTravCost;
@@ -217,8 +235,7 @@ public class AStarLandmarksProtected extends AStarEuclideanProtected {
 	/*package*/ void updatePendingNodes(final int newLandmarkIndex, final Node toNode, final RouterPriorityQueue<Node> pendingNodes) {
 		Iterator<Node> it = pendingNodes.iterator();
 		PreProcessLandmarks.LandmarksData toRole = getPreProcessData(toNode);
-		List<Double> newEstRemTravCosts = new ArrayList<>();
-		List<Node> nodesToBeUpdated = new ArrayList<>();
+		int count = 0;
 		while (it.hasNext()) {
 			Node node = it.next();
 			AStarNodeData data = getData(node);
@@ -226,18 +243,36 @@ public class AStarLandmarksProtected extends AStarEuclideanProtected {
 			double estRemTravCost = data.getExpectedRemainingCost();
 			double newEstRemTravCost = estimateRemainingTravelCost(ppRole, toRole, newLandmarkIndex);
 			if (newEstRemTravCost > estRemTravCost) {
-				nodesToBeUpdated.add(node);
-				newEstRemTravCosts.add(newEstRemTravCost);
+				if (count == this.nodesToBeUpdated.length) {
+					this.nodesToBeUpdated = Arrays.copyOf(this.nodesToBeUpdated, count * 2);
+					this.newEstRemTravCosts = Arrays.copyOf(this.newEstRemTravCosts, count * 2);
+				}
+				this.nodesToBeUpdated[count] = node;
+				this.newEstRemTravCosts[count] = newEstRemTravCost;
+				count++;
+			}
+		}
+		if (pendingNodes instanceof IndexedFourAryHeap) {
+			// the keys only grow; the indexed heap sifts the nodes down in place
+			for (int i = 0; i < count; i++) {
+				Node node = this.nodesToBeUpdated[i];
+				AStarNodeData data = getData(node);
+				data.setExpectedRemainingCost(this.newEstRemTravCosts[i]);
+				pendingNodes.decreaseKey(node, getPriority(data));
+				this.nodesToBeUpdated[i] = null;
 			}
+			return;
 		}
-		for (Node node : nodesToBeUpdated) {
-			pendingNodes.remove(node);
+		// the keys only grow, which the other queues only support by removing the nodes and adding them again
+		for (int i = 0; i < count; i++) {
+			pendingNodes.remove(this.nodesToBeUpdated[i]);
 		}
-		for (int i = 0; i < nodesToBeUpdated.size(); i++) {
-			Node node = nodesToBeUpdated.get(i);
+		for (int i = 0; i < count; i++) {
+			Node node = this.nodesToBeUpdated[i];
 			AStarNodeData data = getData(node);
-			data.setExpectedRemainingCost(newEstRemTravCosts.get(i));
+			data.setExpectedRemainingCost(this.newEstRemTravCosts[i]);
 			pendingNodes.add(node, getPriority(data));
+			this.nodesToBeUpdated[i] = null;
 		}
 	}
 
@@ -262,10 +297,8 @@ public class AStarLandmarksProtected extends AStarEuclideanProtected {
 			}
 		}
 		if (bestIndex != -1) {
-			int[] newActiveLandmarks = new int[this.activeLandmarkIndexes.length + 1];
-			System.arraycopy(this.activeLandmarkIndexes, 0, newActiveLandmarks, 0, this.activeLandmarkIndexes.length);
-			newActiveLandmarks[this.activeLandmarkIndexes.length] = bestIndex;
-			this.activeLandmarkIndexes = newActiveLandmarks;
+			// a landmark that estimates better than all active ones cannot be active yet, so there is room
+			this.activeLandmarkIndexes[this.activeLandmarkCount++] = bestIndex;
 		}
 		return bestIndex;
 	}
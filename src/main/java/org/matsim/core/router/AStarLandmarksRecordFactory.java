@@ -1,73 +1,112 @@
-/* *********************************************************************** *
- * project: org.matsim.*
- * AStarLandmarksRecordFactory
- *                                                                         *
- * *********************************************************************** *
- *                                                                         *
- * copyright       : (C) 2009 by the members listed in the COPYING,        *
- *                   LICENSE and WARRANTY file.                            *
- * email           : info at matsim dot org                                *
- *                                                                         *
- * *********************************************************************** *
- *                                                                         *
- *   This program is free software; you can redistribute it and/or modify  *
- *   it under the terms of the GNU General Public License as published by  *
- *   the Free Software Foundation; either version 2 of the License, or     *
- *   (at your option) any later version.                                   *
- *   See also COPYING, LICENSE and WARRANTY file                           *
- *                                                                         *
- * *********************************************************************** */
-
-package org.matsim.core.router;
-
-import java.util.HashMap;
-import java.util.Map;
-
-import javax.inject.Inject;
-import javax.inject.Singleton;
-
-import org.matsim.api.core.v01.network.Network;
-import org.matsim.core.config.groups.GlobalConfigGroup;
-import org.matsim.core.router.util.LeastCostPathCalculator;
-import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
-import org.matsim.core.router.util.PreProcessLandmarks;
-import org.matsim.core.router.util.TravelDisutility;
-import org.matsim.core.router.util.TravelTime;
-
-/**
- * @author dgrether
- */
-@Singleton
-public class AStarLandmarksRecordFactory implements LeastCostPathCalculatorFactory {
-
-	private final Map<Network, PreProcessLandmarks> preProcessData = new HashMap<>();
-
-	private final int nThreads;
-	
-	@Inject
-	public AStarLandmarksRecordFactory(final GlobalConfigGroup globalConfigGroup) {
-		this(globalConfigGroup.getNumberOfThreads());
-	}
-
-	public AStarLandmarksRecordFactory(int numberOfThreads) {
-		this.nThreads = numberOfThreads;
-	}
-
-	public AStarLandmarksRecordFactory() {
-		this(8);
-	}
-
-	@Override
-	public synchronized LeastCostPathCalculator createPathCalculator(final Network network, final TravelDisutility travelCosts, final TravelTime travelTimes) {
-		PreProcessLandmarks preProcessLandmarks = this.preProcessData.get(network);
-		if (preProcessLandmarks == null) {
-			preProcessLandmarks = new PreProcessLandmarks(travelCosts);
-			preProcessLandmarks.setNumberOfThreads(nThreads);
-			preProcessLandmarks.run(network);
-			this.preProcessData.put(network, preProcessLandmarks);
-		}
-		
-		final double overdoFactor = 1.0;
-		return new AStarLandmarksRecord(network, preProcessLandmarks, travelCosts, travelTimes, overdoFactor);
-	}
-}
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * AStarLandmarksRecordFactory
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2009 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.config.groups.GlobalConfigGroup;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+import org.matsim.core.router.util.PreProcessLandmarks;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+
+/**
+ * @author dgrether
+ */
+@Singleton
+public class AStarLandmarksRecordFactory implements LeastCostPathCalculatorFactory {
+
+	private final PreProcessCache<Network, PreProcessLandmarks> preProcessData = new PreProcessCache<>();
+	private final PreProcessCache<Network, RoutingGraph> graphs = new PreProcessCache<>();
+	private volatile boolean useFourAryHeap = false;
+	private volatile LinkRelaxationCounters linkRelaxationCounters = null;
+	private volatile int initialActiveLandmarks = AStarLandmarksProtected.DEFAULT_INITIAL_ACTIVE_LANDMARKS;
+	private volatile int controlInterval = AStarLandmarksProtected.DEFAULT_CONTROL_INTERVAL;
+
+	private final int nThreads;
+	
+	@Inject
+	public AStarLandmarksRecordFactory(final GlobalConfigGroup globalConfigGroup) {
+		this(globalConfigGroup.getNumberOfThreads());
+	}
+
+	public AStarLandmarksRecordFactory(int numberOfThreads) {
+		this.nThreads = numberOfThreads;
+	}
+
+	public AStarLandmarksRecordFactory() {
+		this(8);
+	}
+
+	@Override
+	public LeastCostPathCalculator createPathCalculator(final Network network, final TravelDisutility travelCosts, final TravelTime travelTimes) {
+		PreProcessLandmarks preProcessLandmarks = this.preProcessData.get(network, n -> {
+			PreProcessLandmarks data = new PreProcessLandmarks(travelCosts);
+			data.setNumberOfThreads(nThreads);
+			data.run(n);
+			return data;
+		});
+		
+		final double overdoFactor = 1.0;
+		AStarLandmarksRecord router = new AStarLandmarksRecord(network, preProcessLandmarks, travelCosts, travelTimes, overdoFactor);
+		router.setLandmarkControl(this.initialActiveLandmarks, this.controlInterval);
+		if (this.useFourAryHeap) {
+			router.setPendingNodesHeap(IndexedFourAryHeap.createForNodes(this.graphs.get(network, RoutingGraph::createFromNetwork)));
+		}
+		LinkRelaxationCounters counters = this.linkRelaxationCounters;
+		if (counters != null && counters.getNetwork() == network) {
+			router.setLinkRelaxationCounters(counters);
+		}
+		return router;
+	}
+
+	/**
+	 * Lets the routers use an {@link IndexedFourAryHeap} with in-place decrease-key as their queue of
+	 * pending nodes instead of MATSim's default queue.
+	 */
+	public void setUseFourAryHeap(final boolean useFourAryHeap) {
+		this.useFourAryHeap = useFourAryHeap;
+	}
+
+	/**
+	 * Lets the routers created from now on for the network of the given counters count their link
+	 * relaxations, see {@link LinkRelaxationCounters}.
+	 */
+	public void setLinkRelaxationCounters(final LinkRelaxationCounters counters) {
+		this.linkRelaxationCounters = counters;
+	}
+
+	/**
+	 * Sets how many landmarks the routers created from now on start every path calculation with and
+	 * after how many relaxed nodes they check for a better one, e.g. as tuned by a {@link LandmarkOptimizer}.
+	 */
+	public void setLandmarkControl(final int initialActiveLandmarks, final int controlInterval) {
+		if (initialActiveLandmarks < 1 || controlInterval < 1) {
+			throw new IllegalArgumentException("initialActiveLandmarks and controlInterval must be positive, but are "
+					+ initialActiveLandmarks + " and " + controlInterval);
+		}
+		this.initialActiveLandmarks = initialActiveLandmarks;
+		this.controlInterval = controlInterval;
+	}
+}
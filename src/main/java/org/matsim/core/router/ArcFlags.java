@@ -0,0 +1,341 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ArcFlags.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+import org.matsim.core.router.util.TravelDisutility;
+
+/**
+ * Arc-flags of a {@link RoutingGraph} for one static link cost: the nodes are partitioned into cells,
+ * and every link has one flag per cell that tells whether it starts a least-cost path to some node
+ * of that cell. A search towards a node only needs to relax the links flagged for its cell.
+ *
+ * <p>The cells come from a KD-tree on the node coordinates, split at the median along the longer
+ * side of the bounding box until there are as many cells as requested. A link is flagged for the
+ * cell of its to-node, and for every cell it leads into on a least-cost path: for each boundary node
+ * of a cell (a node with an in-link from another cell), a backward search flags every link on which
+ * the cost to the boundary node decreases by exactly the link cost. The cells are processed in
+ * parallel.</p>
+ *
+ * <p>The flags are stored in one <code>long[]</code>, {@link #getWordsPerLink()} words per link, so
+ * that the flag of cell <code>c</code> is bit <code>c % 64</code> of word
+ * <code>link * wordsPerLink + c / 64</code>.</p>
+ *
+ * @see GraphAStarArcFlags
+ */
+public final class ArcFlags {
+	private static final Logger log = Logger.getLogger( ArcFlags.class ) ;
+
+	public static final int DEFAULT_CELL_COUNT = 64;
+
+	private final int cellCount;
+	private final int wordsPerLink;
+	private final int[] cells;
+	private final long[] flags;
+	private final double minTravelCostPerLength;
+
+	private ArcFlags(final int cellCount, final int[] cells, final long[] flags, final double minTravelCostPerLength) {
+		this.cellCount = cellCount;
+		this.wordsPerLink = (cellCount + 63) >>> 6;
+		this.cells = cells;
+		this.flags = flags;
+		this.minTravelCostPerLength = minTravelCostPerLength;
+	}
+
+	/**
+	 * Computes the arc-flags with the minimal travel disutility of every link as its cost.
+	 */
+	public static ArcFlags create(final RoutingGraph graph, final TravelDisutility costFunction, final int cellCount,
+			final int numberOfThreads) {
+		return create(graph, GraphDirectedLandmarks.computeMinimumWeights(graph, costFunction), cellCount, numberOfThreads);
+	}
+
+	/**
+	 * Computes the arc-flags with the given cost of every link, indexed like the links of the graph.
+	 */
+	public static ArcFlags create(final RoutingGraph graph, final double[] weights, final int cellCount, final int numberOfThreads) {
+		if (cellCount < 1) {
+			throw new IllegalArgumentException("cellCount must be positive, but is " + cellCount);
+		}
+		long start = System.currentTimeMillis();
+		final int n = graph.getNodeCount();
+		final int m = graph.getLinkCount();
+		final int words = (cellCount + 63) >>> 6;
+		final int[] cells = partition(graph, cellCount);
+		final long[] flags = new long[m * words];
+
+		// every link may be needed to reach nodes of the cell it leads into
+		for (int l = 0; l < m; l++) {
+			int cell = cells[graph.getToNode(l)];
+			flags[l * words + (cell >>> 6)] |= 1L << cell;
+		}
+
+		final int[][] boundaryNodes = findBoundaryNodes(graph, cells, cellCount);
+		int boundaryNodeCount = 0;
+		for (int[] nodes : boundaryNodes) {
+			boundaryNodeCount += nodes.length;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, numberOfThreads));
+		try {
+			List<Future<BitSet>> futures = new ArrayList<>(cellCount);
+			for (int c = 0; c < cellCount; c++) {
+				final int[] cellBoundary = boundaryNodes[c];
+				futures.add(executor.submit(() -> flagPathsTo(graph, weights, cellBoundary)));
+			}
+			for (int c = 0; c < cellCount; c++) {
+				BitSet links = futures.get(c).get();
+				for (int l = links.nextSetBit(0); l >= 0; l = links.nextSetBit(l + 1)) {
+					flags[l * words + (c >>> 6)] |= 1L << c;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+
+		ArcFlags arcFlags = new ArcFlags(cellCount, cells, flags, computeMinTravelCostPerLength(graph, weights));
+		log.info("computed arc-flags for " + cellCount + " cells with " + boundaryNodeCount + " boundary nodes on " + n
+				+ " nodes in " + (System.currentTimeMillis() - start) + " ms, " + Math.round(arcFlags.getFlagDensity() * 100)
+				+ "% of the flags are set.");
+		return arcFlags;
+	}
+
+	/**
+	 * Partitions the nodes with a KD-tree on their coordinates.
+	 *
+	 * @return The cell of every node, between 0 and <code>cellCount - 1</code>.
+	 */
+	/*package*/ static int[] partition(final RoutingGraph graph, final int cellCount) {
+		final int n = graph.getNodeCount();
+		final int[] nodes = new int[n];
+		for (int i = 0; i < n; i++) {
+			nodes[i] = i;
+		}
+		final int[] cells = new int[n];
+		split(graph, nodes, 0, n, 0, cellCount, cells);
+		return cells;
+	}
+
+	private static void split(final RoutingGraph graph, final int[] nodes, final int from, final int to, final int firstCell,
+			final int count, final int[] cells) {
+		if (count == 1 || to - from <= 1) {
+			for (int i = from; i < to; i++) {
+				cells[nodes[i]] = firstCell;
+			}
+			return;
+		}
+		double minX = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		for (int i = from; i < to; i++) {
+			minX = Math.min(minX, graph.getX(nodes[i]));
+			maxX = Math.max(maxX, graph.getX(nodes[i]));
+			minY = Math.min(minY, graph.getY(nodes[i]));
+			maxY = Math.max(maxY, graph.getY(nodes[i]));
+		}
+		final boolean byX = maxX - minX >= maxY - minY;
+		// cells on each side in proportion to their nodes, so that odd counts work as well
+		final int leftCount = count / 2;
+		final int mid = from + (int) ((long) (to - from) * leftCount / count);
+		select(graph, nodes, from, to, mid, byX);
+		split(graph, nodes, from, mid, firstCell, leftCount, cells);
+		split(graph, nodes, mid, to, firstCell + leftCount, count - leftCount, cells);
+	}
+
+	/**
+	 * Reorders <code>nodes[from, to)</code> so that no node before <code>k</code> lies after a node
+	 * from <code>k</code> on along the axis (quickselect).
+	 */
+	private static void select(final RoutingGraph graph, final int[] nodes, final int from, final int to, final int k,
+			final boolean byX) {
+		int lo = from;
+		int hi = to - 1;
+		while (lo < hi) {
+			final double pivot = coordinate(graph, nodes[(lo + hi) >>> 1], byX);
+			int i = lo;
+			int j = hi;
+			while (i <= j) {
+				while (coordinate(graph, nodes[i], byX) < pivot) {
+					i++;
+				}
+				while (coordinate(graph, nodes[j], byX) > pivot) {
+					j--;
+				}
+				if (i <= j) {
+					int tmp = nodes[i];
+					nodes[i] = nodes[j];
+					nodes[j] = tmp;
+					i++;
+					j--;
+				}
+			}
+			if (k <= j) {
+				hi = j;
+			} else if (k >= i) {
+				lo = i;
+			} else {
+				return;
+			}
+		}
+	}
+
+	private static double coordinate(final RoutingGraph graph, final int node, final boolean byX) {
+		return byX ? graph.getX(node) : graph.getY(node);
+	}
+
+	private static int[][] findBoundaryNodes(final RoutingGraph graph, final int[] cells, final int cellCount) {
+		final int n = graph.getNodeCount();
+		final boolean[] boundary = new boolean[n];
+		final int[] counts = new int[cellCount];
+		for (int v = 0; v < n; v++) {
+			for (int i = graph.getInStart(v), end = graph.getInEnd(v); i < end; i++) {
+				if (cells[graph.getFromNode(graph.getInLink(i))] != cells[v]) {
+					boundary[v] = true;
+					counts[cells[v]]++;
+					break;
+				}
+			}
+		}
+		final int[][] boundaryNodes = new int[cellCount][];
+		for (int c = 0; c < cellCount; c++) {
+			boundaryNodes[c] = new int[counts[c]];
+		}
+		Arrays.fill(counts, 0);
+		for (int v = 0; v < n; v++) {
+			if (boundary[v]) {
+				boundaryNodes[cells[v]][counts[cells[v]]++] = v;
+			}
+		}
+		return boundaryNodes;
+	}
+
+	/**
+	 * Runs a backward search from every given node and collects the links on least-cost paths to it.
+	 */
+	private static BitSet flagPathsTo(final RoutingGraph graph, final double[] weights, final int[] targets) {
+		final int n = graph.getNodeCount();
+		final BitSet links = new BitSet(graph.getLinkCount());
+		final double[] dist = new double[n];
+		final int[] settled = new int[n];
+		final LazyNodeHeap heap = new LazyNodeHeap(Math.min(n, 1024));
+		for (int target : targets) {
+			Arrays.fill(dist, Double.POSITIVE_INFINITY);
+			heap.clear();
+			dist[target] = 0;
+			heap.add(target, 0);
+			int settledCount = 0;
+			while (!heap.isEmpty()) {
+				final double key = heap.peekKey();
+				final int node = heap.poll();
+				if (key > dist[node]) {
+					continue;
+				}
+				settled[settledCount++] = node;
+				for (int i = graph.getInStart(node), end = graph.getInEnd(node); i < end; i++) {
+					final int l = graph.getInLink(i);
+					final int u = graph.getFromNode(l);
+					if (key + weights[l] < dist[u]) {
+						dist[u] = key + weights[l];
+						heap.add(u, dist[u]);
+					}
+				}
+			}
+			// all links that lie on some least-cost path, not only on the tree of this search
+			for (int s = 0; s < settledCount; s++) {
+				final int u = settled[s];
+				for (int l = graph.getOutStart(u), end = graph.getOutEnd(u); l < end; l++) {
+					if (dist[graph.getToNode(l)] + weights[l] == dist[u]) {
+						links.set(l);
+					}
+				}
+			}
+		}
+		return links;
+	}
+
+	private static double computeMinTravelCostPerLength(final RoutingGraph graph, final double[] weights) {
+		double min = Double.POSITIVE_INFINITY;
+		for (int l = 0; l < weights.length; l++) {
+			if (graph.getLength(l) > 0) {
+				min = Math.min(min, weights[l] / graph.getLength(l));
+			}
+		}
+		return Double.isFinite(min) ? min : 0;
+	}
+
+	public int getCellCount() {
+		return this.cellCount;
+	}
+
+	public int getWordsPerLink() {
+		return this.wordsPerLink;
+	}
+
+	public int getCell(final int node) {
+		return this.cells[node];
+	}
+
+	public boolean isFlagged(final int link, final int cell) {
+		return (this.flags[link * this.wordsPerLink + (cell >>> 6)] & (1L << cell)) != 0;
+	}
+
+	/**
+	 * @return The flags of all links, see the class comment for the layout; not a copy.
+	 */
+	/*package*/ long[] getFlags() {
+		return this.flags;
+	}
+
+	/**
+	 * @return The minimal travel cost per length unit of all links, for the euclidean estimate.
+	 */
+	public double getMinTravelCostPerLength() {
+		return this.minTravelCostPerLength;
+	}
+
+	/**
+	 * @return The share of set flags; the lower, the more a search can prune.
+	 */
+	public double getFlagDensity() {
+		long set = 0;
+		for (long word : this.flags) {
+			set += Long.bitCount(word);
+		}
+		long total = (long) this.flags.length / Math.max(1, this.wordsPerLink) * this.cellCount;
+		return total == 0 ? 0 : (double) set / total;
+	}
+}
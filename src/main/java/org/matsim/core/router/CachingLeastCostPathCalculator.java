@@ -0,0 +1,95 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CachingLeastCostPathCalculator.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.router;
+
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Returns the path of a {@link PathCache} if it has one for the origin, destination and departure
+ * time bin of the query, and asks the wrapped router otherwise.
+ *
+ * <p>The cache does not know the person and vehicle, so the travel disutility must not depend on
+ * them, and the links of a cached path were chosen for the first departure in its time bin. Given
+ * the travel disutility and travel time, the router returns a copy of a cached path with the travel
+ * time and cost of the query's departure if they differ; otherwise it returns the cached path
+ * itself, which callers must not modify. Queries without a path are not cached.</p>
+ *
+ * @see CachingLeastCostPathCalculatorFactory
+ */
+public class CachingLeastCostPathCalculator implements LeastCostPathCalculator {
+
+	private final LeastCostPathCalculator delegate;
+	private final PathCache cache;
+	private final TravelDisutility travelCosts;
+	private final TravelTime travelTimes;
+
+	public CachingLeastCostPathCalculator(final LeastCostPathCalculator delegate, final PathCache cache) {
+		this(delegate, cache, null, null);
+	}
+
+	/**
+	 * @param travelCosts The travel disutility to evaluate cached paths with, <code>null</code> to return them as they are.
+	 * @param travelTimes The travel time to evaluate cached paths with.
+	 */
+	public CachingLeastCostPathCalculator(final LeastCostPathCalculator delegate, final PathCache cache,
+			final TravelDisutility travelCosts, final TravelTime travelTimes) {
+		this.delegate = delegate;
+		this.cache = cache;
+		this.travelCosts = travelCosts;
+		this.travelTimes = travelTimes;
+	}
+
+	@Override
+	public Path calcLeastCostPath(final Node fromNode, final Node toNode, final double starttime, final Person person, final Vehicle vehicle) {
+		Path path = this.cache.get(fromNode, toNode, starttime);
+		if (path == null) {
+			path = this.delegate.calcLeastCostPath(fromNode, toNode, starttime, person, vehicle);
+			if (path != null) {
+				this.cache.put(fromNode, toNode, starttime, path);
+			}
+			return path;
+		}
+		if (this.travelCosts == null) {
+			return path;
+		}
+		double time = starttime;
+		double cost = 0.0;
+		for (Link link : path.links) {
+			cost += this.travelCosts.getLinkTravelDisutility(link, time, person, vehicle);
+			time += this.travelTimes.getLinkTravelTime(link, time, person, vehicle);
+		}
+		if (time - starttime == path.travelTime && cost == path.travelCost) {
+			return path;
+		}
+		return new Path(path.nodes, path.links, time - starttime, cost);
+	}
+
+	public LeastCostPathCalculator getDelegate() {
+		return this.delegate;
+	}
+}
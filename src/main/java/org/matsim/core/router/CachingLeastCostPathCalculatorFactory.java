@@ -0,0 +1,180 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CachingLeastCostPathCalculatorFactory.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.router;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.controler.events.IterationEndsEvent;
+import org.matsim.core.controler.listener.IterationEndsListener;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+
+/**
+ * Wraps another factory, usually one of the Record factories, and wraps its routers in
+ * {@link CachingLeastCostPathCalculator}s. Routers for the same network, travel time object and
+ * class of travel disutility share one {@link PathCache}, so a path found by one replanning thread
+ * is reused by the others, with the travel time and cost of the departure it is asked for.
+ *
+ * <p>The travel times of the next iteration are published at the end of an iteration, which makes
+ * the cached paths outdated. Added as a controler listener, the factory therefore logs hits, misses
+ * and evictions, adds them to its {@link #getHits() totals} and empties all caches at the end of
+ * every iteration; without the listener, {@link #invalidate()} does the same.</p>
+ *
+ * <p>With a {@link #setTravelTimeTable(LinkTravelTimeTable) travel time table}, only the paths over
+ * links whose travel times changed by more than the table's threshold are removed when it publishes
+ * new travel times, and the other paths are kept. A kept path may then no longer be the least-cost
+ * one if a link elsewhere got cheaper.</p>
+ */
+public class CachingLeastCostPathCalculatorFactory implements LeastCostPathCalculatorFactory, IterationEndsListener,
+		LinkTravelTimeTable.ChangeListener {
+	private static final Logger log = Logger.getLogger( CachingLeastCostPathCalculatorFactory.class ) ;
+
+	public static final int DEFAULT_MAXIMUM_SIZE = 100000;
+	public static final double DEFAULT_TIME_BIN_SIZE = 900.0;
+
+	private final LeastCostPathCalculatorFactory delegate;
+	private final int maximumSize;
+	private final double timeBinSize;
+
+	private final PreProcessCache<CacheKey, PathCache> caches = new PreProcessCache<>();
+	private volatile boolean incremental = false;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	public CachingLeastCostPathCalculatorFactory(final LeastCostPathCalculatorFactory delegate) {
+		this(delegate, DEFAULT_MAXIMUM_SIZE, DEFAULT_TIME_BIN_SIZE);
+	}
+
+	/**
+	 * @param maximumSize The maximal number of paths per cache.
+	 * @param timeBinSize Departures within the same bin of this many seconds share their paths.
+	 */
+	public CachingLeastCostPathCalculatorFactory(final LeastCostPathCalculatorFactory delegate, final int maximumSize,
+			final double timeBinSize) {
+		this.delegate = delegate;
+		this.maximumSize = maximumSize;
+		this.timeBinSize = timeBinSize;
+	}
+
+	@Override
+	public LeastCostPathCalculator createPathCalculator(final Network network, final TravelDisutility travelCosts, final TravelTime travelTimes) {
+		PathCache cache = this.caches.get(new CacheKey(network, travelTimes, travelCosts.getClass()),
+				k -> new PathCache(this.maximumSize, this.timeBinSize));
+		return new CachingLeastCostPathCalculator(this.delegate.createPathCalculator(network, travelCosts, travelTimes), cache,
+				travelCosts, travelTimes);
+	}
+
+	/**
+	 * Keeps the cached paths over links whose travel times did not change in the given table from one
+	 * iteration to the next, instead of emptying the caches at the end of every iteration.
+	 */
+	public void setTravelTimeTable(final LinkTravelTimeTable table) {
+		table.addChangeListener(this);
+		this.incremental = true;
+	}
+
+	@Override
+	public void notifyIterationEnds(final IterationEndsEvent event) {
+		if (this.incremental) {
+			for (PathCache cache : this.caches.values()) {
+				addCounters(cache);
+				cache.resetCounters();
+			}
+		} else {
+			invalidate();
+		}
+	}
+
+	@Override
+	public void notifyTravelTimesChanged(final LinkTravelTimeTable.ChangedLinks changedLinks) {
+		for (PathCache cache : this.caches.values()) {
+			int removed = cache.removePaths(path -> changedLinks.containsAny(path.links));
+			log.info("path cache: removed " + removed + " paths over " + changedLinks.size() + " changed links, kept " + cache.size() + ".");
+		}
+	}
+
+	/**
+	 * Logs the counters of all caches and empties them.
+	 */
+	public void invalidate() {
+		for (PathCache cache : this.caches.values()) {
+			addCounters(cache);
+			cache.clear();
+		}
+	}
+
+	/**
+	 * @return The hits of all caches up to the last time their counters were logged and reset, i.e.
+	 *         the last iteration end or {@link #invalidate()}.
+	 */
+	public long getHits() {
+		return this.hits.sum();
+	}
+
+	/**
+	 * @return The misses of all caches, counted like {@link #getHits()}.
+	 */
+	public long getMisses() {
+		return this.misses.sum();
+	}
+
+	private void addCounters(final PathCache cache) {
+		this.hits.add(cache.getHits());
+		this.misses.add(cache.getMisses());
+		log.info("path cache: " + cache.getHits() + " hits, " + cache.getMisses() + " misses (hit rate "
+				+ Math.round(100 * cache.getHitRate()) + "%), " + cache.getEvictions() + " evictions, " + cache.size() + " paths.");
+	}
+
+	private static final class CacheKey {
+		private final Network network;
+		private final TravelTime travelTimes;
+		private final Class<?> travelCostsClass;
+
+		CacheKey(final Network network, final TravelTime travelTimes, final Class<?> travelCostsClass) {
+			this.network = network;
+			this.travelTimes = travelTimes;
+			this.travelCostsClass = travelCostsClass;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (!(o instanceof CacheKey)) {
+				return false;
+			}
+			CacheKey other = (CacheKey) o;
+			return this.network == other.network && this.travelTimes == other.travelTimes
+					&& this.travelCostsClass == other.travelCostsClass;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(System.identityHashCode(this.network), System.identityHashCode(this.travelTimes),
+					this.travelCostsClass);
+		}
+	}
+}
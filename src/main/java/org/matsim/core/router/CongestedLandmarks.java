@@ -0,0 +1,255 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CongestedLandmarks.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.router;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import org.apache.log4j.Logger;
+import org.matsim.core.router.util.TravelDisutility;
+
+/**
+ * Landmarks of a {@link RoutingGraph} whose distances are lower bounds of the congested travel
+ * disutilities of the last iteration, instead of the free-flow ones.
+ *
+ * <p>The free-flow landmarks stay admissible for any travel times, but the more congested the
+ * network gets, the more they underestimate and the more nodes A* has to visit. After every
+ * iteration, {@link #update(TravelDisutility)} takes the minimum disutility of every link over all
+ * time bins of the day as its cost; every path costs at least that, whenever it is travelled, so
+ * landmark distances computed with these costs are still admissible, but tighter.</p>
+ *
+ * <p>Recomputing the distances takes as long as the free-flow preprocessing, so it runs in a
+ * background thread and replanning keeps routing with the previous landmarks meanwhile. Those are
+ * only kept if they are still admissible, that is, if no link got cheaper than the cost they were
+ * computed with; otherwise the routers fall back to the free-flow landmarks until the new ones are
+ * done. The landmark nodes are chosen once, with the free-flow costs, and only their distances are
+ * updated.</p>
+ *
+ * <p>Told by a {@link LinkTravelTimeTable} which links changed, {@link #update(LinkTravelTimeTable.ChangedLinks)}
+ * only samples those again.</p>
+ *
+ * <p>The sampled minimum is exact for travel times that are constant or linearly interpolated
+ * within time bins of {@link #getTimeBinSize()}, as those of <code>TravelTimeCalculator</code> are.
+ * The disutilities are asked for without person and vehicle, so person-dependent disutilities must
+ * not be below their value for <code>null</code>.</p>
+ *
+ * @see GraphAStarLandmarksFactory#setCongestedBounds(boolean)
+ */
+public final class CongestedLandmarks implements Supplier<GraphLandmarks> {
+	private static final Logger log = Logger.getLogger( CongestedLandmarks.class ) ;
+
+	public static final double DEFAULT_TIME_BIN_SIZE = 900.0;
+	public static final double DEFAULT_END_TIME = 30 * 3600.0;
+
+	private final RoutingGraph graph;
+	private final double timeBinSize;
+	private final double endTime;
+	private final int[] landmarks;
+	private final double[] freeFlowWeights;
+	private final GraphLandmarks freeFlow;
+	private final double minTravelCostPerLength;
+	private final ExecutorService executor;
+
+	private volatile GraphLandmarks current;
+	private volatile TravelDisutility latestCostFunction = null;
+	private double[] currentWeights;
+	private double[] sampledMinima;
+	private long generation = 0;
+
+	private CongestedLandmarks(final RoutingGraph graph, final double[] freeFlowWeights, final GraphDirectedLandmarks freeFlow,
+			final double timeBinSize, final double endTime) {
+		this.graph = graph;
+		this.timeBinSize = timeBinSize;
+		this.endTime = endTime;
+		this.landmarks = new int[freeFlow.getLandmarkCount()];
+		for (int i = 0; i < this.landmarks.length; i++) {
+			this.landmarks[i] = freeFlow.getLandmark(i);
+		}
+		this.freeFlowWeights = freeFlowWeights;
+		this.minTravelCostPerLength = computeMinTravelCostPerLength(graph, freeFlowWeights);
+		this.freeFlow = GraphLandmarks.createFromDirected(graph, freeFlow, this.minTravelCostPerLength);
+		this.current = this.freeFlow;
+		this.currentWeights = freeFlowWeights;
+		this.sampledMinima = freeFlowWeights;
+		this.executor = Executors.newSingleThreadExecutor(r -> {
+			Thread thread = new Thread(r, "CongestedLandmarks");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Chooses the landmarks and computes their free-flow distances.
+	 */
+	public static CongestedLandmarks create(final RoutingGraph graph, final TravelDisutility costFunction, final int landmarkCount,
+			final double timeBinSize, final double endTime) {
+		double[] weights = GraphDirectedLandmarks.computeMinimumWeights(graph, costFunction);
+		CongestedLandmarks congestedLandmarks = new CongestedLandmarks(graph, weights,
+				GraphDirectedLandmarks.create(graph, weights, landmarkCount), timeBinSize, endTime);
+		congestedLandmarks.latestCostFunction = costFunction;
+		return congestedLandmarks;
+	}
+
+	private static double computeMinTravelCostPerLength(final RoutingGraph graph, final double[] weights) {
+		double min = Double.POSITIVE_INFINITY;
+		for (int l = 0; l < weights.length; l++) {
+			if (graph.getLength(l) > 0) {
+				min = Math.min(min, weights[l] / graph.getLength(l));
+			}
+		}
+		return Double.isFinite(min) ? min : 0;
+	}
+
+	/**
+	 * @return The landmarks the routers should use now, never <code>null</code>.
+	 */
+	@Override
+	public GraphLandmarks get() {
+		return this.current;
+	}
+
+	public GraphLandmarks getFreeFlowLandmarks() {
+		return this.freeFlow;
+	}
+
+	public double getTimeBinSize() {
+		return this.timeBinSize;
+	}
+
+	/**
+	 * Remembers the cost function the last router was created with, which {@link #update()} uses.
+	 */
+	/*package*/ void setLatestCostFunction(final TravelDisutility costFunction) {
+		this.latestCostFunction = costFunction;
+	}
+
+	/**
+	 * Updates the landmarks with the cost function of the last router created for them.
+	 */
+	public Future<?> update() {
+		return update(this.latestCostFunction);
+	}
+
+	/**
+	 * Samples the lower bounds of the link costs and starts computing the landmark distances with
+	 * them in the background. Must be called while the travel times do not change, usually at the
+	 * end of an iteration.
+	 *
+	 * @return The background computation, already done if nothing has to be computed.
+	 */
+	public Future<?> update(final TravelDisutility costFunction) {
+		double[] minima = sampleMinima(costFunction, null);
+		return update(minima, minima);
+	}
+
+	/**
+	 * Like {@link #update(TravelDisutility)} with the cost function of the last router, but only
+	 * samples the links that changed; the other links keep the minima sampled when they last changed.
+	 * As their travel times stayed within the change threshold of those from then, the lower bounds
+	 * of all links are their minima reduced by the threshold. This assumes that the disutilities are
+	 * non-negative combinations of travel time and time-independent costs.
+	 */
+	public Future<?> update(final LinkTravelTimeTable.ChangedLinks changedLinks) {
+		double[] minima = sampleMinima(this.latestCostFunction, changedLinks);
+		final double keep = 1 - changedLinks.getChangeThreshold();
+		double[] weights = new double[minima.length];
+		for (int l = 0; l < weights.length; l++) {
+			weights[l] = Math.max(keep * minima[l], this.freeFlowWeights[l]);
+		}
+		return update(minima, weights);
+	}
+
+	private Future<?> update(final double[] minima, final double[] weights) {
+		final long updateGeneration;
+		synchronized (this) {
+			updateGeneration = ++this.generation;
+			this.sampledMinima = minima;
+			if (!isLowerBound(this.currentWeights, weights)) {
+				// some link got cheaper than the current landmarks assume
+				this.current = this.freeFlow;
+				this.currentWeights = this.freeFlowWeights;
+			}
+			if (Arrays.equals(this.currentWeights, weights)) {
+				return CompletableFuture.completedFuture(null);
+			}
+		}
+		return this.executor.submit(() -> {
+			long start = System.nanoTime();
+			GraphDirectedLandmarks directed = GraphDirectedLandmarks.create(this.graph, weights, this.landmarks);
+			GraphLandmarks updated = GraphLandmarks.createFromDirected(this.graph, directed, this.minTravelCostPerLength);
+			synchronized (this) {
+				if (this.generation != updateGeneration) {
+					return;
+				}
+				this.current = updated;
+				this.currentWeights = weights;
+			}
+			log.info("updated " + this.landmarks.length + " landmarks with congested lower bounds in "
+					+ (System.nanoTime() - start) / 1000000 + " ms.");
+		});
+	}
+
+	/**
+	 * Stops the background thread; updates started afterwards are rejected.
+	 */
+	public void shutdown() {
+		this.executor.shutdown();
+	}
+
+	/**
+	 * @return The minimum disutility of every changed link over the day, or of every link if
+	 *  <code>changedLinks</code> is <code>null</code>, but at least its free-flow one; the minima of
+	 *  the unchanged links are those sampled before.
+	 */
+	private double[] sampleMinima(final TravelDisutility costFunction, final LinkTravelTimeTable.ChangedLinks changedLinks) {
+		final double[] sampled;
+		synchronized (this) {
+			sampled = this.sampledMinima;
+		}
+		double[] weights = new double[this.freeFlowWeights.length];
+		for (int l = 0; l < weights.length; l++) {
+			if (changedLinks != null && !changedLinks.contains(this.graph.getLinkId(l))) {
+				weights[l] = sampled[l];
+				continue;
+			}
+			double min = Double.POSITIVE_INFINITY;
+			for (double time = 0; time <= this.endTime; time += this.timeBinSize) {
+				min = Math.min(min, costFunction.getLinkTravelDisutility(this.graph.getLink(l), time, null, null));
+			}
+			weights[l] = Math.max(min, this.freeFlowWeights[l]);
+		}
+		return weights;
+	}
+
+	private static boolean isLowerBound(final double[] bounds, final double[] weights) {
+		for (int l = 0; l < bounds.length; l++) {
+			if (weights[l] < bounds[l]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,468 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ContractionHierarchies.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.Arrays;
+
+import org.apache.log4j.Logger;
+import org.matsim.core.router.util.TravelDisutility;
+
+/**
+ * Contraction hierarchy of a {@link RoutingGraph} for one static link cost.
+ *
+ * <p>Nodes are contracted one after the other, in the order of a lazily updated priority (edge
+ * difference plus the number of already contracted neighbours). Contracting a node adds a shortcut
+ * between two of its neighbours whenever a bounded witness search finds no path that is at least as
+ * cheap without the node. The result is stored as two upward graphs in the same compressed sparse
+ * row layout as {@link RoutingGraph}: edges leaving a node towards higher ranks for the forward
+ * search, and edges entering a node from higher ranks for the backward search. Every shortcut
+ * remembers the two edges it replaces, so paths can be unpacked into links again.</p>
+ *
+ * <p>Edge ids below <code>graph.getLinkCount()</code> are the links of the graph; higher ids are
+ * shortcuts.</p>
+ *
+ * @see ContractionHierarchiesRouter
+ * @see ContractionHierarchiesFactory
+ */
+public final class ContractionHierarchies {
+	private static final Logger log = Logger.getLogger( ContractionHierarchies.class ) ;
+
+	/* witness searches stop after settling this many nodes; fewer shortcuts vs. faster preprocessing */
+	private static final int WITNESS_SETTLE_LIMIT = 500;
+	private static final int SIMULATION_SETTLE_LIMIT = 50;
+
+	private final RoutingGraph graph;
+	private final int[] rank;
+
+	/* all edges, links first, then shortcuts */
+	private final int[] edgeFrom;
+	private final int[] edgeTo;
+	private final double[] edgeWeight;
+	private final int[] shortcutFirst;
+	private final int[] shortcutSecond;
+
+	/* upward graph for the forward search: edges (n -> m) with rank[m] > rank[n] */
+	private final int[] upOffsets;
+	private final int[] upEdges;
+	/* upward graph for the backward search: edges (m -> n) with rank[m] > rank[n], stored at n */
+	private final int[] downOffsets;
+	private final int[] downEdges;
+
+	private ContractionHierarchies(final RoutingGraph graph, final int[] rank, final Contractor contractor) {
+		this.graph = graph;
+		this.rank = rank;
+		int edgeCount = contractor.edgeCount;
+		this.edgeFrom = Arrays.copyOf(contractor.from, edgeCount);
+		this.edgeTo = Arrays.copyOf(contractor.to, edgeCount);
+		this.edgeWeight = Arrays.copyOf(contractor.weight, edgeCount);
+		int shortcuts = edgeCount - graph.getLinkCount();
+		this.shortcutFirst = Arrays.copyOfRange(contractor.first, graph.getLinkCount(), edgeCount);
+		this.shortcutSecond = Arrays.copyOfRange(contractor.second, graph.getLinkCount(), edgeCount);
+
+		int n = graph.getNodeCount();
+		this.upOffsets = new int[n + 1];
+		this.downOffsets = new int[n + 1];
+		for (int e = 0; e < edgeCount; e++) {
+			if (!Double.isFinite(this.edgeWeight[e]) || this.edgeFrom[e] == this.edgeTo[e]) {
+				continue;
+			}
+			if (rank[this.edgeFrom[e]] < rank[this.edgeTo[e]]) {
+				this.upOffsets[this.edgeFrom[e] + 1]++;
+			} else {
+				this.downOffsets[this.edgeTo[e] + 1]++;
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			this.upOffsets[i + 1] += this.upOffsets[i];
+			this.downOffsets[i + 1] += this.downOffsets[i];
+		}
+		this.upEdges = new int[this.upOffsets[n]];
+		this.downEdges = new int[this.downOffsets[n]];
+		int[] upFill = Arrays.copyOf(this.upOffsets, n);
+		int[] downFill = Arrays.copyOf(this.downOffsets, n);
+		for (int e = 0; e < edgeCount; e++) {
+			if (!Double.isFinite(this.edgeWeight[e]) || this.edgeFrom[e] == this.edgeTo[e]) {
+				continue;
+			}
+			if (rank[this.edgeFrom[e]] < rank[this.edgeTo[e]]) {
+				this.upEdges[upFill[this.edgeFrom[e]]++] = e;
+			} else {
+				this.downEdges[downFill[this.edgeTo[e]]++] = e;
+			}
+		}
+		log.info("contraction hierarchy: " + n + " nodes, " + graph.getLinkCount() + " links, " + shortcuts + " shortcuts");
+	}
+
+	/**
+	 * Contracts the graph using the minimal travel disutility of every link as the static cost.
+	 */
+	public static ContractionHierarchies createFromGraph(final RoutingGraph graph, final TravelDisutility costFunction) {
+		double[] weights = new double[graph.getLinkCount()];
+		for (int l = 0; l < weights.length; l++) {
+			weights[l] = costFunction.getLinkMinimumTravelDisutility(graph.getLink(l));
+		}
+		return createFromGraph(graph, weights);
+	}
+
+	/**
+	 * Contracts the graph.
+	 *
+	 * @param weights The non-negative cost of every link, indexed like the links of the graph.
+	 */
+	public static ContractionHierarchies createFromGraph(final RoutingGraph graph, final double[] weights) {
+		Contractor contractor = new Contractor(graph, weights);
+		int[] rank = contractor.contractAll();
+		return new ContractionHierarchies(graph, rank, contractor);
+	}
+
+	public RoutingGraph getGraph() {
+		return this.graph;
+	}
+
+	public int getRank(final int node) {
+		return this.rank[node];
+	}
+
+	public int getUpStart(final int node) {
+		return this.upOffsets[node];
+	}
+
+	public int getUpEnd(final int node) {
+		return this.upOffsets[node + 1];
+	}
+
+	public int getUpEdge(final int position) {
+		return this.upEdges[position];
+	}
+
+	public int getDownStart(final int node) {
+		return this.downOffsets[node];
+	}
+
+	public int getDownEnd(final int node) {
+		return this.downOffsets[node + 1];
+	}
+
+	public int getDownEdge(final int position) {
+		return this.downEdges[position];
+	}
+
+	public int getEdgeFrom(final int edge) {
+		return this.edgeFrom[edge];
+	}
+
+	public int getEdgeTo(final int edge) {
+		return this.edgeTo[edge];
+	}
+
+	public double getEdgeWeight(final int edge) {
+		return this.edgeWeight[edge];
+	}
+
+	public boolean isShortcut(final int edge) {
+		return edge >= this.graph.getLinkCount();
+	}
+
+	public int getShortcutFirst(final int edge) {
+		return this.shortcutFirst[edge - this.graph.getLinkCount()];
+	}
+
+	public int getShortcutSecond(final int edge) {
+		return this.shortcutSecond[edge - this.graph.getLinkCount()];
+	}
+
+	/**
+	 * The node contraction. Keeps, per node, growable lists of the ids of all edges that leave and
+	 * enter it; edges of contracted nodes are not removed but skipped.
+	 */
+	private static final class Contractor {
+
+		private final RoutingGraph graph;
+		private final int nodeCount;
+
+		private int edgeCount;
+		private int[] from;
+		private int[] to;
+		private double[] weight;
+		private int[] first;
+		private int[] second;
+
+		private final int[][] outEdges;
+		private final int[] outSize;
+		private final int[][] inEdges;
+		private final int[] inSize;
+
+		private final boolean[] contracted;
+		private final int[] contractedNeighbours;
+
+		/* witness search state */
+		private final int[] stamp;
+		private final double[] dist;
+		private int searchId = 0;
+		private final LazyNodeHeap heap;
+
+		/* scratch lists of the current node's neighbours, with the cheapest edge to/from each */
+		private final int[] neighbourStamp;
+		private final int[] neighbourSlot;
+		private int neighbourSearchId = 0;
+		private int[] inNodes = new int[16];
+		private double[] inWeights = new double[16];
+		private int[] inIds = new int[16];
+		private int inCount;
+		private int[] outNodes = new int[16];
+		private double[] outWeights = new double[16];
+		private int[] outIds = new int[16];
+		private int outCount;
+
+		Contractor(final RoutingGraph graph, final double[] weights) {
+			this.graph = graph;
+			this.nodeCount = graph.getNodeCount();
+			int capacity = Math.max(16, graph.getLinkCount() * 2);
+			this.from = new int[capacity];
+			this.to = new int[capacity];
+			this.weight = new double[capacity];
+			this.first = new int[capacity];
+			this.second = new int[capacity];
+
+			this.outEdges = new int[this.nodeCount][];
+			this.outSize = new int[this.nodeCount];
+			this.inEdges = new int[this.nodeCount][];
+			this.inSize = new int[this.nodeCount];
+			for (int n = 0; n < this.nodeCount; n++) {
+				this.outEdges[n] = new int[Math.max(4, graph.getOutEnd(n) - graph.getOutStart(n))];
+				this.inEdges[n] = new int[Math.max(4, graph.getInEnd(n) - graph.getInStart(n))];
+			}
+			for (int l = 0; l < graph.getLinkCount(); l++) {
+				if (weights[l] < 0) {
+					throw new IllegalArgumentException("link " + graph.getLinkId(l) + " has a negative cost");
+				}
+				addEdge(graph.getFromNode(l), graph.getToNode(l), weights[l], -1, -1);
+			}
+
+			this.contracted = new boolean[this.nodeCount];
+			this.contractedNeighbours = new int[this.nodeCount];
+			this.stamp = new int[this.nodeCount];
+			this.dist = new double[this.nodeCount];
+			this.heap = new LazyNodeHeap(1024);
+			this.neighbourStamp = new int[this.nodeCount];
+			this.neighbourSlot = new int[this.nodeCount];
+		}
+
+		private int addEdge(final int f, final int t, final double w, final int firstEdge, final int secondEdge) {
+			if (this.edgeCount == this.from.length) {
+				int capacity = this.edgeCount * 2;
+				this.from = Arrays.copyOf(this.from, capacity);
+				this.to = Arrays.copyOf(this.to, capacity);
+				this.weight = Arrays.copyOf(this.weight, capacity);
+				this.first = Arrays.copyOf(this.first, capacity);
+				this.second = Arrays.copyOf(this.second, capacity);
+			}
+			int e = this.edgeCount++;
+			this.from[e] = f;
+			this.to[e] = t;
+			this.weight[e] = w;
+			this.first[e] = firstEdge;
+			this.second[e] = secondEdge;
+			if (this.outSize[f] == this.outEdges[f].length) {
+				this.outEdges[f] = Arrays.copyOf(this.outEdges[f], this.outSize[f] * 2);
+			}
+			this.outEdges[f][this.outSize[f]++] = e;
+			if (this.inSize[t] == this.inEdges[t].length) {
+				this.inEdges[t] = Arrays.copyOf(this.inEdges[t], this.inSize[t] * 2);
+			}
+			this.inEdges[t][this.inSize[t]++] = e;
+			return e;
+		}
+
+		int[] contractAll() {
+			int[] rank = new int[this.nodeCount];
+			double[] priority = new double[this.nodeCount];
+			LazyNodeHeap queue = new LazyNodeHeap(this.nodeCount);
+			for (int n = 0; n < this.nodeCount; n++) {
+				priority[n] = computePriority(n);
+				queue.add(n, priority[n]);
+			}
+			int next = 0;
+			while (!queue.isEmpty()) {
+				double key = queue.peekKey();
+				int n = queue.poll();
+				if (this.contracted[n] || key != priority[n]) {
+					continue;
+				}
+				// lazy update: the priority may have grown since it was queued
+				double current = computePriority(n);
+				if (!queue.isEmpty() && current > queue.peekKey()) {
+					priority[n] = current;
+					queue.add(n, current);
+					continue;
+				}
+				contract(n, false);
+				this.contracted[n] = true;
+				rank[n] = next++;
+				// neighbours are only re-evaluated when they are polled next
+				for (int i = 0; i < this.inCount; i++) {
+					this.contractedNeighbours[this.inNodes[i]]++;
+				}
+				for (int i = 0; i < this.outCount; i++) {
+					this.contractedNeighbours[this.outNodes[i]]++;
+				}
+			}
+			return rank;
+		}
+
+		private double computePriority(final int n) {
+			int shortcuts = contract(n, true);
+			return shortcuts - this.inCount - this.outCount + this.contractedNeighbours[n];
+		}
+
+		/**
+		 * Collects the uncontracted neighbours of n and finds the shortcuts contracting n requires.
+		 *
+		 * @param simulate If true, only counts the shortcuts instead of adding them.
+		 * @return The number of shortcuts.
+		 */
+		private int contract(final int n, final boolean simulate) {
+			collectNeighbours(n);
+			int shortcuts = 0;
+			for (int i = 0; i < this.inCount; i++) {
+				final int u = this.inNodes[i];
+				double maxCost = 0;
+				for (int j = 0; j < this.outCount; j++) {
+					if (this.outNodes[j] != u) {
+						maxCost = Math.max(maxCost, this.inWeights[i] + this.outWeights[j]);
+					}
+				}
+				witnessSearch(u, n, maxCost, simulate ? SIMULATION_SETTLE_LIMIT : WITNESS_SETTLE_LIMIT);
+				for (int j = 0; j < this.outCount; j++) {
+					final int x = this.outNodes[j];
+					if (x == u) {
+						continue;
+					}
+					final double viaCost = this.inWeights[i] + this.outWeights[j];
+					if (this.stamp[x] == this.searchId && this.dist[x] <= viaCost) {
+						continue;
+					}
+					shortcuts++;
+					if (!simulate) {
+						addEdge(u, x, viaCost, this.inIds[i], this.outIds[j]);
+					}
+				}
+			}
+			return shortcuts;
+		}
+
+		private void collectNeighbours(final int n) {
+			this.neighbourSearchId++;
+			this.inCount = 0;
+			for (int i = 0; i < this.inSize[n]; i++) {
+				int e = this.inEdges[n][i];
+				int u = this.from[e];
+				if (u == n || this.contracted[u]) {
+					continue;
+				}
+				if (this.neighbourStamp[u] == this.neighbourSearchId) {
+					int slot = this.neighbourSlot[u];
+					if (this.weight[e] < this.inWeights[slot]) {
+						this.inWeights[slot] = this.weight[e];
+						this.inIds[slot] = e;
+					}
+					continue;
+				}
+				if (this.inCount == this.inNodes.length) {
+					this.inNodes = Arrays.copyOf(this.inNodes, this.inCount * 2);
+					this.inWeights = Arrays.copyOf(this.inWeights, this.inCount * 2);
+					this.inIds = Arrays.copyOf(this.inIds, this.inCount * 2);
+				}
+				this.neighbourStamp[u] = this.neighbourSearchId;
+				this.neighbourSlot[u] = this.inCount;
+				this.inNodes[this.inCount] = u;
+				this.inWeights[this.inCount] = this.weight[e];
+				this.inIds[this.inCount] = e;
+				this.inCount++;
+			}
+			this.neighbourSearchId++;
+			this.outCount = 0;
+			for (int i = 0; i < this.outSize[n]; i++) {
+				int e = this.outEdges[n][i];
+				int x = this.to[e];
+				if (x == n || this.contracted[x]) {
+					continue;
+				}
+				if (this.neighbourStamp[x] == this.neighbourSearchId) {
+					int slot = this.neighbourSlot[x];
+					if (this.weight[e] < this.outWeights[slot]) {
+						this.outWeights[slot] = this.weight[e];
+						this.outIds[slot] = e;
+					}
+					continue;
+				}
+				if (this.outCount == this.outNodes.length) {
+					this.outNodes = Arrays.copyOf(this.outNodes, this.outCount * 2);
+					this.outWeights = Arrays.copyOf(this.outWeights, this.outCount * 2);
+					this.outIds = Arrays.copyOf(this.outIds, this.outCount * 2);
+				}
+				this.neighbourStamp[x] = this.neighbourSearchId;
+				this.neighbourSlot[x] = this.outCount;
+				this.outNodes[this.outCount] = x;
+				this.outWeights[this.outCount] = this.weight[e];
+				this.outIds[this.outCount] = e;
+				this.outCount++;
+			}
+		}
+
+		/**
+		 * Dijkstra from u over uncontracted nodes other than the one being contracted, until the
+		 * cost exceeds maxCost or settleLimit nodes are settled.
+		 */
+		private void witnessSearch(final int u, final int skip, final double maxCost, final int settleLimit) {
+			this.searchId++;
+			this.heap.clear();
+			this.stamp[u] = this.searchId;
+			this.dist[u] = 0;
+			this.heap.add(u, 0);
+			int settled = 0;
+			while (!this.heap.isEmpty() && settled < settleLimit) {
+				double key = this.heap.peekKey();
+				int m = this.heap.poll();
+				if (key > this.dist[m]) {
+					continue;
+				}
+				if (key > maxCost) {
+					break;
+				}
+				settled++;
+				for (int i = 0; i < this.outSize[m]; i++) {
+					int e = this.outEdges[m][i];
+					int x = this.to[e];
+					if (x == skip || this.contracted[x]) {
+						continue;
+					}
+					double d = key + this.weight[e];
+					if (this.stamp[x] != this.searchId || d < this.dist[x]) {
+						this.stamp[x] = this.searchId;
+						this.dist[x] = d;
+						this.heap.add(x, d);
+					}
+				}
+			}
+		}
+	}
+}
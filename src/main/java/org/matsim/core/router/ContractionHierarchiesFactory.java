@@ -0,0 +1,51 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ContractionHierarchiesFactory.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import javax.inject.Singleton;
+
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+
+/**
+ * Creates {@link ContractionHierarchiesRouter}s. The {@link RoutingGraph} snapshot and its
+ * {@link ContractionHierarchies} are computed once per network, with the minimal travel disutility
+ * of the first cost function seen for that network, like the landmarks of
+ * {@link AStarLandmarksRecordFactory}.
+ *
+ * <p>Only use it where that static cost is what should be minimised, e.g. free speed car routing;
+ * with congested travel times the routes stay the free speed routes.</p>
+ */
+@Singleton
+public class ContractionHierarchiesFactory implements LeastCostPathCalculatorFactory {
+
+	private final PreProcessCache<Network, ContractionHierarchies> preProcessData = new PreProcessCache<>();
+
+	@Override
+	public LeastCostPathCalculator createPathCalculator(final Network network, final TravelDisutility travelCosts, final TravelTime travelTimes) {
+		ContractionHierarchies ch = this.preProcessData.get(network,
+				n -> ContractionHierarchies.createFromGraph(RoutingGraph.createFromNetwork(n), travelCosts));
+		return new ContractionHierarchiesRouter(ch, travelCosts, travelTimes);
+	}
+}
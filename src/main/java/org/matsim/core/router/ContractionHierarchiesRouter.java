@@ -0,0 +1,277 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ContractionHierarchiesRouter.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Bidirectional query on a {@link ContractionHierarchies}: a forward search from the start node and
+ * a backward search from the target node, both only going up in the node order. The least-cost
+ * path passes the node where the two searches meet with the lowest combined cost; its shortcuts
+ * are unpacked into links afterwards.
+ *
+ * <p>The search uses the static link costs the hierarchy was built with, so the route is the
+ * least-cost path for those costs only. The travel time and cost of the returned path are then
+ * evaluated link by link with the given travel time and disutility, starting at the departure
+ * time.</p>
+ *
+ * <p>Instances are not thread-safe, every routing thread needs its own.</p>
+ *
+ * @see ContractionHierarchiesFactory
+ */
+public class ContractionHierarchiesRouter implements LeastCostPathCalculator {
+	private static final Logger log = Logger.getLogger( ContractionHierarchiesRouter.class ) ;
+
+	private final ContractionHierarchies ch;
+	private final RoutingGraph graph;
+	private final TravelDisutility costFunction;
+	private final TravelTime timeFunction;
+
+	private final RoutingMetrics metrics = RoutingMetrics.getInstance("ContractionHierarchiesRouter");
+
+	/* per direction node state, only valid where stamp[n] == iterationId */
+	private final int[] forwardStamp;
+	private final double[] forwardCost;
+	private final int[] forwardEdge;
+	private final int[] backwardStamp;
+	private final double[] backwardCost;
+	private final int[] backwardEdge;
+	private int iterationId = 0;
+
+	private final LazyNodeHeap forwardQueue;
+	private final LazyNodeHeap backwardQueue;
+
+	/* unpacking stack */
+	private int[] stack = new int[64];
+
+	private int visitedNodes = 0;
+	private int relaxedLinks = 0;
+	private int queueOperations = 0;
+
+	ContractionHierarchiesRouter(final ContractionHierarchies ch, final TravelDisutility costFunction, final TravelTime timeFunction) {
+		this.ch = ch;
+		this.graph = ch.getGraph();
+		this.costFunction = costFunction;
+		this.timeFunction = timeFunction;
+
+		int n = this.graph.getNodeCount();
+		this.forwardStamp = new int[n];
+		this.forwardCost = new double[n];
+		this.forwardEdge = new int[n];
+		this.backwardStamp = new int[n];
+		this.backwardCost = new double[n];
+		this.backwardEdge = new int[n];
+		this.forwardQueue = new LazyNodeHeap(256);
+		this.backwardQueue = new LazyNodeHeap(256);
+	}
+
+	@Override
+	public Path calcLeastCostPath(final Node fromNode, final Node toNode, final double startTime, final Person person, final Vehicle vehicle) {
+		final int from = getNodeIndex(fromNode);
+		final int to = getNodeIndex(toNode);
+		this.visitedNodes = 0;
+		this.relaxedLinks = 0;
+		this.queueOperations = 0;
+
+		long start = System.nanoTime();
+		int meetingNode = search(from, to);
+		Path path = meetingNode < 0 ? null : constructPath(meetingNode, startTime, person, vehicle);
+		this.metrics.record(this.visitedNodes, this.relaxedLinks, this.queueOperations, System.nanoTime() - start);
+
+		if (path == null) {
+			log.warn("No route was found from node " + fromNode.getId() + " to node " + toNode.getId() + ".");
+		}
+		return path;
+	}
+
+	private int getNodeIndex(final Node node) {
+		int index = this.graph.getNodeIndex(node.getId());
+		if (index < 0) {
+			throw new IllegalArgumentException("node " + node.getId() + " is not part of the routing graph");
+		}
+		return index;
+	}
+
+	/**
+	 * Runs both upward searches, alternating on the lower queue key, until neither queue can
+	 * improve the best connection anymore.
+	 *
+	 * @return The meeting node of the least-cost path, or -1 if <code>to</code> cannot be reached.
+	 */
+	private int search(final int from, final int to) {
+		augmentIterationId();
+		this.forwardQueue.clear();
+		this.backwardQueue.clear();
+		this.forwardStamp[from] = this.iterationId;
+		this.forwardCost[from] = 0;
+		this.forwardEdge[from] = -1;
+		this.forwardQueue.add(from, 0);
+		this.backwardStamp[to] = this.iterationId;
+		this.backwardCost[to] = 0;
+		this.backwardEdge[to] = -1;
+		this.backwardQueue.add(to, 0);
+
+		double best = Double.POSITIVE_INFINITY;
+		int meetingNode = -1;
+		while (true) {
+			final double forwardKey = this.forwardQueue.isEmpty() ? Double.POSITIVE_INFINITY : this.forwardQueue.peekKey();
+			final double backwardKey = this.backwardQueue.isEmpty() ? Double.POSITIVE_INFINITY : this.backwardQueue.peekKey();
+			if (Math.min(forwardKey, backwardKey) >= best || (forwardKey == Double.POSITIVE_INFINITY && backwardKey == Double.POSITIVE_INFINITY)) {
+				break;
+			}
+			this.queueOperations++;
+			if (forwardKey <= backwardKey) {
+				final int node = this.forwardQueue.poll();
+				if (forwardKey > this.forwardCost[node]) {
+					continue;
+				}
+				this.visitedNodes++;
+				if (this.backwardStamp[node] == this.iterationId && forwardKey + this.backwardCost[node] < best) {
+					best = forwardKey + this.backwardCost[node];
+					meetingNode = node;
+				}
+				for (int i = this.ch.getUpStart(node), end = this.ch.getUpEnd(node); i < end; i++) {
+					final int e = this.ch.getUpEdge(i);
+					relax(this.ch.getEdgeTo(e), forwardKey + this.ch.getEdgeWeight(e), e,
+							this.forwardStamp, this.forwardCost, this.forwardEdge, this.forwardQueue);
+				}
+			} else {
+				final int node = this.backwardQueue.poll();
+				if (backwardKey > this.backwardCost[node]) {
+					continue;
+				}
+				this.visitedNodes++;
+				if (this.forwardStamp[node] == this.iterationId && backwardKey + this.forwardCost[node] < best) {
+					best = backwardKey + this.forwardCost[node];
+					meetingNode = node;
+				}
+				for (int i = this.ch.getDownStart(node), end = this.ch.getDownEnd(node); i < end; i++) {
+					final int e = this.ch.getDownEdge(i);
+					relax(this.ch.getEdgeFrom(e), backwardKey + this.ch.getEdgeWeight(e), e,
+							this.backwardStamp, this.backwardCost, this.backwardEdge, this.backwardQueue);
+				}
+			}
+		}
+		return meetingNode;
+	}
+
+	private void relax(final int n, final double cost, final int edge, final int[] stamp, final double[] costs, final int[] edges, final LazyNodeHeap queue) {
+		this.relaxedLinks++;
+		if (stamp[n] != this.iterationId || cost < costs[n]) {
+			stamp[n] = this.iterationId;
+			costs[n] = cost;
+			edges[n] = edge;
+			queue.add(n, cost);
+			this.queueOperations++;
+		}
+	}
+
+	private void augmentIterationId() {
+		if (this.iterationId == Integer.MAX_VALUE) {
+			Arrays.fill(this.forwardStamp, 0);
+			Arrays.fill(this.backwardStamp, 0);
+			this.iterationId = 0;
+		}
+		this.iterationId++;
+	}
+
+	private Path constructPath(final int meetingNode, final double startTime, final Person person, final Vehicle vehicle) {
+		List<Link> links = new ArrayList<>();
+		// forward half, collected backwards from the meeting node and reversed afterwards
+		int node = meetingNode;
+		while (this.forwardEdge[node] >= 0) {
+			int e = this.forwardEdge[node];
+			unpack(e, links, true);
+			node = this.ch.getEdgeFrom(e);
+		}
+		reverse(links);
+		node = meetingNode;
+		while (this.backwardEdge[node] >= 0) {
+			int e = this.backwardEdge[node];
+			unpack(e, links, false);
+			node = this.ch.getEdgeTo(e);
+		}
+
+		List<Node> nodes = new ArrayList<>(links.size() + 1);
+		nodes.add(links.isEmpty() ? this.graph.getNode(meetingNode) : links.get(0).getFromNode());
+		double time = startTime;
+		double cost = 0;
+		for (Link link : links) {
+			nodes.add(link.getToNode());
+			cost += this.costFunction.getLinkTravelDisutility(link, time, person, vehicle);
+			time += this.timeFunction.getLinkTravelTime(link, time, person, vehicle);
+		}
+		return new Path(nodes, links, time - startTime, cost);
+	}
+
+	/**
+	 * Appends the links of the given edge, in travel order, or in reverse order if
+	 * <code>reversed</code> is set.
+	 */
+	private void unpack(final int edge, final List<Link> links, final boolean reversed) {
+		int size = 0;
+		this.stack[size++] = edge;
+		while (size > 0) {
+			int e = this.stack[--size];
+			if (!this.ch.isShortcut(e)) {
+				links.add(this.graph.getLink(e));
+				continue;
+			}
+			if (size + 2 > this.stack.length) {
+				this.stack = Arrays.copyOf(this.stack, this.stack.length * 2);
+			}
+			// the edge popped next is appended next
+			if (reversed) {
+				this.stack[size++] = this.ch.getShortcutFirst(e);
+				this.stack[size++] = this.ch.getShortcutSecond(e);
+			} else {
+				this.stack[size++] = this.ch.getShortcutSecond(e);
+				this.stack[size++] = this.ch.getShortcutFirst(e);
+			}
+		}
+	}
+
+	private static void reverse(final List<Link> links) {
+		for (int i = 0, j = links.size() - 1; i < j; i++, j--) {
+			Link tmp = links.get(i);
+			links.set(i, links.get(j));
+			links.set(j, tmp);
+		}
+	}
+
+	/**
+	 * @return The number of nodes settled by both searches while calculating the last path.
+	 */
+	public int getVisitedNodes() {
+		return this.visitedNodes;
+	}
+}
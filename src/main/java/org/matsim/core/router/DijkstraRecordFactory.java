@@ -20,9 +20,6 @@
 
 package org.matsim.core.router;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
@@ -37,7 +34,9 @@ import org.matsim.core.router.util.TravelTime;
 public class DijkstraRecordFactory implements LeastCostPathCalculatorFactory {
 
 	private final boolean usePreProcessData;
-	private final Map<Network, PreProcessDijkstra> preProcessData = new HashMap<>();
+	private final PreProcessCache<Network, PreProcessDijkstra> preProcessData = new PreProcessCache<>();
+	private final PreProcessCache<Network, RoutingGraph> graphs = new PreProcessCache<>();
+	private volatile boolean useFourAryHeap = false;
 
 	@Inject
 	public DijkstraRecordFactory() {
@@ -54,16 +53,31 @@ public class DijkstraRecordFactory implements LeastCostPathCalculatorFactory {
 	// the network as key. For the PreProcessDijkstra data this is fine, since it does not take travel times and disutilities into account.
 	// For the AStarLandmarks data, we would have to include the other two arguments into the lookup value as well... cdobler, sep'17 
 	@Override
-	public synchronized LeastCostPathCalculator createPathCalculator(final Network network, final TravelDisutility travelCosts, final TravelTime travelTimes) {
+	public LeastCostPathCalculator createPathCalculator(final Network network, final TravelDisutility travelCosts, final TravelTime travelTimes) {
+		DijkstraRecord router = createRouter(network, travelCosts, travelTimes);
+		if (this.useFourAryHeap) {
+			router.setPendingNodesHeap(IndexedFourAryHeap.createForNodes(this.graphs.get(network, RoutingGraph::createFromNetwork)));
+		}
+		return router;
+	}
+
+	private DijkstraRecord createRouter(final Network network, final TravelDisutility travelCosts, final TravelTime travelTimes) {
 		if (this.usePreProcessData) {
-			PreProcessDijkstra preProcessDijkstra = this.preProcessData.get(network);
-			if (preProcessDijkstra == null) {
-				preProcessDijkstra = new PreProcessDijkstra();
-				preProcessDijkstra.run(network);
-				this.preProcessData.put(network, preProcessDijkstra);
-			}
+			PreProcessDijkstra preProcessDijkstra = this.preProcessData.get(network, n -> {
+				PreProcessDijkstra data = new PreProcessDijkstra();
+				data.run(n);
+				return data;
+			});
 			return new DijkstraRecord(network, travelCosts, travelTimes, preProcessDijkstra);
 		}
 		return new DijkstraRecord(network, travelCosts, travelTimes);
 	}
+
+	/**
+	 * Lets the routers use an {@link IndexedFourAryHeap} with in-place decrease-key as their queue of
+	 * pending nodes instead of MATSim's default queue.
+	 */
+	public void setUseFourAryHeap(final boolean useFourAryHeap) {
+		this.useFourAryHeap = useFourAryHeap;
+	}
 }
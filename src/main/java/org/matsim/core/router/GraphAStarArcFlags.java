@@ -0,0 +1,80 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * GraphAStarArcFlags.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.router;
+
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+
+/**
+ * A* with the euclidean estimate on a {@link RoutingGraph} that only relaxes the links whose
+ * {@link ArcFlags arc-flag} for the cell of the destination is set. Searches for several targets
+ * relax all links.
+ *
+ * <p>The paths are least-cost paths for the static link costs the flags were computed with; with
+ * other costs they are least-cost paths among the flagged links only.</p>
+ *
+ * @see GraphAStarArcFlagsFactory
+ */
+public class GraphAStarArcFlags extends GraphAStarEuclidean {
+
+	private final ArcFlags arcFlags;
+	private final long[] flags;
+	private final int wordsPerLink;
+
+	/* word offset and mask of the destination cell, set per query */
+	private int targetWord = 0;
+	private long targetMask = 0;
+
+	GraphAStarArcFlags(final RoutingGraph graph, final ArcFlags arcFlags, final TravelDisutility costFunction,
+			final TravelTime timeFunction, final double overdoFactor) {
+		super(graph, arcFlags.getMinTravelCostPerLength(), costFunction, timeFunction, overdoFactor);
+		this.arcFlags = arcFlags;
+		this.flags = arcFlags.getFlags();
+		this.wordsPerLink = arcFlags.getWordsPerLink();
+	}
+
+	@Override
+	protected void initQuery(final int from, final int to) {
+		final int cell = this.arcFlags.getCell(to);
+		this.targetWord = cell >>> 6;
+		this.targetMask = 1L << cell;
+	}
+
+	@Override
+	protected void relaxNode(final int node, final int to) {
+		if (to == NO_TARGET) {
+			super.relaxNode(node, to);
+			return;
+		}
+		final double currTime = getTime(node);
+		final double currCost = getCost(node);
+		for (int l = this.graph.getOutStart(node), end = this.graph.getOutEnd(node); l < end; l++) {
+			if ((this.flags[l * this.wordsPerLink + this.targetWord] & this.targetMask) != 0) {
+				relaxLink(l, currTime, currCost, to);
+			}
+		}
+	}
+
+	public ArcFlags getArcFlags() {
+		return this.arcFlags;
+	}
+}
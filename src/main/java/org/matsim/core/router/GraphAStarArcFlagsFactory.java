@@ -0,0 +1,80 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * GraphAStarArcFlagsFactory.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.router;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.config.groups.GlobalConfigGroup;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+
+/**
+ * Creates {@link GraphAStarArcFlags} routers. The {@link RoutingGraph} snapshot and its
+ * {@link ArcFlags} are computed once per network, with the minimal travel disutility of the first
+ * cost function seen for that network, like the contraction hierarchies of
+ * {@link ContractionHierarchiesFactory}.
+ *
+ * <p>Only use it where that static cost is what should be minimised, e.g. free speed car routing
+ * in evacuation scenarios; with congested travel times the routes are restricted to links on free
+ * speed routes.</p>
+ */
+@Singleton
+public class GraphAStarArcFlagsFactory implements LeastCostPathCalculatorFactory {
+
+	private final PreProcessCache<Network, RoutingGraph> graphs = new PreProcessCache<>();
+	private final PreProcessCache<Network, ArcFlags> arcFlags = new PreProcessCache<>();
+
+	private final int nThreads;
+	private volatile int cellCount = ArcFlags.DEFAULT_CELL_COUNT;
+
+	@Inject
+	public GraphAStarArcFlagsFactory(final GlobalConfigGroup globalConfigGroup) {
+		this(globalConfigGroup.getNumberOfThreads());
+	}
+
+	public GraphAStarArcFlagsFactory(int numberOfThreads) {
+		this.nThreads = numberOfThreads;
+	}
+
+	public GraphAStarArcFlagsFactory() {
+		this(8);
+	}
+
+	@Override
+	public LeastCostPathCalculator createPathCalculator(final Network network, final TravelDisutility travelCosts, final TravelTime travelTimes) {
+		RoutingGraph graph = this.graphs.get(network, RoutingGraph::createFromNetwork);
+		ArcFlags flags = this.arcFlags.get(network, n -> ArcFlags.create(graph, travelCosts, this.cellCount, this.nThreads));
+		return new GraphAStarArcFlags(graph, flags, travelCosts, travelTimes, 1.0);
+	}
+
+	/**
+	 * Sets the number of cells of the arc-flags computed from now on; more cells prune more, but cost
+	 * more preprocessing and memory ({@link ArcFlags#DEFAULT_CELL_COUNT} by default).
+	 */
+	public void setCellCount(final int cellCount) {
+		this.cellCount = cellCount;
+	}
+}
@@ -0,0 +1,70 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * GraphAStarEuclidean.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+
+/**
+ * A* on a {@link RoutingGraph} with the euclidean distance times the minimal travel cost per length
+ * unit as the estimate, the array-based counterpart of {@link AStarEuclideanRecord}. The same
+ * network conditions apply, and an overdo factor &gt; 1 again trades exactness for speed.
+ *
+ * @see GraphAStarEuclideanFactory
+ */
+public class GraphAStarEuclidean extends GraphDijkstra {
+
+	protected final double overdoFactor;
+	private final double minTravelCostPerLength;
+
+	/**
+	 * @param minTravelCostPerLength The minimal travel cost per length unit on any link, as computed
+	 * by <code>PreProcessEuclidean</code>.
+	 */
+	GraphAStarEuclidean(final RoutingGraph graph, final double minTravelCostPerLength,
+			final TravelDisutility costFunction, final TravelTime timeFunction, final double overdoFactor) {
+		super(graph, costFunction, timeFunction);
+		this.minTravelCostPerLength = minTravelCostPerLength;
+		this.overdoFactor = overdoFactor;
+	}
+
+	@Override
+	protected double estimateRemainingTravelCost(final int node, final int to) {
+		return estimateEuclideanTravelCost(node, to) * this.overdoFactor;
+	}
+
+	/**
+	 * @return The euclidean distance between the two nodes times the minimal travel cost per length unit.
+	 */
+	protected final double estimateEuclideanTravelCost(final int node, final int to) {
+		final double dx = this.graph.getX(node) - this.graph.getX(to);
+		final double dy = this.graph.getY(node) - this.graph.getY(to);
+		return Math.sqrt(dx * dx + dy * dy) * this.minTravelCostPerLength;
+	}
+
+	public double getOverdoFactor() {
+		return this.overdoFactor;
+	}
+
+	public final double getMinTravelCostPerLength() {
+		return this.minTravelCostPerLength;
+	}
+}
@@ -0,0 +1,60 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * GraphAStarEuclideanFactory.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+import org.matsim.core.router.util.PreProcessEuclidean;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+
+/**
+ * Creates {@link GraphAStarEuclidean} routers. The {@link RoutingGraph} snapshot and the
+ * <code>PreProcessEuclidean</code> data are computed once per network.
+ */
+public class GraphAStarEuclideanFactory implements LeastCostPathCalculatorFactory {
+
+	private final PreProcessCache<Network, RoutingGraph> graphs = new PreProcessCache<>();
+	private final PreProcessCache<Network, PreProcessEuclidean> preProcessData = new PreProcessCache<>();
+	private final double overdoFactor;
+
+	public GraphAStarEuclideanFactory() {
+		this(1);
+	}
+
+	public GraphAStarEuclideanFactory(double overdoFactor) {
+		this.overdoFactor = overdoFactor;
+	}
+
+	@Override
+	public LeastCostPathCalculator createPathCalculator(final Network network,
+			final TravelDisutility travelCosts, final TravelTime travelTimes) {
+		RoutingGraph graph = this.graphs.get(network, RoutingGraph::createFromNetwork);
+		PreProcessEuclidean preProcessEuclidean = this.preProcessData.get(network, n -> {
+			PreProcessEuclidean data = new PreProcessEuclidean(travelCosts);
+			data.run(n);
+			return data;
+		});
+
+		return new GraphAStarEuclidean(graph, preProcessEuclidean.getMinTravelCostPerLength(), travelCosts, travelTimes, overdoFactor);
+	}
+}
@@ -0,0 +1,162 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * GraphAStarLandmarks.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.function.Supplier;
+
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+
+/**
+ * A* with landmarks on a {@link RoutingGraph}, the array-based counterpart of
+ * {@link AStarLandmarksRecord}.
+ *
+ * <p>Like <code>AStarLandmarksProtected</code>, a query starts with the two landmarks that give the
+ * best estimate between origin and destination, and every 40 relaxed nodes checks whether another
+ * landmark would estimate better; both numbers can be {@link #setLandmarkControl(int, int) changed}. Unlike there, an added landmark only
+ * improves the estimates of nodes visited afterwards; the keys of pending nodes are not updated.
+ * All estimates stay admissible, so the paths are still least-cost paths.</p>
+ *
+ * <p>Created with a <code>Supplier</code>, the router asks it for the landmarks at the start of every
+ * query, so that {@link CongestedLandmarks} can replace them while the router is in use.</p>
+ *
+ * @see GraphAStarLandmarksFactory
+ */
+public class GraphAStarLandmarks extends GraphAStarEuclidean {
+
+	/*package*/ static final int DEFAULT_CONTROL_INTERVAL = 40;
+	/*package*/ static final int DEFAULT_INITIAL_ACTIVE_LANDMARKS = 2;
+
+	protected GraphLandmarks landmarks;
+
+	private final Supplier<GraphLandmarks> landmarksSource;
+	private int[] activeLandmarks;
+	private double[] estimates;
+	private int activeLandmarkCount = 0;
+	private int controlCounter = 0;
+	private int controlInterval = DEFAULT_CONTROL_INTERVAL;
+	private int initialActiveLandmarks = DEFAULT_INITIAL_ACTIVE_LANDMARKS;
+
+	GraphAStarLandmarks(final RoutingGraph graph, final GraphLandmarks landmarks, final double minTravelCostPerLength,
+			final TravelDisutility costFunction, final TravelTime timeFunction, final double overdoFactor) {
+		this(graph, () -> landmarks, minTravelCostPerLength, costFunction, timeFunction, overdoFactor);
+	}
+
+	GraphAStarLandmarks(final RoutingGraph graph, final Supplier<GraphLandmarks> landmarksSource, final double minTravelCostPerLength,
+			final TravelDisutility costFunction, final TravelTime timeFunction, final double overdoFactor) {
+		super(graph, minTravelCostPerLength, costFunction, timeFunction, overdoFactor);
+		this.landmarksSource = landmarksSource;
+		this.landmarks = landmarksSource.get();
+		this.activeLandmarks = new int[this.landmarks.getLandmarkCount()];
+		this.estimates = new double[this.landmarks.getLandmarkCount()];
+	}
+
+	/**
+	 * Sets how many landmarks a query starts with and after how many relaxed nodes it checks for a
+	 * better one, see {@link LandmarkOptimizer}.
+	 */
+	/*package*/ void setLandmarkControl(final int initialActiveLandmarks, final int controlInterval) {
+		if (initialActiveLandmarks < 1 || controlInterval < 1) {
+			throw new IllegalArgumentException("initialActiveLandmarks and controlInterval must be positive, but are "
+					+ initialActiveLandmarks + " and " + controlInterval);
+		}
+		this.initialActiveLandmarks = initialActiveLandmarks;
+		this.controlInterval = controlInterval;
+	}
+
+	@Override
+	protected void initQuery(final int from, final int to) {
+		final GraphLandmarks current = this.landmarksSource.get();
+		if (current != this.landmarks) {
+			this.landmarks = current;
+			if (this.activeLandmarks.length < current.getLandmarkCount()) {
+				this.activeLandmarks = new int[current.getLandmarkCount()];
+				this.estimates = new double[current.getLandmarkCount()];
+			}
+		}
+		this.controlCounter = 0;
+		this.activeLandmarkCount = 0;
+		final int count = Math.min(this.initialActiveLandmarks, this.landmarks.getLandmarkCount());
+		if (count == 0) {
+			return;
+		}
+		// keep the count landmarks with the best estimates, sorted by descending estimate
+		for (int i = 0; i < this.landmarks.getLandmarkCount(); i++) {
+			final double estimate = this.landmarks.estimateRemainingTravelCost(from, to, i);
+			int j;
+			if (this.activeLandmarkCount == count) {
+				if (estimate <= this.estimates[count - 1]) {
+					continue;
+				}
+				j = count - 1;
+			} else {
+				j = this.activeLandmarkCount++;
+			}
+			while (j > 0 && this.estimates[j - 1] < estimate) {
+				this.estimates[j] = this.estimates[j - 1];
+				this.activeLandmarks[j] = this.activeLandmarks[j - 1];
+				j--;
+			}
+			this.estimates[j] = estimate;
+			this.activeLandmarks[j] = i;
+		}
+	}
+
+	@Override
+	protected void relaxNode(final int node, final int to) {
+		if (to != NO_TARGET && ++this.controlCounter == this.controlInterval) {
+			checkToAddLandmark(node, to);
+			this.controlCounter = 0;
+		}
+		super.relaxNode(node, to);
+	}
+
+	/**
+	 * Activates the landmark that estimates the remaining cost from <code>node</code> best, if it is
+	 * better than the current estimate.
+	 */
+	private void checkToAddLandmark(final int node, final int to) {
+		double bestEstimate = estimateRemainingTravelCost(node, to) / this.overdoFactor;
+		int bestIndex = -1;
+		for (int i = 0; i < this.landmarks.getLandmarkCount(); i++) {
+			double estimate = this.landmarks.estimateRemainingTravelCost(node, to, i);
+			if (estimate > bestEstimate) {
+				bestIndex = i;
+				bestEstimate = estimate;
+			}
+		}
+		if (bestIndex != -1) {
+			this.activeLandmarks[this.activeLandmarkCount++] = bestIndex;
+		}
+	}
+
+	@Override
+	protected double estimateRemainingTravelCost(final int node, final int to) {
+		double travelCost = estimateEuclideanTravelCost(node, to);
+		for (int i = 0; i < this.activeLandmarkCount; i++) {
+			double landmarkCost = this.landmarks.estimateRemainingTravelCost(node, to, this.activeLandmarks[i]);
+			if (landmarkCost > travelCost) {
+				travelCost = landmarkCost;
+			}
+		}
+		return travelCost * this.overdoFactor;
+	}
+}
@@ -0,0 +1,269 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * GraphAStarLandmarksFactory.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.core.config.groups.GlobalConfigGroup;
+import org.matsim.core.controler.events.IterationEndsEvent;
+import org.matsim.core.controler.events.ShutdownEvent;
+import org.matsim.core.controler.listener.IterationEndsListener;
+import org.matsim.core.controler.listener.ShutdownListener;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+import org.matsim.core.router.util.PreProcessLandmarks;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+
+/**
+ * Creates {@link GraphAStarLandmarks} routers. The {@link RoutingGraph} snapshot and the landmarks
+ * are computed once per network; the landmarks come from <code>PreProcessLandmarks</code> and are
+ * then copied into a {@link GraphLandmarks}.
+ *
+ * <p>With a {@link #setLandmarksDirectory(File) landmarks directory}, the landmarks are stored in a
+ * {@link LandmarksFile} there and memory-mapped by later runs on the same network and costs.</p>
+ *
+ * <p>With {@link #setOptimizedLandmarks(Population, File) optimized landmarks}, a
+ * {@link LandmarkOptimizer} chooses the landmarks and control parameters for the trips of the given
+ * population instead.</p>
+ *
+ * <p>With {@link #setCongestedBounds(boolean) congested bounds}, the routers use
+ * {@link CongestedLandmarks} instead, one per network and cost function, where cost functions
+ * with the same minimal link disutilities count as the same; the fingerprint of the minimal
+ * disutilities is computed once per cost function object. Added as a controler listener, the
+ * factory updates them at the end of every iteration with the cost function of the last router it
+ * created, and stops their background threads at shutdown; replanning does not wait for the
+ * update. With a
+ * {@link #setTravelTimeTable(LinkTravelTimeTable) travel time table}, they are updated when the table
+ * publishes new travel times instead, sampling only the links that changed.</p>
+ */
+@Singleton
+public class GraphAStarLandmarksFactory implements LeastCostPathCalculatorFactory, IterationEndsListener,
+		ShutdownListener, LinkTravelTimeTable.ChangeListener {
+	private static final Logger log = Logger.getLogger( GraphAStarLandmarksFactory.class ) ;
+
+	private final PreProcessCache<Network, RoutingGraph> graphs = new PreProcessCache<>();
+	private final PreProcessCache<Network, GraphLandmarks> landmarks = new PreProcessCache<>();
+	private final PreProcessCache<CostKey, CongestedLandmarks> congestedLandmarks = new PreProcessCache<>();
+	private final PreProcessCache<Network, LandmarkOptimizer.Result> optimizedLandmarks = new PreProcessCache<>();
+	/* weak, as the routing modules create new cost functions for every trip router */
+	private final Map<TravelDisutility, CostKey> costKeys = new WeakHashMap<>();
+
+	private final int nThreads;
+	private volatile File landmarksDirectory = null;
+	private volatile boolean congestedBounds = false;
+	private volatile int congestedLandmarkCount = 16;
+	private volatile Population optimizationPopulation = null;
+	private volatile File optimizedLandmarksFile = null;
+	private volatile boolean incremental = false;
+
+	@Inject
+	public GraphAStarLandmarksFactory(final GlobalConfigGroup globalConfigGroup) {
+		this(globalConfigGroup.getNumberOfThreads());
+	}
+
+	public GraphAStarLandmarksFactory(int numberOfThreads) {
+		this.nThreads = numberOfThreads;
+	}
+
+	public GraphAStarLandmarksFactory() {
+		this(8);
+	}
+
+	@Override
+	public LeastCostPathCalculator createPathCalculator(final Network network, final TravelDisutility travelCosts, final TravelTime travelTimes) {
+		RoutingGraph graph = this.graphs.get(network, RoutingGraph::createFromNetwork);
+		if (this.congestedBounds) {
+			CostKey key = getCostKey(network, graph, travelCosts);
+			CongestedLandmarks source = this.congestedLandmarks.get(key, k -> CongestedLandmarks.create(graph, travelCosts,
+					this.congestedLandmarkCount, CongestedLandmarks.DEFAULT_TIME_BIN_SIZE, CongestedLandmarks.DEFAULT_END_TIME));
+			source.setLatestCostFunction(travelCosts);
+			return new GraphAStarLandmarks(graph, source, source.getFreeFlowLandmarks().getMinTravelCostPerLength(),
+					travelCosts, travelTimes, 1.0);
+		}
+		Population population = this.optimizationPopulation;
+		if (population != null) {
+			File file = this.optimizedLandmarksFile;
+			LandmarkOptimizer.Result result = this.optimizedLandmarks.get(network,
+					n -> new LandmarkOptimizer(n, graph, travelCosts, travelTimes).loadOrOptimize(population, file));
+			GraphAStarLandmarks router = new GraphAStarLandmarks(graph, result.getLandmarks(),
+					result.getLandmarks().getMinTravelCostPerLength(), travelCosts, travelTimes, 1.0);
+			router.setLandmarkControl(result.getInitialActiveLandmarks(), result.getControlInterval());
+			return router;
+		}
+		GraphLandmarks graphLandmarks = this.landmarks.get(network, n -> loadOrCreateLandmarks(n, graph, travelCosts));
+
+		final double overdoFactor = 1.0;
+		return new GraphAStarLandmarks(graph, graphLandmarks, graphLandmarks.getMinTravelCostPerLength(),
+				travelCosts, travelTimes, overdoFactor);
+	}
+
+	private CostKey getCostKey(final Network network, final RoutingGraph graph, final TravelDisutility travelCosts) {
+		CostKey key;
+		synchronized (this.costKeys) {
+			key = this.costKeys.get(travelCosts);
+		}
+		if (key == null || key.network != network) {
+			key = new CostKey(network, graph.computeCostFingerprint(travelCosts));
+			synchronized (this.costKeys) {
+				this.costKeys.put(travelCosts, key);
+			}
+		}
+		return key;
+	}
+
+	private GraphLandmarks loadOrCreateLandmarks(final Network network, final RoutingGraph graph, final TravelDisutility travelCosts) {
+		File file = null;
+		long costFingerprint = 0;
+		if (this.landmarksDirectory != null) {
+			costFingerprint = graph.computeCostFingerprint(travelCosts);
+			file = LandmarksFile.getFile(this.landmarksDirectory, "minmax", graph, costFingerprint);
+			try {
+				GraphLandmarks graphLandmarks = LandmarksFile.readLandmarks(file, graph, costFingerprint);
+				if (graphLandmarks != null) {
+					return graphLandmarks;
+				}
+			} catch (IOException e) {
+				log.warn("could not read landmarks from " + file + ", computing them again.", e);
+			}
+		}
+
+		PreProcessLandmarks preProcessLandmarks = new PreProcessLandmarks(travelCosts);
+		preProcessLandmarks.setNumberOfThreads(nThreads);
+		preProcessLandmarks.run(network);
+		GraphLandmarks graphLandmarks = GraphLandmarks.createFromPreProcessData(graph, preProcessLandmarks);
+
+		if (file != null) {
+			try {
+				LandmarksFile.writeLandmarks(file, graph, costFingerprint, graphLandmarks);
+			} catch (IOException e) {
+				log.warn("could not write landmarks to " + file + ".", e);
+			}
+		}
+		return graphLandmarks;
+	}
+
+	/**
+	 * Stores and looks up the landmarks of every network in the given directory;
+	 * <code>null</code> (the default) always computes them.
+	 */
+	public void setLandmarksDirectory(final File landmarksDirectory) {
+		this.landmarksDirectory = landmarksDirectory;
+	}
+
+	/**
+	 * Lets the routers created from now on use landmarks and control parameters that a
+	 * {@link LandmarkOptimizer} chose for the selected plans of the given population, once per
+	 * network. They are stored in and read from the given properties file unless it is
+	 * <code>null</code>; <code>null</code> as population switches back to the default landmarks.
+	 * Congested bounds take precedence.
+	 */
+	public void setOptimizedLandmarks(final Population population, final File propertiesFile) {
+		this.optimizedLandmarksFile = propertiesFile;
+		this.optimizationPopulation = population;
+	}
+
+	/**
+	 * Switches the routers created from now on to {@link CongestedLandmarks} with the given number of
+	 * landmarks; these are neither stored in the landmarks directory nor shared with the free-flow mode.
+	 */
+	public void setCongestedBounds(final boolean congestedBounds, final int landmarkCount) {
+		this.congestedLandmarkCount = landmarkCount;
+		this.congestedBounds = congestedBounds;
+	}
+
+	public void setCongestedBounds(final boolean congestedBounds) {
+		setCongestedBounds(congestedBounds, this.congestedLandmarkCount);
+	}
+
+	/**
+	 * Updates the congested landmarks when the given table publishes new travel times, only for the
+	 * links that changed, instead of at the end of every iteration.
+	 */
+	public void setTravelTimeTable(final LinkTravelTimeTable table) {
+		table.addChangeListener(this);
+		this.incremental = true;
+	}
+
+	@Override
+	public void notifyIterationEnds(final IterationEndsEvent event) {
+		if (!this.incremental) {
+			updateCongestedBounds();
+		}
+	}
+
+	@Override
+	public void notifyTravelTimesChanged(final LinkTravelTimeTable.ChangedLinks changedLinks) {
+		for (CongestedLandmarks source : this.congestedLandmarks.values()) {
+			source.update(changedLinks);
+		}
+	}
+
+	@Override
+	public void notifyShutdown(final ShutdownEvent event) {
+		for (CongestedLandmarks source : this.congestedLandmarks.values()) {
+			source.shutdown();
+		}
+	}
+
+	/**
+	 * Starts updating all congested landmarks with the current travel times.
+	 */
+	public void updateCongestedBounds() {
+		for (CongestedLandmarks source : this.congestedLandmarks.values()) {
+			source.update();
+		}
+	}
+
+	private static final class CostKey {
+		private final Network network;
+		private final long costFingerprint;
+
+		CostKey(final Network network, final long costFingerprint) {
+			this.network = network;
+			this.costFingerprint = costFingerprint;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (!(o instanceof CostKey)) {
+				return false;
+			}
+			CostKey other = (CostKey) o;
+			return this.network == other.network && this.costFingerprint == other.costFingerprint;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(System.identityHashCode(this.network), this.costFingerprint);
+		}
+	}
+}
@@ -0,0 +1,359 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * GraphBidirectionalAStarLandmarks.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Bidirectional A* with landmarks (ALT) on a {@link RoutingGraph}. A forward search from the start
+ * node over out-links and a backward search from the target node over in-links run at the same
+ * time, always expanding the direction with the lower queue key.
+ *
+ * <p>Both searches use the average potential <code>p(v) = (pi_t(v) - pi_s(v)) / 2</code>, where
+ * <code>pi_t(v)</code> is the landmark estimate from v to the target and <code>pi_s(v)</code> the one
+ * from the start to v; the forward search orders its nodes by <code>cost + p(v)</code>, the backward
+ * search by <code>cost - p(v)</code>. With these keys the search can stop as soon as the two lowest
+ * keys add up to at least the cost of the best connection found so far. The landmarks are chosen
+ * once per query, as the {@link #activeLandmarks} with the best estimate between start and target,
+ * since the potential must not change during a query.</p>
+ *
+ * <p>The stopping criterion needs consistent estimates. The minimum and maximum landmark travel
+ * times of <code>PreProcessLandmarks</code> are only consistent when link costs are the same in both
+ * directions, so the estimates come from {@link GraphDirectedLandmarks} instead.</p>
+ *
+ * <p>The backward search evaluates link costs at the departure time, so the search is exact for
+ * costs that do not depend on the time of day, like the free speed costs the landmarks are built
+ * with. The travel time and cost of the returned path are evaluated link by link from the
+ * departure time.</p>
+ *
+ * <p>Instances are not thread-safe, every routing thread needs its own.</p>
+ *
+ * @see GraphBidirectionalAStarLandmarksFactory
+ */
+public class GraphBidirectionalAStarLandmarks implements LeastCostPathCalculator {
+	private static final Logger log = Logger.getLogger( GraphBidirectionalAStarLandmarks.class ) ;
+
+	/*package*/ static final int activeLandmarks = 4;
+
+	private final RoutingGraph graph;
+	private final GraphDirectedLandmarks landmarks;
+	private final TravelDisutility costFunction;
+	private final TravelTime timeFunction;
+
+	private Person person = null;
+	private Vehicle vehicle = null;
+
+	private final RoutingMetrics metrics;
+
+	/* node state, only valid where the matching stamp equals iterationId */
+	private final int[] potentialStamp;
+	private final double[] potential;
+	private final int[] forwardStamp;
+	private final double[] forwardCost;
+	private final double[] forwardTime;
+	private final int[] forwardLink;
+	private final int[] backwardStamp;
+	private final double[] backwardCost;
+	private final int[] backwardLink;
+	private int iterationId = 0;
+
+	private final LazyNodeHeap forwardQueue;
+	private final LazyNodeHeap backwardQueue;
+
+	private final int[] queryLandmarks;
+	private final double[] estimates;
+	private int queryLandmarkCount = 0;
+
+	private double bestCost;
+	private int meetingNode;
+
+	private int visitedNodes = 0;
+	private int relaxedLinks = 0;
+	private int queueOperations = 0;
+
+	GraphBidirectionalAStarLandmarks(final RoutingGraph graph, final GraphDirectedLandmarks landmarks,
+			final TravelDisutility costFunction, final TravelTime timeFunction) {
+		this.graph = graph;
+		this.landmarks = landmarks;
+		this.costFunction = costFunction;
+		this.timeFunction = timeFunction;
+		this.metrics = RoutingMetrics.getInstance(getClass().getSimpleName());
+
+		int n = graph.getNodeCount();
+		this.potentialStamp = new int[n];
+		this.potential = new double[n];
+		this.forwardStamp = new int[n];
+		this.forwardCost = new double[n];
+		this.forwardTime = new double[n];
+		this.forwardLink = new int[n];
+		this.backwardStamp = new int[n];
+		this.backwardCost = new double[n];
+		this.backwardLink = new int[n];
+		this.forwardQueue = new LazyNodeHeap(Math.min(n, 1024));
+		this.backwardQueue = new LazyNodeHeap(Math.min(n, 1024));
+
+		int count = Math.min(activeLandmarks, landmarks.getLandmarkCount());
+		this.queryLandmarks = new int[count];
+		this.estimates = new double[count];
+	}
+
+	@Override
+	public Path calcLeastCostPath(final Node fromNode, final Node toNode, final double startTime, final Person person, final Vehicle vehicle) {
+		final int from = getNodeIndex(fromNode);
+		final int to = getNodeIndex(toNode);
+		this.person = person;
+		this.vehicle = vehicle;
+		this.visitedNodes = 0;
+		this.relaxedLinks = 0;
+		this.queueOperations = 0;
+
+		long start = System.nanoTime();
+		boolean found = search(from, to, startTime);
+		Path path = found ? constructPath(from, to, startTime) : null;
+		this.metrics.record(this.visitedNodes, this.relaxedLinks, this.queueOperations, System.nanoTime() - start);
+
+		if (!found) {
+			log.warn("No route was found from node " + fromNode.getId() + " to node " + toNode.getId() + ".");
+		}
+		return path;
+	}
+
+	private int getNodeIndex(final Node node) {
+		int index = this.graph.getNodeIndex(node.getId());
+		if (index < 0) {
+			throw new IllegalArgumentException("node " + node.getId() + " is not part of the routing graph");
+		}
+		return index;
+	}
+
+	/**
+	 * Runs both searches until the lowest forward and backward keys add up to the cost of the best
+	 * connection, or one of the searches runs out of nodes.
+	 *
+	 * @return Whether <code>to</code> could be reached.
+	 */
+	private boolean search(final int from, final int to, final double startTime) {
+		augmentIterationId();
+		this.forwardQueue.clear();
+		this.backwardQueue.clear();
+		selectLandmarks(from, to);
+		this.bestCost = Double.POSITIVE_INFINITY;
+		this.meetingNode = -1;
+
+		this.forwardStamp[from] = this.iterationId;
+		this.forwardCost[from] = 0;
+		this.forwardTime[from] = startTime;
+		this.forwardLink[from] = -1;
+		this.forwardQueue.add(from, getPotential(from, from, to));
+		this.backwardStamp[to] = this.iterationId;
+		this.backwardCost[to] = 0;
+		this.backwardLink[to] = -1;
+		this.backwardQueue.add(to, -getPotential(to, from, to));
+		this.visitedNodes += 2;
+		if (from == to) {
+			this.bestCost = 0;
+			this.meetingNode = from;
+		}
+
+		while (!this.forwardQueue.isEmpty() && !this.backwardQueue.isEmpty()) {
+			final double forwardKey = this.forwardQueue.peekKey();
+			final double backwardKey = this.backwardQueue.peekKey();
+			if (forwardKey + backwardKey >= this.bestCost) {
+				break;
+			}
+			this.queueOperations++;
+			if (forwardKey <= backwardKey) {
+				final int node = this.forwardQueue.poll();
+				if (forwardKey > this.forwardCost[node] + this.potential[node]) {
+					// outdated entry, the node was added again with a better cost
+					continue;
+				}
+				relaxForward(node, from, to);
+			} else {
+				final int node = this.backwardQueue.poll();
+				if (backwardKey > this.backwardCost[node] - this.potential[node]) {
+					continue;
+				}
+				relaxBackward(node, from, to, startTime);
+			}
+		}
+		return this.meetingNode >= 0;
+	}
+
+	private void relaxForward(final int node, final int from, final int to) {
+		final double currTime = this.forwardTime[node];
+		final double currCost = this.forwardCost[node];
+		for (int l = this.graph.getOutStart(node), end = this.graph.getOutEnd(node); l < end; l++) {
+			this.relaxedLinks++;
+			final Link link = this.graph.getLink(l);
+			final int n = this.graph.getToNode(l);
+			final double cost = currCost + this.costFunction.getLinkTravelDisutility(link, currTime, this.person, this.vehicle);
+			if (this.forwardStamp[n] == this.iterationId && cost >= this.forwardCost[n]) {
+				continue;
+			}
+			if (this.forwardStamp[n] != this.iterationId) {
+				this.visitedNodes++;
+			}
+			this.forwardStamp[n] = this.iterationId;
+			this.forwardCost[n] = cost;
+			this.forwardTime[n] = currTime + this.timeFunction.getLinkTravelTime(link, currTime, this.person, this.vehicle);
+			this.forwardLink[n] = l;
+			this.forwardQueue.add(n, cost + getPotential(n, from, to));
+			this.queueOperations++;
+			if (this.backwardStamp[n] == this.iterationId && cost + this.backwardCost[n] < this.bestCost) {
+				this.bestCost = cost + this.backwardCost[n];
+				this.meetingNode = n;
+			}
+		}
+	}
+
+	private void relaxBackward(final int node, final int from, final int to, final double startTime) {
+		final double currCost = this.backwardCost[node];
+		for (int i = this.graph.getInStart(node), end = this.graph.getInEnd(node); i < end; i++) {
+			this.relaxedLinks++;
+			final int l = this.graph.getInLink(i);
+			final int n = this.graph.getFromNode(l);
+			final double cost = currCost + this.costFunction.getLinkTravelDisutility(this.graph.getLink(l), startTime, this.person, this.vehicle);
+			if (this.backwardStamp[n] == this.iterationId && cost >= this.backwardCost[n]) {
+				continue;
+			}
+			if (this.backwardStamp[n] != this.iterationId) {
+				this.visitedNodes++;
+			}
+			this.backwardStamp[n] = this.iterationId;
+			this.backwardCost[n] = cost;
+			this.backwardLink[n] = l;
+			this.backwardQueue.add(n, cost - getPotential(n, from, to));
+			this.queueOperations++;
+			if (this.forwardStamp[n] == this.iterationId && cost + this.forwardCost[n] < this.bestCost) {
+				this.bestCost = cost + this.forwardCost[n];
+				this.meetingNode = n;
+			}
+		}
+	}
+
+	/**
+	 * Keeps the landmarks with the best estimates between start and target for this query.
+	 */
+	private void selectLandmarks(final int from, final int to) {
+		this.queryLandmarkCount = 0;
+		final int count = this.queryLandmarks.length;
+		if (count == 0) {
+			return;
+		}
+		for (int i = 0; i < this.landmarks.getLandmarkCount(); i++) {
+			final double estimate = this.landmarks.estimateTravelCost(from, to, i);
+			int j;
+			if (this.queryLandmarkCount == count) {
+				if (estimate <= this.estimates[count - 1]) {
+					continue;
+				}
+				j = count - 1;
+			} else {
+				j = this.queryLandmarkCount++;
+			}
+			while (j > 0 && this.estimates[j - 1] < estimate) {
+				this.estimates[j] = this.estimates[j - 1];
+				this.queryLandmarks[j] = this.queryLandmarks[j - 1];
+				j--;
+			}
+			this.estimates[j] = estimate;
+			this.queryLandmarks[j] = i;
+		}
+	}
+
+	/**
+	 * @return The average potential of <code>node</code>, computed once per query.
+	 */
+	private double getPotential(final int node, final int from, final int to) {
+		if (this.potentialStamp[node] == this.iterationId) {
+			return this.potential[node];
+		}
+		double toTarget = 0;
+		double fromStart = 0;
+		for (int i = 0; i < this.queryLandmarkCount; i++) {
+			final int landmark = this.queryLandmarks[i];
+			toTarget = Math.max(toTarget, this.landmarks.estimateTravelCost(node, to, landmark));
+			fromStart = Math.max(fromStart, this.landmarks.estimateTravelCost(from, node, landmark));
+		}
+		final double p = (toTarget - fromStart) / 2;
+		this.potentialStamp[node] = this.iterationId;
+		this.potential[node] = p;
+		return p;
+	}
+
+	private void augmentIterationId() {
+		if (this.iterationId == Integer.MAX_VALUE) {
+			Arrays.fill(this.potentialStamp, 0);
+			Arrays.fill(this.forwardStamp, 0);
+			Arrays.fill(this.backwardStamp, 0);
+			this.iterationId = 0;
+		}
+		this.iterationId++;
+	}
+
+	private Path constructPath(final int from, final int to, final double startTime) {
+		List<Link> links = new ArrayList<>();
+		int node = this.meetingNode;
+		while (node != from) {
+			int l = this.forwardLink[node];
+			links.add(this.graph.getLink(l));
+			node = this.graph.getFromNode(l);
+		}
+		Collections.reverse(links);
+		node = this.meetingNode;
+		while (node != to) {
+			int l = this.backwardLink[node];
+			links.add(this.graph.getLink(l));
+			node = this.graph.getToNode(l);
+		}
+
+		List<Node> nodes = new ArrayList<>(links.size() + 1);
+		nodes.add(this.graph.getNode(from));
+		double time = startTime;
+		double cost = 0;
+		for (Link link : links) {
+			nodes.add(link.getToNode());
+			cost += this.costFunction.getLinkTravelDisutility(link, time, this.person, this.vehicle);
+			time += this.timeFunction.getLinkTravelTime(link, time, this.person, this.vehicle);
+		}
+		return new Path(nodes, links, time - startTime, cost);
+	}
+
+	/**
+	 * @return The number of nodes visited by both searches while calculating the last path.
+	 */
+	public int getVisitedNodes() {
+		return this.visitedNodes;
+	}
+}
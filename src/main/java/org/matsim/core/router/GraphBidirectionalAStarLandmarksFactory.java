@@ -0,0 +1,103 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * GraphBidirectionalAStarLandmarksFactory.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.inject.Singleton;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+
+/**
+ * Creates {@link GraphBidirectionalAStarLandmarks} routers. The {@link RoutingGraph} snapshot and
+ * the {@link GraphDirectedLandmarks} are computed once per network, with the minimal travel
+ * disutility of the first cost function seen for that network.
+ *
+ * <p>With a {@link #setLandmarksDirectory(File) landmarks directory}, the landmarks are stored in a
+ * {@link LandmarksFile} there and memory-mapped by later runs on the same network and costs.</p>
+ */
+@Singleton
+public class GraphBidirectionalAStarLandmarksFactory implements LeastCostPathCalculatorFactory {
+	private static final Logger log = Logger.getLogger( GraphBidirectionalAStarLandmarksFactory.class ) ;
+
+	private final PreProcessCache<Network, RoutingGraph> graphs = new PreProcessCache<>();
+	private final PreProcessCache<Network, GraphDirectedLandmarks> preProcessData = new PreProcessCache<>();
+
+	private final int landmarkCount;
+	private volatile File landmarksDirectory = null;
+
+	public GraphBidirectionalAStarLandmarksFactory(final int landmarkCount) {
+		this.landmarkCount = landmarkCount;
+	}
+
+	public GraphBidirectionalAStarLandmarksFactory() {
+		this(16);
+	}
+
+	@Override
+	public LeastCostPathCalculator createPathCalculator(final Network network, final TravelDisutility travelCosts, final TravelTime travelTimes) {
+		RoutingGraph graph = this.graphs.get(network, RoutingGraph::createFromNetwork);
+		GraphDirectedLandmarks landmarks = this.preProcessData.get(network, n -> loadOrCreateLandmarks(graph, travelCosts));
+		return new GraphBidirectionalAStarLandmarks(graph, landmarks, travelCosts, travelTimes);
+	}
+
+	private GraphDirectedLandmarks loadOrCreateLandmarks(final RoutingGraph graph, final TravelDisutility travelCosts) {
+		File file = null;
+		long costFingerprint = 0;
+		if (this.landmarksDirectory != null) {
+			costFingerprint = graph.computeCostFingerprint(travelCosts);
+			file = LandmarksFile.getFile(this.landmarksDirectory, "directed" + this.landmarkCount, graph, costFingerprint);
+			try {
+				GraphDirectedLandmarks landmarks = LandmarksFile.readDirectedLandmarks(file, graph, costFingerprint);
+				if (landmarks != null) {
+					return landmarks;
+				}
+			} catch (IOException e) {
+				log.warn("could not read landmarks from " + file + ", computing them again.", e);
+			}
+		}
+
+		GraphDirectedLandmarks landmarks = GraphDirectedLandmarks.create(graph, travelCosts, this.landmarkCount);
+
+		if (file != null) {
+			try {
+				LandmarksFile.writeLandmarks(file, graph, costFingerprint, landmarks);
+			} catch (IOException e) {
+				log.warn("could not write landmarks to " + file + ".", e);
+			}
+		}
+		return landmarks;
+	}
+
+	/**
+	 * Stores and looks up the landmarks of every network in the given directory;
+	 * <code>null</code> (the default) always computes them.
+	 */
+	public void setLandmarksDirectory(final File landmarksDirectory) {
+		this.landmarksDirectory = landmarksDirectory;
+	}
+}
@@ -0,0 +1,445 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * GraphDijkstra.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Dijkstra's shortest path algorithm on a {@link RoutingGraph}.
+ *
+ * <p>Computes the same least-cost paths as {@link DijkstraRecord}, including the tie-break on the
+ * link id, but keeps the per-node state in flat arrays indexed by node and stamped with the query
+ * number instead of <code>DijkstraNodeData</code> objects in a map. Nothing is allocated per query
+ * except the returned path and, rarely, a larger heap.</p>
+ *
+ * <p>Subclasses turn it into A* by overriding {@link #estimateRemainingTravelCost(int, int)}. The
+ * estimate only has to be admissible: nodes whose cost improves after they were relaxed are
+ * relaxed again.</p>
+ *
+ * <p>{@link #calcLeastCostPaths(Node, List, double, Person, Vehicle)} and
+ * {@link #calcLeastCostPathsTo(List, Node, double, Person, Vehicle)} answer a whole batch of queries
+ * sharing an origin or a destination with one search tree. They never estimate, not even in the A*
+ * subclasses: a search for several targets has no single target to estimate towards.</p>
+ *
+ * <p>Instances are not thread-safe, every routing thread needs its own.</p>
+ *
+ * @see RoutingGraph
+ * @see GraphDijkstraFactory
+ */
+public class GraphDijkstra implements LeastCostPathCalculator {
+	private static final Logger log = Logger.getLogger( GraphDijkstra.class ) ;
+
+	/**
+	 * The target node of the searches for several targets; subclasses must not estimate towards it.
+	 */
+	protected static final int NO_TARGET = -1;
+
+	protected final RoutingGraph graph;
+	protected final TravelDisutility costFunction;
+	protected final TravelTime timeFunction;
+
+	protected Person person = null;
+	protected Vehicle vehicle = null;
+
+	private final RoutingMetrics metrics;
+
+	/* node state, only valid where stamp[n] == iterationId */
+	private final int[] stamp;
+	private final double[] cost;
+	private final double[] time;
+	private final double[] remainingCost;
+	private final int[] prevLink;
+	private int iterationId = 0;
+
+	/* targets of the searches for several targets, valid where targetStamp[n] == iterationId */
+	private int[] targetStamp = null;
+
+	private final LazyNodeHeap pendingNodes;
+
+	private int visitedNodes = 0;
+	private int relaxedLinks = 0;
+	private int queueOperations = 0;
+
+	GraphDijkstra(final RoutingGraph graph, final TravelDisutility costFunction, final TravelTime timeFunction) {
+		this.graph = graph;
+		this.costFunction = costFunction;
+		this.timeFunction = timeFunction;
+		this.metrics = RoutingMetrics.getInstance(getClass().getSimpleName());
+
+		int n = graph.getNodeCount();
+		this.stamp = new int[n];
+		this.cost = new double[n];
+		this.time = new double[n];
+		this.remainingCost = new double[n];
+		this.prevLink = new int[n];
+		this.pendingNodes = new LazyNodeHeap(Math.min(n, 1024));
+	}
+
+	@Override
+	public Path calcLeastCostPath(final Node fromNode, final Node toNode, final double startTime, final Person person, final Vehicle vehicle) {
+		final int from = getNodeIndex(fromNode);
+		final int to = getNodeIndex(toNode);
+		this.person = person;
+		this.vehicle = vehicle;
+		this.visitedNodes = 0;
+		this.relaxedLinks = 0;
+		this.queueOperations = 0;
+
+		long start = System.nanoTime();
+		boolean found = search(from, to, startTime);
+		Path path = found ? constructPath(from, to, startTime) : null;
+		this.metrics.record(this.visitedNodes, this.relaxedLinks, this.queueOperations, System.nanoTime() - start);
+
+		if (!found) {
+			log.warn("No route was found from node " + fromNode.getId() + " to node " + toNode.getId() + ".");
+		}
+		return path;
+	}
+
+	/**
+	 * Calculates the least-cost paths from one node to several nodes with a single search, which
+	 * stops once all of them are settled.
+	 *
+	 * @return The paths in the order of <code>toNodes</code>, <code>null</code> for unreachable ones.
+	 */
+	public List<Path> calcLeastCostPaths(final Node fromNode, final List<Node> toNodes, final double startTime,
+			final Person person, final Vehicle vehicle) {
+		final int from = getNodeIndex(fromNode);
+		final int[] targets = new int[toNodes.size()];
+		for (int i = 0; i < targets.length; i++) {
+			targets[i] = getNodeIndex(toNodes.get(i));
+		}
+		this.person = person;
+		this.vehicle = vehicle;
+		this.visitedNodes = 0;
+		this.relaxedLinks = 0;
+		this.queueOperations = 0;
+
+		long start = System.nanoTime();
+		searchAll(from, targets, startTime);
+		List<Path> paths = new ArrayList<>(targets.length);
+		for (int to : targets) {
+			paths.add(isVisited(to) ? constructPath(from, to, startTime) : null);
+		}
+		this.metrics.record(this.visitedNodes, this.relaxedLinks, this.queueOperations, System.nanoTime() - start);
+		return paths;
+	}
+
+	/**
+	 * Calculates the least-cost paths from several nodes to one node with a single backward search.
+	 * Its link costs are those at <code>startTime</code>, so the paths are least-cost paths if the
+	 * costs do not depend on time, and good approximations otherwise. Travel time and cost of every
+	 * returned path are evaluated forward from <code>startTime</code>, like those of
+	 * {@link #calcLeastCostPath(Node, Node, double, Person, Vehicle)}.
+	 *
+	 * @return The paths in the order of <code>fromNodes</code>, <code>null</code> for those that
+	 * cannot reach <code>toNode</code>.
+	 */
+	public List<Path> calcLeastCostPathsTo(final List<Node> fromNodes, final Node toNode, final double startTime,
+			final Person person, final Vehicle vehicle) {
+		final int to = getNodeIndex(toNode);
+		final int[] sources = new int[fromNodes.size()];
+		for (int i = 0; i < sources.length; i++) {
+			sources[i] = getNodeIndex(fromNodes.get(i));
+		}
+		this.person = person;
+		this.vehicle = vehicle;
+		this.visitedNodes = 0;
+		this.relaxedLinks = 0;
+		this.queueOperations = 0;
+
+		long start = System.nanoTime();
+		searchAllBackward(to, sources, startTime);
+		List<Path> paths = new ArrayList<>(sources.length);
+		for (int from : sources) {
+			paths.add(isVisited(from) ? constructForwardPath(from, to, startTime) : null);
+		}
+		this.metrics.record(this.visitedNodes, this.relaxedLinks, this.queueOperations, System.nanoTime() - start);
+		return paths;
+	}
+
+	/*package*/ final int getNodeIndex(final Node node) {
+		int index = this.graph.getNodeIndex(node.getId());
+		if (index < 0) {
+			throw new IllegalArgumentException("node " + node.getId() + " is not part of the routing graph");
+		}
+		return index;
+	}
+
+	/**
+	 * Runs the search from <code>from</code> until <code>to</code> is settled or no node is left.
+	 *
+	 * @return Whether <code>to</code> could be reached.
+	 */
+	/*package*/ boolean search(final int from, final int to, final double startTime) {
+		augmentIterationId();
+		this.pendingNodes.clear();
+		initQuery(from, to);
+		visitNode(from, startTime, 0, -1, estimateRemainingTravelCost(from, to));
+
+		while (!this.pendingNodes.isEmpty()) {
+			final double key = this.pendingNodes.peekKey();
+			final int node = this.pendingNodes.poll();
+			this.queueOperations++;
+			if (key > this.cost[node] + this.remainingCost[node]) {
+				// outdated entry, the node was added again with a better cost
+				continue;
+			}
+			if (node == to) {
+				return true;
+			}
+			relaxNode(node, to);
+		}
+		return false;
+	}
+
+	/**
+	 * Runs the search from <code>from</code> without estimates until all <code>targets</code> are
+	 * settled or no node is left.
+	 */
+	/*package*/ void searchAll(final int from, final int[] targets, final double startTime) {
+		augmentIterationId();
+		this.pendingNodes.clear();
+		int remaining = markTargets(targets);
+		visitNode(from, startTime, 0, -1, 0);
+
+		while (!this.pendingNodes.isEmpty() && remaining > 0) {
+			final double key = this.pendingNodes.peekKey();
+			final int node = this.pendingNodes.poll();
+			this.queueOperations++;
+			if (key > this.cost[node]) {
+				continue;
+			}
+			if (this.targetStamp[node] == this.iterationId) {
+				// settled, later entries of the node must not count it again
+				this.targetStamp[node] = 0;
+				remaining--;
+			}
+			relaxNode(node, NO_TARGET);
+		}
+	}
+
+	/**
+	 * Runs the search backward from <code>to</code> over in-links until all <code>sources</code> are
+	 * settled or no node is left. The predecessor link of a node is then the first link of its path
+	 * to <code>to</code>, and its time stays at <code>startTime</code>.
+	 */
+	private void searchAllBackward(final int to, final int[] sources, final double startTime) {
+		augmentIterationId();
+		this.pendingNodes.clear();
+		int remaining = markTargets(sources);
+		visitNode(to, startTime, 0, -1, 0);
+
+		while (!this.pendingNodes.isEmpty() && remaining > 0) {
+			final double key = this.pendingNodes.peekKey();
+			final int node = this.pendingNodes.poll();
+			this.queueOperations++;
+			if (key > this.cost[node]) {
+				continue;
+			}
+			if (this.targetStamp[node] == this.iterationId) {
+				this.targetStamp[node] = 0;
+				remaining--;
+			}
+			for (int i = this.graph.getInStart(node), end = this.graph.getInEnd(node); i < end; i++) {
+				final int l = this.graph.getInLink(i);
+				final int n = this.graph.getFromNode(l);
+				this.relaxedLinks++;
+				final double totalCost = key + this.costFunction.getLinkTravelDisutility(this.graph.getLink(l), startTime,
+						this.person, this.vehicle);
+				if (this.stamp[n] != this.iterationId) {
+					visitNode(n, startTime, totalCost, l, 0);
+				} else if (totalCost < this.cost[n]) {
+					revisitNode(n, startTime, totalCost, l);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return The number of distinct targets.
+	 */
+	private int markTargets(final int[] targets) {
+		if (this.targetStamp == null) {
+			this.targetStamp = new int[this.stamp.length];
+		}
+		int count = 0;
+		for (int target : targets) {
+			if (this.targetStamp[target] != this.iterationId) {
+				this.targetStamp[target] = this.iterationId;
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Called once per query before the start node is visited.
+	 */
+	protected void initQuery(final int from, final int to) {
+	}
+
+	/**
+	 * Expands all out-links of the given node.
+	 */
+	protected void relaxNode(final int node, final int to) {
+		final double currTime = this.time[node];
+		final double currCost = this.cost[node];
+		for (int l = this.graph.getOutStart(node), end = this.graph.getOutEnd(node); l < end; l++) {
+			relaxLink(l, currTime, currCost, to);
+		}
+	}
+
+	/*package*/ final void relaxLink(final int l, final double currTime, final double currCost, final int to) {
+		this.relaxedLinks++;
+		final Link link = this.graph.getLink(l);
+		final int n = this.graph.getToNode(l);
+		final double travelTime = this.timeFunction.getLinkTravelTime(link, currTime, this.person, this.vehicle);
+		final double travelCost = this.costFunction.getLinkTravelDisutility(link, currTime, this.person, this.vehicle);
+		final double totalCost = currCost + travelCost;
+
+		if (this.stamp[n] != this.iterationId) {
+			visitNode(n, currTime + travelTime, totalCost, l, to == NO_TARGET ? 0 : estimateRemainingTravelCost(n, to));
+		} else if (totalCost < this.cost[n]) {
+			revisitNode(n, currTime + travelTime, totalCost, l);
+		} else if (totalCost == this.cost[n] && this.prevLink[n] >= 0) {
+			// Same special case as in Dijkstra: decide on the link id to stay deterministic.
+			if (this.graph.getLinkId(this.prevLink[n]).compareTo(this.graph.getLinkId(l)) > 0) {
+				revisitNode(n, currTime + travelTime, totalCost, l);
+			}
+		}
+	}
+
+	private void visitNode(final int n, final double time, final double cost, final int link, final double remainingCost) {
+		this.stamp[n] = this.iterationId;
+		this.time[n] = time;
+		this.cost[n] = cost;
+		this.prevLink[n] = link;
+		this.remainingCost[n] = remainingCost;
+		this.pendingNodes.add(n, cost + remainingCost);
+		this.visitedNodes++;
+		this.queueOperations++;
+	}
+
+	private void revisitNode(final int n, final double time, final double cost, final int link) {
+		this.time[n] = time;
+		this.cost[n] = cost;
+		this.prevLink[n] = link;
+		this.pendingNodes.add(n, cost + this.remainingCost[n]);
+		this.queueOperations++;
+	}
+
+	/**
+	 * Estimates the remaining travel cost from <code>node</code> to <code>to</code>. Dijkstra does not
+	 * estimate and returns 0.
+	 */
+	protected double estimateRemainingTravelCost(final int node, final int to) {
+		return 0;
+	}
+
+	private void augmentIterationId() {
+		if (this.iterationId == Integer.MAX_VALUE) {
+			Arrays.fill(this.stamp, 0);
+			if (this.targetStamp != null) {
+				Arrays.fill(this.targetStamp, 0);
+			}
+			this.iterationId = 0;
+		}
+		this.iterationId++;
+	}
+
+	/*package*/ final boolean isVisited(final int node) {
+		return this.stamp[node] == this.iterationId;
+	}
+
+	/*package*/ final double getCost(final int node) {
+		return this.cost[node];
+	}
+
+	/*package*/ final double getTime(final int node) {
+		return this.time[node];
+	}
+
+	/*package*/ final int getPrevLink(final int node) {
+		return this.prevLink[node];
+	}
+
+	/**
+	 * Builds the path to <code>to</code> from the predecessor links of the last search.
+	 */
+	/*package*/ Path constructPath(final int from, final int to, final double startTime) {
+		List<Node> nodes = new ArrayList<>();
+		List<Link> links = new ArrayList<>();
+		nodes.add(this.graph.getNode(to));
+		int node = to;
+		while (node != from) {
+			int l = this.prevLink[node];
+			links.add(this.graph.getLink(l));
+			node = this.graph.getFromNode(l);
+			nodes.add(this.graph.getNode(node));
+		}
+		Collections.reverse(nodes);
+		Collections.reverse(links);
+		return new Path(nodes, links, this.time[to] - startTime, this.cost[to]);
+	}
+
+	/**
+	 * Builds the path from <code>from</code> to <code>to</code> from the links of the last backward
+	 * search, evaluating travel times and costs link by link from <code>startTime</code>.
+	 */
+	private Path constructForwardPath(final int from, final int to, final double startTime) {
+		List<Node> nodes = new ArrayList<>();
+		List<Link> links = new ArrayList<>();
+		nodes.add(this.graph.getNode(from));
+		double currTime = startTime;
+		double travelCost = 0;
+		int node = from;
+		while (node != to) {
+			int l = this.prevLink[node];
+			Link link = this.graph.getLink(l);
+			travelCost += this.costFunction.getLinkTravelDisutility(link, currTime, this.person, this.vehicle);
+			currTime += this.timeFunction.getLinkTravelTime(link, currTime, this.person, this.vehicle);
+			links.add(link);
+			node = this.graph.getToNode(l);
+			nodes.add(this.graph.getNode(node));
+		}
+		return new Path(nodes, links, currTime - startTime, travelCost);
+	}
+
+	/**
+	 * @return The number of nodes visited while calculating the last path.
+	 */
+	public int getVisitedNodes() {
+		return this.visitedNodes;
+	}
+}
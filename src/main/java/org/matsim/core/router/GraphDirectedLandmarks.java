@@ -0,0 +1,246 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * GraphDirectedLandmarks.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+import org.matsim.core.router.util.TravelDisutility;
+
+/**
+ * Landmark distances of a {@link RoutingGraph} that keep their direction: the least cost from every
+ * node to each landmark and from each landmark to every node, indexed by
+ * <code>node * landmarkCount + landmark</code>.
+ *
+ * <p><code>PreProcessLandmarks</code> only keeps the minimum and maximum of the two, which gives an
+ * admissible estimate, but not a consistent one when link costs differ by direction. The estimates
+ * here follow from the triangle inequality in each direction and are consistent on any network,
+ * which {@link GraphBidirectionalAStarLandmarks} needs.</p>
+ *
+ * <p>Landmarks are chosen greedily, each one the node farthest (in the sum of both directions) from
+ * all landmarks chosen before. Nodes that cannot reach a landmark or cannot be reached from it get an
+ * infinite distance and that landmark gives no estimate for them.</p>
+ *
+ * <p>The tables are <code>DoubleBuffer</code>s, either wrapping arrays or memory-mapped from a
+ * {@link LandmarksFile}.</p>
+ */
+public final class GraphDirectedLandmarks {
+
+	private final int[] landmarks;
+	private final DoubleBuffer toLandmark;
+	private final DoubleBuffer fromLandmark;
+
+	/*package*/ GraphDirectedLandmarks(final int[] landmarks, final double[] toLandmark, final double[] fromLandmark) {
+		this(landmarks, DoubleBuffer.wrap(toLandmark), DoubleBuffer.wrap(fromLandmark));
+	}
+
+	/*package*/ GraphDirectedLandmarks(final int[] landmarks, final DoubleBuffer toLandmark, final DoubleBuffer fromLandmark) {
+		this.landmarks = landmarks;
+		this.toLandmark = toLandmark;
+		this.fromLandmark = fromLandmark;
+	}
+
+	/**
+	 * Chooses the landmarks and computes their distances, using the minimal travel disutility of every
+	 * link as its cost.
+	 */
+	public static GraphDirectedLandmarks create(final RoutingGraph graph, final TravelDisutility costFunction, final int landmarkCount) {
+		return create(graph, computeMinimumWeights(graph, costFunction), landmarkCount);
+	}
+
+	/**
+	 * Chooses the landmarks and computes their distances with the given cost of every link, indexed
+	 * like the links of the graph.
+	 */
+	public static GraphDirectedLandmarks create(final RoutingGraph graph, final double[] weights, final int landmarkCount) {
+		final int n = graph.getNodeCount();
+		final int count = Math.min(landmarkCount, n);
+		final int[] landmarks = new int[count];
+		final double[] toLandmark = new double[n * count];
+		final double[] fromLandmark = new double[n * count];
+		final LazyNodeHeap heap = new LazyNodeHeap(Math.min(n, 1024));
+		final double[] forward = new double[n];
+		final double[] backward = new double[n];
+		final double[] separation = new double[n];
+		Arrays.fill(separation, Double.POSITIVE_INFINITY);
+
+		// the first landmark is the node farthest from an arbitrary node
+		int next = farthest(graph, weights, 0, forward, heap);
+		for (int i = 0; i < count; i++) {
+			landmarks[i] = next;
+			leastCosts(graph, weights, next, true, forward, heap);
+			leastCosts(graph, weights, next, false, backward, heap);
+			next = -1;
+			for (int v = 0; v < n; v++) {
+				fromLandmark[v * count + i] = forward[v];
+				toLandmark[v * count + i] = backward[v];
+				separation[v] = Math.min(separation[v], forward[v] + backward[v]);
+				if (Double.isFinite(separation[v]) && (next < 0 || separation[v] > separation[next])) {
+					next = v;
+				}
+			}
+			if (next < 0 || separation[next] == 0) {
+				// fewer nodes reachable than landmarks requested
+				return new GraphDirectedLandmarks(Arrays.copyOf(landmarks, i + 1),
+						truncate(toLandmark, n, count, i + 1), truncate(fromLandmark, n, count, i + 1));
+			}
+		}
+		return new GraphDirectedLandmarks(landmarks, toLandmark, fromLandmark);
+	}
+
+	/**
+	 * Computes the distances of the given landmarks with the given cost of every link, without
+	 * choosing them again. This is how the landmarks are updated when only the link costs changed.
+	 */
+	public static GraphDirectedLandmarks create(final RoutingGraph graph, final double[] weights, final int[] landmarks) {
+		final int n = graph.getNodeCount();
+		final int count = landmarks.length;
+		final double[] toLandmark = new double[n * count];
+		final double[] fromLandmark = new double[n * count];
+		final LazyNodeHeap heap = new LazyNodeHeap(Math.min(n, 1024));
+		final double[] dist = new double[n];
+		for (int i = 0; i < count; i++) {
+			leastCosts(graph, weights, landmarks[i], true, dist, heap);
+			for (int v = 0; v < n; v++) {
+				fromLandmark[v * count + i] = dist[v];
+			}
+			leastCosts(graph, weights, landmarks[i], false, dist, heap);
+			for (int v = 0; v < n; v++) {
+				toLandmark[v * count + i] = dist[v];
+			}
+		}
+		return new GraphDirectedLandmarks(landmarks.clone(), toLandmark, fromLandmark);
+	}
+
+	/**
+	 * @return The minimal travel disutility of every link, indexed like the links of the graph.
+	 */
+	/*package*/ static double[] computeMinimumWeights(final RoutingGraph graph, final TravelDisutility costFunction) {
+		final double[] weights = new double[graph.getLinkCount()];
+		for (int l = 0; l < weights.length; l++) {
+			weights[l] = costFunction.getLinkMinimumTravelDisutility(graph.getLink(l));
+		}
+		return weights;
+	}
+
+	private static int farthest(final RoutingGraph graph, final double[] weights, final int source, final double[] dist, final LazyNodeHeap heap) {
+		leastCosts(graph, weights, source, true, dist, heap);
+		int farthest = source;
+		for (int v = 0; v < dist.length; v++) {
+			if (Double.isFinite(dist[v]) && dist[v] > dist[farthest]) {
+				farthest = v;
+			}
+		}
+		return farthest;
+	}
+
+	/**
+	 * Dijkstra from <code>source</code> over out-links, or over in-links if not <code>forward</code>.
+	 */
+	private static void leastCosts(final RoutingGraph graph, final double[] weights, final int source, final boolean forward,
+			final double[] dist, final LazyNodeHeap heap) {
+		Arrays.fill(dist, Double.POSITIVE_INFINITY);
+		heap.clear();
+		dist[source] = 0;
+		heap.add(source, 0);
+		while (!heap.isEmpty()) {
+			final double key = heap.peekKey();
+			final int node = heap.poll();
+			if (key > dist[node]) {
+				continue;
+			}
+			if (forward) {
+				for (int l = graph.getOutStart(node), end = graph.getOutEnd(node); l < end; l++) {
+					final int m = graph.getToNode(l);
+					if (key + weights[l] < dist[m]) {
+						dist[m] = key + weights[l];
+						heap.add(m, dist[m]);
+					}
+				}
+			} else {
+				for (int i = graph.getInStart(node), end = graph.getInEnd(node); i < end; i++) {
+					final int l = graph.getInLink(i);
+					final int m = graph.getFromNode(l);
+					if (key + weights[l] < dist[m]) {
+						dist[m] = key + weights[l];
+						heap.add(m, dist[m]);
+					}
+				}
+			}
+		}
+	}
+
+	private static double[] truncate(final double[] values, final int nodeCount, final int count, final int newCount) {
+		double[] truncated = new double[nodeCount * newCount];
+		for (int v = 0; v < nodeCount; v++) {
+			System.arraycopy(values, v * count, truncated, v * newCount, newCount);
+		}
+		return truncated;
+	}
+
+	public int getLandmarkCount() {
+		return this.landmarks.length;
+	}
+
+	/**
+	 * @return The node index of the given landmark.
+	 */
+	public int getLandmark(final int landmark) {
+		return this.landmarks[landmark];
+	}
+
+	public double getCostToLandmark(final int node, final int landmark) {
+		return this.toLandmark.get(node * this.landmarks.length + landmark);
+	}
+
+	public double getCostFromLandmark(final int node, final int landmark) {
+		return this.fromLandmark.get(node * this.landmarks.length + landmark);
+	}
+
+	/*package*/ DoubleBuffer getCostsToLandmarks() {
+		return this.toLandmark.duplicate();
+	}
+
+	/*package*/ DoubleBuffer getCostsFromLandmarks() {
+		return this.fromLandmark.duplicate();
+	}
+
+	/**
+	 * Estimates the least cost from <code>from</code> to <code>to</code> using one landmark.
+	 */
+	public double estimateTravelCost(final int from, final int to, final int landmark) {
+		final int count = this.landmarks.length;
+		final int fromSlot = from * count + landmark;
+		final int toSlot = to * count + landmark;
+		double estimate = 0;
+		// d(from, to) >= d(from, L) - d(to, L)
+		final double targetToLandmark = this.toLandmark.get(toSlot);
+		if (targetToLandmark != Double.POSITIVE_INFINITY) {
+			estimate = this.toLandmark.get(fromSlot) - targetToLandmark;
+		}
+		// d(from, to) >= d(L, to) - d(L, from)
+		final double landmarkToStart = this.fromLandmark.get(fromSlot);
+		if (landmarkToStart != Double.POSITIVE_INFINITY) {
+			estimate = Math.max(estimate, this.fromLandmark.get(toSlot) - landmarkToStart);
+		}
+		return estimate == Double.POSITIVE_INFINITY ? 0 : Math.max(estimate, 0);
+	}
+}
@@ -0,0 +1,153 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * GraphLandmarks.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.nio.DoubleBuffer;
+
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.router.util.PreProcessLandmarks;
+
+/**
+ * The landmark travel times of <code>PreProcessLandmarks</code>, flattened into two tables indexed
+ * by <code>node * landmarkCount + landmark</code>, so that estimating a remaining travel cost reads
+ * neighbouring slots instead of chasing <code>LandmarksData</code> objects.
+ *
+ * <p>The tables are <code>DoubleBuffer</code>s, either wrapping arrays or memory-mapped from a
+ * {@link LandmarksFile}.</p>
+ */
+public final class GraphLandmarks {
+
+	private final int[] landmarks;
+	private final DoubleBuffer minTravelTimes;
+	private final DoubleBuffer maxTravelTimes;
+	private final double minTravelCostPerLength;
+
+	/*package*/ GraphLandmarks(final int[] landmarks, final double[] minTravelTimes, final double[] maxTravelTimes,
+			final double minTravelCostPerLength) {
+		this(landmarks, DoubleBuffer.wrap(minTravelTimes), DoubleBuffer.wrap(maxTravelTimes), minTravelCostPerLength);
+	}
+
+	/*package*/ GraphLandmarks(final int[] landmarks, final DoubleBuffer minTravelTimes, final DoubleBuffer maxTravelTimes,
+			final double minTravelCostPerLength) {
+		this.landmarks = landmarks;
+		this.minTravelTimes = minTravelTimes;
+		this.maxTravelTimes = maxTravelTimes;
+		this.minTravelCostPerLength = minTravelCostPerLength;
+	}
+
+	/**
+	 * Copies the landmark data of an already run <code>PreProcessLandmarks</code>.
+	 */
+	public static GraphLandmarks createFromPreProcessData(final RoutingGraph graph, final PreProcessLandmarks preProcessData) {
+		Node[] landmarkNodes = preProcessData.getLandmarks();
+		int landmarkCount = landmarkNodes.length;
+		int[] landmarks = new int[landmarkCount];
+		for (int i = 0; i < landmarkCount; i++) {
+			landmarks[i] = graph.getNodeIndex(landmarkNodes[i].getId());
+		}
+		double[] min = new double[graph.getNodeCount() * landmarkCount];
+		double[] max = new double[graph.getNodeCount() * landmarkCount];
+		for (int n = 0; n < graph.getNodeCount(); n++) {
+			PreProcessLandmarks.LandmarksData data = (PreProcessLandmarks.LandmarksData) preProcessData.getNodeData(graph.getNode(n));
+			for (int i = 0; i < landmarkCount; i++) {
+				min[n * landmarkCount + i] = data.getMinLandmarkTravelTime(i);
+				max[n * landmarkCount + i] = data.getMaxLandmarkTravelTime(i);
+			}
+		}
+		return new GraphLandmarks(landmarks, min, max, preProcessData.getMinTravelCostPerLength());
+	}
+
+	/**
+	 * Keeps the minimum and maximum of the two directions of every directed landmark distance, like
+	 * <code>PreProcessLandmarks</code> does.
+	 */
+	public static GraphLandmarks createFromDirected(final RoutingGraph graph, final GraphDirectedLandmarks directed,
+			final double minTravelCostPerLength) {
+		int landmarkCount = directed.getLandmarkCount();
+		int[] landmarks = new int[landmarkCount];
+		for (int i = 0; i < landmarkCount; i++) {
+			landmarks[i] = directed.getLandmark(i);
+		}
+		double[] min = new double[graph.getNodeCount() * landmarkCount];
+		double[] max = new double[graph.getNodeCount() * landmarkCount];
+		for (int n = 0; n < graph.getNodeCount(); n++) {
+			for (int i = 0; i < landmarkCount; i++) {
+				double to = directed.getCostToLandmark(n, i);
+				double from = directed.getCostFromLandmark(n, i);
+				min[n * landmarkCount + i] = Math.min(to, from);
+				max[n * landmarkCount + i] = Math.max(to, from);
+			}
+		}
+		return new GraphLandmarks(landmarks, min, max, minTravelCostPerLength);
+	}
+
+	public int getLandmarkCount() {
+		return this.landmarks.length;
+	}
+
+	/**
+	 * @return The node index of the given landmark.
+	 */
+	public int getLandmark(final int landmark) {
+		return this.landmarks[landmark];
+	}
+
+	public double getMinTravelTime(final int node, final int landmark) {
+		return this.minTravelTimes.get(node * this.landmarks.length + landmark);
+	}
+
+	public double getMaxTravelTime(final int node, final int landmark) {
+		return this.maxTravelTimes.get(node * this.landmarks.length + landmark);
+	}
+
+	/**
+	 * @return The minimal travel cost per length unit of all links, for the euclidean estimate.
+	 */
+	public double getMinTravelCostPerLength() {
+		return this.minTravelCostPerLength;
+	}
+
+	/*package*/ DoubleBuffer getMinTravelTimes() {
+		return this.minTravelTimes.duplicate();
+	}
+
+	/*package*/ DoubleBuffer getMaxTravelTimes() {
+		return this.maxTravelTimes.duplicate();
+	}
+
+	/**
+	 * Estimates the remaining travel cost from <code>from</code> to <code>to</code> using one landmark,
+	 * exactly like <code>AStarLandmarksProtected</code> does (without the overdo factor).
+	 */
+	public double estimateRemainingTravelCost(final int from, final int to, final int landmark) {
+		final int count = this.landmarks.length;
+		final int fromSlot = from * count + landmark;
+		final int toSlot = to * count + landmark;
+		double travelTime = this.minTravelTimes.get(fromSlot) - this.maxTravelTimes.get(toSlot);
+		if (travelTime < 0) {
+			travelTime = this.minTravelTimes.get(toSlot) - this.maxTravelTimes.get(fromSlot);
+			if (travelTime <= 0) {
+				return 0;
+			}
+		}
+		return travelTime;
+	}
+}
@@ -0,0 +1,606 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * LandmarkOptimizer.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.router;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.Random;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+
+/**
+ * Chooses the landmarks of {@link GraphAStarLandmarks} for the queries the population actually asks,
+ * and tunes how many landmarks a query starts with and how often it checks for a better one.
+ *
+ * <p>The queries are sampled from the trips between consecutive activities of the selected plans.
+ * Twice as many candidates as landmarks are generated in the style of Goldberg and Werneck's
+ * <em>avoid</em>: grow a least-cost tree from a sampled origin or destination, weigh every node by
+ * how much the candidates so far underestimate its cost, and take the leaf at the end of the heaviest
+ * branch that does not contain a candidate yet. Out of these, <em>maxCover</em> greedily picks the
+ * landmarks with the largest sum of lower bounds over the sampled queries, and then swaps landmarks
+ * with left-over candidates as long as the sum grows.</p>
+ *
+ * <p>Finally, a few sampled queries are routed with every combination of
+ * {@link #INITIAL_ACTIVE_LANDMARKS} and {@link #CONTROL_INTERVALS}; the combination that visits the
+ * fewest nodes wins, where combinations within {@link #TOLERANCE} of it count as equal and the one
+ * with fewer initial landmarks and a longer interval is preferred, since it does less work per
+ * visited node. These queries show up in the routing metrics of <code>GraphAStarLandmarks</code>.</p>
+ *
+ * <p>{@link #loadOrOptimize(Population, File)} stores the result in a properties file, so later runs
+ * on the same network and minimal link costs only compute the landmark distances again.</p>
+ */
+public final class LandmarkOptimizer {
+	private static final Logger log = Logger.getLogger( LandmarkOptimizer.class ) ;
+
+	public static final int DEFAULT_LANDMARK_COUNT = 16;
+	public static final int DEFAULT_SAMPLE_SIZE = 2000;
+	public static final int DEFAULT_TUNING_QUERIES = 100;
+
+	/*package*/ static final int[] INITIAL_ACTIVE_LANDMARKS = { 1, 2, 3, 4, 6 };
+	/*package*/ static final int[] CONTROL_INTERVALS = { 10, 20, 40, 80, 160 };
+	/*package*/ static final double TOLERANCE = 0.02;
+
+	private static final int CANDIDATES_PER_LANDMARK = 2;
+	private static final int MAX_SWAP_ROUNDS = 10;
+
+	private final Network network;
+	private final RoutingGraph graph;
+	private final TravelDisutility costFunction;
+	private final TravelTime timeFunction;
+
+	private int landmarkCount = DEFAULT_LANDMARK_COUNT;
+	private int sampleSize = DEFAULT_SAMPLE_SIZE;
+	private int tuningQueries = DEFAULT_TUNING_QUERIES;
+	private long seed = 4711;
+
+	public LandmarkOptimizer(final Network network, final RoutingGraph graph, final TravelDisutility costFunction,
+			final TravelTime timeFunction) {
+		this.network = network;
+		this.graph = graph;
+		this.costFunction = costFunction;
+		this.timeFunction = timeFunction;
+	}
+
+	public void setLandmarkCount(final int landmarkCount) {
+		this.landmarkCount = landmarkCount;
+	}
+
+	/**
+	 * Sets how many queries are sampled from the plans for choosing the landmarks.
+	 */
+	public void setSampleSize(final int sampleSize) {
+		this.sampleSize = sampleSize;
+	}
+
+	/**
+	 * Sets how many of the sampled queries are routed with every combination of control parameters.
+	 */
+	public void setTuningQueries(final int tuningQueries) {
+		this.tuningQueries = tuningQueries;
+	}
+
+	public void setSeed(final long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Reads the landmarks and control parameters from the given file if it was written for this
+	 * network and these minimal link costs; otherwise optimizes them for the population and writes
+	 * the file. With <code>null</code> as file, this is the same as {@link #optimize(Population)}.
+	 */
+	public Result loadOrOptimize(final Population population, final File file) {
+		if (file == null) {
+			return optimize(population);
+		}
+		final double[] weights = GraphDirectedLandmarks.computeMinimumWeights(this.graph, this.costFunction);
+		final long networkHash = this.graph.computeContentHash();
+		final long costFingerprint = this.graph.computeCostFingerprint(this.costFunction);
+		if (file.exists()) {
+			try {
+				Result result = read(file, weights, networkHash, costFingerprint);
+				if (result != null) {
+					log.info("read landmarks and control parameters from " + file + ".");
+					return result;
+				}
+				log.info("landmarks in " + file + " were optimized for another network or other costs, optimizing them again.");
+			} catch (IOException | RuntimeException e) {
+				log.warn("could not read landmarks from " + file + ", optimizing them again.", e);
+			}
+		}
+		Queries queries = sampleQueries(population);
+		Result result = optimize(queries, weights);
+		if (queries.size > 0) {
+			try {
+				write(file, result, networkHash, costFingerprint, queries.size);
+			} catch (IOException e) {
+				log.warn("could not write landmarks to " + file + ".", e);
+			}
+		}
+		return result;
+	}
+
+	public Result optimize(final Population population) {
+		return optimize(sampleQueries(population), GraphDirectedLandmarks.computeMinimumWeights(this.graph, this.costFunction));
+	}
+
+	private Result optimize(final Queries queries, final double[] weights) {
+		final double minTravelCostPerLength = computeMinTravelCostPerLength(weights);
+		if (queries.size == 0) {
+			log.warn("no trips between activities on the network found, using the default landmarks.");
+			GraphLandmarks landmarks = GraphLandmarks.createFromDirected(this.graph,
+					GraphDirectedLandmarks.create(this.graph, weights, this.landmarkCount), minTravelCostPerLength);
+			return new Result(landmarks, GraphAStarLandmarks.DEFAULT_INITIAL_ACTIVE_LANDMARKS,
+					GraphAStarLandmarks.DEFAULT_CONTROL_INTERVAL, Double.NaN);
+		}
+		long start = System.currentTimeMillis();
+		int[] chosen = selectLandmarks(queries, weights, minTravelCostPerLength);
+		GraphLandmarks landmarks = GraphLandmarks.createFromDirected(this.graph,
+				GraphDirectedLandmarks.create(this.graph, weights, chosen), minTravelCostPerLength);
+		Result result = tune(landmarks, queries);
+		log.info("optimized " + chosen.length + " landmarks for " + queries.size + " sampled queries in "
+				+ (System.currentTimeMillis() - start) + " ms: starting with " + result.initialActiveLandmarks
+				+ " landmarks and checking every " + result.controlInterval + " nodes visits "
+				+ result.meanVisitedNodes + " nodes per query.");
+		return result;
+	}
+
+	/**
+	 * Samples up to {@link #setSampleSize(int) sample size} trips between consecutive activities of
+	 * the selected plans, from the end of the link of the first activity to the start of the link of
+	 * the second one, like the routers are asked.
+	 */
+	/*package*/ Queries sampleQueries(final Population population) {
+		final Random random = new Random(this.seed);
+		final Queries queries = new Queries(this.sampleSize);
+		long seen = 0;
+		for (Person person : population.getPersons().values()) {
+			Plan plan = person.getSelectedPlan();
+			if (plan == null) {
+				continue;
+			}
+			Activity previous = null;
+			for (PlanElement element : plan.getPlanElements()) {
+				if (!(element instanceof Activity)) {
+					continue;
+				}
+				Activity activity = (Activity) element;
+				if (previous != null) {
+					int from = getNode(previous.getLinkId(), true);
+					int to = getNode(activity.getLinkId(), false);
+					if (from >= 0 && to >= 0 && from != to) {
+						double time = Double.isFinite(previous.getEndTime()) ? previous.getEndTime() : 0;
+						// reservoir sampling keeps every trip with the same probability
+						long slot = seen < queries.from.length ? seen : (long) (random.nextDouble() * (seen + 1));
+						if (slot < queries.from.length) {
+							queries.from[(int) slot] = from;
+							queries.to[(int) slot] = to;
+							queries.time[(int) slot] = time;
+						}
+						seen++;
+					}
+				}
+				previous = activity;
+			}
+		}
+		queries.size = (int) Math.min(seen, queries.from.length);
+		return queries;
+	}
+
+	private int getNode(final Id<Link> linkId, final boolean toNode) {
+		Link link = linkId == null ? null : this.network.getLinks().get(linkId);
+		if (link == null) {
+			return -1;
+		}
+		return this.graph.getNodeIndex(toNode ? link.getToNode().getId() : link.getFromNode().getId());
+	}
+
+	/**
+	 * Generates candidates with avoid and picks the landmarks out of them with maxCover.
+	 *
+	 * @return The node indices of the landmarks.
+	 */
+	/*package*/ int[] selectLandmarks(final Queries queries, final double[] weights, final double minTravelCostPerLength) {
+		final int n = this.graph.getNodeCount();
+		final int candidateCount = Math.min(n, this.landmarkCount * CANDIDATES_PER_LANDMARK);
+		final Random random = new Random(this.seed);
+
+		// min and max of both directions per node and candidate, like GraphLandmarks, but as floats
+		final float[] min = new float[n * candidateCount];
+		final float[] max = new float[n * candidateCount];
+		final boolean[] isCandidate = new boolean[n];
+		int[] candidates = new int[candidateCount];
+		int count = 0;
+
+		final double[] dist = new double[n];
+		final int[] parentLink = new int[n];
+		final int[] order = new int[n];
+		final double[] size = new double[n];
+		final boolean[] covered = new boolean[n];
+		final LazyNodeHeap heap = new LazyNodeHeap(Math.min(n, 1024));
+
+		while (count < candidateCount) {
+			int q = random.nextInt(queries.size);
+			int root = random.nextBoolean() ? queries.from[q] : queries.to[q];
+			int settled = growTree(root, weights, dist, parentLink, order, heap);
+
+			// weigh every node by how much the current candidates underestimate its cost from the root,
+			// and sum the weights up the tree, where subtrees with a candidate count nothing
+			for (int i = 0; i < settled; i++) {
+				int v = order[i];
+				double bound = estimateEuclidean(root, v, minTravelCostPerLength);
+				for (int c = 0; c < count; c++) {
+					bound = Math.max(bound, estimate(min, max, candidateCount, root, v, c));
+				}
+				size[v] = Math.max(0, dist[v] - bound);
+				covered[v] = isCandidate[v];
+			}
+			for (int i = settled - 1; i > 0; i--) {
+				int v = order[i];
+				int parent = this.graph.getFromNode(parentLink[v]);
+				if (covered[v]) {
+					size[v] = 0;
+					covered[parent] = true;
+				}
+				size[parent] += size[v];
+			}
+
+			// follow the heaviest branch down to a leaf
+			int leaf = root;
+			while (true) {
+				int next = -1;
+				for (int l = this.graph.getOutStart(leaf), end = this.graph.getOutEnd(leaf); l < end; l++) {
+					int m = this.graph.getToNode(l);
+					if (m != root && parentLink[m] == l && Double.isFinite(dist[m]) && size[m] > 0
+							&& (next < 0 || size[m] > size[next])) {
+						next = m;
+					}
+				}
+				if (next < 0) {
+					break;
+				}
+				leaf = next;
+			}
+			if (leaf == root || isCandidate[leaf]) {
+				// the candidates already cover this tree: take its farthest node that is none yet
+				leaf = -1;
+				for (int i = 0; i < settled; i++) {
+					int v = order[i];
+					if (!isCandidate[v] && (leaf < 0 || dist[v] > dist[leaf])) {
+						leaf = v;
+					}
+				}
+				if (leaf < 0) {
+					break;
+				}
+			}
+
+			isCandidate[leaf] = true;
+			GraphDirectedLandmarks directed = GraphDirectedLandmarks.create(this.graph, weights, new int[] { leaf });
+			for (int v = 0; v < n; v++) {
+				double to = directed.getCostToLandmark(v, 0);
+				double from = directed.getCostFromLandmark(v, 0);
+				min[v * candidateCount + count] = (float) Math.min(to, from);
+				max[v * candidateCount + count] = (float) Math.max(to, from);
+			}
+			candidates[count++] = leaf;
+		}
+		candidates = Arrays.copyOf(candidates, count);
+		return maxCover(queries, candidates, min, max, candidateCount, minTravelCostPerLength);
+	}
+
+	private int[] maxCover(final Queries queries, final int[] candidates, final float[] min, final float[] max,
+			final int stride, final double minTravelCostPerLength) {
+		final int k = Math.min(this.landmarkCount, candidates.length);
+		final int p = queries.size;
+		final double[][] bounds = new double[candidates.length][p];
+		final double[] euclidean = new double[p];
+		for (int q = 0; q < p; q++) {
+			euclidean[q] = estimateEuclidean(queries.from[q], queries.to[q], minTravelCostPerLength);
+			for (int c = 0; c < candidates.length; c++) {
+				bounds[c][q] = estimate(min, max, stride, queries.from[q], queries.to[q], c);
+			}
+		}
+
+		// greedy: every landmark adds the most to the sum of bounds
+		final int[] chosen = new int[k];
+		final boolean[] used = new boolean[candidates.length];
+		final double[] best = euclidean.clone();
+		for (int i = 0; i < k; i++) {
+			int pick = -1;
+			double pickGain = -1;
+			for (int c = 0; c < candidates.length; c++) {
+				if (used[c]) {
+					continue;
+				}
+				double gain = 0;
+				for (int q = 0; q < p; q++) {
+					gain += Math.max(0, bounds[c][q] - best[q]);
+				}
+				if (gain > pickGain) {
+					pick = c;
+					pickGain = gain;
+				}
+			}
+			chosen[i] = pick;
+			used[pick] = true;
+			for (int q = 0; q < p; q++) {
+				best[q] = Math.max(best[q], bounds[pick][q]);
+			}
+		}
+
+		// local search: swap a landmark with a left-over candidate while that improves the sum
+		double objective = cover(chosen, bounds, euclidean);
+		for (int round = 0; round < MAX_SWAP_ROUNDS; round++) {
+			boolean improved = false;
+			for (int i = 0; i < k; i++) {
+				for (int c = 0; c < candidates.length; c++) {
+					if (used[c]) {
+						continue;
+					}
+					int previous = chosen[i];
+					chosen[i] = c;
+					double swapped = cover(chosen, bounds, euclidean);
+					if (swapped > objective * (1 + 1e-9)) {
+						objective = swapped;
+						used[previous] = false;
+						used[c] = true;
+						improved = true;
+					} else {
+						chosen[i] = previous;
+					}
+				}
+			}
+			if (!improved) {
+				break;
+			}
+		}
+
+		final int[] landmarks = new int[k];
+		for (int i = 0; i < k; i++) {
+			landmarks[i] = candidates[chosen[i]];
+		}
+		return landmarks;
+	}
+
+	private static double cover(final int[] chosen, final double[][] bounds, final double[] euclidean) {
+		double sum = 0;
+		for (int q = 0; q < euclidean.length; q++) {
+			double bound = euclidean[q];
+			for (int c : chosen) {
+				bound = Math.max(bound, bounds[c][q]);
+			}
+			sum += bound;
+		}
+		return sum;
+	}
+
+	/**
+	 * Routes the first {@link #setTuningQueries(int) tuning queries} of the sample with every
+	 * combination of control parameters.
+	 */
+	/*package*/ Result tune(final GraphLandmarks landmarks, final Queries queries) {
+		int[] tuning = new int[Math.min(this.tuningQueries, queries.size)];
+		int tuningCount = 0;
+		double[] means = new double[INITIAL_ACTIVE_LANDMARKS.length * CONTROL_INTERVALS.length];
+		GraphAStarLandmarks router = new GraphAStarLandmarks(this.graph, landmarks, landmarks.getMinTravelCostPerLength(),
+				this.costFunction, this.timeFunction, 1.0);
+		for (int a = 0; a < INITIAL_ACTIVE_LANDMARKS.length; a++) {
+			for (int b = 0; b < CONTROL_INTERVALS.length; b++) {
+				router.setLandmarkControl(INITIAL_ACTIVE_LANDMARKS[a], CONTROL_INTERVALS[b]);
+				long visited = 0;
+				if (a == 0 && b == 0) {
+					// queries without a path are left out of all further runs
+					for (int q = 0; q < tuning.length; q++) {
+						if (router.calcLeastCostPath(this.graph.getNode(queries.from[q]), this.graph.getNode(queries.to[q]),
+								queries.time[q], null, null) != null) {
+							tuning[tuningCount++] = q;
+							visited += router.getVisitedNodes();
+						}
+					}
+				} else {
+					for (int i = 0; i < tuningCount; i++) {
+						int q = tuning[i];
+						router.calcLeastCostPath(this.graph.getNode(queries.from[q]), this.graph.getNode(queries.to[q]),
+								queries.time[q], null, null);
+						visited += router.getVisitedNodes();
+					}
+				}
+				means[a * CONTROL_INTERVALS.length + b] = tuningCount == 0 ? 0 : (double) visited / tuningCount;
+			}
+		}
+
+		double bestMean = Double.POSITIVE_INFINITY;
+		for (double mean : means) {
+			bestMean = Math.min(bestMean, mean);
+		}
+		// fewer initial landmarks first, then longer intervals
+		for (int a = 0; a < INITIAL_ACTIVE_LANDMARKS.length; a++) {
+			for (int b = CONTROL_INTERVALS.length - 1; b >= 0; b--) {
+				double mean = means[a * CONTROL_INTERVALS.length + b];
+				if (mean <= bestMean * (1 + TOLERANCE)) {
+					return new Result(landmarks, INITIAL_ACTIVE_LANDMARKS[a], CONTROL_INTERVALS[b], mean);
+				}
+			}
+		}
+		throw new IllegalStateException("no control parameters within tolerance of the best ones");
+	}
+
+	private int growTree(final int root, final double[] weights, final double[] dist, final int[] parentLink, final int[] order,
+			final LazyNodeHeap heap) {
+		Arrays.fill(dist, Double.POSITIVE_INFINITY);
+		Arrays.fill(parentLink, -1);
+		heap.clear();
+		dist[root] = 0;
+		heap.add(root, 0);
+		int settled = 0;
+		while (!heap.isEmpty()) {
+			final double key = heap.peekKey();
+			final int node = heap.poll();
+			if (key > dist[node]) {
+				continue;
+			}
+			order[settled++] = node;
+			for (int l = this.graph.getOutStart(node), end = this.graph.getOutEnd(node); l < end; l++) {
+				final int m = this.graph.getToNode(l);
+				if (key + weights[l] < dist[m]) {
+					dist[m] = key + weights[l];
+					parentLink[m] = l;
+					heap.add(m, dist[m]);
+				}
+			}
+		}
+		return settled;
+	}
+
+	private static double estimate(final float[] min, final float[] max, final int stride, final int from, final int to, final int c) {
+		double travelCost = min[from * stride + c] - max[to * stride + c];
+		if (travelCost < 0) {
+			travelCost = min[to * stride + c] - max[from * stride + c];
+		}
+		// unreachable landmarks give infinite or undefined differences
+		return travelCost > 0 && travelCost < Double.POSITIVE_INFINITY ? travelCost : 0;
+	}
+
+	private double estimateEuclidean(final int from, final int to, final double minTravelCostPerLength) {
+		double dx = this.graph.getX(from) - this.graph.getX(to);
+		double dy = this.graph.getY(from) - this.graph.getY(to);
+		return Math.sqrt(dx * dx + dy * dy) * minTravelCostPerLength;
+	}
+
+	private double computeMinTravelCostPerLength(final double[] weights) {
+		double min = Double.POSITIVE_INFINITY;
+		for (int l = 0; l < weights.length; l++) {
+			if (this.graph.getLength(l) > 0) {
+				min = Math.min(min, weights[l] / this.graph.getLength(l));
+			}
+		}
+		return Double.isFinite(min) ? min : 0;
+	}
+
+	private Result read(final File file, final double[] weights, final long networkHash, final long costFingerprint) throws IOException {
+		Properties properties = new Properties();
+		try (InputStream in = Files.newInputStream(file.toPath())) {
+			properties.load(in);
+		}
+		if (Long.parseLong(properties.getProperty("networkHash")) != networkHash
+				|| Long.parseLong(properties.getProperty("costFingerprint")) != costFingerprint) {
+			return null;
+		}
+		int count = Integer.parseInt(properties.getProperty("landmarkCount"));
+		int[] landmarks = new int[count];
+		for (int i = 0; i < count; i++) {
+			landmarks[i] = this.graph.getNodeIndex(Id.createNodeId(properties.getProperty("landmark." + i)));
+			if (landmarks[i] < 0) {
+				return null;
+			}
+		}
+		GraphLandmarks graphLandmarks = GraphLandmarks.createFromDirected(this.graph,
+				GraphDirectedLandmarks.create(this.graph, weights, landmarks), computeMinTravelCostPerLength(weights));
+		return new Result(graphLandmarks, Integer.parseInt(properties.getProperty("initialActiveLandmarks")),
+				Integer.parseInt(properties.getProperty("controlInterval")),
+				Double.parseDouble(properties.getProperty("meanVisitedNodes")));
+	}
+
+	private void write(final File file, final Result result, final long networkHash, final long costFingerprint,
+			final int sampledQueries) throws IOException {
+		Properties properties = new Properties();
+		properties.setProperty("networkHash", Long.toString(networkHash));
+		properties.setProperty("costFingerprint", Long.toString(costFingerprint));
+		properties.setProperty("sampledQueries", Integer.toString(sampledQueries));
+		properties.setProperty("landmarkCount", Integer.toString(result.landmarks.getLandmarkCount()));
+		for (int i = 0; i < result.landmarks.getLandmarkCount(); i++) {
+			properties.setProperty("landmark." + i, this.graph.getNodeId(result.landmarks.getLandmark(i)).toString());
+		}
+		properties.setProperty("initialActiveLandmarks", Integer.toString(result.initialActiveLandmarks));
+		properties.setProperty("controlInterval", Integer.toString(result.controlInterval));
+		properties.setProperty("meanVisitedNodes", Double.toString(result.meanVisitedNodes));
+		try (OutputStream out = Files.newOutputStream(file.toPath())) {
+			properties.store(out, "landmarks optimized by " + LandmarkOptimizer.class.getName());
+		}
+	}
+
+	/**
+	 * Trips sampled from the plans, as node indices of the graph and departure times.
+	 */
+	/*package*/ static final class Queries {
+		final int[] from;
+		final int[] to;
+		final double[] time;
+		int size = 0;
+
+		Queries(final int capacity) {
+			this.from = new int[capacity];
+			this.to = new int[capacity];
+			this.time = new double[capacity];
+		}
+	}
+
+	public static final class Result {
+		private final GraphLandmarks landmarks;
+		private final int initialActiveLandmarks;
+		private final int controlInterval;
+		private final double meanVisitedNodes;
+
+		Result(final GraphLandmarks landmarks, final int initialActiveLandmarks, final int controlInterval,
+				final double meanVisitedNodes) {
+			this.landmarks = landmarks;
+			this.initialActiveLandmarks = initialActiveLandmarks;
+			this.controlInterval = controlInterval;
+			this.meanVisitedNodes = meanVisitedNodes;
+		}
+
+		public GraphLandmarks getLandmarks() {
+			return this.landmarks;
+		}
+
+		public int getInitialActiveLandmarks() {
+			return this.initialActiveLandmarks;
+		}
+
+		public int getControlInterval() {
+			return this.controlInterval;
+		}
+
+		/**
+		 * @return The mean number of nodes the tuning queries visited with these parameters, or
+		 * <code>NaN</code> if nothing was tuned.
+		 */
+		public double getMeanVisitedNodes() {
+			return this.meanVisitedNodes;
+		}
+	}
+}
@@ -0,0 +1,226 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * LandmarksFile.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Stores landmark tables in a binary file that later runs memory-map read-only, so they skip the
+ * landmark preprocessing and processes on the same host share the pages.
+ *
+ * <p>Layout, little endian:</p>
+ * <pre>
+ *   int    magic "MLMK"
+ *   int    version
+ *   long   network hash       ({@link RoutingGraph#computeContentHash()})
+ *   long   cost fingerprint   ({@link RoutingGraph#computeCostFingerprint})
+ *   int    kind               (0: min/max travel times, 1: costs to/from landmarks)
+ *   int    node count
+ *   int    landmark count
+ *   int    unused
+ *   double min travel cost per length (min/max tables only)
+ *   int[landmark count]       landmark node indices, padded to a multiple of 8 bytes
+ *   double[node count * landmark count]  first table (min, resp. to landmark)
+ *   double[node count * landmark count]  second table (max, resp. from landmark)
+ * </pre>
+ *
+ * <p>A file only is used if hash, fingerprint, kind and counts match; otherwise the tables are
+ * computed again and the file replaced. Files are written to a temporary file first and then moved
+ * into place, so concurrent runs never map a half-written file.</p>
+ */
+public final class LandmarksFile {
+	private static final Logger log = Logger.getLogger( LandmarksFile.class ) ;
+
+	private static final int MAGIC = 0x4B4D4C4D; // "MLMK" in little endian
+	private static final int VERSION = 1;
+	private static final int HEADER_BYTES = 48;
+
+	/*package*/ static final int KIND_MIN_MAX = 0;
+	/*package*/ static final int KIND_DIRECTED = 1;
+
+	private LandmarksFile() {
+	}
+
+	/**
+	 * @return The file for the given graph and cost fingerprint in <code>directory</code>.
+	 */
+	public static File getFile(final File directory, final String kind, final RoutingGraph graph, final long costFingerprint) {
+		return new File(directory, String.format("landmarks-%s-%016x-%016x.bin", kind, graph.computeContentHash(), costFingerprint));
+	}
+
+	public static void writeLandmarks(final File file, final RoutingGraph graph, final long costFingerprint, final GraphLandmarks landmarks) throws IOException {
+		int[] nodes = new int[landmarks.getLandmarkCount()];
+		for (int i = 0; i < nodes.length; i++) {
+			nodes[i] = landmarks.getLandmark(i);
+		}
+		write(file, KIND_MIN_MAX, graph, costFingerprint, nodes, landmarks.getMinTravelCostPerLength(),
+				landmarks.getMinTravelTimes(), landmarks.getMaxTravelTimes());
+	}
+
+	public static void writeLandmarks(final File file, final RoutingGraph graph, final long costFingerprint, final GraphDirectedLandmarks landmarks) throws IOException {
+		int[] nodes = new int[landmarks.getLandmarkCount()];
+		for (int i = 0; i < nodes.length; i++) {
+			nodes[i] = landmarks.getLandmark(i);
+		}
+		write(file, KIND_DIRECTED, graph, costFingerprint, nodes, 0,
+				landmarks.getCostsToLandmarks(), landmarks.getCostsFromLandmarks());
+	}
+
+	/**
+	 * @return The mapped landmarks, or <code>null</code> if the file does not exist or does not match
+	 *         the graph and cost fingerprint.
+	 */
+	public static GraphLandmarks readLandmarks(final File file, final RoutingGraph graph, final long costFingerprint) throws IOException {
+		Tables tables = read(file, KIND_MIN_MAX, graph, costFingerprint);
+		return tables == null ? null : new GraphLandmarks(tables.landmarks, tables.first, tables.second, tables.minTravelCostPerLength);
+	}
+
+	/**
+	 * @return The mapped landmarks, or <code>null</code> if the file does not exist or does not match
+	 *         the graph and cost fingerprint.
+	 */
+	public static GraphDirectedLandmarks readDirectedLandmarks(final File file, final RoutingGraph graph, final long costFingerprint) throws IOException {
+		Tables tables = read(file, KIND_DIRECTED, graph, costFingerprint);
+		return tables == null ? null : new GraphDirectedLandmarks(tables.landmarks, tables.first, tables.second);
+	}
+
+	private static int landmarkBytes(final int landmarkCount) {
+		return (landmarkCount * 4 + 7) & ~7;
+	}
+
+	private static void write(final File file, final int kind, final RoutingGraph graph, final long costFingerprint,
+			final int[] landmarks, final double minTravelCostPerLength, final DoubleBuffer first, final DoubleBuffer second) throws IOException {
+		final int nodeCount = graph.getNodeCount();
+		final int tableSize = nodeCount * landmarks.length;
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES + landmarkBytes(landmarks.length)).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC).putInt(VERSION).putLong(graph.computeContentHash()).putLong(costFingerprint);
+		header.putInt(kind).putInt(nodeCount).putInt(landmarks.length).putInt(0).putDouble(minTravelCostPerLength);
+		for (int landmark : landmarks) {
+			header.putInt(landmark);
+		}
+		header.clear();
+
+		File directory = file.getAbsoluteFile().getParentFile();
+		if (directory != null) {
+			directory.mkdirs();
+		}
+		File tmp = File.createTempFile(file.getName(), ".tmp", directory);
+		try (FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			writeFully(channel, header);
+			ByteBuffer chunk = ByteBuffer.allocate(8 * 8192).order(ByteOrder.LITTLE_ENDIAN);
+			for (DoubleBuffer table : new DoubleBuffer[] { first, second }) {
+				for (int i = 0; i < tableSize; i++) {
+					if (!chunk.hasRemaining()) {
+						chunk.flip();
+						writeFully(channel, chunk);
+						chunk.clear();
+					}
+					chunk.putDouble(table.get(i));
+				}
+			}
+			chunk.flip();
+			writeFully(channel, chunk);
+		}
+		try {
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			Files.deleteIfExists(tmp.toPath());
+			throw e;
+		}
+		log.info("wrote " + landmarks.length + " landmarks for " + nodeCount + " nodes to " + file);
+	}
+
+	private static void writeFully(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	private static Tables read(final File file, final int kind, final RoutingGraph graph, final long costFingerprint) throws IOException {
+		if (!file.isFile()) {
+			return null;
+		}
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				log.warn(file + " is too large to be mapped, ignoring it.");
+				return null;
+			}
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+			log.warn(file + " is not a landmarks file, ignoring it.");
+			return null;
+		}
+		if (buffer.getInt(4) != VERSION) {
+			log.warn(file + " has version " + buffer.getInt(4) + ", expected " + VERSION + ", ignoring it.");
+			return null;
+		}
+		final int nodeCount = buffer.getInt(28);
+		final int landmarkCount = buffer.getInt(32);
+		if (buffer.getLong(8) != graph.computeContentHash() || buffer.getLong(16) != costFingerprint
+				|| buffer.getInt(24) != kind || nodeCount != graph.getNodeCount()) {
+			log.info(file + " was written for another network or cost function, ignoring it.");
+			return null;
+		}
+		final long tableBytes = (long) nodeCount * landmarkCount * 8;
+		final int tablesStart = HEADER_BYTES + landmarkBytes(landmarkCount);
+		if (buffer.capacity() != tablesStart + 2 * tableBytes) {
+			log.warn(file + " is truncated, ignoring it.");
+			return null;
+		}
+
+		Tables tables = new Tables();
+		tables.minTravelCostPerLength = buffer.getDouble(40);
+		tables.landmarks = new int[landmarkCount];
+		buffer.position(HEADER_BYTES);
+		IntBuffer landmarks = buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+		landmarks.get(tables.landmarks);
+		buffer.position(tablesStart);
+		tables.first = buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+		tables.first.limit((int) (tableBytes / 8));
+		tables.first = tables.first.slice();
+		buffer.position((int) (tablesStart + tableBytes));
+		tables.second = buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+		log.info("mapped " + landmarkCount + " landmarks for " + nodeCount + " nodes from " + file);
+		return tables;
+	}
+
+	private static final class Tables {
+		int[] landmarks;
+		DoubleBuffer first;
+		DoubleBuffer second;
+		double minTravelCostPerLength;
+	}
+}
@@ -0,0 +1,105 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * LazyNodeHeap.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of node indices on two parallel primitive arrays.
+ *
+ * <p>There is no decrease-key: a node whose key improves is simply added again, and the router
+ * skips the outdated entries when they are polled, like the pseudo-removal in MATSim's
+ * <code>PseudoRemovePriorityQueue</code>.</p>
+ */
+/*package*/ final class LazyNodeHeap {
+
+	private int[] nodes;
+	private double[] keys;
+	private int size = 0;
+
+	/*package*/ LazyNodeHeap(final int initialCapacity) {
+		this.nodes = new int[Math.max(initialCapacity, 16)];
+		this.keys = new double[this.nodes.length];
+	}
+
+	/*package*/ void add(final int node, final double key) {
+		if (this.size == this.nodes.length) {
+			this.nodes = Arrays.copyOf(this.nodes, this.size * 2);
+			this.keys = Arrays.copyOf(this.keys, this.size * 2);
+		}
+		int i = this.size++;
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (this.keys[parent] <= key) {
+				break;
+			}
+			this.nodes[i] = this.nodes[parent];
+			this.keys[i] = this.keys[parent];
+			i = parent;
+		}
+		this.nodes[i] = node;
+		this.keys[i] = key;
+	}
+
+	/*package*/ double peekKey() {
+		return this.keys[0];
+	}
+
+	/**
+	 * Removes the entry with the smallest key.
+	 *
+	 * @return The node of the removed entry.
+	 */
+	/*package*/ int poll() {
+		int top = this.nodes[0];
+		int lastNode = this.nodes[--this.size];
+		double lastKey = this.keys[this.size];
+		int i = 0;
+		int half = this.size >>> 1;
+		while (i < half) {
+			int child = 2 * i + 1;
+			if (child + 1 < this.size && this.keys[child + 1] < this.keys[child]) {
+				child++;
+			}
+			if (lastKey <= this.keys[child]) {
+				break;
+			}
+			this.nodes[i] = this.nodes[child];
+			this.keys[i] = this.keys[child];
+			i = child;
+		}
+		this.nodes[i] = lastNode;
+		this.keys[i] = lastKey;
+		return top;
+	}
+
+	/*package*/ boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/*package*/ int size() {
+		return this.size;
+	}
+
+	/*package*/ void clear() {
+		this.size = 0;
+	}
+}
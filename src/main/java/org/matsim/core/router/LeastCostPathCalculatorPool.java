@@ -0,0 +1,145 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * LeastCostPathCalculatorPool.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * A thread-safe {@link LeastCostPathCalculator} that hands every query to one of at most
+ * <code>size</code> router instances of the wrapped factory. Routers are created on demand and
+ * reused afterwards, so their node state (the arrays of the Graph routers, the node data maps of the
+ * Record routers) is allocated once per router instead of once per caller, and up to
+ * <code>size</code> threads route at the same time without sharing any state.
+ *
+ * <p>Threads beyond <code>size</code> wait until a router becomes idle. Callers that route many
+ * paths in a row can {@link #acquire()} a router once and {@link #release(LeastCostPathCalculator)}
+ * it when done.</p>
+ *
+ * @see PooledLeastCostPathCalculatorFactory
+ */
+public final class LeastCostPathCalculatorPool implements LeastCostPathCalculator {
+
+	private final LeastCostPathCalculatorFactory factory;
+	private final Network network;
+	private final TravelDisutility travelCosts;
+	private final TravelTime travelTimes;
+	private final int size;
+
+	private final BlockingQueue<LeastCostPathCalculator> idle;
+	private final AtomicInteger created = new AtomicInteger();
+
+	public LeastCostPathCalculatorPool(final LeastCostPathCalculatorFactory factory, final Network network,
+			final TravelDisutility travelCosts, final TravelTime travelTimes, final int size) {
+		if (size < 1) {
+			throw new IllegalArgumentException("pool size must be at least 1, but is " + size);
+		}
+		this.factory = factory;
+		this.network = network;
+		this.travelCosts = travelCosts;
+		this.travelTimes = travelTimes;
+		this.size = size;
+		this.idle = new ArrayBlockingQueue<>(size);
+	}
+
+	@Override
+	public Path calcLeastCostPath(final Node fromNode, final Node toNode, final double startTime, final Person person, final Vehicle vehicle) {
+		LeastCostPathCalculator router = acquire();
+		try {
+			return router.calcLeastCostPath(fromNode, toNode, startTime, person, vehicle);
+		} finally {
+			release(router);
+		}
+	}
+
+	/**
+	 * @return A router that only the calling thread uses until it is released; creates a new one
+	 *         while fewer than <code>size</code> exist, otherwise waits for an idle one.
+	 */
+	public LeastCostPathCalculator acquire() {
+		LeastCostPathCalculator router = this.idle.poll();
+		if (router != null) {
+			return router;
+		}
+		while (true) {
+			int count = this.created.get();
+			if (count >= this.size) {
+				break;
+			}
+			if (this.created.compareAndSet(count, count + 1)) {
+				try {
+					return this.factory.createPathCalculator(this.network, this.travelCosts, this.travelTimes);
+				} catch (RuntimeException | Error e) {
+					this.created.decrementAndGet();
+					throw e;
+				}
+			}
+		}
+		try {
+			return this.idle.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("interrupted while waiting for a router", e);
+		}
+	}
+
+	/**
+	 * Returns a router obtained from {@link #acquire()} to the pool.
+	 */
+	public void release(final LeastCostPathCalculator router) {
+		if (!this.idle.offer(router)) {
+			throw new IllegalStateException("more routers released than acquired");
+		}
+	}
+
+	public Network getNetwork() {
+		return this.network;
+	}
+
+	public TravelDisutility getTravelDisutility() {
+		return this.travelCosts;
+	}
+
+	public TravelTime getTravelTime() {
+		return this.travelTimes;
+	}
+
+	public int getSize() {
+		return this.size;
+	}
+
+	/**
+	 * @return The number of routers created so far.
+	 */
+	public int getCreatedCount() {
+		return this.created.get();
+	}
+}
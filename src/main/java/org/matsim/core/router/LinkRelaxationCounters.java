@@ -0,0 +1,213 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * LinkRelaxationCounters.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.router;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.utils.io.IOUtils;
+
+/**
+ * Counts, per link, how often the routers based on {@link AStarEuclideanProtected} relax it, reach
+ * its to-node more cheaply than before, or reach it at exactly the same cost (the tie-break on the
+ * link id in <code>addToPendingNodes</code>, and the zero-cost case it warns about). Links that show
+ * up here a lot point to network regions that make routing expensive.
+ *
+ * <p>Only a random sample of one in <code>sampleInterval</code> queries is counted; routers without
+ * counters, or in queries that are not sampled, only pay a null check per relaxed link. Counts are
+ * kept in {@link AtomicIntegerArray} stripes chosen by thread, so routers on different threads
+ * rarely touch the same cache lines, and are summed when read.</p>
+ *
+ * <p>The counters are meant to be written and reset once per iteration, see
+ * {@link LinkRelaxationWriter}.</p>
+ */
+public final class LinkRelaxationCounters {
+
+	public enum Kind { relaxed, improved, tied, zeroCostTied }
+
+	private static final int KINDS = Kind.values().length;
+	private static final int MAX_STRIPES = 8;
+
+	private final Network network;
+	private final Link[] links;
+	private final Map<Id<Link>, Integer> linkIndex;
+	private final AtomicIntegerArray[] stripes;
+	private final int stripeMask;
+	private final int sampleInterval;
+	private final LongAdder sampledQueries = new LongAdder();
+
+	/**
+	 * @param sampleInterval Count one in this many queries on average; 1 counts all queries.
+	 * @param numberOfThreads The number of threads expected to route concurrently.
+	 */
+	public LinkRelaxationCounters(final Network network, final int sampleInterval, final int numberOfThreads) {
+		if (sampleInterval < 1) {
+			throw new IllegalArgumentException("the sample interval must be positive");
+		}
+		this.network = network;
+		this.sampleInterval = sampleInterval;
+		this.links = network.getLinks().values().toArray(new Link[0]);
+		this.linkIndex = new HashMap<>(this.links.length * 4 / 3 + 1);
+		for (int l = 0; l < this.links.length; l++) {
+			this.linkIndex.put(this.links[l].getId(), l);
+		}
+		int stripeCount = Integer.highestOneBit(Math.max(1, Math.min(numberOfThreads, MAX_STRIPES)) * 2 - 1);
+		this.stripes = new AtomicIntegerArray[stripeCount];
+		for (int s = 0; s < stripeCount; s++) {
+			this.stripes[s] = new AtomicIntegerArray(this.links.length * KINDS);
+		}
+		this.stripeMask = stripeCount - 1;
+	}
+
+	public Network getNetwork() {
+		return this.network;
+	}
+
+	/**
+	 * Decides whether the query a router is about to start is counted.
+	 */
+	/*package*/ boolean sampleQuery() {
+		if (this.sampleInterval > 1 && ThreadLocalRandom.current().nextInt(this.sampleInterval) != 0) {
+			return false;
+		}
+		this.sampledQueries.increment();
+		return true;
+	}
+
+	/*package*/ void count(final Link link, final Kind kind) {
+		Integer index = this.linkIndex.get(link.getId());
+		if (index != null) {
+			int stripe = (int) Thread.currentThread().getId() & this.stripeMask;
+			this.stripes[stripe].getAndIncrement(index * KINDS + kind.ordinal());
+		}
+	}
+
+	public long getSampledQueries() {
+		return this.sampledQueries.sum();
+	}
+
+	public long getCount(final Id<Link> linkId, final Kind kind) {
+		Integer index = this.linkIndex.get(linkId);
+		return index == null ? 0 : sum(index * KINDS + kind.ordinal());
+	}
+
+	private long sum(final int slot) {
+		long sum = 0;
+		for (AtomicIntegerArray stripe : this.stripes) {
+			sum += stripe.get(slot);
+		}
+		return sum;
+	}
+
+	public void reset() {
+		for (AtomicIntegerArray stripe : this.stripes) {
+			for (int i = 0; i < stripe.length(); i++) {
+				stripe.set(i, 0);
+			}
+		}
+		this.sampledQueries.reset();
+	}
+
+	/**
+	 * @return The indices of the links with at least one count, most often relaxed first.
+	 */
+	private List<Integer> getCountedLinks(final long[][] counts) {
+		List<Integer> counted = new ArrayList<>();
+		for (int l = 0; l < this.links.length; l++) {
+			counts[l] = new long[KINDS];
+			for (int k = 0; k < KINDS; k++) {
+				counts[l][k] = sum(l * KINDS + k);
+			}
+			if (counts[l][Kind.relaxed.ordinal()] > 0) {
+				counted.add(l);
+			}
+		}
+		counted.sort((a, b) -> Long.compare(counts[b][Kind.relaxed.ordinal()], counts[a][Kind.relaxed.ordinal()]));
+		return counted;
+	}
+
+	/**
+	 * Writes one comma-separated line per counted link, most often relaxed first.
+	 */
+	public void writeCsv(final String filename) {
+		long[][] counts = new long[this.links.length][];
+		try (BufferedWriter writer = IOUtils.getBufferedWriter(filename)) {
+			writer.write("link,fromX,fromY,toX,toY");
+			for (Kind kind : Kind.values()) {
+				writer.write("," + kind);
+			}
+			writer.newLine();
+			for (int l : getCountedLinks(counts)) {
+				Coord from = this.links[l].getFromNode().getCoord();
+				Coord to = this.links[l].getToNode().getCoord();
+				writer.write(this.links[l].getId() + "," + from.getX() + "," + from.getY() + "," + to.getX() + "," + to.getY());
+				for (int k = 0; k < KINDS; k++) {
+					writer.write("," + counts[l][k]);
+				}
+				writer.newLine();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Writes the counted links as a GeoJSON feature collection of line strings, in the coordinate
+	 * system of the network, for heat maps in e.g. QGIS.
+	 */
+	public void writeGeoJson(final String filename) {
+		long[][] counts = new long[this.links.length][];
+		try (BufferedWriter writer = IOUtils.getBufferedWriter(filename)) {
+			writer.write("{\"type\":\"FeatureCollection\",\"sampledQueries\":" + getSampledQueries() + ",\"features\":[");
+			boolean first = true;
+			for (int l : getCountedLinks(counts)) {
+				Coord from = this.links[l].getFromNode().getCoord();
+				Coord to = this.links[l].getToNode().getCoord();
+				writer.write(first ? "\n" : ",\n");
+				first = false;
+				writer.write("{\"type\":\"Feature\",\"geometry\":{\"type\":\"LineString\",\"coordinates\":[[" + from.getX() + ","
+						+ from.getY() + "],[" + to.getX() + "," + to.getY() + "]]},\"properties\":{\"link\":\""
+						+ this.links[l].getId().toString().replace("\\", "\\\\").replace("\"", "\\\"") + "\"");
+				for (Kind kind : Kind.values()) {
+					writer.write(",\"" + kind + "\":" + counts[l][kind.ordinal()]);
+				}
+				writer.write("}}");
+			}
+			writer.write("\n]}");
+			writer.newLine();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,53 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * LinkRelaxationWriter.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.router;
+
+import org.apache.log4j.Logger;
+import org.matsim.core.controler.OutputDirectoryHierarchy;
+import org.matsim.core.controler.events.IterationEndsEvent;
+import org.matsim.core.controler.listener.IterationEndsListener;
+
+/**
+ * Writes the {@link LinkRelaxationCounters} of an iteration to
+ * <code>ITERS/it.N/N.linkRelaxations.csv</code> and <code>ITERS/it.N/N.linkRelaxations.geojson</code>
+ * and resets them for the next iteration.
+ */
+public class LinkRelaxationWriter implements IterationEndsListener {
+	private static final Logger log = Logger.getLogger( LinkRelaxationWriter.class ) ;
+
+	public static final String FILENAME = "linkRelaxations";
+
+	private final LinkRelaxationCounters counters;
+
+	public LinkRelaxationWriter(final LinkRelaxationCounters counters) {
+		this.counters = counters;
+	}
+
+	@Override
+	public void notifyIterationEnds(final IterationEndsEvent event) {
+		OutputDirectoryHierarchy controlerIO = event.getServices().getControlerIO();
+		log.info("link relaxations of " + this.counters.getSampledQueries() + " sampled queries in iteration " + event.getIteration());
+		this.counters.writeCsv(controlerIO.getIterationFilename(event.getIteration(), FILENAME + ".csv"));
+		this.counters.writeGeoJson(controlerIO.getIterationFilename(event.getIteration(), FILENAME + ".geojson"));
+		this.counters.reset();
+	}
+}
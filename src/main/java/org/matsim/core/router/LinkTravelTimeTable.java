@@ -0,0 +1,439 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * LinkTravelTimeTable.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.router;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
+import org.matsim.api.core.v01.events.handler.LinkLeaveEventHandler;
+import org.matsim.api.core.v01.events.handler.VehicleLeavesTrafficEventHandler;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.controler.events.AfterMobsimEvent;
+import org.matsim.core.controler.listener.AfterMobsimListener;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.utils.io.ColumnarFile;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Link travel times per time bin, collected from link enter and leave events into one
+ * <code>float</code> table while the routers read another.
+ *
+ * <p>Both tables hold <code>linkCount * binCount</code> slots indexed by
+ * <code>link * binCount + bin</code>. During the mobsim, the events fill the running mean of every
+ * slot of the next table; routers meanwhile read the current table without locking, also from other
+ * threads. {@link #swap()}, called after the mobsim (as a controler listener, or by hand), fills
+ * the slots without traversals with the free-speed travel time, publishes the next table as the
+ * current one and reuses the previous one for the next iteration. No router may still be reading
+ * the previous table then, as it is overwritten during the next mobsim.</p>
+ *
+ * <p>A link changed if its travel time in any time bin differs by more than the change threshold
+ * from the one it had when the link was last reported as changed (or from the free-speed travel
+ * time), so that the travel times of unchanged links never drift further than that from what the
+ * listeners last saw. The {@link ChangeListener}s get the changed links after every swap, so that
+ * factories can refresh only the preprocessing that depends on them. If no link changed, the travel
+ * times are still published, but the listeners are not called.</p>
+ *
+ * <p>Travel times are binned by the time the link was entered, like those of
+ * <code>TravelTimeCalculator</code>; times after the last bin use the last bin. Links that are not
+ * part of the network the table was created for get their free-speed travel time.</p>
+ *
+ * <p>{@link #snapshot()} and {@link #read(File)} save and restore the tables, e.g. for checkpoints.</p>
+ */
+public final class LinkTravelTimeTable implements TravelTime, LinkEnterEventHandler, LinkLeaveEventHandler,
+		VehicleLeavesTrafficEventHandler, AfterMobsimListener {
+	private static final Logger log = Logger.getLogger( LinkTravelTimeTable.class ) ;
+
+	public static final double DEFAULT_TIME_BIN_SIZE = 900.0;
+	public static final double DEFAULT_END_TIME = 30 * 3600.0;
+	public static final double DEFAULT_CHANGE_THRESHOLD = 0.05;
+
+	/**
+	 * The kind of the {@link ColumnarFile}s the travel times are written to.
+	 */
+	public static final int KIND = 3;
+
+	/**
+	 * Is told which links changed after the travel times of an iteration were published.
+	 */
+	public interface ChangeListener {
+		void notifyTravelTimesChanged(ChangedLinks changedLinks);
+	}
+
+	private final Map<Id<Link>, Integer> linkIndex;
+	private final Id<Link>[] linkIds;
+	private final float[] freeSpeedTravelTimes;
+	private final double timeBinSize;
+	private final int binCount;
+	private final double changeThreshold;
+	private final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+	private volatile float[] current;
+	private float[] next;
+	private final float[] reported;
+	private final int[] counts;
+	private final Map<Id<Vehicle>, Traversal> traversals = new HashMap<>();
+	private volatile ChangedLinks changedLinks;
+
+	public LinkTravelTimeTable(final Network network) {
+		this(network, DEFAULT_TIME_BIN_SIZE, DEFAULT_END_TIME, DEFAULT_CHANGE_THRESHOLD);
+	}
+
+	/**
+	 * @param changeThreshold The relative change of a travel time above which its link counts as changed.
+	 */
+	public LinkTravelTimeTable(final Network network, final double timeBinSize, final double endTime, final double changeThreshold) {
+		if (timeBinSize <= 0) {
+			throw new IllegalArgumentException("time bin size must be positive, but is " + timeBinSize);
+		}
+		if (changeThreshold < 0) {
+			throw new IllegalArgumentException("change threshold must not be negative, but is " + changeThreshold);
+		}
+		int linkCount = network.getLinks().size();
+		this.timeBinSize = timeBinSize;
+		this.binCount = Math.max(1, (int) Math.ceil(endTime / timeBinSize));
+		this.changeThreshold = changeThreshold;
+		this.linkIndex = new HashMap<>(linkCount * 2);
+		@SuppressWarnings("unchecked")
+		Id<Link>[] ids = new Id[linkCount];
+		this.linkIds = ids;
+		this.freeSpeedTravelTimes = new float[linkCount];
+		int l = 0;
+		for (Link link : network.getLinks().values()) {
+			this.linkIndex.put(link.getId(), l);
+			this.linkIds[l] = link.getId();
+			this.freeSpeedTravelTimes[l] = (float) (link.getLength() / link.getFreespeed());
+			l++;
+		}
+		this.current = new float[linkCount * this.binCount];
+		for (l = 0; l < linkCount; l++) {
+			Arrays.fill(this.current, l * this.binCount, (l + 1) * this.binCount, this.freeSpeedTravelTimes[l]);
+		}
+		this.next = new float[this.current.length];
+		this.reported = this.current.clone();
+		this.counts = new int[this.current.length];
+		this.changedLinks = new ChangedLinks(new BitSet(), this.linkIndex, this.linkIds, changeThreshold);
+	}
+
+	@Override
+	public double getLinkTravelTime(final Link link, final double time, final Person person, final Vehicle vehicle) {
+		Integer l = this.linkIndex.get(link.getId());
+		if (l == null) {
+			return link.getLength() / link.getFreespeed(time);
+		}
+		return this.current[l * this.binCount + getTimeBin(time)];
+	}
+
+	public void addChangeListener(final ChangeListener listener) {
+		this.listeners.add(listener);
+	}
+
+	public void removeChangeListener(final ChangeListener listener) {
+		this.listeners.remove(listener);
+	}
+
+	/**
+	 * @return The links that changed in the last swap.
+	 */
+	public ChangedLinks getChangedLinks() {
+		return this.changedLinks;
+	}
+
+	public double getTimeBinSize() {
+		return this.timeBinSize;
+	}
+
+	public int getTimeBinCount() {
+		return this.binCount;
+	}
+
+	public double getChangeThreshold() {
+		return this.changeThreshold;
+	}
+
+	@Override
+	public void handleEvent(final LinkEnterEvent event) {
+		Integer l = this.linkIndex.get(event.getLinkId());
+		if (l == null) {
+			return;
+		}
+		Traversal traversal = this.traversals.get(event.getVehicleId());
+		if (traversal == null) {
+			traversal = new Traversal();
+			this.traversals.put(event.getVehicleId(), traversal);
+		}
+		traversal.link = l;
+		traversal.enterTime = event.getTime();
+	}
+
+	@Override
+	public void handleEvent(final LinkLeaveEvent event) {
+		Traversal traversal = this.traversals.get(event.getVehicleId());
+		if (traversal == null || traversal.link < 0) {
+			// the vehicle departed on this link
+			return;
+		}
+		Integer l = this.linkIndex.get(event.getLinkId());
+		if (l != null && l == traversal.link) {
+			int slot = traversal.link * this.binCount + getTimeBin(traversal.enterTime);
+			float travelTime = (float) (event.getTime() - traversal.enterTime);
+			int count = ++this.counts[slot];
+			this.next[slot] += (travelTime - this.next[slot]) / count;
+		}
+		traversal.link = -1;
+	}
+
+	@Override
+	public void handleEvent(final VehicleLeavesTrafficEvent event) {
+		Traversal traversal = this.traversals.get(event.getVehicleId());
+		if (traversal != null) {
+			traversal.link = -1;
+		}
+	}
+
+	@Override
+	public void reset(final int iteration) {
+		this.traversals.clear();
+	}
+
+	@Override
+	public void notifyAfterMobsim(final AfterMobsimEvent event) {
+		swap();
+	}
+
+	/**
+	 * Publishes the travel times collected since the last swap and tells the listeners which links
+	 * changed.
+	 *
+	 * @return The changed links.
+	 */
+	public ChangedLinks swap() {
+		final float[] previous = this.current;
+		final float[] collected = this.next;
+		final int binCount = this.binCount;
+		BitSet changed = new BitSet(this.linkIds.length);
+		for (int l = 0; l < this.linkIds.length; l++) {
+			final float freeSpeed = this.freeSpeedTravelTimes[l];
+			final int start = l * binCount;
+			boolean linkChanged = false;
+			for (int slot = start; slot < start + binCount; slot++) {
+				if (this.counts[slot] == 0) {
+					collected[slot] = freeSpeed;
+				}
+				if (Math.abs(collected[slot] - this.reported[slot]) > this.changeThreshold * this.reported[slot]) {
+					linkChanged = true;
+				}
+			}
+			if (linkChanged) {
+				changed.set(l);
+				System.arraycopy(collected, start, this.reported, start, binCount);
+			}
+		}
+		this.current = collected;
+		this.next = previous;
+		Arrays.fill(this.next, 0);
+		Arrays.fill(this.counts, 0);
+		ChangedLinks changedLinks = new ChangedLinks(changed, this.linkIndex, this.linkIds, this.changeThreshold);
+		this.changedLinks = changedLinks;
+		log.info(changedLinks.size() + " of " + this.linkIds.length + " links changed their travel times by more than "
+				+ Math.round(100 * this.changeThreshold) + "%.");
+		if (!changedLinks.isEmpty()) {
+			for (ChangeListener listener : this.listeners) {
+				listener.notifyTravelTimesChanged(changedLinks);
+			}
+		}
+		return changedLinks;
+	}
+
+	/**
+	 * Copies the current travel times and those last reported, so that they can be written later,
+	 * e.g. in another thread while the next iteration runs. Must not run concurrently with a swap.
+	 */
+	public Snapshot snapshot() {
+		return new Snapshot(this.linkIds, this.timeBinSize, this.current.clone(), this.reported.clone());
+	}
+
+	/**
+	 * Replaces the current travel times, and those last reported, by the ones of links with the same
+	 * id in a file written by {@link Snapshot#write(File, boolean)}; the listeners are not told. Must
+	 * not run concurrently with a swap.
+	 *
+	 * @throws IllegalArgumentException If the file has other time bins.
+	 */
+	public void read(final File file) throws IOException {
+		try (ColumnarFile.Reader reader = new ColumnarFile.Reader(file, KIND)) {
+			String[] ids = reader.readStrings();
+			double fileTimeBinSize = reader.readDoubles().get(0);
+			IntBuffer currentBits = reader.readInts();
+			IntBuffer reportedBits = reader.readInts();
+			if (fileTimeBinSize != this.timeBinSize || currentBits.limit() != ids.length * this.binCount) {
+				throw new IllegalArgumentException(file + " has " + (ids.length == 0 ? 0 : currentBits.limit() / ids.length)
+						+ " time bins of " + fileTimeBinSize + "s, not " + this.binCount + " of " + this.timeBinSize + "s");
+			}
+			float[] travelTimes = this.current.clone();
+			for (int i = 0; i < ids.length; i++) {
+				Integer l = this.linkIndex.get(Id.createLinkId(ids[i]));
+				if (l == null) {
+					continue;
+				}
+				for (int bin = 0; bin < this.binCount; bin++) {
+					travelTimes[l * this.binCount + bin] = Float.intBitsToFloat(currentBits.get(i * this.binCount + bin));
+					this.reported[l * this.binCount + bin] = Float.intBitsToFloat(reportedBits.get(i * this.binCount + bin));
+				}
+			}
+			this.current = travelTimes;
+		}
+	}
+
+	private int getTimeBin(final double time) {
+		if (time <= 0) {
+			return 0;
+		}
+		return (int) Math.min(time / this.timeBinSize, this.binCount - 1);
+	}
+
+	/**
+	 * The travel times of a table at one point in time, see {@link LinkTravelTimeTable#snapshot()}.
+	 */
+	public static final class Snapshot {
+		private final Id<Link>[] linkIds;
+		private final double timeBinSize;
+		private final float[] current;
+		private final float[] reported;
+
+		private Snapshot(final Id<Link>[] linkIds, final double timeBinSize, final float[] current, final float[] reported) {
+			this.linkIds = linkIds;
+			this.timeBinSize = timeBinSize;
+			this.current = current;
+			this.reported = reported;
+		}
+
+		/**
+		 * Writes link ids, time bin size and both tables as a {@link ColumnarFile}, the tables as the
+		 * bits of the <code>float</code>s.
+		 */
+		public void write(final File file, final boolean compress) throws IOException {
+			String[] ids = new String[this.linkIds.length];
+			for (int l = 0; l < ids.length; l++) {
+				ids[l] = this.linkIds[l].toString();
+			}
+			try (ColumnarFile.Writer writer = new ColumnarFile.Writer(file, KIND, compress)) {
+				writer.writeStrings(ids, ids.length);
+				writer.writeDoubles(new double[] { this.timeBinSize }, 1);
+				writer.writeInts(toBits(this.current), this.current.length);
+				writer.writeInts(toBits(this.reported), this.reported.length);
+			}
+		}
+
+		private static int[] toBits(final float[] values) {
+			int[] bits = new int[values.length];
+			for (int i = 0; i < values.length; i++) {
+				bits[i] = Float.floatToRawIntBits(values[i]);
+			}
+			return bits;
+		}
+	}
+
+	private static final class Traversal {
+		int link = -1;
+		double enterTime;
+	}
+
+	/**
+	 * The links whose travel time changed by more than the change threshold in at least one time bin.
+	 */
+	public static final class ChangedLinks {
+		private final BitSet links;
+		private final Map<Id<Link>, Integer> linkIndex;
+		private final Id<Link>[] linkIds;
+		private final double changeThreshold;
+
+		/*package*/ ChangedLinks(final BitSet links, final Map<Id<Link>, Integer> linkIndex, final Id<Link>[] linkIds,
+				final double changeThreshold) {
+			this.links = links;
+			this.linkIndex = linkIndex;
+			this.linkIds = linkIds;
+			this.changeThreshold = changeThreshold;
+		}
+
+		public boolean contains(final Id<Link> linkId) {
+			Integer l = this.linkIndex.get(linkId);
+			return l != null && this.links.get(l);
+		}
+
+		public boolean contains(final Link link) {
+			return contains(link.getId());
+		}
+
+		/**
+		 * @return Whether any of the links changed.
+		 */
+		public boolean containsAny(final List<Link> links) {
+			for (Link link : links) {
+				if (contains(link.getId())) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		public int size() {
+			return this.links.cardinality();
+		}
+
+		public boolean isEmpty() {
+			return this.links.isEmpty();
+		}
+
+		/**
+		 * @return The relative change above which a link counts as changed; the travel times of the
+		 *  other links differ by at most this share from those they had when they last changed.
+		 */
+		public double getChangeThreshold() {
+			return this.changeThreshold;
+		}
+
+		public Id<Link>[] getLinkIds() {
+			@SuppressWarnings("unchecked")
+			Id<Link>[] ids = new Id[size()];
+			int i = 0;
+			for (int l = this.links.nextSetBit(0); l >= 0; l = this.links.nextSetBit(l + 1)) {
+				ids[i++] = this.linkIds[l];
+			}
+			return ids;
+		}
+	}
+}
@@ -0,0 +1,230 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * PathCache.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.router;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+
+/**
+ * A size-bounded map from (from node, to node, departure time bin) to the least-cost path, shared by
+ * the {@link CachingLeastCostPathCalculator}s of all routing threads.
+ *
+ * <p>The entries are spread over up to {@value #MAX_SEGMENTS} segments by the hash of their key, each an
+ * access-ordered <code>LinkedHashMap</code> behind its own lock that evicts its least recently used
+ * entry when full. Threads looking up different keys thus rarely wait for each other, and eviction
+ * is LRU per segment, close to LRU overall.</p>
+ *
+ * <p>Hits, misses and evictions are counted since the last {@link #clear()} or {@link #resetCounters()}.</p>
+ */
+public final class PathCache {
+
+	private static final int MAX_SEGMENTS = 16;
+
+	private final double timeBinSize;
+	private final Segment[] segments;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * @param maximumSize The maximal number of paths kept, rounded up to a multiple of the number of segments.
+	 * @param timeBinSize Departures within the same bin of this many seconds share their path.
+	 */
+	public PathCache(final int maximumSize, final double timeBinSize) {
+		if (timeBinSize <= 0) {
+			throw new IllegalArgumentException("time bin size must be positive, but is " + timeBinSize);
+		}
+		this.timeBinSize = timeBinSize;
+		int segmentCount = Math.min(MAX_SEGMENTS, Integer.highestOneBit(Math.max(1, maximumSize)));
+		int segmentSize = (Math.max(1, maximumSize) + segmentCount - 1) / segmentCount;
+		this.segments = new Segment[segmentCount];
+		for (int i = 0; i < segmentCount; i++) {
+			this.segments[i] = new Segment(segmentSize);
+		}
+	}
+
+	/**
+	 * @return The cached path, <code>null</code> if there is none.
+	 */
+	public Path get(final Node fromNode, final Node toNode, final double departureTime) {
+		Key key = new Key(fromNode, toNode, getTimeBin(departureTime));
+		Segment segment = segmentFor(key);
+		Path path;
+		synchronized (segment) {
+			path = segment.get(key);
+		}
+		if (path == null) {
+			this.misses.increment();
+		} else {
+			this.hits.increment();
+		}
+		return path;
+	}
+
+	public void put(final Node fromNode, final Node toNode, final double departureTime, final Path path) {
+		Key key = new Key(fromNode, toNode, getTimeBin(departureTime));
+		Segment segment = segmentFor(key);
+		synchronized (segment) {
+			segment.put(key, path);
+		}
+	}
+
+	/**
+	 * Removes all paths and resets the counters.
+	 */
+	public void clear() {
+		for (Segment segment : this.segments) {
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
+		resetCounters();
+	}
+
+	/**
+	 * Removes the paths matching the filter, e.g. those over links whose travel times changed.
+	 *
+	 * @return The number of removed paths.
+	 */
+	public int removePaths(final Predicate<? super Path> filter) {
+		int removed = 0;
+		for (Segment segment : this.segments) {
+			synchronized (segment) {
+				for (Iterator<Path> it = segment.values().iterator(); it.hasNext();) {
+					if (filter.test(it.next())) {
+						it.remove();
+						removed++;
+					}
+				}
+			}
+		}
+		return removed;
+	}
+
+	public void resetCounters() {
+		this.hits.reset();
+		this.misses.reset();
+		this.evictions.reset();
+	}
+
+	public int size() {
+		int size = 0;
+		for (Segment segment : this.segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	public long getHits() {
+		return this.hits.sum();
+	}
+
+	public long getMisses() {
+		return this.misses.sum();
+	}
+
+	public long getEvictions() {
+		return this.evictions.sum();
+	}
+
+	/**
+	 * @return The share of lookups that found a path, 0 if there were none.
+	 */
+	public double getHitRate() {
+		long hits = getHits();
+		long lookups = hits + getMisses();
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+
+	public double getTimeBinSize() {
+		return this.timeBinSize;
+	}
+
+	private long getTimeBin(final double departureTime) {
+		return (long) Math.floor(departureTime / this.timeBinSize);
+	}
+
+	private Segment segmentFor(final Key key) {
+		int h = key.hashCode();
+		return this.segments[(h ^ (h >>> 16)) & (this.segments.length - 1)];
+	}
+
+	private final class Segment extends LinkedHashMap<Key, Path> {
+		private static final long serialVersionUID = 1L;
+
+		private final int capacity;
+
+		Segment(final int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<Key, Path> eldest) {
+			if (size() > this.capacity) {
+				PathCache.this.evictions.increment();
+				return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Nodes do not override <code>equals</code>, so they are compared by identity.
+	 */
+	private static final class Key {
+		private final Node fromNode;
+		private final Node toNode;
+		private final long timeBin;
+
+		Key(final Node fromNode, final Node toNode, final long timeBin) {
+			this.fromNode = fromNode;
+			this.toNode = toNode;
+			this.timeBin = timeBin;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return this.fromNode == other.fromNode && this.toNode == other.toNode && this.timeBin == other.timeBin;
+		}
+
+		@Override
+		public int hashCode() {
+			int h = System.identityHashCode(this.fromNode);
+			h = 31 * h + System.identityHashCode(this.toNode);
+			return 31 * h + Long.hashCode(this.timeBin);
+		}
+	}
+}
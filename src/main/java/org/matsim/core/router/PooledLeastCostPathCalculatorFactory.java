@@ -0,0 +1,99 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * PooledLeastCostPathCalculatorFactory.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.Objects;
+
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.config.groups.GlobalConfigGroup;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+
+/**
+ * Wraps another factory and returns a shared {@link LeastCostPathCalculatorPool} per network, travel
+ * time object and travel disutility object, sized to the number of threads of the global config group.
+ * All three are compared by identity, so the routers of a pool only use the disutility they were asked
+ * for. Disutilities with per-person state, like the randomizing one, must not be shared between
+ * threads, so they should not be passed to more than one caller in the first place.
+ *
+ * <p>This is meant for many threads routing with the same objects, like the {@link
+ * org.matsim.run.RoutingService}. MATSim's replanning does not need it: it already gives every
+ * replanning thread its own trip router, each with its own disutility and router.</p>
+ */
+public class PooledLeastCostPathCalculatorFactory implements LeastCostPathCalculatorFactory {
+
+	private final LeastCostPathCalculatorFactory delegate;
+	private final int poolSize;
+
+	private final PreProcessCache<PoolKey, LeastCostPathCalculatorPool> pools = new PreProcessCache<>();
+
+	public PooledLeastCostPathCalculatorFactory(final LeastCostPathCalculatorFactory delegate, final GlobalConfigGroup globalConfigGroup) {
+		this(delegate, globalConfigGroup.getNumberOfThreads());
+	}
+
+	public PooledLeastCostPathCalculatorFactory(final LeastCostPathCalculatorFactory delegate, final int poolSize) {
+		this.delegate = delegate;
+		this.poolSize = Math.max(1, poolSize);
+	}
+
+	@Override
+	public LeastCostPathCalculator createPathCalculator(final Network network, final TravelDisutility travelCosts, final TravelTime travelTimes) {
+		return this.pools.get(new PoolKey(network, travelTimes, travelCosts),
+				k -> new LeastCostPathCalculatorPool(this.delegate, network, travelCosts, travelTimes, this.poolSize));
+	}
+
+	/**
+	 * @return The number of pools created so far.
+	 */
+	/*package*/ int getPoolCount() {
+		return this.pools.values().size();
+	}
+
+	private static final class PoolKey {
+		private final Network network;
+		private final TravelTime travelTimes;
+		private final TravelDisutility travelCosts;
+
+		PoolKey(final Network network, final TravelTime travelTimes, final TravelDisutility travelCosts) {
+			this.network = network;
+			this.travelTimes = travelTimes;
+			this.travelCosts = travelCosts;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (!(o instanceof PoolKey)) {
+				return false;
+			}
+			PoolKey other = (PoolKey) o;
+			return this.network == other.network && this.travelTimes == other.travelTimes
+					&& this.travelCosts == other.travelCosts;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(System.identityHashCode(this.network), System.identityHashCode(this.travelTimes),
+					System.identityHashCode(this.travelCosts));
+		}
+	}
+}
@@ -0,0 +1,132 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * PreProcessCache.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.function.Function;
+
+/**
+ * Preprocessing data of the router factories, computed at most once per key (usually the network).
+ *
+ * <p>The first thread asking for a key computes the value; threads asking for the same key meanwhile
+ * wait for that result, while threads asking for other keys compute theirs in parallel. This
+ * replaces the <code>synchronized createPathCalculator</code> methods, which blocked every
+ * replanning thread while the first one ran the preprocessing.</p>
+ *
+ * <p>Keys are compared with <code>equals</code>; networks do not override it, so every network
+ * object gets its own entry. If the computation fails, the exception is thrown to every waiting
+ * thread and the next request computes again.</p>
+ */
+public final class PreProcessCache<K, V> {
+
+	private final ConcurrentMap<K, Future<V>> values = new ConcurrentHashMap<>();
+
+	/**
+	 * @return The value for the key, computed with <code>compute</code> if no other thread did so.
+	 */
+	public V get(final K key, final Function<? super K, ? extends V> compute) {
+		Future<V> future = this.values.get(key);
+		if (future == null) {
+			FutureTask<V> task = new FutureTask<>(() -> compute.apply(key));
+			future = this.values.putIfAbsent(key, task);
+			if (future == null) {
+				future = task;
+				task.run();
+			}
+		}
+		try {
+			return getUninterruptibly(future);
+		} catch (ExecutionException e) {
+			this.values.remove(key, future);
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new RuntimeException(cause);
+		}
+	}
+
+	/**
+	 * @return The value for the key if it is already computed, <code>null</code> otherwise.
+	 */
+	public V getIfPresent(final K key) {
+		Future<V> future = this.values.get(key);
+		if (future == null || !future.isDone()) {
+			return null;
+		}
+		try {
+			return getUninterruptibly(future);
+		} catch (ExecutionException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return All values computed so far, without waiting for those still being computed.
+	 */
+	public List<V> values() {
+		List<V> done = new ArrayList<>();
+		for (Future<V> future : this.values.values()) {
+			if (future.isDone()) {
+				try {
+					done.add(getUninterruptibly(future));
+				} catch (ExecutionException e) {
+					// failed computations are not values
+				}
+			}
+		}
+		return done;
+	}
+
+	public void remove(final K key) {
+		this.values.remove(key);
+	}
+
+	public void clear() {
+		this.values.clear();
+	}
+
+	private static <V> V getUninterruptibly(final Future<V> future) throws ExecutionException {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return future.get();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
@@ -0,0 +1,303 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ReRouteByOrigin.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.core.config.Config;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.core.replanning.ReplanningContext;
+import org.matsim.core.replanning.modules.PlanStrategyModule;
+import org.matsim.core.router.costcalculators.TravelDisutilityFactory;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.router.util.TravelTime;
+
+/**
+ * Re-routes the network legs of one mode, routing all legs that leave the same link in the same
+ * time bin with one {@link GraphDijkstra#calcLeastCostPaths one-to-many search}. When thousands of
+ * agents start from a handful of origins, as in evacuations, this costs one search per origin and
+ * time bin instead of one per agent.
+ *
+ * <p>The plans are only collected in {@link #handlePlan(Plan)}; {@link #finishReplanning()} routes
+ * their legs in rounds on <code>numberOfThreads</code> threads, the first leg of every plan in the
+ * first round, the second one in the second round, and so on. Like in {@link PlanRouter}, the
+ * departure time of a leg is the end of the activity before it according to
+ * {@link TripRouter#calcEndOfActivity}, so an activity with only a duration ends that long after the
+ * arrival on the leg routed in the previous round. Only legs of the mode directly between two
+ * activities are routed, all other plan elements are kept as they are.</p>
+ *
+ * <p>The legs of a group are routed with the earliest departure time in the group, each leg keeps
+ * its own departure time. The searches run without person and vehicle, so person-dependent travel
+ * disutilities are evaluated with their defaults.</p>
+ *
+ * @see ReRouteByOriginProvider
+ */
+public class ReRouteByOrigin implements PlanStrategyModule {
+	private static final Logger log = Logger.getLogger( ReRouteByOrigin.class ) ;
+
+	public static final String STRATEGY_NAME = "ReRouteByOrigin";
+	public static final double DEFAULT_TIME_BIN_SIZE = 900.0;
+
+	private final Network network;
+	private final RoutingGraph graph;
+	private final String mode;
+	private final TravelTime travelTime;
+	private final TravelDisutilityFactory travelDisutilityFactory;
+	private final Config config;
+	private final double timeBinSize;
+	private final int numberOfThreads;
+
+	private final List<Plan> plans = new ArrayList<>();
+
+	/**
+	 * @param config The config that {@link TripRouter#calcEndOfActivity} interprets activity durations with.
+	 * @param timeBinSize Legs leaving the same link within the same bin of this many seconds share a search.
+	 */
+	public ReRouteByOrigin(final Network network, final RoutingGraph graph, final String mode, final TravelTime travelTime,
+			final TravelDisutilityFactory travelDisutilityFactory, final Config config, final double timeBinSize,
+			final int numberOfThreads) {
+		if (!(timeBinSize > 0)) {
+			throw new IllegalArgumentException("time bin size must be positive, but is " + timeBinSize);
+		}
+		this.network = network;
+		this.graph = graph;
+		this.mode = mode;
+		this.travelTime = travelTime;
+		this.travelDisutilityFactory = travelDisutilityFactory;
+		this.config = config;
+		this.timeBinSize = timeBinSize;
+		this.numberOfThreads = Math.max(1, numberOfThreads);
+	}
+
+	@Override
+	public void prepareReplanning(final ReplanningContext replanningContext) {
+		this.plans.clear();
+	}
+
+	@Override
+	public void handlePlan(final Plan plan) {
+		this.plans.add(plan);
+	}
+
+	@Override
+	public void finishReplanning() {
+		List<PlanCursor> cursors = new ArrayList<>(this.plans.size());
+		for (Plan plan : this.plans) {
+			cursors.add(new PlanCursor(plan));
+		}
+		ExecutorService executor = this.numberOfThreads > 1 ? Executors.newFixedThreadPool(this.numberOfThreads) : null;
+		int legs = 0;
+		int searches = 0;
+		try {
+			while (true) {
+				List<Origin> origins = new ArrayList<>(groupNextLegs(cursors).values());
+				if (origins.isEmpty()) {
+					break;
+				}
+				routeOrigins(origins, executor);
+				for (Origin origin : origins) {
+					legs += origin.legs.size();
+				}
+				searches += origins.size();
+			}
+		} finally {
+			if (executor != null) {
+				executor.shutdown();
+			}
+		}
+		log.info("re-routed " + legs + " " + this.mode + " legs of " + this.plans.size() + " plans with " + searches + " searches.");
+		this.plans.clear();
+	}
+
+	/**
+	 * Groups the next leg of every plan by origin link and time bin of its departure, and sets the
+	 * departure times of the legs. Removes the plans without further legs from the cursors.
+	 */
+	private Map<Origin, Origin> groupNextLegs(final List<PlanCursor> cursors) {
+		Map<Origin, Origin> origins = new LinkedHashMap<>();
+		int remaining = 0;
+		for (PlanCursor cursor : cursors) {
+			List<PlanElement> elements = cursor.plan.getPlanElements();
+			int i = cursor.next;
+			while (i + 1 < elements.size() && !isRoutedLeg(elements, i)) {
+				i++;
+			}
+			if (i + 1 >= elements.size()) {
+				continue;
+			}
+			cursor.next = i + 1;
+			cursors.set(remaining++, cursor);
+
+			Leg leg = (Leg) elements.get(i);
+			Activity from = (Activity) elements.get(i - 1);
+			Activity to = (Activity) elements.get(i + 1);
+			double departureTime = TripRouter.calcEndOfActivity(from, cursor.plan, this.config);
+			leg.setDepartureTime(departureTime);
+			Origin key = new Origin(from.getLinkId(), (long) Math.floor(departureTime / this.timeBinSize));
+			Origin origin = origins.get(key);
+			if (origin == null) {
+				origin = key;
+				origins.put(key, origin);
+			}
+			origin.departureTime = Math.min(origin.departureTime, departureTime);
+			origin.legs.add(leg);
+			origin.toLinkIds.add(to.getLinkId());
+		}
+		cursors.subList(remaining, cursors.size()).clear();
+		return origins;
+	}
+
+	private boolean isRoutedLeg(final List<PlanElement> elements, final int i) {
+		return i > 0 && elements.get(i) instanceof Leg && elements.get(i - 1) instanceof Activity
+				&& elements.get(i + 1) instanceof Activity && this.mode.equals(((Leg) elements.get(i)).getMode());
+	}
+
+	private void routeOrigins(final List<Origin> origins, final ExecutorService executor) {
+		final AtomicInteger nextOrigin = new AtomicInteger();
+		final int threads = Math.min(this.numberOfThreads, origins.size());
+		if (executor == null || threads == 1) {
+			routeOrigins(origins, nextOrigin);
+			return;
+		}
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < threads; i++) {
+				futures.add(executor.submit(() -> routeOrigins(origins, nextOrigin)));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void routeOrigins(final List<Origin> origins, final AtomicInteger nextOrigin) {
+		GraphDijkstra router = new GraphDijkstra(this.graph, this.travelDisutilityFactory.createTravelDisutility(this.travelTime),
+				this.travelTime);
+		for (int i = nextOrigin.getAndIncrement(); i < origins.size(); i = nextOrigin.getAndIncrement()) {
+			route(router, origins.get(i));
+		}
+	}
+
+	private void route(final GraphDijkstra router, final Origin origin) {
+		Link fromLink = this.network.getLinks().get(origin.linkId);
+		List<Node> toNodes = new ArrayList<>(origin.toLinkIds.size());
+		for (Id<Link> toLinkId : origin.toLinkIds) {
+			toNodes.add(this.network.getLinks().get(toLinkId).getFromNode());
+		}
+		List<Path> paths = router.calcLeastCostPaths(fromLink.getToNode(), toNodes, origin.departureTime, null, null);
+
+		for (int i = 0; i < paths.size(); i++) {
+			Leg leg = origin.legs.get(i);
+			Id<Link> toLinkId = origin.toLinkIds.get(i);
+			NetworkRoute route = RouteUtils.createLinkNetworkRouteImpl(origin.linkId, toLinkId);
+			if (origin.linkId.equals(toLinkId)) {
+				route.setLinkIds(origin.linkId, Collections.emptyList(), toLinkId);
+				route.setTravelTime(0);
+				route.setTravelCost(0);
+				route.setDistance(0);
+			} else {
+				Path path = paths.get(i);
+				if (path == null) {
+					log.warn("No route was found from link " + origin.linkId + " to link " + toLinkId + ", keeping the old route.");
+					continue;
+				}
+				route.setLinkIds(origin.linkId, NetworkUtils.getLinkIds(path.links), toLinkId);
+				route.setTravelTime(path.travelTime);
+				route.setTravelCost(path.travelCost);
+				// like NetworkRoutingModule: the whole arrival link, nothing of the departure link
+				double distance = this.network.getLinks().get(toLinkId).getLength();
+				for (Link link : path.links) {
+					distance += link.getLength();
+				}
+				route.setDistance(distance);
+			}
+			leg.setTravelTime(route.getTravelTime());
+			leg.setRoute(route);
+		}
+	}
+
+	/**
+	 * A plan and the index of the plan element after its last routed leg.
+	 */
+	private static final class PlanCursor {
+		final Plan plan;
+		int next = 0;
+
+		PlanCursor(final Plan plan) {
+			this.plan = plan;
+		}
+	}
+
+	/**
+	 * The legs leaving one link in one time bin, the key they are grouped by, and the earliest of
+	 * their departure times.
+	 */
+	private static final class Origin {
+		final Id<Link> linkId;
+		final long timeBin;
+		double departureTime = Double.POSITIVE_INFINITY;
+		final List<Leg> legs = new ArrayList<>();
+		final List<Id<Link>> toLinkIds = new ArrayList<>();
+
+		Origin(final Id<Link> linkId, final long timeBin) {
+			this.linkId = linkId;
+			this.timeBin = timeBin;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (!(o instanceof Origin)) {
+				return false;
+			}
+			Origin other = (Origin) o;
+			return this.linkId.equals(other.linkId) && this.timeBin == other.timeBin;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(this.linkId, this.timeBin);
+		}
+	}
+}
@@ -0,0 +1,71 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ReRouteByOriginProvider.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.router;
+
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.core.config.groups.GlobalConfigGroup;
+import org.matsim.core.replanning.PlanStrategy;
+import org.matsim.core.replanning.PlanStrategyImpl;
+import org.matsim.core.replanning.selectors.RandomPlanSelector;
+import org.matsim.core.router.costcalculators.TravelDisutilityFactory;
+import org.matsim.core.router.util.TravelTime;
+
+/**
+ * Provides the {@value ReRouteByOrigin#STRATEGY_NAME} strategy: a random plan, re-routed by
+ * {@link ReRouteByOrigin} for the car mode. Bind it with
+ * <code>addPlanStrategyBinding(ReRouteByOrigin.STRATEGY_NAME).toProvider(ReRouteByOriginProvider.class)</code>
+ * and use it in the strategy settings instead of <code>ReRoute</code>, or bind an instance to group
+ * the departures in time bins of another size than {@value ReRouteByOrigin#DEFAULT_TIME_BIN_SIZE} seconds.
+ */
+public class ReRouteByOriginProvider implements Provider<PlanStrategy> {
+
+	@Inject private Scenario scenario;
+	@Inject private GlobalConfigGroup globalConfigGroup;
+	@Inject private Map<String, TravelTime> travelTimes;
+	@Inject private Map<String, TravelDisutilityFactory> travelDisutilityFactories;
+
+	private final double timeBinSize;
+
+	public ReRouteByOriginProvider() {
+		this(ReRouteByOrigin.DEFAULT_TIME_BIN_SIZE);
+	}
+
+	public ReRouteByOriginProvider(final double timeBinSize) {
+		this.timeBinSize = timeBinSize;
+	}
+
+	@Override
+	public PlanStrategy get() {
+		String mode = TransportMode.car;
+		ReRouteByOrigin module = new ReRouteByOrigin(this.scenario.getNetwork(),
+				RoutingGraph.createFromNetwork(this.scenario.getNetwork()), mode, this.travelTimes.get(mode),
+				this.travelDisutilityFactories.get(mode), this.scenario.getConfig(), this.timeBinSize,
+				this.globalConfigGroup.getNumberOfThreads());
+		return new PlanStrategyImpl.Builder(new RandomPlanSelector<>()).addStrategyModule(module).build();
+	}
+}
@@ -0,0 +1,102 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RecordRouterState.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import org.matsim.api.core.v01.network.Node;
+
+/**
+ * What {@link DijkstraRecord}, {@link AStarEuclideanRecord} and {@link AStarLandmarksRecord} add to
+ * the routers they extend: the counters of the running query, which go to the router type's
+ * {@link RoutingMetrics} when it ends, and the optional {@link IndexedFourAryHeap} reused as queue of
+ * pending nodes. The three routers extend different classes, so each keeps one instance and only
+ * forwards its overridden methods here.
+ */
+/*package*/ final class RecordRouterState {
+
+	private final RoutingMetrics metrics;
+
+	private int visitedNodes = 0;
+	private int relaxedLinks = 0;
+	private int queueOperations = 0;
+	private long start;
+
+	private IndexedFourAryHeap<Node> pendingNodesHeap = null;
+
+	/**
+	 * @param routerName The name the metrics of the router type are registered under.
+	 */
+	RecordRouterState(final String routerName) {
+		this.metrics = RoutingMetrics.getInstance(routerName);
+	}
+
+	void startQuery() {
+		this.visitedNodes = 0;
+		this.relaxedLinks = 0;
+		this.queueOperations = 0;
+		this.start = System.nanoTime();
+	}
+
+	void endQuery() {
+		this.metrics.record(this.visitedNodes, this.relaxedLinks, this.queueOperations, System.nanoTime() - this.start);
+	}
+
+	void nodeVisited() {
+		this.visitedNodes++;
+	}
+
+	/**
+	 * @param queued Whether the link's to-node was inserted or moved in the queue.
+	 * @return <code>queued</code>
+	 */
+	boolean linkRelaxed(final boolean queued) {
+		this.relaxedLinks++;
+		if (queued) {
+			this.queueOperations++;
+		}
+		return queued;
+	}
+
+	/**
+	 * Counts polling a node from the queue; every relaxed node has been polled before.
+	 */
+	void nodeRelaxed() {
+		this.queueOperations++;
+	}
+
+	void setPendingNodesHeap(final IndexedFourAryHeap<Node> heap) {
+		this.pendingNodesHeap = heap;
+	}
+
+	/**
+	 * @return The heap set with {@link #setPendingNodesHeap(IndexedFourAryHeap)}, emptied for the next
+	 *         query, or <code>null</code> if the router uses its default queue.
+	 */
+	IndexedFourAryHeap<Node> resetPendingNodesHeap() {
+		if (this.pendingNodesHeap != null) {
+			this.pendingNodesHeap.reset();
+		}
+		return this.pendingNodesHeap;
+	}
+
+	int getVisitedNodes() {
+		return this.visitedNodes;
+	}
+}
@@ -0,0 +1,435 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RoutingGraph.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.router.util.TravelDisutility;
+
+/**
+ * An immutable, array-backed snapshot of a network for the Graph routers.
+ *
+ * <p>Nodes are numbered <code>0..nodeCount-1</code>. Links are numbered by their from node, so the
+ * out-links of node <code>n</code> are exactly the link indices <code>getOutStart(n)</code> (inclusive)
+ * to <code>getOutEnd(n)</code> (exclusive), in the compressed sparse row layout. In-links are kept in
+ * a second offset array that points into {@link #getInLink(int)}. Length, freespeed and coordinates
+ * are plain <code>double[]</code> arrays, so routers only touch {@link Link} objects when they ask
+ * the cost and time functions.</p>
+ *
+ * <p>A graph built by {@link #createFromNetwork(Network)} keeps references to the network's nodes and
+ * links. Graphs built directly with a {@link Builder} may come without them; then only the
+ * index-based parts of the routers work, and everything that needs the nodes or links, like the
+ * cost and time functions, fails with an <code>IllegalStateException</code>.</p>
+ */
+public final class RoutingGraph {
+
+	private final int nodeCount;
+	private final int linkCount;
+
+	private final Id<Node>[] nodeIds;
+	private final Node[] nodes;
+	private final double[] x;
+	private final double[] y;
+
+	private final Id<Link>[] linkIds;
+	private final Link[] links;
+	private final int[] linkFrom;
+	private final int[] linkTo;
+	private final double[] length;
+	private final double[] freespeed;
+
+	private final int[] outOffsets;
+	private final int[] inOffsets;
+	private final int[] inLinks;
+
+	private final Map<Id<Node>, Integer> nodeIndex;
+	private final boolean networkObjects;
+
+	/* open addressing by identity: node objects and their indices, see getNodeIndex(Node) */
+	private final Node[] nodeTable;
+	private final int[] nodeTableIndex;
+
+	private RoutingGraph(final Builder builder, final int[] order) {
+		this.nodeCount = builder.nodeCount;
+		this.linkCount = builder.linkCount;
+		this.nodeIds = Arrays.copyOf(builder.nodeIds, this.nodeCount);
+		this.nodes = Arrays.copyOf(builder.nodes, this.nodeCount);
+		this.x = Arrays.copyOf(builder.x, this.nodeCount);
+		this.y = Arrays.copyOf(builder.y, this.nodeCount);
+		this.nodeIndex = builder.nodeIndex;
+
+		this.nodeTable = new Node[Integer.highestOneBit(Math.max(this.nodeCount, 1)) * 4];
+		this.nodeTableIndex = new int[this.nodeTable.length];
+		final int mask = this.nodeTable.length - 1;
+		for (int n = 0; n < this.nodeCount; n++) {
+			if (this.nodes[n] != null) {
+				int slot = slot(this.nodes[n]) & mask;
+				while (this.nodeTable[slot] != null) {
+					slot = (slot + 1) & mask;
+				}
+				this.nodeTable[slot] = this.nodes[n];
+				this.nodeTableIndex[slot] = n;
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		Id<Link>[] ids = new Id[this.linkCount];
+		this.linkIds = ids;
+		this.links = new Link[this.linkCount];
+		this.linkFrom = new int[this.linkCount];
+		this.linkTo = new int[this.linkCount];
+		this.length = new double[this.linkCount];
+		this.freespeed = new double[this.linkCount];
+		for (int l = 0; l < this.linkCount; l++) {
+			int b = order[l];
+			this.linkIds[l] = builder.linkIds[b];
+			this.links[l] = builder.links[b];
+			this.linkFrom[l] = builder.linkFrom[b];
+			this.linkTo[l] = builder.linkTo[b];
+			this.length[l] = builder.length[b];
+			this.freespeed[l] = builder.freespeed[b];
+		}
+		boolean objects = true;
+		for (int n = 0; n < this.nodeCount && objects; n++) {
+			objects = this.nodes[n] != null;
+		}
+		for (int l = 0; l < this.linkCount && objects; l++) {
+			objects = this.links[l] != null;
+		}
+		this.networkObjects = objects;
+
+		this.outOffsets = new int[this.nodeCount + 1];
+		this.inOffsets = new int[this.nodeCount + 1];
+		for (int l = 0; l < this.linkCount; l++) {
+			this.outOffsets[this.linkFrom[l] + 1]++;
+			this.inOffsets[this.linkTo[l] + 1]++;
+		}
+		for (int n = 0; n < this.nodeCount; n++) {
+			this.outOffsets[n + 1] += this.outOffsets[n];
+			this.inOffsets[n + 1] += this.inOffsets[n];
+		}
+		this.inLinks = new int[this.linkCount];
+		int[] fill = Arrays.copyOf(this.inOffsets, this.nodeCount);
+		for (int l = 0; l < this.linkCount; l++) {
+			this.inLinks[fill[this.linkTo[l]]++] = l;
+		}
+	}
+
+	/**
+	 * Takes a snapshot of the given network. Later changes to the network are not reflected.
+	 */
+	public static RoutingGraph createFromNetwork(final Network network) {
+		Builder builder = new Builder(network.getNodes().size(), network.getLinks().size());
+		for (Node node : network.getNodes().values()) {
+			builder.addNode(node.getId(), node.getCoord().getX(), node.getCoord().getY(), node);
+		}
+		for (Link link : network.getLinks().values()) {
+			builder.addLink(link.getId(), builder.getNodeIndex(link.getFromNode().getId()),
+					builder.getNodeIndex(link.getToNode().getId()), link.getLength(), link.getFreespeed(), link);
+		}
+		return builder.build();
+	}
+
+	public int getNodeCount() {
+		return this.nodeCount;
+	}
+
+	public int getLinkCount() {
+		return this.linkCount;
+	}
+
+	/**
+	 * @return The index of the node with the given id, or -1 if the graph does not contain it.
+	 */
+	public int getNodeIndex(final Id<Node> id) {
+		Integer index = this.nodeIndex.get(id);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * Looks the node object up by identity in a table built with the graph, without hashing its id or
+	 * boxing the index, for callers that map nodes to indices in their inner loop.
+	 *
+	 * @return The index of the node, or -1 if the graph does not contain this node object.
+	 */
+	public int getNodeIndex(final Node node) {
+		final Node[] table = this.nodeTable;
+		final int mask = table.length - 1;
+		for (int slot = slot(node) & mask;; slot = (slot + 1) & mask) {
+			final Node candidate = table[slot];
+			if (candidate == node) {
+				return this.nodeTableIndex[slot];
+			}
+			if (candidate == null) {
+				return -1;
+			}
+		}
+	}
+
+	private static int slot(final Node node) {
+		final int h = System.identityHashCode(node) * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	public Id<Node> getNodeId(final int node) {
+		return this.nodeIds[node];
+	}
+
+	/**
+	 * @return Whether the graph refers to the node and link objects of a network, as those built by
+	 *         {@link #createFromNetwork(Network)} do.
+	 */
+	public boolean hasNetworkObjects() {
+		return this.networkObjects;
+	}
+
+	/**
+	 * @throws IllegalStateException If the graph was built without the network's nodes.
+	 */
+	public Node getNode(final int node) {
+		final Node n = this.nodes[node];
+		if (n == null) {
+			throw new IllegalStateException("the routing graph was built without the network's nodes");
+		}
+		return n;
+	}
+
+	public double getX(final int node) {
+		return this.x[node];
+	}
+
+	public double getY(final int node) {
+		return this.y[node];
+	}
+
+	public int getOutStart(final int node) {
+		return this.outOffsets[node];
+	}
+
+	public int getOutEnd(final int node) {
+		return this.outOffsets[node + 1];
+	}
+
+	public int getInStart(final int node) {
+		return this.inOffsets[node];
+	}
+
+	public int getInEnd(final int node) {
+		return this.inOffsets[node + 1];
+	}
+
+	/**
+	 * @param position A position between <code>getInStart(n)</code> and <code>getInEnd(n)</code>.
+	 * @return The index of the in-link at that position.
+	 */
+	public int getInLink(final int position) {
+		return this.inLinks[position];
+	}
+
+	public Id<Link> getLinkId(final int link) {
+		return this.linkIds[link];
+	}
+
+	/**
+	 * @throws IllegalStateException If the graph was built without the network's links.
+	 */
+	public Link getLink(final int link) {
+		final Link l = this.links[link];
+		if (l == null) {
+			throw new IllegalStateException("the routing graph was built without the network's links");
+		}
+		return l;
+	}
+
+	public int getFromNode(final int link) {
+		return this.linkFrom[link];
+	}
+
+	public int getToNode(final int link) {
+		return this.linkTo[link];
+	}
+
+	public double getLength(final int link) {
+		return this.length[link];
+	}
+
+	public double getFreespeed(final int link) {
+		return this.freespeed[link];
+	}
+
+	/**
+	 * Hashes the node ids and coordinates and the link ids, ends, lengths and freespeeds in index
+	 * order. Data indexed by node or link, like landmark tables, can be reused for every graph with
+	 * the same hash.
+	 */
+	public long computeContentHash() {
+		long hash = mix(this.nodeCount, this.linkCount);
+		for (int n = 0; n < this.nodeCount; n++) {
+			hash = mix(hash, this.nodeIds[n].toString().hashCode());
+			hash = mix(hash, Double.doubleToLongBits(this.x[n]));
+			hash = mix(hash, Double.doubleToLongBits(this.y[n]));
+		}
+		for (int l = 0; l < this.linkCount; l++) {
+			hash = mix(hash, this.linkIds[l].toString().hashCode());
+			hash = mix(hash, ((long) this.linkFrom[l] << 32) | this.linkTo[l]);
+			hash = mix(hash, Double.doubleToLongBits(this.length[l]));
+			hash = mix(hash, Double.doubleToLongBits(this.freespeed[l]));
+		}
+		return hash;
+	}
+
+	/**
+	 * Hashes the minimal travel disutility of every link. Preprocessing based on minimal costs, like
+	 * landmarks, can be reused for every cost function with the same fingerprint on this graph.
+	 *
+	 * @throws IllegalStateException If the graph was built without the network's links.
+	 */
+	public long computeCostFingerprint(final TravelDisutility costFunction) {
+		long hash = this.linkCount;
+		for (int l = 0; l < this.linkCount; l++) {
+			hash = mix(hash, Double.doubleToLongBits(costFunction.getLinkMinimumTravelDisutility(getLink(l))));
+		}
+		return hash;
+	}
+
+	private static long mix(final long hash, final long value) {
+		long h = (hash ^ value) * 0x9E3779B97F4A7C15L;
+		return Long.rotateLeft(h, 31) * 0xBF58476D1CE4E5B9L;
+	}
+
+	/**
+	 * Collects nodes and links in growable primitive arrays and turns them into a {@link RoutingGraph}.
+	 * Links can be added in any order, but their nodes must have been added before.
+	 */
+	public static final class Builder {
+
+		private int nodeCount = 0;
+		private int linkCount = 0;
+
+		private Id<Node>[] nodeIds;
+		private Node[] nodes;
+		private double[] x;
+		private double[] y;
+		private final Map<Id<Node>, Integer> nodeIndex;
+
+		private Id<Link>[] linkIds;
+		private Link[] links;
+		private int[] linkFrom;
+		private int[] linkTo;
+		private double[] length;
+		private double[] freespeed;
+
+		@SuppressWarnings("unchecked")
+		public Builder(final int expectedNodes, final int expectedLinks) {
+			int n = Math.max(expectedNodes, 16);
+			int l = Math.max(expectedLinks, 16);
+			this.nodeIds = new Id[n];
+			this.nodes = new Node[n];
+			this.x = new double[n];
+			this.y = new double[n];
+			this.nodeIndex = new HashMap<>(n * 4 / 3 + 1);
+			this.linkIds = new Id[l];
+			this.links = new Link[l];
+			this.linkFrom = new int[l];
+			this.linkTo = new int[l];
+			this.length = new double[l];
+			this.freespeed = new double[l];
+		}
+
+		/**
+		 * @param node The network node, may be <code>null</code>.
+		 * @return The index of the new node.
+		 */
+		public int addNode(final Id<Node> id, final double x, final double y, final Node node) {
+			if (this.nodeCount == this.x.length) {
+				int capacity = this.nodeCount * 2;
+				this.nodeIds = Arrays.copyOf(this.nodeIds, capacity);
+				this.nodes = Arrays.copyOf(this.nodes, capacity);
+				this.x = Arrays.copyOf(this.x, capacity);
+				this.y = Arrays.copyOf(this.y, capacity);
+			}
+			int index = this.nodeCount++;
+			this.nodeIds[index] = id;
+			this.nodes[index] = node;
+			this.x[index] = x;
+			this.y[index] = y;
+			if (this.nodeIndex.put(id, index) != null) {
+				throw new IllegalArgumentException("node " + id + " was added twice");
+			}
+			return index;
+		}
+
+		/**
+		 * @return The index of the node with the given id, or -1 if it was not added yet.
+		 */
+		public int getNodeIndex(final Id<Node> id) {
+			Integer index = this.nodeIndex.get(id);
+			return index == null ? -1 : index;
+		}
+
+		/**
+		 * @param link The network link, may be <code>null</code>.
+		 */
+		public void addLink(final Id<Link> id, final int from, final int to, final double length, final double freespeed, final Link link) {
+			if (from < 0 || from >= this.nodeCount || to < 0 || to >= this.nodeCount) {
+				throw new IllegalArgumentException("link " + id + " refers to an unknown node");
+			}
+			if (this.linkCount == this.linkFrom.length) {
+				int capacity = this.linkCount * 2;
+				this.linkIds = Arrays.copyOf(this.linkIds, capacity);
+				this.links = Arrays.copyOf(this.links, capacity);
+				this.linkFrom = Arrays.copyOf(this.linkFrom, capacity);
+				this.linkTo = Arrays.copyOf(this.linkTo, capacity);
+				this.length = Arrays.copyOf(this.length, capacity);
+				this.freespeed = Arrays.copyOf(this.freespeed, capacity);
+			}
+			int index = this.linkCount++;
+			this.linkIds[index] = id;
+			this.links[index] = link;
+			this.linkFrom[index] = from;
+			this.linkTo[index] = to;
+			this.length[index] = length;
+			this.freespeed[index] = freespeed;
+		}
+
+		public RoutingGraph build() {
+			// counting sort of the links by from node, stable with respect to the insertion order
+			int[] start = new int[this.nodeCount + 1];
+			for (int l = 0; l < this.linkCount; l++) {
+				start[this.linkFrom[l] + 1]++;
+			}
+			for (int n = 0; n < this.nodeCount; n++) {
+				start[n + 1] += start[n];
+			}
+			int[] order = new int[this.linkCount];
+			for (int l = 0; l < this.linkCount; l++) {
+				order[start[this.linkFrom[l]]++] = l;
+			}
+			return new RoutingGraph(this, order);
+		}
+	}
+}
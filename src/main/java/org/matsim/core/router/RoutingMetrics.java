@@ -0,0 +1,239 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RoutingMetrics.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.SingleWriterRecorder;
+import org.apache.log4j.Logger;
+
+/**
+ * Per-query routing statistics of one router type: visited nodes, relaxed links, priority queue
+ * operations and wall time.
+ *
+ * <p>A query is recorded into the HDR histograms of the recording thread, so recording is a handful
+ * of wait-free writes that neither block nor allocate. The sets of threads that have ended are
+ * dropped once they are harvested, which keeps short-lived threads (such as one thread per request)
+ * from piling up sets. {@link #harvest()} collects what was recorded since the last harvest; the collected values are kept both for the
+ * current interval (usually one iteration, see {@link RoutingMetricsWriter}) and in total.
+ * The totals are also published over JMX as
+ * <code>org.matsim.core.router:type=RoutingMetrics,name=&lt;router&gt;</code>.</p>
+ */
+public final class RoutingMetrics implements RoutingMetricsMXBean {
+	private static final Logger log = Logger.getLogger( RoutingMetrics.class ) ;
+
+	public enum Metric { visitedNodes, relaxedLinks, queueOperations, wallTimeMicros }
+
+	private static final int SIGNIFICANT_DIGITS = 3;
+
+	private static final ConcurrentMap<String, RoutingMetrics> instances = new ConcurrentHashMap<>();
+
+	private final String routerName;
+	private final List<RecorderSet> recorders = new CopyOnWriteArrayList<>();
+	private final ThreadLocal<RecorderSet> threadRecorders = ThreadLocal.withInitial(this::createRecorderSet);
+	private final Histogram[] interval = new Histogram[Metric.values().length];
+	private final Histogram[] total = new Histogram[Metric.values().length];
+
+	/**
+	 * @return The metrics of the given router type, created and registered with JMX on first use.
+	 */
+	public static RoutingMetrics getInstance(final String routerName) {
+		RoutingMetrics metrics = instances.get(routerName);
+		if (metrics == null) {
+			RoutingMetrics newMetrics = new RoutingMetrics(routerName);
+			metrics = instances.putIfAbsent(routerName, newMetrics);
+			if (metrics == null) {
+				metrics = newMetrics;
+				metrics.registerMBean();
+			}
+		}
+		return metrics;
+	}
+
+	/**
+	 * @return The metrics of all router types that were used so far.
+	 */
+	public static Collection<RoutingMetrics> getInstances() {
+		List<RoutingMetrics> metrics = new ArrayList<>(instances.values());
+		Collections.sort(metrics, (a, b) -> a.routerName.compareTo(b.routerName));
+		return metrics;
+	}
+
+	private RoutingMetrics(final String routerName) {
+		this.routerName = routerName;
+		for (int i = 0; i < this.interval.length; i++) {
+			this.interval[i] = new Histogram(SIGNIFICANT_DIGITS);
+			this.total[i] = new Histogram(SIGNIFICANT_DIGITS);
+		}
+	}
+
+	private void registerMBean() {
+		try {
+			ObjectName name = new ObjectName("org.matsim.core.router:type=RoutingMetrics,name=" + ObjectName.quote(this.routerName));
+			if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+				ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+			}
+		} catch (JMException e) {
+			log.warn("could not register routing metrics of " + this.routerName + " with JMX", e);
+		}
+	}
+
+	/**
+	 * Records one calculated path.
+	 *
+	 * @param visitedNodes The number of nodes that were reached during the query.
+	 * @param relaxedLinks The number of links that were relaxed.
+	 * @param queueOperations The number of insertions, key updates and removals on the pending nodes queue.
+	 * @param wallTimeNanos The wall time the query took.
+	 */
+	public void record(final int visitedNodes, final int relaxedLinks, final int queueOperations, final long wallTimeNanos) {
+		RecorderSet recorder = this.threadRecorders.get();
+		recorder.metrics[Metric.visitedNodes.ordinal()].recordValue(visitedNodes);
+		recorder.metrics[Metric.relaxedLinks.ordinal()].recordValue(relaxedLinks);
+		recorder.metrics[Metric.queueOperations.ordinal()].recordValue(queueOperations);
+		recorder.metrics[Metric.wallTimeMicros.ordinal()].recordValue(wallTimeNanos / 1000);
+	}
+
+	private RecorderSet createRecorderSet() {
+		RecorderSet recorder = new RecorderSet(Thread.currentThread());
+		this.recorders.add(recorder);
+		return recorder;
+	}
+
+	/**
+	 * Moves everything the routing threads recorded so far into the interval and total histograms.
+	 */
+	public synchronized void harvest() {
+		for (RecorderSet recorder : this.recorders) {
+			// checked before harvesting, so that nothing the thread recorded is lost
+			boolean ended = !recorder.thread.isAlive();
+			for (int i = 0; i < recorder.metrics.length; i++) {
+				recorder.spare[i] = recorder.spare[i] == null ? recorder.metrics[i].getIntervalHistogram()
+						: recorder.metrics[i].getIntervalHistogram(recorder.spare[i]);
+				this.interval[i].add(recorder.spare[i]);
+				this.total[i].add(recorder.spare[i]);
+			}
+			if (ended) {
+				this.recorders.remove(recorder);
+			}
+		}
+	}
+
+	/**
+	 * Harvests and returns a copy of the values recorded since the last call, then starts a new interval.
+	 */
+	public synchronized Histogram[] nextInterval() {
+		harvest();
+		Histogram[] copy = new Histogram[this.interval.length];
+		for (int i = 0; i < copy.length; i++) {
+			copy[i] = this.interval[i].copy();
+			this.interval[i].reset();
+		}
+		return copy;
+	}
+
+	public String getRouterName() {
+		return this.routerName;
+	}
+
+	private synchronized Histogram total(final Metric metric) {
+		harvest();
+		return this.total[metric.ordinal()];
+	}
+
+	@Override
+	public synchronized long getQueryCount() {
+		return total(Metric.wallTimeMicros).getTotalCount();
+	}
+
+	@Override
+	public synchronized double getMeanVisitedNodes() {
+		return total(Metric.visitedNodes).getMean();
+	}
+
+	@Override
+	public synchronized long getP50VisitedNodes() {
+		return total(Metric.visitedNodes).getValueAtPercentile(50);
+	}
+
+	@Override
+	public synchronized long getP99VisitedNodes() {
+		return total(Metric.visitedNodes).getValueAtPercentile(99);
+	}
+
+	@Override
+	public synchronized double getMeanRelaxedLinks() {
+		return total(Metric.relaxedLinks).getMean();
+	}
+
+	@Override
+	public synchronized double getMeanQueueOperations() {
+		return total(Metric.queueOperations).getMean();
+	}
+
+	@Override
+	public synchronized double getMeanWallTimeMicros() {
+		return total(Metric.wallTimeMicros).getMean();
+	}
+
+	@Override
+	public synchronized long getP50WallTimeMicros() {
+		return total(Metric.wallTimeMicros).getValueAtPercentile(50);
+	}
+
+	@Override
+	public synchronized long getP99WallTimeMicros() {
+		return total(Metric.wallTimeMicros).getValueAtPercentile(99);
+	}
+
+	@Override
+	public synchronized void reset() {
+		harvest();
+		for (int i = 0; i < this.total.length; i++) {
+			this.interval[i].reset();
+			this.total[i].reset();
+		}
+	}
+
+	private static final class RecorderSet {
+		final Thread thread;
+		final SingleWriterRecorder[] metrics = new SingleWriterRecorder[Metric.values().length];
+		final Histogram[] spare = new Histogram[Metric.values().length];
+
+		RecorderSet(final Thread thread) {
+			this.thread = thread;
+			for (int i = 0; i < this.metrics.length; i++) {
+				this.metrics[i] = new SingleWriterRecorder(SIGNIFICANT_DIGITS);
+			}
+		}
+	}
+}
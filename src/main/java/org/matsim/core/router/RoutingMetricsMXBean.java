@@ -0,0 +1,47 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RoutingMetricsMXBean.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+/**
+ * JMX view on the {@link RoutingMetrics} of one router type, totals since start or the last reset.
+ */
+public interface RoutingMetricsMXBean {
+
+	long getQueryCount();
+
+	double getMeanVisitedNodes();
+
+	long getP50VisitedNodes();
+
+	long getP99VisitedNodes();
+
+	double getMeanRelaxedLinks();
+
+	double getMeanQueueOperations();
+
+	double getMeanWallTimeMicros();
+
+	long getP50WallTimeMicros();
+
+	long getP99WallTimeMicros();
+
+	void reset();
+}
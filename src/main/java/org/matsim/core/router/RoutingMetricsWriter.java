@@ -0,0 +1,73 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RoutingMetricsWriter.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+
+import org.HdrHistogram.Histogram;
+import org.matsim.core.controler.events.IterationEndsEvent;
+import org.matsim.core.controler.listener.IterationEndsListener;
+import org.matsim.core.utils.io.IOUtils;
+
+/**
+ * Writes the {@link RoutingMetrics} of every router type that routed during an iteration to
+ * <code>ITERS/it.N/N.routingMetrics.csv</code>, comma-separated with one line per router type and metric.
+ */
+public class RoutingMetricsWriter implements IterationEndsListener {
+
+	public static final String FILENAME = "routingMetrics.csv";
+
+	private static final String HEADER = "router,metric,count,mean,min,p50,p90,p99,max";
+
+	@Override
+	public void notifyIterationEnds(final IterationEndsEvent event) {
+		Collection<RoutingMetrics> all = RoutingMetrics.getInstances();
+		if (all.isEmpty()) {
+			return;
+		}
+		write(all, event.getServices().getControlerIO().getIterationFilename(event.getIteration(), FILENAME));
+	}
+
+	/**
+	 * Writes and resets the current interval of the given metrics.
+	 */
+	public static void write(final Collection<RoutingMetrics> all, final String filename) {
+		try (BufferedWriter writer = IOUtils.getBufferedWriter(filename)) {
+			writer.write(HEADER);
+			writer.newLine();
+			for (RoutingMetrics metrics : all) {
+				Histogram[] interval = metrics.nextInterval();
+				for (RoutingMetrics.Metric metric : RoutingMetrics.Metric.values()) {
+					Histogram h = interval[metric.ordinal()];
+					writer.write(metrics.getRouterName() + "," + metric + "," + h.getTotalCount() + "," + h.getMean()
+							+ "," + h.getMinValue() + "," + h.getValueAtPercentile(50) + "," + h.getValueAtPercentile(90)
+							+ "," + h.getValueAtPercentile(99) + "," + h.getMaxValue());
+					writer.newLine();
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
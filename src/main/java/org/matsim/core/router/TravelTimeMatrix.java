@@ -0,0 +1,208 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TravelTimeMatrix.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.router;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+
+/**
+ * Dense origin-destination matrices of travel time, travel cost and distance of the least-cost
+ * paths, for skims.
+ *
+ * <p>Every row is one {@link GraphDijkstra} search from its origin that stops once all
+ * destinations are settled, instead of one search per cell. The rows are split across a
+ * <code>ForkJoinPool</code>; all searches share the read-only {@link RoutingGraph}, every worker
+ * task has its own router. Distances are summed along the search tree, each node at most once per
+ * row.</p>
+ *
+ * <p>Cells of unreachable destinations are <code>Double.POSITIVE_INFINITY</code>. Travel times and
+ * costs are those of {@link GraphDijkstra#calcLeastCostPath} departing at the given time.</p>
+ */
+public final class TravelTimeMatrix {
+
+	private final Node[] origins;
+	private final Node[] destinations;
+	private final double[][] travelTimes;
+	private final double[][] travelCosts;
+	private final double[][] distances;
+
+	private TravelTimeMatrix(final Node[] origins, final Node[] destinations) {
+		this.origins = origins;
+		this.destinations = destinations;
+		this.travelTimes = new double[origins.length][destinations.length];
+		this.travelCosts = new double[origins.length][destinations.length];
+		this.distances = new double[origins.length][destinations.length];
+	}
+
+	/**
+	 * Calculates the matrices in the common <code>ForkJoinPool</code>.
+	 */
+	public static TravelTimeMatrix calculate(final RoutingGraph graph, final Node[] origins, final Node[] destinations,
+			final double departureTime, final TravelDisutility costFunction, final TravelTime timeFunction) {
+		return calculate(graph, origins, destinations, departureTime, costFunction, timeFunction, ForkJoinPool.commonPool());
+	}
+
+	public static TravelTimeMatrix calculate(final RoutingGraph graph, final Node[] origins, final Node[] destinations,
+			final double departureTime, final TravelDisutility costFunction, final TravelTime timeFunction, final ForkJoinPool pool) {
+		TravelTimeMatrix matrix = new TravelTimeMatrix(origins.clone(), destinations.clone());
+		int[] from = toIndices(graph, origins);
+		int[] to = toIndices(graph, destinations);
+		// a few tasks per worker, so that rows of different search sizes even out
+		int rowsPerTask = Math.max(1, origins.length / (4 * pool.getParallelism()));
+		pool.invoke(new Rows(matrix, graph, from, to, departureTime, costFunction, timeFunction, 0, origins.length, rowsPerTask));
+		return matrix;
+	}
+
+	private static int[] toIndices(final RoutingGraph graph, final Node[] nodes) {
+		int[] indices = new int[nodes.length];
+		for (int i = 0; i < nodes.length; i++) {
+			indices[i] = graph.getNodeIndex(nodes[i].getId());
+			if (indices[i] < 0) {
+				throw new IllegalArgumentException("node " + nodes[i].getId() + " is not part of the routing graph");
+			}
+		}
+		return indices;
+	}
+
+	public Node[] getOrigins() {
+		return this.origins.clone();
+	}
+
+	public Node[] getDestinations() {
+		return this.destinations.clone();
+	}
+
+	/**
+	 * @return The travel times, indexed by <code>[origin][destination]</code>.
+	 */
+	public double[][] getTravelTimes() {
+		return this.travelTimes;
+	}
+
+	/**
+	 * @return The travel costs, indexed by <code>[origin][destination]</code>.
+	 */
+	public double[][] getTravelCosts() {
+		return this.travelCosts;
+	}
+
+	/**
+	 * @return The distances, indexed by <code>[origin][destination]</code>.
+	 */
+	public double[][] getDistances() {
+		return this.distances;
+	}
+
+	/**
+	 * Calculates the rows <code>[start, end)</code>, splitting them while there are more than
+	 * <code>rowsPerTask</code>.
+	 */
+	private static final class Rows extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final TravelTimeMatrix matrix;
+		private final RoutingGraph graph;
+		private final int[] from;
+		private final int[] to;
+		private final double departureTime;
+		private final TravelDisutility costFunction;
+		private final TravelTime timeFunction;
+		private final int start;
+		private final int end;
+		private final int rowsPerTask;
+
+		Rows(final TravelTimeMatrix matrix, final RoutingGraph graph, final int[] from, final int[] to, final double departureTime,
+				final TravelDisutility costFunction, final TravelTime timeFunction, final int start, final int end, final int rowsPerTask) {
+			this.matrix = matrix;
+			this.graph = graph;
+			this.from = from;
+			this.to = to;
+			this.departureTime = departureTime;
+			this.costFunction = costFunction;
+			this.timeFunction = timeFunction;
+			this.start = start;
+			this.end = end;
+			this.rowsPerTask = rowsPerTask;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.end - this.start > this.rowsPerTask) {
+				int middle = (this.start + this.end) >>> 1;
+				invokeAll(split(this.start, middle), split(middle, this.end));
+				return;
+			}
+			GraphDijkstra router = new GraphDijkstra(this.graph, this.costFunction, this.timeFunction);
+			int n = this.graph.getNodeCount();
+			double[] distance = new double[n];
+			int[] distanceStamp = new int[n];
+			int[] stack = new int[64];
+			for (int row = this.start; row < this.end; row++) {
+				router.searchAll(this.from[row], this.to, this.departureTime);
+				double[] times = this.matrix.travelTimes[row];
+				double[] costs = this.matrix.travelCosts[row];
+				double[] distances = this.matrix.distances[row];
+				int stamp = row + 1;
+				distance[this.from[row]] = 0;
+				distanceStamp[this.from[row]] = stamp;
+				for (int column = 0; column < this.to.length; column++) {
+					int node = this.to[column];
+					if (!router.isVisited(node)) {
+						times[column] = Double.POSITIVE_INFINITY;
+						costs[column] = Double.POSITIVE_INFINITY;
+						distances[column] = Double.POSITIVE_INFINITY;
+						continue;
+					}
+					times[column] = router.getTime(node) - this.departureTime;
+					costs[column] = router.getCost(node);
+					// walk up the tree to a node with known distance, then sum back down
+					int depth = 0;
+					while (distanceStamp[node] != stamp) {
+						if (depth == stack.length) {
+							stack = Arrays.copyOf(stack, depth * 2);
+						}
+						stack[depth++] = node;
+						node = this.graph.getFromNode(router.getPrevLink(node));
+					}
+					double d = distance[node];
+					while (depth > 0) {
+						node = stack[--depth];
+						d += this.graph.getLength(router.getPrevLink(node));
+						distance[node] = d;
+						distanceStamp[node] = stamp;
+					}
+					distances[column] = d;
+				}
+			}
+		}
+
+		private Rows split(final int start, final int end) {
+			return new Rows(this.matrix, this.graph, this.from, this.to, this.departureTime, this.costFunction,
+					this.timeFunction, start, end, this.rowsPerTask);
+		}
+	}
+}
@@ -0,0 +1,206 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * WorkStealingReRoute.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.router;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import javax.inject.Provider;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.core.controler.OutputDirectoryHierarchy;
+import org.matsim.core.replanning.ReplanningContext;
+import org.matsim.core.replanning.modules.PlanStrategyModule;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.facilities.ActivityFacilities;
+
+/**
+ * Re-routes plans like MATSim's <code>ReRoute</code>, but schedules them on a work-stealing
+ * <code>ForkJoinPool</code> instead of handing every thread a fixed share of the agents. Plans whose
+ * routes differ a lot in length then no longer leave some threads idle while others still route.
+ *
+ * <p>The plans are collected in {@link #handlePlan(Plan)} and routed in
+ * {@link #finishReplanning()}: the list is split in halves down to {@link #PLANS_PER_TASK} plans,
+ * and idle workers steal the halves other workers have not started yet. Every worker routes with
+ * its own <code>TripRouter</code>, taken from the provider (and thus from the bound
+ * <code>LeastCostPathCalculatorFactory</code>) once per replanning.</p>
+ *
+ * <p>After every replanning, the time each worker spent routing is logged and, if an output
+ * directory is given, written to <code>ITERS/it.N/N.{@value #FILENAME}</code> as its share of the
+ * wall-clock time of the whole replanning.</p>
+ *
+ * <p>The threads of the pool run until {@link #shutdown()}, which {@link WorkStealingReRouteProvider}
+ * calls for its modules when the controler shuts down.</p>
+ */
+public class WorkStealingReRoute implements PlanStrategyModule {
+	private static final Logger log = Logger.getLogger( WorkStealingReRoute.class ) ;
+
+	public static final String FILENAME = "replanningUtilization.csv";
+
+	/*package*/ static final int PLANS_PER_TASK = 16;
+
+	private final Provider<TripRouter> tripRouterProvider;
+	private final ActivityFacilities facilities;
+	private final OutputDirectoryHierarchy controlerIO;
+	private final ForkJoinPool pool;
+
+	private final List<Plan> plans = new ArrayList<>();
+	private final Map<Thread, Worker> workers = new ConcurrentHashMap<>();
+	private int iteration = -1;
+
+	/**
+	 * @param controlerIO Where to write the utilization, <code>null</code> to only log it.
+	 */
+	public WorkStealingReRoute(final Provider<TripRouter> tripRouterProvider, final ActivityFacilities facilities,
+			final int numberOfThreads, final OutputDirectoryHierarchy controlerIO) {
+		this.tripRouterProvider = tripRouterProvider;
+		this.facilities = facilities;
+		this.controlerIO = controlerIO;
+		this.pool = new ForkJoinPool(Math.max(1, numberOfThreads));
+	}
+
+	@Override
+	public void prepareReplanning(final ReplanningContext replanningContext) {
+		this.plans.clear();
+		this.workers.clear();
+		this.iteration = replanningContext.getIteration();
+	}
+
+	@Override
+	public void handlePlan(final Plan plan) {
+		this.plans.add(plan);
+	}
+
+	@Override
+	public void finishReplanning() {
+		long start = System.nanoTime();
+		long steals = this.pool.getStealCount();
+		this.pool.invoke(new Plans(0, this.plans.size()));
+		long wallNanos = System.nanoTime() - start;
+		report(wallNanos, this.pool.getStealCount() - steals);
+		this.plans.clear();
+		this.workers.clear();
+	}
+
+	/**
+	 * Stops the threads of the pool once the plans handed to it are routed; the module cannot
+	 * re-route any more plans afterwards.
+	 */
+	public void shutdown() {
+		this.pool.shutdown();
+	}
+
+	private void report(final long wallNanos, final long steals) {
+		List<Worker> all = new ArrayList<>(this.workers.values());
+		long busyNanos = 0;
+		for (Worker worker : all) {
+			busyNanos += worker.busyNanos;
+			log.info(worker.name + ": " + worker.plans + " plans, busy " + worker.busyNanos / 1000000 + " ms ("
+					+ percent(worker.busyNanos, wallNanos) + "%)");
+		}
+		log.info("re-routed " + this.plans.size() + " plans in " + wallNanos / 1000000 + " ms on " + this.pool.getParallelism()
+				+ " threads, " + steals + " steals, utilization " + percent(busyNanos, wallNanos * this.pool.getParallelism()) + "%.");
+		if (this.controlerIO == null || this.iteration < 0) {
+			return;
+		}
+		try (BufferedWriter writer = IOUtils.getBufferedWriter(this.controlerIO.getIterationFilename(this.iteration, FILENAME))) {
+			writer.write("thread,plans,busyMs,wallMs,utilization");
+			writer.newLine();
+			for (Worker worker : all) {
+				writer.write(worker.name + "," + worker.plans + "," + worker.busyNanos / 1000000 + "," + wallNanos / 1000000
+						+ "," + (double) worker.busyNanos / wallNanos);
+				writer.newLine();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static long percent(final long part, final long whole) {
+		return whole == 0 ? 0 : Math.round(100.0 * part / whole);
+	}
+
+	private Worker getWorker() {
+		Thread thread = Thread.currentThread();
+		Worker worker = this.workers.get(thread);
+		if (worker == null) {
+			worker = new Worker(thread.getName(), new PlanRouter(this.tripRouterProvider.get(), this.facilities));
+			this.workers.put(thread, worker);
+		}
+		return worker;
+	}
+
+	/**
+	 * The router of one pool thread and what it routed; only that thread writes to it.
+	 */
+	private static final class Worker {
+		final String name;
+		final PlanRouter planRouter;
+		int plans = 0;
+		long busyNanos = 0;
+
+		Worker(final String name, final PlanRouter planRouter) {
+			this.name = name;
+			this.planRouter = planRouter;
+		}
+	}
+
+	/**
+	 * Routes the plans <code>[start, end)</code>, splitting them while there are more than
+	 * {@link #PLANS_PER_TASK}.
+	 */
+	private final class Plans extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int start;
+		private final int end;
+
+		Plans(final int start, final int end) {
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.end - this.start > PLANS_PER_TASK) {
+				int middle = (this.start + this.end) >>> 1;
+				invokeAll(new Plans(this.start, middle), new Plans(middle, this.end));
+				return;
+			}
+			Worker worker = getWorker();
+			long start = System.nanoTime();
+			for (int i = this.start; i < this.end; i++) {
+				worker.planRouter.run(WorkStealingReRoute.this.plans.get(i));
+			}
+			worker.busyNanos += System.nanoTime() - start;
+			worker.plans += this.end - this.start;
+		}
+	}
+}
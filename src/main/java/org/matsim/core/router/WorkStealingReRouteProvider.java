@@ -0,0 +1,76 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * WorkStealingReRouteProvider.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.core.config.groups.GlobalConfigGroup;
+import org.matsim.core.controler.OutputDirectoryHierarchy;
+import org.matsim.core.controler.events.ShutdownEvent;
+import org.matsim.core.controler.listener.ShutdownListener;
+import org.matsim.core.replanning.PlanStrategy;
+import org.matsim.core.replanning.PlanStrategyImpl;
+import org.matsim.core.replanning.selectors.RandomPlanSelector;
+
+/**
+ * Provides a <code>ReRoute</code> strategy that routes with {@link WorkStealingReRoute}: a random
+ * plan, re-routed on <code>global.numberOfThreads</code> work-stealing threads. <code>RunMatsim</code>
+ * binds it under the name of the default <code>ReRoute</code> strategy when enabled in its config
+ * group, so the strategy settings need not change.
+ *
+ * <p>Every module routes on its own thread pool. Bound as a controler listener as well, the provider
+ * shuts these pools down when the controler shuts down.</p>
+ */
+public class WorkStealingReRouteProvider implements Provider<PlanStrategy>, ShutdownListener {
+
+	@Inject private Provider<TripRouter> tripRouterProvider;
+	@Inject private Scenario scenario;
+	@Inject private GlobalConfigGroup globalConfigGroup;
+	@Inject private OutputDirectoryHierarchy controlerIO;
+
+	private final List<WorkStealingReRoute> modules = new ArrayList<>();
+
+	@Override
+	public PlanStrategy get() {
+		WorkStealingReRoute module = new WorkStealingReRoute(this.tripRouterProvider, this.scenario.getActivityFacilities(),
+				this.globalConfigGroup.getNumberOfThreads(), this.controlerIO);
+		synchronized (this.modules) {
+			this.modules.add(module);
+		}
+		return new PlanStrategyImpl.Builder(new RandomPlanSelector<>()).addStrategyModule(module).build();
+	}
+
+	@Override
+	public void notifyShutdown(final ShutdownEvent event) {
+		synchronized (this.modules) {
+			for (WorkStealingReRoute module : this.modules) {
+				module.shutdown();
+			}
+			this.modules.clear();
+		}
+	}
+}
@@ -0,0 +1,164 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BinaryNetworkIO.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.scenario;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.utils.io.ColumnarFile;
+
+/**
+ * Writes and reads a network as a {@link ColumnarFile}: one column per node and link property, links
+ * referring to their nodes by index.
+ *
+ * <p>Columns: capacity period; node ids, x, y; link ids, from node, to node, length, freespeed,
+ * capacity, number of lanes; the distinct sets of allowed modes and the mode set of every link.
+ * Node and link attributes, z coordinates and the network name are not kept.</p>
+ */
+public final class BinaryNetworkIO {
+
+	public static final int KIND = 1;
+
+	private BinaryNetworkIO() {
+	}
+
+	public static void write(final Network network, final File file, final boolean compress) throws IOException {
+		int nodeCount = network.getNodes().size();
+		String[] nodeIds = new String[nodeCount];
+		double[] x = new double[nodeCount];
+		double[] y = new double[nodeCount];
+		Map<Id<Node>, Integer> nodeIndex = new HashMap<>(nodeCount * 4 / 3 + 1);
+		int n = 0;
+		for (Node node : network.getNodes().values()) {
+			nodeIds[n] = node.getId().toString();
+			x[n] = node.getCoord().getX();
+			y[n] = node.getCoord().getY();
+			nodeIndex.put(node.getId(), n);
+			n++;
+		}
+
+		int linkCount = network.getLinks().size();
+		String[] linkIds = new String[linkCount];
+		int[] from = new int[linkCount];
+		int[] to = new int[linkCount];
+		double[] length = new double[linkCount];
+		double[] freespeed = new double[linkCount];
+		double[] capacity = new double[linkCount];
+		double[] lanes = new double[linkCount];
+		int[] modes = new int[linkCount];
+		Map<String, Integer> modeSets = new HashMap<>();
+		int l = 0;
+		for (Link link : network.getLinks().values()) {
+			linkIds[l] = link.getId().toString();
+			from[l] = nodeIndex.get(link.getFromNode().getId());
+			to[l] = nodeIndex.get(link.getToNode().getId());
+			length[l] = link.getLength();
+			freespeed[l] = link.getFreespeed();
+			capacity[l] = link.getCapacity();
+			lanes[l] = link.getNumberOfLanes();
+			String modeSet = String.join(",", new TreeSet<>(link.getAllowedModes()));
+			Integer index = modeSets.get(modeSet);
+			if (index == null) {
+				index = modeSets.size();
+				modeSets.put(modeSet, index);
+			}
+			modes[l] = index;
+			l++;
+		}
+		String[] modeSetNames = new String[modeSets.size()];
+		for (Map.Entry<String, Integer> e : modeSets.entrySet()) {
+			modeSetNames[e.getValue()] = e.getKey();
+		}
+
+		try (ColumnarFile.Writer writer = new ColumnarFile.Writer(file, KIND, compress)) {
+			writer.writeDoubles(new double[] { network.getCapacityPeriod() }, 1);
+			writer.writeStrings(nodeIds, nodeCount);
+			writer.writeDoubles(x, nodeCount);
+			writer.writeDoubles(y, nodeCount);
+			writer.writeStrings(linkIds, linkCount);
+			writer.writeInts(from, linkCount);
+			writer.writeInts(to, linkCount);
+			writer.writeDoubles(length, linkCount);
+			writer.writeDoubles(freespeed, linkCount);
+			writer.writeDoubles(capacity, linkCount);
+			writer.writeDoubles(lanes, linkCount);
+			writer.writeStrings(modeSetNames, modeSetNames.length);
+			writer.writeInts(modes, linkCount);
+		}
+	}
+
+	/**
+	 * Adds the nodes and links of the file to <code>network</code>, which is usually empty.
+	 */
+	public static void read(final File file, final Network network) throws IOException {
+		NetworkFactory factory = network.getFactory();
+		try (ColumnarFile.Reader reader = new ColumnarFile.Reader(file, KIND)) {
+			network.setCapacityPeriod(reader.readDoubles().get(0));
+			String[] nodeIds = reader.readStrings();
+			DoubleBuffer x = reader.readDoubles();
+			DoubleBuffer y = reader.readDoubles();
+			Node[] nodes = new Node[nodeIds.length];
+			for (int n = 0; n < nodes.length; n++) {
+				nodes[n] = factory.createNode(Id.createNodeId(nodeIds[n]), new Coord(x.get(n), y.get(n)));
+				network.addNode(nodes[n]);
+			}
+
+			String[] linkIds = reader.readStrings();
+			IntBuffer from = reader.readInts();
+			IntBuffer to = reader.readInts();
+			DoubleBuffer length = reader.readDoubles();
+			DoubleBuffer freespeed = reader.readDoubles();
+			DoubleBuffer capacity = reader.readDoubles();
+			DoubleBuffer lanes = reader.readDoubles();
+			String[] modeSetNames = reader.readStrings();
+			IntBuffer modes = reader.readInts();
+			String[][] modeSets = new String[modeSetNames.length][];
+			for (int i = 0; i < modeSets.length; i++) {
+				modeSets[i] = modeSetNames[i].isEmpty() ? new String[0] : modeSetNames[i].split(",");
+			}
+			for (int l = 0; l < linkIds.length; l++) {
+				Link link = factory.createLink(Id.createLinkId(linkIds[l]), nodes[from.get(l)], nodes[to.get(l)]);
+				link.setLength(length.get(l));
+				link.setFreespeed(freespeed.get(l));
+				link.setCapacity(capacity.get(l));
+				link.setNumberOfLanes(lanes.get(l));
+				Set<String> allowedModes = new HashSet<>(Arrays.asList(modeSets[modes.get(l)]));
+				link.setAllowedModes(allowedModes);
+				network.addLink(link);
+			}
+		}
+	}
+}
@@ -0,0 +1,361 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BinaryPopulationIO.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.scenario;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.population.routes.RouteFactories;
+import org.matsim.core.utils.io.ColumnarFile;
+import org.matsim.facilities.ActivityFacility;
+
+/**
+ * Writes and reads a population as a {@link ColumnarFile}, with one table each for persons, plans,
+ * activities and legs. Persons, plans and plan elements are stored in order, so a person's plans
+ * and a plan's activities and legs are given by offsets into the next table.
+ *
+ * <p>Repeated strings, i.e. activity types, modes, route types, plan types and link and facility
+ * ids, are stored once in a dictionary and referred to by index (-1 for <code>null</code>). Routes
+ * keep their type, start and end link, distance, travel time and route description, the same
+ * fields the XML population writer uses. Times are stored as they are, so undefined times stay
+ * undefined. Person, plan and activity attributes are not kept.</p>
+ *
+ * <p>Plans must alternate between activities and legs, starting with an activity.</p>
+ */
+public final class BinaryPopulationIO {
+
+	public static final int KIND = 2;
+
+	private BinaryPopulationIO() {
+	}
+
+	public static void write(final Population population, final File file, final boolean compress) throws IOException {
+		snapshot(population).write(file, compress);
+	}
+
+	/**
+	 * Copies the population into the columns of the file, so that they can be written later, e.g. in
+	 * another thread while the plans are changed again.
+	 */
+	public static Snapshot snapshot(final Population population) {
+		Dictionary dictionary = new Dictionary();
+		int personCount = population.getPersons().size();
+		String[] personIds = new String[personCount];
+		int[] firstPlan = new int[personCount + 1];
+		int[] selectedPlan = new int[personCount];
+		Table plans = new Table();
+		Table activities = new Table();
+		Table legs = new Table();
+		int p = 0;
+		for (Person person : population.getPersons().values()) {
+			personIds[p] = person.getId().toString();
+			selectedPlan[p] = -1;
+			int index = 0;
+			for (Plan plan : person.getPlans()) {
+				if (plan == person.getSelectedPlan()) {
+					selectedPlan[p] = index;
+				}
+				int row = plans.addRow();
+				plans.ints[0][row] = dictionary.get(plan.getType());
+				plans.ints[1][row] = activities.size;
+				plans.ints[2][row] = legs.size;
+				plans.doubles[0][row] = plan.getScore() == null ? Double.NaN : plan.getScore();
+				addPlanElements(plan, person, dictionary, activities, legs);
+				index++;
+			}
+			firstPlan[p + 1] = plans.size;
+			p++;
+		}
+		return new Snapshot(dictionary, personIds, firstPlan, selectedPlan, plans, activities, legs);
+	}
+
+	/**
+	 * The columns of a population, see {@link BinaryPopulationIO#snapshot(Population)}.
+	 */
+	public static final class Snapshot {
+		private final Dictionary dictionary;
+		private final String[] personIds;
+		private final int[] firstPlan;
+		private final int[] selectedPlan;
+		private final Table plans;
+		private final Table activities;
+		private final Table legs;
+
+		private Snapshot(final Dictionary dictionary, final String[] personIds, final int[] firstPlan, final int[] selectedPlan,
+				final Table plans, final Table activities, final Table legs) {
+			this.dictionary = dictionary;
+			this.personIds = personIds;
+			this.firstPlan = firstPlan;
+			this.selectedPlan = selectedPlan;
+			this.plans = plans;
+			this.activities = activities;
+			this.legs = legs;
+		}
+
+		public int getPersonCount() {
+			return this.personIds.length;
+		}
+
+		public void write(final File file, final boolean compress) throws IOException {
+			int personCount = this.personIds.length;
+			try (ColumnarFile.Writer writer = new ColumnarFile.Writer(file, KIND, compress)) {
+				writer.writeStrings(this.dictionary.values, this.dictionary.size);
+				writer.writeStrings(this.personIds, personCount);
+				writer.writeInts(this.firstPlan, personCount + 1);
+				writer.writeInts(this.selectedPlan, personCount);
+				writeTable(writer, this.plans, 3, 1);
+				writeTable(writer, this.activities, 3, 5);
+				writeTable(writer, this.legs, 4, 4);
+				writer.writeStrings(this.legs.strings, this.legs.size);
+			}
+		}
+	}
+
+	private static void addPlanElements(final Plan plan, final Person person, final Dictionary dictionary, final Table activities,
+			final Table legs) {
+		List<PlanElement> elements = plan.getPlanElements();
+		for (int i = 0; i < elements.size(); i++) {
+			PlanElement element = elements.get(i);
+			if (element instanceof Activity && i % 2 == 0) {
+				Activity activity = (Activity) element;
+				int row = activities.addRow();
+				activities.ints[0][row] = dictionary.get(activity.getType());
+				activities.ints[1][row] = dictionary.get(activity.getLinkId());
+				activities.ints[2][row] = dictionary.get(activity.getFacilityId());
+				Coord coord = activity.getCoord();
+				activities.doubles[0][row] = coord == null ? Double.NaN : coord.getX();
+				activities.doubles[1][row] = coord == null ? Double.NaN : coord.getY();
+				activities.doubles[2][row] = activity.getStartTime();
+				activities.doubles[3][row] = activity.getEndTime();
+				activities.doubles[4][row] = activity.getMaximumDuration();
+			} else if (element instanceof Leg && i % 2 == 1) {
+				Leg leg = (Leg) element;
+				Route route = leg.getRoute();
+				int row = legs.addRow();
+				legs.ints[0][row] = dictionary.get(leg.getMode());
+				legs.ints[1][row] = route == null ? -1 : dictionary.get(route.getRouteType());
+				legs.ints[2][row] = route == null ? -1 : dictionary.get(route.getStartLinkId());
+				legs.ints[3][row] = route == null ? -1 : dictionary.get(route.getEndLinkId());
+				legs.doubles[0][row] = leg.getDepartureTime();
+				legs.doubles[1][row] = leg.getTravelTime();
+				legs.doubles[2][row] = route == null ? Double.NaN : route.getDistance();
+				legs.doubles[3][row] = route == null ? Double.NaN : route.getTravelTime();
+				legs.strings[row] = route == null ? null : route.getRouteDescription();
+			} else {
+				throw new IllegalArgumentException("plan element " + i + " of a plan of person " + person.getId()
+						+ " does not alternate between activities and legs");
+			}
+		}
+	}
+
+	private static void writeTable(final ColumnarFile.Writer writer, final Table table, final int intColumns,
+			final int doubleColumns) throws IOException {
+		for (int c = 0; c < intColumns; c++) {
+			writer.writeInts(table.ints[c], table.size);
+		}
+		for (int c = 0; c < doubleColumns; c++) {
+			writer.writeDoubles(table.doubles[c], table.size);
+		}
+	}
+
+	/**
+	 * Adds the persons of the file to <code>population</code>, which is usually empty.
+	 */
+	public static void read(final File file, final Population population) throws IOException {
+		PopulationFactory factory = population.getFactory();
+		RouteFactories routeFactories = factory.getRouteFactories();
+		try (ColumnarFile.Reader reader = new ColumnarFile.Reader(file, KIND)) {
+			String[] dictionary = reader.readStrings();
+			String[] personIds = reader.readStrings();
+			IntBuffer firstPlan = reader.readInts();
+			IntBuffer selectedPlan = reader.readInts();
+			IntBuffer planType = reader.readInts();
+			IntBuffer firstActivity = reader.readInts();
+			IntBuffer firstLeg = reader.readInts();
+			DoubleBuffer score = reader.readDoubles();
+			IntBuffer activityType = reader.readInts();
+			IntBuffer activityLink = reader.readInts();
+			IntBuffer activityFacility = reader.readInts();
+			DoubleBuffer x = reader.readDoubles();
+			DoubleBuffer y = reader.readDoubles();
+			DoubleBuffer startTime = reader.readDoubles();
+			DoubleBuffer endTime = reader.readDoubles();
+			DoubleBuffer maximumDuration = reader.readDoubles();
+			IntBuffer legMode = reader.readInts();
+			IntBuffer routeType = reader.readInts();
+			IntBuffer routeStart = reader.readInts();
+			IntBuffer routeEnd = reader.readInts();
+			DoubleBuffer departureTime = reader.readDoubles();
+			DoubleBuffer travelTime = reader.readDoubles();
+			DoubleBuffer routeDistance = reader.readDoubles();
+			DoubleBuffer routeTravelTime = reader.readDoubles();
+			String[] routeDescription = reader.readStrings();
+
+			int planCount = planType.limit();
+			int activityCount = activityType.limit();
+			int legCount = legMode.limit();
+			for (int p = 0; p < personIds.length; p++) {
+				Person person = factory.createPerson(Id.createPersonId(personIds[p]));
+				for (int plan = firstPlan.get(p); plan < firstPlan.get(p + 1); plan++) {
+					Plan newPlan = factory.createPlan();
+					newPlan.setType(lookup(dictionary, planType.get(plan)));
+					newPlan.setScore(Double.isNaN(score.get(plan)) ? null : score.get(plan));
+					int activityEnd = plan + 1 < planCount ? firstActivity.get(plan + 1) : activityCount;
+					int legEnd = plan + 1 < planCount ? firstLeg.get(plan + 1) : legCount;
+					int leg = firstLeg.get(plan);
+					for (int a = firstActivity.get(plan); a < activityEnd; a++) {
+						if (a > firstActivity.get(plan) && leg < legEnd) {
+							newPlan.addLeg(createLeg(factory, routeFactories, dictionary, legMode.get(leg), departureTime.get(leg),
+									travelTime.get(leg), routeType.get(leg), routeStart.get(leg), routeEnd.get(leg),
+									routeDistance.get(leg), routeTravelTime.get(leg), routeDescription[leg]));
+							leg++;
+						}
+						String type = lookup(dictionary, activityType.get(a));
+						String linkId = lookup(dictionary, activityLink.get(a));
+						Coord coord = Double.isNaN(x.get(a)) ? null : new Coord(x.get(a), y.get(a));
+						Activity activity = linkId != null ? factory.createActivityFromLinkId(type, Id.createLinkId(linkId))
+								: factory.createActivityFromCoord(type, coord);
+						if (linkId != null && coord != null) {
+							activity.setCoord(coord);
+						}
+						String facilityId = lookup(dictionary, activityFacility.get(a));
+						if (facilityId != null) {
+							activity.setFacilityId(Id.create(facilityId, ActivityFacility.class));
+						}
+						activity.setStartTime(startTime.get(a));
+						activity.setEndTime(endTime.get(a));
+						activity.setMaximumDuration(maximumDuration.get(a));
+						newPlan.addActivity(activity);
+					}
+					if (leg < legEnd) {
+						// a plan ending with a leg
+						newPlan.addLeg(createLeg(factory, routeFactories, dictionary, legMode.get(leg), departureTime.get(leg),
+								travelTime.get(leg), routeType.get(leg), routeStart.get(leg), routeEnd.get(leg),
+								routeDistance.get(leg), routeTravelTime.get(leg), routeDescription[leg]));
+					}
+					person.addPlan(newPlan);
+					if (plan - firstPlan.get(p) == selectedPlan.get(p)) {
+						person.setSelectedPlan(newPlan);
+					}
+				}
+				population.addPerson(person);
+			}
+		}
+	}
+
+	private static Leg createLeg(final PopulationFactory factory, final RouteFactories routeFactories, final String[] dictionary,
+			final int mode, final double departureTime, final double travelTime, final int routeType, final int routeStart,
+			final int routeEnd, final double routeDistance, final double routeTravelTime, final String routeDescription) {
+		Leg leg = factory.createLeg(lookup(dictionary, mode));
+		leg.setDepartureTime(departureTime);
+		leg.setTravelTime(travelTime);
+		if (routeType >= 0) {
+			leg.setRoute(createRoute(routeFactories, dictionary, routeType, routeStart, routeEnd, routeDistance, routeTravelTime,
+					routeDescription));
+		}
+		return leg;
+	}
+
+	private static Route createRoute(final RouteFactories routeFactories, final String[] dictionary, final int type,
+			final int start, final int end, final double distance, final double travelTime, final String description) {
+		Id<Link> startLinkId = start < 0 ? null : Id.createLinkId(dictionary[start]);
+		Id<Link> endLinkId = end < 0 ? null : Id.createLinkId(dictionary[end]);
+		Route route = routeFactories.createRoute(routeFactories.getRouteClassForType(dictionary[type]), startLinkId, endLinkId);
+		if (description != null) {
+			route.setRouteDescription(description);
+		}
+		route.setDistance(distance);
+		route.setTravelTime(travelTime);
+		return route;
+	}
+
+	private static String lookup(final String[] dictionary, final int index) {
+		return index < 0 ? null : dictionary[index];
+	}
+
+	/**
+	 * Numbers distinct strings in the order they are first seen.
+	 */
+	private static final class Dictionary {
+		final Map<String, Integer> indices = new HashMap<>();
+		String[] values = new String[64];
+		int size = 0;
+
+		int get(final Object value) {
+			if (value == null) {
+				return -1;
+			}
+			String string = value.toString();
+			Integer index = this.indices.get(string);
+			if (index == null) {
+				index = this.size++;
+				if (index == this.values.length) {
+					this.values = Arrays.copyOf(this.values, index * 2);
+				}
+				this.values[index] = string;
+				this.indices.put(string, index);
+			}
+			return index;
+		}
+	}
+
+	/**
+	 * Growable int and double columns plus one string column.
+	 */
+	private static final class Table {
+		int[][] ints = new int[4][1024];
+		double[][] doubles = new double[5][1024];
+		String[] strings = new String[1024];
+		int size = 0;
+
+		int addRow() {
+			if (this.size == this.strings.length) {
+				int capacity = this.size * 2;
+				for (int c = 0; c < this.ints.length; c++) {
+					this.ints[c] = Arrays.copyOf(this.ints[c], capacity);
+				}
+				for (int c = 0; c < this.doubles.length; c++) {
+					this.doubles[c] = Arrays.copyOf(this.doubles[c], capacity);
+				}
+				this.strings = Arrays.copyOf(this.strings, capacity);
+			}
+			return this.size++;
+		}
+	}
+}
@@ -0,0 +1,134 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BinaryScenarioLoader.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.scenario;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.core.config.Config;
+import org.matsim.core.utils.io.ColumnarFile;
+
+/**
+ * Loads a scenario like {@link ScenarioUtils#loadScenario(Config)}, but reads the network and the
+ * population from binary files next to the configured XML files if they exist: <code>network.bin</code>
+ * for <code>network.xml</code> or <code>network.xml.gz</code>, and so on, see {@link #getBinaryFile(File)}.
+ *
+ * <p>A binary file is only used if it is at least as new as its XML file. Time-variant networks
+ * always come from XML, since their change events are read together with the network.</p>
+ */
+public final class BinaryScenarioLoader {
+	private static final Logger log = Logger.getLogger( BinaryScenarioLoader.class ) ;
+
+	public static final String SUFFIX = ".bin";
+
+	private BinaryScenarioLoader() {
+	}
+
+	public static Scenario loadScenario(final Config config) {
+		File network = null;
+		if (config.network().getInputFile() != null && !config.network().isTimeVariantNetwork()) {
+			network = findBinaryFile(config.network().getInputFileURL(config.getContext()), BinaryNetworkIO.KIND);
+		}
+		File population = null;
+		if (config.plans().getInputFile() != null) {
+			population = findBinaryFile(config.plans().getInputFileURL(config.getContext()), BinaryPopulationIO.KIND);
+		}
+		if (network == null && population == null) {
+			return ScenarioUtils.loadScenario(config);
+		}
+
+		String networkFile = config.network().getInputFile();
+		String populationFile = config.plans().getInputFile();
+		Scenario scenario;
+		try {
+			// let MATSim load everything else
+			if (network != null) {
+				config.network().setInputFile(null);
+			}
+			if (population != null) {
+				config.plans().setInputFile(null);
+			}
+			scenario = ScenarioUtils.loadScenario(config);
+		} finally {
+			config.network().setInputFile(networkFile);
+			config.plans().setInputFile(populationFile);
+		}
+		try {
+			if (network != null) {
+				long start = System.nanoTime();
+				BinaryNetworkIO.read(network, scenario.getNetwork());
+				log.info("read " + scenario.getNetwork().getLinks().size() + " links from " + network + " in "
+						+ (System.nanoTime() - start) / 1000000 + " ms.");
+			}
+			if (population != null) {
+				long start = System.nanoTime();
+				BinaryPopulationIO.read(population, scenario.getPopulation());
+				log.info("read " + scenario.getPopulation().getPersons().size() + " persons from " + population + " in "
+						+ (System.nanoTime() - start) / 1000000 + " ms.");
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return scenario;
+	}
+
+	/**
+	 * @return The binary file for an XML file: <code>.gz</code> and <code>.xml</code> are stripped
+	 * from its name, and {@value #SUFFIX} appended.
+	 */
+	public static File getBinaryFile(final File xmlFile) {
+		String name = xmlFile.getName();
+		if (name.endsWith(".gz")) {
+			name = name.substring(0, name.length() - 3);
+		}
+		if (name.endsWith(".xml")) {
+			name = name.substring(0, name.length() - 4);
+		}
+		return new File(xmlFile.getParentFile(), name + SUFFIX);
+	}
+
+	private static File findBinaryFile(final URL url, final int kind) {
+		if (url == null || !"file".equals(url.getProtocol())) {
+			return null;
+		}
+		File xmlFile;
+		try {
+			xmlFile = new File(url.toURI());
+		} catch (URISyntaxException | IllegalArgumentException e) {
+			return null;
+		}
+		File binaryFile = getBinaryFile(xmlFile);
+		if (!binaryFile.isFile()) {
+			return null;
+		}
+		if (xmlFile.isFile() && binaryFile.lastModified() < xmlFile.lastModified()) {
+			log.warn(binaryFile + " is older than " + xmlFile + " and ignored; convert it again with BinaryScenarioConverter.");
+			return null;
+		}
+		return ColumnarFile.isColumnarFile(binaryFile, kind) ? binaryFile : null;
+	}
+}
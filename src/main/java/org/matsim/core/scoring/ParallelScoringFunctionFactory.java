@@ -0,0 +1,633 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ParallelScoringFunctionFactory.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.scoring;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.config.Config;
+import org.matsim.core.scoring.functions.ActivityUtilityParameters;
+import org.matsim.core.scoring.functions.CharyparNagelScoringFunctionFactory;
+import org.matsim.core.scoring.functions.ModeUtilityParameters;
+import org.matsim.core.scoring.functions.ScoringParameters;
+import org.matsim.core.utils.misc.Time;
+
+/**
+ * Scores plans like {@link CharyparNagelScoringFunctionFactory}, but its scoring functions only
+ * record the activities, legs, money and stuck events of their agent into shared columns. The first
+ * {@link ScoringFunction#getScore()} after the iteration scores the activities and legs of all agents
+ * at once in a <code>ForkJoinPool</code> and sums them per agent; the other calls only look the
+ * score up.
+ *
+ * <p>The activities and legs are scored in blocks of {@value #BLOCK_SIZE}: the parameters of their
+ * types are first copied next to them, then every term of <code>CharyparNagelActivityScoring</code>
+ * and <code>CharyparNagelLegScoring</code> is computed in a plain loop over <code>double</code>
+ * columns with <code>Math.min</code> and <code>Math.max</code> instead of branches, which the JIT
+ * compiler can vectorize. Only the logarithm of the duration is taken in a loop of its own. The terms
+ * are added in the same order as by the CharyparNagel scoring functions, so the scores are identical
+ * to theirs.</p>
+ *
+ * <p>All persons are scored with the same parameters. Legs are scored by their travel time and
+ * mode constant only; distance-dependent utilities are rejected, and neither the waiting time nor
+ * the line switches of transit legs are scored. The scoring functions of an iteration can no
+ * longer be scored once the factory created those of the next one.</p>
+ */
+public final class ParallelScoringFunctionFactory implements ScoringFunctionFactory {
+	private static final Logger log = Logger.getLogger( ParallelScoringFunctionFactory.class ) ;
+
+	private static final int BLOCK_SIZE = 256;
+	private static final int BLOCKS_PER_TASK = 16;
+	private static final double SCENARIO_DURATION = 24 * 3600;
+
+	private final ForkJoinPool pool;
+	private final double marginalUtilityOfWaiting_s;
+	private final double marginalUtilityOfLateArrival_s;
+	private final double marginalUtilityOfEarlyDeparture_s;
+	private final double marginalUtilityOfMoney;
+	private final double abortedPlanScore;
+
+	// the activity parameters by type, undefined times replaced by infinities that make their terms 0
+	private final Map<String, Integer> activityTypes = new HashMap<>();
+	private final boolean[] scoreAtAll;
+	private final double[] openingTimes;
+	private final double[] closingTimes;
+	private final double[] openingTimesIfClosing;
+	private final double[] closingTimesIfOpening;
+	private final double[] latestStartTimes;
+	private final double[] earliestEndTimes;
+	private final double[] minimalDurations;
+	private final double[] zeroUtilityDurations_h;
+	private final double[] zeroUtilityDurations_s;
+	private final double[] performingUtilities;
+	private final double[] slopesAtZeroUtility;
+
+	private final Map<String, Integer> modes = new HashMap<>();
+	private final double[] travelingUtilities_s;
+	private final double[] modeConstants;
+
+	private final Map<Id<Person>, Integer> agents = new HashMap<>();
+	private final ActivityRecords activities = new ActivityRecords();
+	private final LegRecords legs = new LegRecords();
+	private final AgentColumns others = new AgentColumns();
+	private int generation = 0;
+	private double[] scores = null;
+
+	/**
+	 * Scores with the parameters of the default subpopulation in the common <code>ForkJoinPool</code>.
+	 */
+	public ParallelScoringFunctionFactory(final Scenario scenario) {
+		this(createParameters(scenario.getConfig()), ForkJoinPool.commonPool());
+	}
+
+	public ParallelScoringFunctionFactory(final ScoringParameters parameters, final ForkJoinPool pool) {
+		if (parameters.usingOldScoringBelowZeroUtilityDuration) {
+			throw new IllegalArgumentException("the old scoring below the zero utility duration is not supported");
+		}
+		this.pool = pool;
+		this.marginalUtilityOfWaiting_s = parameters.marginalUtilityOfWaiting_s;
+		this.marginalUtilityOfLateArrival_s = parameters.marginalUtilityOfLateArrival_s;
+		this.marginalUtilityOfEarlyDeparture_s = parameters.marginalUtilityOfEarlyDeparture_s;
+		this.marginalUtilityOfMoney = parameters.marginalUtilityOfMoney;
+		this.abortedPlanScore = parameters.abortedPlanScore;
+
+		int typeCount = parameters.utilParams.size();
+		this.scoreAtAll = new boolean[typeCount];
+		this.openingTimes = new double[typeCount];
+		this.closingTimes = new double[typeCount];
+		this.openingTimesIfClosing = new double[typeCount];
+		this.closingTimesIfOpening = new double[typeCount];
+		this.latestStartTimes = new double[typeCount];
+		this.earliestEndTimes = new double[typeCount];
+		this.minimalDurations = new double[typeCount];
+		this.zeroUtilityDurations_h = new double[typeCount];
+		this.zeroUtilityDurations_s = new double[typeCount];
+		this.performingUtilities = new double[typeCount];
+		this.slopesAtZeroUtility = new double[typeCount];
+		for (Map.Entry<String, ActivityUtilityParameters> entry : parameters.utilParams.entrySet()) {
+			int t = this.activityTypes.size();
+			this.activityTypes.put(entry.getKey(), t);
+			ActivityUtilityParameters params = entry.getValue();
+			double openingTime = params.getOpeningTime();
+			double closingTime = params.getClosingTime();
+			boolean openingAndClosing = openingTime >= 0 && closingTime >= 0;
+			this.scoreAtAll[t] = params.isScoreAtAll();
+			this.openingTimes[t] = openingTime >= 0 ? openingTime : Double.NEGATIVE_INFINITY;
+			this.closingTimes[t] = closingTime >= 0 ? closingTime : Double.POSITIVE_INFINITY;
+			this.openingTimesIfClosing[t] = openingAndClosing ? openingTime : Double.NEGATIVE_INFINITY;
+			this.closingTimesIfOpening[t] = openingAndClosing ? closingTime : Double.POSITIVE_INFINITY;
+			this.latestStartTimes[t] = params.getLatestStartTime() >= 0 ? params.getLatestStartTime() : Double.POSITIVE_INFINITY;
+			this.earliestEndTimes[t] = params.getEarliestEndTime() >= 0 ? params.getEarliestEndTime() : Double.NEGATIVE_INFINITY;
+			this.minimalDurations[t] = params.getMinimalDuration() >= 0 ? params.getMinimalDuration() : Double.NEGATIVE_INFINITY;
+			this.zeroUtilityDurations_h[t] = params.getZeroUtilityDuration_h();
+			this.zeroUtilityDurations_s[t] = 3600. * params.getZeroUtilityDuration_h();
+			this.performingUtilities[t] = parameters.marginalUtilityOfPerforming_s * params.getTypicalDuration();
+			this.slopesAtZeroUtility[t] = this.performingUtilities[t] / this.zeroUtilityDurations_s[t];
+		}
+
+		int modeCount = parameters.modeParams.size();
+		this.travelingUtilities_s = new double[modeCount];
+		this.modeConstants = new double[modeCount];
+		for (Map.Entry<String, ModeUtilityParameters> entry : parameters.modeParams.entrySet()) {
+			ModeUtilityParameters params = entry.getValue();
+			if (params.marginalUtilityOfDistance_m != 0.0 || params.monetaryDistanceCostRate != 0.0) {
+				throw new IllegalArgumentException("mode " + entry.getKey() + " has a distance-dependent utility, which is not supported");
+			}
+			int m = this.modes.size();
+			this.modes.put(entry.getKey(), m);
+			this.travelingUtilities_s[m] = params.marginalUtilityOfTraveling_s;
+			this.modeConstants[m] = params.constant;
+		}
+	}
+
+	private static ScoringParameters createParameters(final Config config) {
+		if (config.planCalcScore().getScoringParametersPerSubpopulation().size() > 1) {
+			throw new IllegalArgumentException("all persons are scored with the same parameters, but there are parameters for "
+					+ config.planCalcScore().getScoringParametersPerSubpopulation().keySet());
+		}
+		return new ScoringParameters.Builder(config.planCalcScore(), config.planCalcScore().getScoringParameters(null),
+				config.scenario()).build();
+	}
+
+	/**
+	 * Starts recording the next iteration if the scores of the last one were computed.
+	 */
+	@Override
+	public synchronized ScoringFunction createNewScoringFunction(final Person person) {
+		if (this.scores != null) {
+			this.generation++;
+			this.scores = null;
+			this.activities.clear();
+			this.legs.clear();
+			this.others.clear();
+		}
+		Integer agent = this.agents.get(person.getId());
+		if (agent == null) {
+			agent = this.agents.size();
+			this.agents.put(person.getId(), agent);
+			this.activities.ensureAgentCapacity(agent + 1);
+			this.others.ensureAgentCapacity(agent + 1);
+		}
+		return new RecordingScoringFunction(agent, this.generation);
+	}
+
+	private synchronized double getScore(final int agent, final int generation) {
+		if (generation != this.generation) {
+			throw new IllegalStateException("the scoring functions of an earlier iteration can no longer be scored");
+		}
+		if (this.scores == null) {
+			this.scores = scoreAll();
+		}
+		return this.scores[agent];
+	}
+
+	private double[] scoreAll() {
+		long start = System.nanoTime();
+		final int agentCount = this.agents.size();
+		final double[] activityScores = new double[agentCount];
+		final double[] legScores = new double[agentCount];
+		int activityCount;
+		int legCount;
+		synchronized (this.activities) {
+			final ActivityRecords records = this.activities;
+			records.addOvernightActivities(agentCount);
+			activityCount = records.size;
+			final double[] scores = new double[records.size];
+			this.pool.invoke(new Blocks(0, records.size, (from, to, scratch) -> scoreActivities(records, from, to, scratch, scores)));
+			for (int r = 0; r < records.size; r++) {
+				activityScores[records.agents[r]] += scores[r];
+			}
+		}
+		synchronized (this.legs) {
+			final LegRecords records = this.legs;
+			legCount = records.size;
+			final double[] scores = new double[records.size];
+			this.pool.invoke(new Blocks(0, records.size, (from, to, scratch) -> scoreLegs(records, from, to, scratch, scores)));
+			for (int r = 0; r < records.size; r++) {
+				legScores[records.agents[r]] += scores[r];
+			}
+		}
+		final double[] totals = new double[agentCount];
+		synchronized (this.others) {
+			for (int a = 0; a < agentCount; a++) {
+				// in the order of the scoring functions that CharyparNagelScoringFunctionFactory sums up
+				totals[a] = (((0.0 + activityScores[a]) + legScores[a]) + this.others.money[a]) + this.others.stuck[a];
+			}
+		}
+		log.info("scored " + agentCount + " agents with " + activityCount + " activities and " + legCount + " legs in "
+				+ (System.nanoTime() - start) / 1000000 + " ms.");
+		return totals;
+	}
+
+	/**
+	 * Scores the activities <code>[from, to)</code> like <code>CharyparNagelActivityScoring.calcActScore</code>.
+	 */
+	private void scoreActivities(final ActivityRecords records, final int from, final int to, final Scratch scratch,
+			final double[] scores) {
+		final int n = to - from;
+		final int[] types = records.types;
+		final double[] arrivals = records.arrivals;
+		final double[] departures = records.departures;
+		final double[] openingTimes = scratch.openingTimes;
+		final double[] closingTimes = scratch.closingTimes;
+		final double[] openingTimesIfClosing = scratch.openingTimesIfClosing;
+		final double[] closingTimesIfOpening = scratch.closingTimesIfOpening;
+		final double[] latestStartTimes = scratch.latestStartTimes;
+		final double[] earliestEndTimes = scratch.earliestEndTimes;
+		final double[] minimalDurations = scratch.minimalDurations;
+		final double[] zeroUtilityDurations_h = scratch.zeroUtilityDurations_h;
+		final double[] zeroUtilityDurations_s = scratch.zeroUtilityDurations_s;
+		final double[] performingUtilities = scratch.performingUtilities;
+		final double[] slopesAtZeroUtility = scratch.slopesAtZeroUtility;
+		final double[] durations = scratch.durations;
+		final double[] beforePerforming = scratch.beforePerforming;
+		final double[] earlyDepartures = scratch.earlyDepartures;
+		final double[] waitingAfter = scratch.waitingAfter;
+		final double[] tooShort = scratch.tooShort;
+		final double[] performing = scratch.performing;
+
+		for (int i = 0; i < n; i++) {
+			int type = types[from + i];
+			openingTimes[i] = this.openingTimes[type];
+			closingTimes[i] = this.closingTimes[type];
+			openingTimesIfClosing[i] = this.openingTimesIfClosing[type];
+			closingTimesIfOpening[i] = this.closingTimesIfOpening[type];
+			latestStartTimes[i] = this.latestStartTimes[type];
+			earliestEndTimes[i] = this.earliestEndTimes[type];
+			minimalDurations[i] = this.minimalDurations[type];
+			zeroUtilityDurations_h[i] = this.zeroUtilityDurations_h[type];
+			zeroUtilityDurations_s[i] = this.zeroUtilityDurations_s[type];
+			performingUtilities[i] = this.performingUtilities[type];
+			slopesAtZeroUtility[i] = this.slopesAtZeroUtility[type];
+		}
+
+		// a term whose condition does not hold adds a zero, which leaves the sum as it is
+		final double waiting = this.marginalUtilityOfWaiting_s;
+		final double lateArrival = this.marginalUtilityOfLateArrival_s;
+		final double earlyDeparture = this.marginalUtilityOfEarlyDeparture_s;
+		for (int i = 0; i < n; i++) {
+			double arrival = arrivals[from + i];
+			double departure = departures[from + i];
+			// the facility must be open while the activity is performed
+			boolean closed = openingTimesIfClosing[i] > departure | closingTimesIfOpening[i] < arrival;
+			double activityStart = closed ? departure : Math.max(arrival, openingTimes[i]);
+			double activityEnd = closed ? departure : Math.min(departure, closingTimes[i]);
+			double duration = activityEnd - activityStart;
+			durations[i] = duration;
+			beforePerforming[i] = (0.0 + waiting * Math.max(0.0, activityStart - arrival))
+					+ lateArrival * Math.max(0.0, activityStart - latestStartTimes[i]);
+			earlyDepartures[i] = earlyDeparture * Math.max(0.0, earliestEndTimes[i] - activityEnd);
+			waitingAfter[i] = waiting * Math.max(0.0, departure - activityEnd);
+			tooShort[i] = earlyDeparture * Math.max(0.0, minimalDurations[i] - duration);
+		}
+
+		for (int i = 0; i < n; i++) {
+			double duration = durations[i];
+			performing[i] = duration >= zeroUtilityDurations_s[i]
+					? performingUtilities[i] * Math.log((duration / 3600.0) / zeroUtilityDurations_h[i])
+					: -(slopesAtZeroUtility[i] * (zeroUtilityDurations_h[i] * 3600. - duration));
+		}
+
+		for (int i = 0; i < n; i++) {
+			scores[from + i] = (((beforePerforming[i] + performing[i]) + earlyDepartures[i]) + waitingAfter[i]) + tooShort[i];
+		}
+	}
+
+	/**
+	 * Scores the legs <code>[from, to)</code> like <code>CharyparNagelLegScoring.calcLegScore</code>.
+	 */
+	private void scoreLegs(final LegRecords records, final int from, final int to, final Scratch scratch, final double[] scores) {
+		final int n = to - from;
+		final int[] modes = records.modes;
+		final double[] departureTimes = records.departureTimes;
+		final double[] travelTimes = records.travelTimes;
+		final double[] travelingUtilities_s = scratch.travelingUtilities_s;
+		final double[] modeConstants = scratch.modeConstants;
+		for (int i = 0; i < n; i++) {
+			travelingUtilities_s[i] = this.travelingUtilities_s[modes[from + i]];
+			modeConstants[i] = this.modeConstants[modes[from + i]];
+		}
+		for (int i = 0; i < n; i++) {
+			double departureTime = departureTimes[from + i];
+			// the scoring function gets the arrival time as departure plus travel time
+			double travelTime = (departureTime + travelTimes[from + i]) - departureTime;
+			scores[from + i] = (0.0 + travelTime * travelingUtilities_s[i]) + modeConstants[i];
+		}
+	}
+
+	private int getActivityType(final String type) {
+		Integer index = this.activityTypes.get(type);
+		if (index == null) {
+			throw new IllegalArgumentException("acttype \"" + type + "\" is not known in utility parameters "
+					+ "(module name=\"planCalcScore\" in the config file).");
+		}
+		return index;
+	}
+
+	private int getMode(final String mode) {
+		Integer index = this.modes.get(mode);
+		if (index == null) {
+			index = this.modes.get(TransportMode.transit_walk.equals(mode) ? TransportMode.walk : TransportMode.other);
+			if (index == null) {
+				throw new IllegalArgumentException("just encountered mode for which no scoring parameters are defined: " + mode);
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Records into the columns of the factory; calls for the same agent must not overlap.
+	 */
+	private final class RecordingScoringFunction implements ScoringFunction {
+		private final int agent;
+		private final int generation;
+
+		RecordingScoringFunction(final int agent, final int generation) {
+			this.agent = agent;
+			this.generation = generation;
+		}
+
+		/**
+		 * Tells first, intermediate and last activities apart like <code>SumScoringFunction</code>.
+		 */
+		@Override
+		public void handleActivity(final Activity activity) {
+			double startTime = activity.getStartTime();
+			double endTime = activity.getEndTime();
+			int type = getActivityType(activity.getType());
+			if (startTime == Time.UNDEFINED_TIME && endTime != Time.UNDEFINED_TIME) {
+				activities.setFirst(this.agent, type, endTime);
+			} else if (startTime != Time.UNDEFINED_TIME && endTime != Time.UNDEFINED_TIME) {
+				if (scoreAtAll[type]) {
+					activities.add(this.agent, type, startTime, endTime);
+				}
+			} else if (startTime != Time.UNDEFINED_TIME) {
+				activities.setLast(this.agent, type, startTime);
+			} else {
+				throw new IllegalArgumentException("activity " + activity.getType() + " has neither a start nor an end time");
+			}
+		}
+
+		@Override
+		public void handleLeg(final Leg leg) {
+			legs.add(this.agent, getMode(leg.getMode()), leg.getDepartureTime(), leg.getTravelTime());
+		}
+
+		@Override
+		public void agentStuck(final double time) {
+			others.addStuck(this.agent, abortedPlanScore);
+		}
+
+		@Override
+		public void addMoney(final double amount) {
+			others.addMoney(this.agent, amount * marginalUtilityOfMoney);
+		}
+
+		@Override
+		public void handleEvent(final Event event) {
+		}
+
+		@Override
+		public void finish() {
+		}
+
+		@Override
+		public double getScore() {
+			return ParallelScoringFunctionFactory.this.getScore(this.agent, this.generation);
+		}
+	}
+
+	/**
+	 * The scored activities, and per agent the first and last activity of the day.
+	 */
+	private final class ActivityRecords {
+		int size = 0;
+		int[] agents = new int[1024];
+		int[] types = new int[1024];
+		double[] arrivals = new double[1024];
+		double[] departures = new double[1024];
+		int[] firstTypes = new int[0];
+		double[] firstEndTimes = new double[0];
+		int[] lastTypes = new int[0];
+		double[] lastStartTimes = new double[0];
+
+		synchronized void add(final int agent, final int type, final double arrival, final double departure) {
+			if (this.size == this.agents.length) {
+				int capacity = 2 * this.size;
+				this.agents = Arrays.copyOf(this.agents, capacity);
+				this.types = Arrays.copyOf(this.types, capacity);
+				this.arrivals = Arrays.copyOf(this.arrivals, capacity);
+				this.departures = Arrays.copyOf(this.departures, capacity);
+			}
+			this.agents[this.size] = agent;
+			this.types[this.size] = type;
+			this.arrivals[this.size] = arrival;
+			this.departures[this.size] = departure;
+			this.size++;
+		}
+
+		synchronized void setFirst(final int agent, final int type, final double endTime) {
+			this.firstTypes[agent] = type;
+			this.firstEndTimes[agent] = endTime;
+		}
+
+		synchronized void setLast(final int agent, final int type, final double startTime) {
+			this.lastTypes[agent] = type;
+			this.lastStartTimes[agent] = startTime;
+		}
+
+		/**
+		 * Adds the activities that <code>CharyparNagelActivityScoring</code> scores at the end of the day:
+		 * the last activity until the end of the first one on the next day if they are of the same
+		 * type, otherwise both until and from midnight; only the first activity if the agent never
+		 * started another one.
+		 */
+		synchronized void addOvernightActivities(final int agentCount) {
+			for (int a = 0; a < agentCount; a++) {
+				int first = this.firstTypes[a];
+				int last = this.lastTypes[a];
+				if (last >= 0 && first == last) {
+					addIfScored(a, last, this.lastStartTimes[a], this.firstEndTimes[a] + SCENARIO_DURATION);
+				} else {
+					if (first >= 0) {
+						addIfScored(a, first, 0.0, this.firstEndTimes[a]);
+					}
+					if (last >= 0) {
+						addIfScored(a, last, this.lastStartTimes[a], SCENARIO_DURATION);
+					}
+				}
+			}
+		}
+
+		private void addIfScored(final int agent, final int type, final double arrival, final double departure) {
+			if (scoreAtAll[type]) {
+				add(agent, type, arrival, departure);
+			}
+		}
+
+		synchronized void ensureAgentCapacity(final int agentCount) {
+			if (this.firstTypes.length < agentCount) {
+				int capacity = Math.max(agentCount, 2 * this.firstTypes.length);
+				int previous = this.firstTypes.length;
+				this.firstTypes = Arrays.copyOf(this.firstTypes, capacity);
+				this.firstEndTimes = Arrays.copyOf(this.firstEndTimes, capacity);
+				this.lastTypes = Arrays.copyOf(this.lastTypes, capacity);
+				this.lastStartTimes = Arrays.copyOf(this.lastStartTimes, capacity);
+				Arrays.fill(this.firstTypes, previous, capacity, -1);
+				Arrays.fill(this.lastTypes, previous, capacity, -1);
+			}
+		}
+
+		synchronized void clear() {
+			this.size = 0;
+			Arrays.fill(this.firstTypes, -1);
+			Arrays.fill(this.lastTypes, -1);
+		}
+	}
+
+	private static final class LegRecords {
+		int size = 0;
+		int[] agents = new int[1024];
+		int[] modes = new int[1024];
+		double[] departureTimes = new double[1024];
+		double[] travelTimes = new double[1024];
+
+		synchronized void add(final int agent, final int mode, final double departureTime, final double travelTime) {
+			if (this.size == this.agents.length) {
+				int capacity = 2 * this.size;
+				this.agents = Arrays.copyOf(this.agents, capacity);
+				this.modes = Arrays.copyOf(this.modes, capacity);
+				this.departureTimes = Arrays.copyOf(this.departureTimes, capacity);
+				this.travelTimes = Arrays.copyOf(this.travelTimes, capacity);
+			}
+			this.agents[this.size] = agent;
+			this.modes[this.size] = mode;
+			this.departureTimes[this.size] = departureTime;
+			this.travelTimes[this.size] = travelTime;
+			this.size++;
+		}
+
+		synchronized void clear() {
+			this.size = 0;
+		}
+	}
+
+	/**
+	 * The money and stuck scores per agent, summed up while they are recorded.
+	 */
+	private static final class AgentColumns {
+		double[] money = new double[0];
+		double[] stuck = new double[0];
+
+		synchronized void addMoney(final int agent, final double score) {
+			this.money[agent] += score;
+		}
+
+		synchronized void addStuck(final int agent, final double score) {
+			this.stuck[agent] += score;
+		}
+
+		synchronized void ensureAgentCapacity(final int agentCount) {
+			if (this.money.length < agentCount) {
+				int capacity = Math.max(agentCount, 2 * this.money.length);
+				this.money = Arrays.copyOf(this.money, capacity);
+				this.stuck = Arrays.copyOf(this.stuck, capacity);
+			}
+		}
+
+		synchronized void clear() {
+			Arrays.fill(this.money, 0.0);
+			Arrays.fill(this.stuck, 0.0);
+		}
+	}
+
+	/**
+	 * The columns of one block, reused by the blocks of a task.
+	 */
+	private static final class Scratch {
+		final double[] openingTimes = new double[BLOCK_SIZE];
+		final double[] closingTimes = new double[BLOCK_SIZE];
+		final double[] openingTimesIfClosing = new double[BLOCK_SIZE];
+		final double[] closingTimesIfOpening = new double[BLOCK_SIZE];
+		final double[] latestStartTimes = new double[BLOCK_SIZE];
+		final double[] earliestEndTimes = new double[BLOCK_SIZE];
+		final double[] minimalDurations = new double[BLOCK_SIZE];
+		final double[] zeroUtilityDurations_h = new double[BLOCK_SIZE];
+		final double[] zeroUtilityDurations_s = new double[BLOCK_SIZE];
+		final double[] performingUtilities = new double[BLOCK_SIZE];
+		final double[] slopesAtZeroUtility = new double[BLOCK_SIZE];
+		final double[] durations = new double[BLOCK_SIZE];
+		final double[] beforePerforming = new double[BLOCK_SIZE];
+		final double[] earlyDepartures = new double[BLOCK_SIZE];
+		final double[] waitingAfter = new double[BLOCK_SIZE];
+		final double[] tooShort = new double[BLOCK_SIZE];
+		final double[] performing = new double[BLOCK_SIZE];
+		final double[] travelingUtilities_s = new double[BLOCK_SIZE];
+		final double[] modeConstants = new double[BLOCK_SIZE];
+	}
+
+	private interface BlockScorer {
+		void score(int from, int to, Scratch scratch);
+	}
+
+	/**
+	 * Runs the scorer on the blocks of <code>[start, end)</code>, splitting the range while it has
+	 * more than <code>BLOCKS_PER_TASK</code> blocks.
+	 */
+	private static final class Blocks extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int start;
+		private final int end;
+		private final BlockScorer scorer;
+
+		Blocks(final int start, final int end, final BlockScorer scorer) {
+			this.start = start;
+			this.end = end;
+			this.scorer = scorer;
+		}
+
+		@Override
+		protected void compute() {
+			int blocks = (this.end - this.start + BLOCK_SIZE - 1) / BLOCK_SIZE;
+			if (blocks > BLOCKS_PER_TASK) {
+				int middle = this.start + blocks / 2 * BLOCK_SIZE;
+				invokeAll(new Blocks(this.start, middle, this.scorer), new Blocks(middle, this.end, this.scorer));
+				return;
+			}
+			Scratch scratch = new Scratch();
+			for (int from = this.start; from < this.end; from += BLOCK_SIZE) {
+				this.scorer.score(from, Math.min(this.end, from + BLOCK_SIZE), scratch);
+			}
+		}
+	}
+}
@@ -0,0 +1,296 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ColumnarFile.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.utils.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+/**
+ * A file of typed, length-prefixed columns, read back in the order they were written. Each column
+ * can be LZ4-compressed; uncompressed columns are memory-mapped and handed out as buffer views on
+ * the mapping, without copying.
+ *
+ * <p>Layout, little endian:</p>
+ * <pre>
+ *   int    magic "MCOL"
+ *   int    version
+ *   int    kind               (what the columns describe, chosen by the caller)
+ *   int    flags              (1: columns may be compressed)
+ *   per column:
+ *     int  type               (1: int, 2: double, 3: string)
+ *     int  count              (number of values)
+ *     int  raw length         (bytes of the uncompressed values)
+ *     int  stored length      (bytes that follow; equal to the raw length if not compressed)
+ *     byte[stored length]     values, padded to a multiple of 8 bytes
+ * </pre>
+ *
+ * <p>A string column holds <code>count</code> byte lengths (-1 for <code>null</code>) followed by
+ * the UTF-8 bytes of all strings. A column is only kept compressed if that makes it smaller. Files
+ * are written to a temporary file first and then moved into place, like {@link
+ * org.matsim.core.router.LandmarksFile}.</p>
+ */
+public final class ColumnarFile {
+
+	private static final int MAGIC = 0x4C4F434D; // "MCOL" in little endian
+	private static final int VERSION = 1;
+	private static final int HEADER_BYTES = 16;
+	private static final int COLUMN_HEADER_BYTES = 16;
+
+	private static final int FLAG_COMPRESSED = 1;
+
+	private static final int TYPE_INT = 1;
+	private static final int TYPE_DOUBLE = 2;
+	private static final int TYPE_STRING = 3;
+
+	private ColumnarFile() {
+	}
+
+	/**
+	 * @return <code>true</code> if the file starts like a columnar file of the given kind.
+	 */
+	public static boolean isColumnarFile(final File file, final int kind) {
+		if (!file.isFile() || file.length() < HEADER_BYTES) {
+			return false;
+		}
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer header = read(channel, 0, HEADER_BYTES);
+			return header.getInt(0) == MAGIC && header.getInt(4) == VERSION && header.getInt(8) == kind;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	private static ByteBuffer read(final FileChannel channel, final long position, final int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("unexpected end of file");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	private static int padding(final int length) {
+		return (8 - (length & 7)) & 7;
+	}
+
+	public static final class Writer implements Closeable {
+		private final File file;
+		private final File tmpFile;
+		private final FileChannel channel;
+		private final LZ4Compressor compressor;
+		private boolean closed = false;
+
+		/**
+		 * @param compress Whether to LZ4-compress the columns.
+		 */
+		public Writer(final File file, final int kind, final boolean compress) throws IOException {
+			this.file = file;
+			this.tmpFile = new File(file.getPath() + ".tmp");
+			this.channel = FileChannel.open(this.tmpFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+			this.compressor = compress ? LZ4Factory.fastestInstance().fastCompressor() : null;
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(MAGIC).putInt(VERSION).putInt(kind).putInt(compress ? FLAG_COMPRESSED : 0);
+			header.flip();
+			write(header);
+		}
+
+		public void writeInts(final int[] values, final int count) throws IOException {
+			ByteBuffer raw = allocate(count * 4);
+			raw.asIntBuffer().put(values, 0, count);
+			writeColumn(TYPE_INT, count, raw);
+		}
+
+		public void writeDoubles(final double[] values, final int count) throws IOException {
+			ByteBuffer raw = allocate(count * 8);
+			raw.asDoubleBuffer().put(values, 0, count);
+			writeColumn(TYPE_DOUBLE, count, raw);
+		}
+
+		/**
+		 * @param values Strings, may contain <code>null</code>.
+		 */
+		public void writeStrings(final String[] values, final int count) throws IOException {
+			byte[][] bytes = new byte[count][];
+			int length = count * 4;
+			for (int i = 0; i < count; i++) {
+				if (values[i] != null) {
+					bytes[i] = values[i].getBytes(StandardCharsets.UTF_8);
+					length += bytes[i].length;
+				}
+			}
+			ByteBuffer raw = allocate(length);
+			for (int i = 0; i < count; i++) {
+				raw.putInt(bytes[i] == null ? -1 : bytes[i].length);
+			}
+			for (int i = 0; i < count; i++) {
+				if (bytes[i] != null) {
+					raw.put(bytes[i]);
+				}
+			}
+			raw.flip();
+			writeColumn(TYPE_STRING, count, raw);
+		}
+
+		private static ByteBuffer allocate(final int length) {
+			return ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		}
+
+		private void writeColumn(final int type, final int count, final ByteBuffer raw) throws IOException {
+			int rawLength = raw.limit();
+			ByteBuffer stored = raw;
+			if (this.compressor != null && rawLength > 0) {
+				ByteBuffer compressed = allocate(this.compressor.maxCompressedLength(rawLength));
+				int length = this.compressor.compress(raw, 0, rawLength, compressed, 0, compressed.capacity());
+				if (length < rawLength) {
+					compressed.limit(length);
+					stored = compressed;
+				}
+			}
+			ByteBuffer header = allocate(COLUMN_HEADER_BYTES);
+			header.putInt(type).putInt(count).putInt(rawLength).putInt(stored.limit());
+			header.flip();
+			write(header);
+			write(stored);
+			write(allocate(padding(stored.limit())));
+		}
+
+		private void write(final ByteBuffer buffer) throws IOException {
+			while (buffer.hasRemaining()) {
+				this.channel.write(buffer);
+			}
+		}
+
+		/**
+		 * Moves the completed file into place.
+		 */
+		@Override
+		public void close() throws IOException {
+			if (this.closed) {
+				return;
+			}
+			this.closed = true;
+			this.channel.force(false);
+			this.channel.close();
+			Files.move(this.tmpFile.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+	}
+
+	public static final class Reader implements Closeable {
+		private final FileChannel channel;
+		private final boolean compressed;
+		private final LZ4FastDecompressor decompressor;
+		private long position = HEADER_BYTES;
+		private int lastCount = 0;
+
+		public Reader(final File file, final int kind) throws IOException {
+			this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+			try {
+				ByteBuffer header = read(this.channel, 0, HEADER_BYTES);
+				if (header.getInt() != MAGIC || header.getInt() != VERSION || header.getInt() != kind) {
+					throw new IOException(file + " is not a columnar file of version " + VERSION + " and kind " + kind);
+				}
+				this.compressed = (header.getInt() & FLAG_COMPRESSED) != 0;
+			} catch (IOException e) {
+				this.channel.close();
+				throw e;
+			}
+			this.decompressor = this.compressed ? LZ4Factory.fastestInstance().fastDecompressor() : null;
+		}
+
+		public boolean isCompressed() {
+			return this.compressed;
+		}
+
+		public IntBuffer readInts() throws IOException {
+			return readColumn(TYPE_INT).asIntBuffer();
+		}
+
+		public DoubleBuffer readDoubles() throws IOException {
+			return readColumn(TYPE_DOUBLE).asDoubleBuffer();
+		}
+
+		public String[] readStrings() throws IOException {
+			ByteBuffer column = readColumn(TYPE_STRING);
+			int count = this.lastCount;
+			String[] values = new String[count];
+			int offset = count * 4;
+			byte[] bytes = new byte[0];
+			for (int i = 0; i < count; i++) {
+				int length = column.getInt(i * 4);
+				if (length >= 0) {
+					if (bytes.length < length) {
+						bytes = new byte[Math.max(length, bytes.length * 2)];
+					}
+					column.position(offset);
+					column.get(bytes, 0, length);
+					values[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+					offset += length;
+				}
+			}
+			return values;
+		}
+
+		private ByteBuffer readColumn(final int expectedType) throws IOException {
+			ByteBuffer header = read(this.channel, this.position, COLUMN_HEADER_BYTES);
+			int type = header.getInt();
+			this.lastCount = header.getInt();
+			int rawLength = header.getInt();
+			int storedLength = header.getInt();
+			if (type != expectedType) {
+				throw new IOException("expected a column of type " + expectedType + " at byte " + this.position + ", found " + type);
+			}
+			long start = this.position + COLUMN_HEADER_BYTES;
+			this.position = start + storedLength + padding(storedLength);
+			ByteBuffer stored = storedLength == 0 ? ByteBuffer.allocate(0)
+					: this.channel.map(FileChannel.MapMode.READ_ONLY, start, storedLength);
+			stored.order(ByteOrder.LITTLE_ENDIAN);
+			if (storedLength == rawLength) {
+				return stored;
+			}
+			ByteBuffer raw = ByteBuffer.allocate(rawLength).order(ByteOrder.LITTLE_ENDIAN);
+			this.decompressor.decompress(stored, 0, raw, 0, rawLength);
+			return raw;
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.channel.close();
+		}
+	}
+}
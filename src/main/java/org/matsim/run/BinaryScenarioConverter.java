@@ -0,0 +1,68 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BinaryScenarioConverter.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.run;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.gbl.Gbl;
+import org.matsim.core.scenario.BinaryNetworkIO;
+import org.matsim.core.scenario.BinaryPopulationIO;
+import org.matsim.core.scenario.BinaryScenarioLoader;
+import org.matsim.core.scenario.ScenarioUtils;
+
+/**
+ * Converts the network and population files of a config to the binary files that
+ * {@link BinaryScenarioLoader} (and so {@link RunMatsim}) reads instead:
+ *
+ * <pre>
+ *   BinaryScenarioConverter config.xml [lz4]
+ * </pre>
+ *
+ * writes e.g. <code>network.bin</code> and <code>plans100.bin</code> next to <code>network.xml</code> and
+ * <code>plans100.xml</code>, LZ4-compressed if the second argument is <code>lz4</code>.
+ */
+public class BinaryScenarioConverter {
+	private static final Logger log = Logger.getLogger( BinaryScenarioConverter.class ) ;
+
+	public static void main(String[] args) throws IOException, URISyntaxException {
+		Gbl.assertIf(args.length >= 1 && args[0] != "");
+		boolean compress = args.length >= 2 && "lz4".equals(args[1]);
+		Config config = ConfigUtils.loadConfig(args[0]);
+		Scenario scenario = ScenarioUtils.loadScenario(config);
+		if (config.network().getInputFile() != null) {
+			File file = BinaryScenarioLoader.getBinaryFile(new File(config.network().getInputFileURL(config.getContext()).toURI()));
+			BinaryNetworkIO.write(scenario.getNetwork(), file, compress);
+			log.info("wrote " + file + ", " + file.length() + " bytes.");
+		}
+		if (config.plans().getInputFile() != null) {
+			File file = BinaryScenarioLoader.getBinaryFile(new File(config.plans().getInputFileURL(config.getContext()).toURI()));
+			BinaryPopulationIO.write(scenario.getPopulation(), file, compress);
+			log.info("wrote " + file + ", " + file.length() + " bytes.");
+		}
+	}
+}
@@ -0,0 +1,313 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * Checkpoints.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.run;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.core.config.Config;
+import org.matsim.core.controler.events.BeforeMobsimEvent;
+import org.matsim.core.controler.events.ShutdownEvent;
+import org.matsim.core.controler.listener.BeforeMobsimListener;
+import org.matsim.core.controler.listener.ShutdownListener;
+import org.matsim.core.router.LinkTravelTimeTable;
+import org.matsim.core.scenario.BinaryPopulationIO;
+import org.matsim.core.scenario.BinaryScenarioLoader;
+
+/**
+ * Writes a checkpoint every <code>interval</code> iterations, from which {@link RunMatsim} can
+ * resume a run: the plans of all persons with their scores, in the format of
+ * {@link BinaryPopulationIO}, and the travel times of a {@link LinkTravelTimeTable} if there is one.
+ * Router preprocessing is not part of a checkpoint; {@link RunMatsim} keeps the landmarks in the
+ * {@link #getLandmarksDirectory(File) landmarks directory} of the checkpoints instead, where they are
+ * written once per network and cost function.
+ *
+ * <p>The checkpoint of iteration N is taken before its mobsim, after replanning: the plans are those
+ * the mobsim of N executes, the scores those of the iterations before, and the travel times those
+ * the replanning of N routed with. Since MATSim does not replan in the first iteration of a run, a
+ * run resumed with N as first iteration continues exactly where the checkpointed run was. No
+ * checkpoint is taken in the first iteration of a run.</p>
+ *
+ * <p>The plans and travel times are copied into the columns of their files before the mobsim starts;
+ * compressing and writing them then runs in a background thread while the mobsim goes on. A
+ * checkpoint is written to <code>checkpoints/it.N.tmp</code> and renamed to
+ * <code>checkpoints/it.N</code> once complete, so a crash while writing leaves the previous
+ * checkpoint usable. Only the latest {@value #KEEP} checkpoints are kept.</p>
+ */
+public final class Checkpoints implements BeforeMobsimListener, ShutdownListener {
+	private static final Logger log = Logger.getLogger( Checkpoints.class ) ;
+
+	public static final String DIRECTORY = "checkpoints";
+	public static final int KEEP = 2;
+
+	private static final String POPULATION_FILE = "population.bin";
+	private static final String TRAVEL_TIMES_FILE = "travelTimes.bin";
+	private static final String PROPERTIES_FILE = "checkpoint.properties";
+	private static final String TEMPORARY_SUFFIX = ".tmp";
+	private static final Pattern NAME = Pattern.compile("it\\.(\\d+)");
+
+	private final File directory;
+	private final int interval;
+	private final LinkTravelTimeTable travelTimes;
+	private final ExecutorService executor;
+	private Future<?> pending = null;
+
+	/**
+	 * @param travelTimes The table whose travel times are part of the checkpoints, or <code>null</code>.
+	 */
+	public Checkpoints(final File directory, final int interval, final LinkTravelTimeTable travelTimes) {
+		if (interval <= 0) {
+			throw new IllegalArgumentException("interval must be positive, but is " + interval);
+		}
+		this.directory = directory;
+		this.interval = interval;
+		this.travelTimes = travelTimes;
+		this.executor = Executors.newSingleThreadExecutor(r -> {
+			Thread thread = new Thread(r, "Checkpoints");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * @return <code>checkpoints</code> in the output directory of the config.
+	 */
+	public static File getDirectory(final Config config) {
+		return new File(config.controler().getOutputDirectory(), DIRECTORY);
+	}
+
+	public static File getLandmarksDirectory(final File checkpointsDirectory) {
+		return new File(checkpointsDirectory, "landmarks");
+	}
+
+	@Override
+	public void notifyBeforeMobsim(final BeforeMobsimEvent event) {
+		final int iteration = event.getIteration();
+		if (iteration % this.interval != 0 || iteration == event.getServices().getConfig().controler().getFirstIteration()) {
+			return;
+		}
+		write(iteration, event.getServices().getScenario());
+	}
+
+	/**
+	 * Copies the plans of the scenario and the travel times, and writes them as checkpoint of the
+	 * iteration in the background, after the previous checkpoint is written.
+	 */
+	public void write(final int iteration, final Scenario scenario) {
+		waitForPending();
+		long start = System.nanoTime();
+		final BinaryPopulationIO.Snapshot population = BinaryPopulationIO.snapshot(scenario.getPopulation());
+		final LinkTravelTimeTable.Snapshot travelTimes = this.travelTimes == null ? null : this.travelTimes.snapshot();
+		log.info("copied checkpoint of iteration " + iteration + " in " + (System.nanoTime() - start) / 1000000
+				+ " ms, writing it in the background.");
+		this.pending = this.executor.submit(() -> writeFiles(iteration, population, travelTimes));
+	}
+
+	@Override
+	public void notifyShutdown(final ShutdownEvent event) {
+		waitForPending();
+		this.executor.shutdown();
+	}
+
+	/**
+	 * Waits until the checkpoint being written in the background, if any, is complete.
+	 */
+	public void waitForPending() {
+		if (this.pending == null) {
+			return;
+		}
+		try {
+			this.pending.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			log.error("could not write checkpoint.", e.getCause());
+		}
+		this.pending = null;
+	}
+
+	private void writeFiles(final int iteration, final BinaryPopulationIO.Snapshot population,
+			final LinkTravelTimeTable.Snapshot travelTimes) {
+		long start = System.nanoTime();
+		File target = new File(this.directory, "it." + iteration);
+		File temporary = new File(this.directory, target.getName() + TEMPORARY_SUFFIX);
+		try {
+			delete(temporary);
+			Files.createDirectories(temporary.toPath());
+			population.write(new File(temporary, POPULATION_FILE), true);
+			if (travelTimes != null) {
+				travelTimes.write(new File(temporary, TRAVEL_TIMES_FILE), true);
+			}
+			Properties properties = new Properties();
+			properties.setProperty("iteration", Integer.toString(iteration));
+			properties.setProperty("persons", Integer.toString(population.getPersonCount()));
+			properties.setProperty("travelTimes", Boolean.toString(travelTimes != null));
+			try (OutputStream out = new FileOutputStream(new File(temporary, PROPERTIES_FILE))) {
+				properties.store(out, "checkpoint of iteration " + iteration);
+			}
+			delete(target);
+			Files.move(temporary.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		log.info("wrote checkpoint " + target + " in " + (System.nanoTime() - start) / 1000000 + " ms.");
+
+		List<Integer> iterations = listIterations(this.directory);
+		for (int i = 0; i < iterations.size() - KEEP; i++) {
+			try {
+				delete(new File(this.directory, "it." + iterations.get(i)));
+			} catch (IOException e) {
+				log.warn("could not delete old checkpoint of iteration " + iterations.get(i) + ".", e);
+			}
+		}
+	}
+
+	/**
+	 * @return The complete checkpoints in the directory by ascending iteration.
+	 */
+	private static List<Integer> listIterations(final File directory) {
+		List<Integer> iterations = new ArrayList<>();
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return iterations;
+		}
+		for (File file : files) {
+			Matcher matcher = NAME.matcher(file.getName());
+			if (matcher.matches() && new File(file, PROPERTIES_FILE).isFile()) {
+				iterations.add(Integer.parseInt(matcher.group(1)));
+			}
+		}
+		Collections.sort(iterations);
+		return iterations;
+	}
+
+	/**
+	 * @return The latest complete checkpoint in the directory, or <code>null</code> if there is none.
+	 */
+	public static Checkpoint findLatest(final File directory) {
+		List<Integer> iterations = listIterations(directory);
+		if (iterations.isEmpty()) {
+			return null;
+		}
+		File checkpointDirectory = new File(directory, "it." + iterations.get(iterations.size() - 1));
+		Properties properties = new Properties();
+		try (InputStream in = new FileInputStream(new File(checkpointDirectory, PROPERTIES_FILE))) {
+			properties.load(in);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return new Checkpoint(checkpointDirectory, Integer.parseInt(properties.getProperty("iteration")),
+				Boolean.parseBoolean(properties.getProperty("travelTimes")));
+	}
+
+	private static void delete(final File file) throws IOException {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		Files.deleteIfExists(file.toPath());
+	}
+
+	/**
+	 * A complete checkpoint on disk.
+	 */
+	public static final class Checkpoint {
+		private final File directory;
+		private final int iteration;
+		private final boolean hasTravelTimes;
+
+		private Checkpoint(final File directory, final int iteration, final boolean hasTravelTimes) {
+			this.directory = directory;
+			this.iteration = iteration;
+			this.hasTravelTimes = hasTravelTimes;
+		}
+
+		public int getIteration() {
+			return this.iteration;
+		}
+
+		public File getDirectory() {
+			return this.directory;
+		}
+
+		/**
+		 * Loads the scenario with {@link BinaryScenarioLoader}, but the population from the checkpoint.
+		 */
+		public Scenario loadScenario(final Config config) {
+			String populationFile = config.plans().getInputFile();
+			Scenario scenario;
+			try {
+				config.plans().setInputFile(null);
+				scenario = BinaryScenarioLoader.loadScenario(config);
+			} finally {
+				config.plans().setInputFile(populationFile);
+			}
+			long start = System.nanoTime();
+			try {
+				BinaryPopulationIO.read(new File(this.directory, POPULATION_FILE), scenario.getPopulation());
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			log.info("read " + scenario.getPopulation().getPersons().size() + " persons of the checkpoint of iteration "
+					+ this.iteration + " in " + (System.nanoTime() - start) / 1000000 + " ms.");
+			return scenario;
+		}
+
+		/**
+		 * Restores the travel times of the checkpoint into the table, if it has some.
+		 *
+		 * @return Whether the checkpoint had travel times.
+		 */
+		public boolean readTravelTimes(final LinkTravelTimeTable table) {
+			if (!this.hasTravelTimes) {
+				return false;
+			}
+			try {
+				table.read(new File(this.directory, TRAVEL_TIMES_FILE));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return true;
+		}
+	}
+}
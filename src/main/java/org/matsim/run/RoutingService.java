@@ -0,0 +1,451 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RoutingService.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.run;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import javax.inject.Inject;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.controler.events.ShutdownEvent;
+import org.matsim.core.controler.events.StartupEvent;
+import org.matsim.core.controler.listener.ShutdownListener;
+import org.matsim.core.controler.listener.StartupListener;
+import org.matsim.core.gbl.Gbl;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.AStarLandmarksRecordFactory;
+import org.matsim.core.router.LeastCostPathCalculatorPool;
+import org.matsim.core.router.costcalculators.OnlyTimeDependentTravelDisutility;
+import org.matsim.core.router.costcalculators.TravelDisutilityFactory;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * An embedded HTTP service for ad-hoc routing queries against a loaded network, e.g. "route from
+ * here to the nearest shelter" while a simulation runs.
+ *
+ * <p>Endpoints, all answering JSON:</p>
+ * <ul>
+ * <li><code>/route?from=&lt;node id&gt;&amp;to=&lt;node id&gt;[&amp;time=&lt;seconds&gt;]</code>: the least-cost path;
+ * instead of a node id, <code>fromX=..&amp;fromY=..</code> (and <code>toX</code>, <code>toY</code>) take the
+ * node nearest to a coordinate.</li>
+ * <li><code>/nearest?from=..&amp;to=&lt;id&gt;,&lt;id&gt;,...[&amp;time=..]</code>: the path to the least costly
+ * of the given destinations.</li>
+ * <li><code>/metrics</code>: request counts and latency percentiles in microseconds since start.</li>
+ * </ul>
+ *
+ * <p>Every request runs on its own virtual thread where the JVM has them (looked up reflectively,
+ * so the project still builds for Java 8), otherwise on a fixed pool of <code>routerPoolSize</code>
+ * threads. Requests route with one of <code>routerPoolSize</code> {@link AStarLandmarksRecord}
+ * instances of a {@link LeastCostPathCalculatorPool}, waiting while all are busy; at most
+ * <code>maxConcurrentRequests</code> requests are accepted at once, further ones are answered with
+ * 503 right away instead of queueing without bound.</p>
+ *
+ * <p>Run standalone with <code>RoutingService config.xml port [address]</code> on free-speed travel
+ * times, or embedded in {@link RunMatsim} with <code>runMatsim.routingServicePort</code> and
+ * <code>runMatsim.routingServiceAddress</code>, routing on the travel times of the running
+ * simulation. The endpoints are not authenticated, so the service only listens on the loopback
+ * interface unless another address is given.</p>
+ */
+public final class RoutingService {
+	private static final Logger log = Logger.getLogger( RoutingService.class ) ;
+
+	public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 10000;
+
+	private static final int SIGNIFICANT_DIGITS = 3;
+
+	private final Network network;
+	private final LeastCostPathCalculatorPool routers;
+	private final int routerPoolSize;
+	private final int maxConcurrentRequests;
+	private final Semaphore permits;
+
+	private final Recorder latencies = new Recorder(SIGNIFICANT_DIGITS);
+	private final Histogram totalLatencies = new Histogram(SIGNIFICANT_DIGITS);
+	private Histogram intervalLatencies = null;
+	private final LongAdder rejected = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+
+	private HttpServer server = null;
+	private ExecutorService executor = null;
+
+	public RoutingService(final Network network, final TravelDisutility travelCosts, final TravelTime travelTimes,
+			final int routerPoolSize, final int maxConcurrentRequests) {
+		this(network, new AStarLandmarksRecordFactory(Math.max(1, routerPoolSize)), travelCosts, travelTimes, routerPoolSize,
+				maxConcurrentRequests);
+	}
+
+	public RoutingService(final Network network, final LeastCostPathCalculatorFactory routerFactory,
+			final TravelDisutility travelCosts, final TravelTime travelTimes, final int routerPoolSize,
+			final int maxConcurrentRequests) {
+		this.network = network;
+		this.routerPoolSize = Math.max(1, routerPoolSize);
+		this.routers = new LeastCostPathCalculatorPool(routerFactory, network, travelCosts, travelTimes, this.routerPoolSize);
+		this.maxConcurrentRequests = maxConcurrentRequests;
+		this.permits = new Semaphore(maxConcurrentRequests);
+	}
+
+	public static void main(String[] args) throws IOException {
+		Gbl.assertIf(args.length >= 2);
+		Scenario scenario = ScenarioUtils.loadScenario(ConfigUtils.loadConfig(args[0]));
+		TravelTime travelTime = new FreeSpeedTravelTime();
+		RoutingService service = new RoutingService(scenario.getNetwork(), new OnlyTimeDependentTravelDisutility(travelTime),
+				travelTime, Runtime.getRuntime().availableProcessors(), DEFAULT_MAX_CONCURRENT_REQUESTS);
+		service.start(createAddress(args.length > 2 ? args[2] : "", Integer.parseInt(args[1])));
+	}
+
+	/**
+	 * @param host The host name or IP address to listen on, the loopback address if empty;
+	 *        <code>0.0.0.0</code> listens on all interfaces.
+	 */
+	public static InetSocketAddress createAddress(final String host, final int port) throws IOException {
+		InetAddress address = host == null || host.isEmpty() ? InetAddress.getLoopbackAddress() : InetAddress.getByName(host);
+		return new InetSocketAddress(address, port);
+	}
+
+	public synchronized void start(final InetSocketAddress address) throws IOException {
+		if (this.server != null) {
+			throw new IllegalStateException("the routing service is already running");
+		}
+		this.executor = createExecutor(this.routerPoolSize);
+		this.server = HttpServer.create(address, 0);
+		this.server.setExecutor(this.executor);
+		this.server.createContext("/route", exchange -> handle(exchange, this::route));
+		this.server.createContext("/nearest", exchange -> handle(exchange, this::nearest));
+		this.server.createContext("/metrics", exchange -> send(exchange, 200, metrics()));
+		this.server.start();
+		log.info("routing service listening on " + this.server.getAddress());
+	}
+
+	public synchronized void stop() {
+		if (this.server == null) {
+			return;
+		}
+		this.server.stop(0);
+		this.executor.shutdown();
+		this.server = null;
+		this.executor = null;
+	}
+
+	/**
+	 * @return The port the service listens on, useful after starting it on port 0.
+	 */
+	public synchronized int getPort() {
+		return this.server.getAddress().getPort();
+	}
+
+	/**
+	 * @return A virtual thread per task executor if the JVM has virtual threads, a fixed thread pool otherwise.
+	 */
+	static ExecutorService createExecutor(final int fallbackThreads) {
+		try {
+			Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) method.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			log.info("no virtual threads in this JVM, serving requests on " + fallbackThreads + " threads.");
+			return Executors.newFixedThreadPool(fallbackThreads);
+		}
+	}
+
+	private void handle(final HttpExchange exchange, final Function<Map<String, String>, String> handler) throws IOException {
+		if (!this.permits.tryAcquire()) {
+			this.rejected.increment();
+			send(exchange, 503, error("too many concurrent requests"));
+			return;
+		}
+		long start = System.nanoTime();
+		try {
+			String json;
+			int status = 200;
+			try {
+				json = handler.apply(parseQuery(exchange.getRequestURI().getRawQuery()));
+			} catch (NoRouteException e) {
+				status = 404;
+				json = error(e.getMessage());
+			} catch (IllegalArgumentException e) {
+				status = 400;
+				json = error(e.getMessage());
+			} catch (RuntimeException e) {
+				log.warn("routing request " + exchange.getRequestURI() + " failed.", e);
+				this.failed.increment();
+				status = 500;
+				json = error(String.valueOf(e));
+			}
+			send(exchange, status, json);
+		} finally {
+			this.permits.release();
+			this.latencies.recordValue((System.nanoTime() - start) / 1000);
+		}
+	}
+
+	private String route(final Map<String, String> params) {
+		Node from = getNode(params, "from");
+		Node to = getNode(params, "to");
+		Path path = this.routers.calcLeastCostPath(from, to, getTime(params), null, null);
+		if (path == null) {
+			throw new NoRouteException("no route from node " + from.getId() + " to node " + to.getId());
+		}
+		StringBuilder json = new StringBuilder("{");
+		appendPath(json, path);
+		return json.append('}').toString();
+	}
+
+	private String nearest(final Map<String, String> params) {
+		Node from = getNode(params, "from");
+		String candidates = params.get("to");
+		if (candidates == null || candidates.isEmpty()) {
+			throw new IllegalArgumentException("parameter to is missing");
+		}
+		double time = getTime(params);
+		Node nearest = null;
+		Path best = null;
+		LeastCostPathCalculator router = this.routers.acquire();
+		try {
+			for (String id : candidates.split(",")) {
+				Node to = getNode(id);
+				Path path = router.calcLeastCostPath(from, to, time, null, null);
+				if (path != null && (best == null || path.travelCost < best.travelCost)) {
+					nearest = to;
+					best = path;
+				}
+			}
+		} finally {
+			this.routers.release(router);
+		}
+		if (best == null) {
+			throw new NoRouteException("none of the destinations can be reached from node " + from.getId());
+		}
+		StringBuilder json = new StringBuilder("{\"nearest\":");
+		appendString(json, nearest.getId().toString());
+		json.append(',');
+		appendPath(json, best);
+		return json.append('}').toString();
+	}
+
+	private String metrics() {
+		Histogram total;
+		synchronized (this.totalLatencies) {
+			this.intervalLatencies = this.latencies.getIntervalHistogram(this.intervalLatencies);
+			this.totalLatencies.add(this.intervalLatencies);
+			total = this.totalLatencies.copy();
+		}
+		return "{\"requests\":" + total.getTotalCount()
+				+ ",\"rejected\":" + this.rejected.sum()
+				+ ",\"failed\":" + this.failed.sum()
+				+ ",\"inFlight\":" + (this.maxConcurrentRequests - this.permits.availablePermits())
+				+ ",\"routers\":" + this.routers.getCreatedCount()
+				+ ",\"latencyMicros\":{\"mean\":" + total.getMean()
+				+ ",\"p50\":" + total.getValueAtPercentile(50)
+				+ ",\"p90\":" + total.getValueAtPercentile(90)
+				+ ",\"p99\":" + total.getValueAtPercentile(99)
+				+ ",\"p999\":" + total.getValueAtPercentile(99.9)
+				+ ",\"max\":" + total.getMaxValue() + "}}";
+	}
+
+	private Node getNode(final Map<String, String> params, final String name) {
+		String id = params.get(name);
+		if (id != null) {
+			return getNode(id);
+		}
+		String x = params.get(name + "X");
+		String y = params.get(name + "Y");
+		if (x == null || y == null) {
+			throw new IllegalArgumentException("parameter " + name + " or " + name + "X and " + name + "Y are missing");
+		}
+		Node node;
+		try {
+			node = NetworkUtils.getNearestNode(this.network, new Coord(Double.parseDouble(x), Double.parseDouble(y)));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("not a coordinate: " + x + "," + y);
+		}
+		if (node == null) {
+			throw new IllegalArgumentException("no node near " + x + "," + y);
+		}
+		return node;
+	}
+
+	private Node getNode(final String id) {
+		Node node = this.network.getNodes().get(Id.createNodeId(id));
+		if (node == null) {
+			throw new IllegalArgumentException("no node " + id);
+		}
+		return node;
+	}
+
+	private static double getTime(final Map<String, String> params) {
+		String time = params.get("time");
+		try {
+			return time == null ? 0 : Double.parseDouble(time);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("not a time: " + time);
+		}
+	}
+
+	private static void appendPath(final StringBuilder json, final Path path) {
+		double distance = 0;
+		for (Link link : path.links) {
+			distance += link.getLength();
+		}
+		json.append("\"travelTime\":").append(path.travelTime)
+				.append(",\"travelCost\":").append(path.travelCost)
+				.append(",\"distance\":").append(distance)
+				.append(",\"nodes\":[");
+		for (int i = 0; i < path.nodes.size(); i++) {
+			if (i > 0) {
+				json.append(',');
+			}
+			appendString(json, path.nodes.get(i).getId().toString());
+		}
+		json.append("],\"links\":[");
+		for (int i = 0; i < path.links.size(); i++) {
+			if (i > 0) {
+				json.append(',');
+			}
+			appendString(json, path.links.get(i).getId().toString());
+		}
+		json.append(']');
+	}
+
+	private static void appendString(final StringBuilder json, final String value) {
+		json.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				json.append('\\').append(c);
+			} else if (c < 0x20) {
+				json.append(String.format("\\u%04x", (int) c));
+			} else {
+				json.append(c);
+			}
+		}
+		json.append('"');
+	}
+
+	private static String error(final String message) {
+		StringBuilder json = new StringBuilder("{\"error\":");
+		appendString(json, message);
+		return json.append('}').toString();
+	}
+
+	private static Map<String, String> parseQuery(final String query) {
+		Map<String, String> params = new HashMap<>();
+		if (query == null) {
+			return params;
+		}
+		try {
+			for (String pair : query.split("&")) {
+				int eq = pair.indexOf('=');
+				if (eq > 0) {
+					params.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"), URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+				}
+			}
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+		return params;
+	}
+
+	private static void send(final HttpExchange exchange, final int status, final String json) throws IOException {
+		byte[] body = json.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	private static final class NoRouteException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		NoRouteException(final String message) {
+			super(message);
+		}
+	}
+
+	/**
+	 * Starts the service with the car travel times of a running simulation and stops it at shutdown.
+	 */
+	public static final class ControlerListener implements StartupListener, ShutdownListener {
+
+		@Inject private Scenario scenario;
+		@Inject private Config config;
+		@Inject private Map<String, TravelTime> travelTimes;
+		@Inject private Map<String, TravelDisutilityFactory> travelDisutilityFactories;
+
+		private RoutingService service = null;
+
+		@Override
+		public void notifyStartup(final StartupEvent event) {
+			RunMatsimConfigGroup runMatsimConfig = ConfigUtils.addOrGetModule(this.config, RunMatsimConfigGroup.GROUP_NAME,
+					RunMatsimConfigGroup.class);
+			TravelTime travelTime = this.travelTimes.get(TransportMode.car);
+			this.service = new RoutingService(this.scenario.getNetwork(),
+					this.travelDisutilityFactories.get(TransportMode.car).createTravelDisutility(travelTime), travelTime,
+					this.config.global().getNumberOfThreads(), DEFAULT_MAX_CONCURRENT_REQUESTS);
+			try {
+				this.service.start(createAddress(runMatsimConfig.getRoutingServiceAddress(), runMatsimConfig.getRoutingServicePort()));
+			} catch (IOException e) {
+				throw new RuntimeException("could not start the routing service", e);
+			}
+		}
+
+		@Override
+		public void notifyShutdown(final ShutdownEvent event) {
+			if (this.service != null) {
+				this.service.stop();
+			}
+		}
+	}
+}
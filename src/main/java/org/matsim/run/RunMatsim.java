@@ -18,33 +18,93 @@
  * *********************************************************************** */
 package org.matsim.run;
 
+import java.io.File;
+import java.net.URISyntaxException;
+import java.net.URL;
+
+import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.controler.AbstractModule;
 import org.matsim.core.controler.Controler;
 import org.matsim.core.controler.OutputDirectoryHierarchy.OverwriteFileSetting;
+import org.matsim.core.events.BinaryEventsOutput;
+import org.matsim.core.events.RingBufferEventsManager;
 import org.matsim.core.gbl.Gbl;
-import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.replanning.modules.DefaultPlanStrategiesModule.DefaultStrategy;
+import org.matsim.core.router.AStarEuclideanRecordFactory;
+import org.matsim.core.router.AStarLandmarksRecordFactory;
+import org.matsim.core.router.CachingLeastCostPathCalculatorFactory;
+import org.matsim.core.router.ContractionHierarchiesFactory;
+import org.matsim.core.router.DijkstraRecordFactory;
+import org.matsim.core.router.GraphAStarArcFlagsFactory;
+import org.matsim.core.router.GraphAStarEuclideanFactory;
+import org.matsim.core.router.GraphAStarLandmarksFactory;
+import org.matsim.core.router.GraphBidirectionalAStarLandmarksFactory;
+import org.matsim.core.router.GraphDijkstraFactory;
+import org.matsim.core.router.LinkRelaxationCounters;
+import org.matsim.core.router.LinkRelaxationWriter;
+import org.matsim.core.router.LinkTravelTimeTable;
+import org.matsim.core.router.ReRouteByOrigin;
+import org.matsim.core.router.ReRouteByOriginProvider;
+import org.matsim.core.router.RoutingMetricsWriter;
+import org.matsim.core.router.WorkStealingReRouteProvider;
+import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+import org.matsim.core.scenario.BinaryScenarioLoader;
+import org.matsim.core.scoring.ParallelScoringFunctionFactory;
+import org.matsim.core.scoring.ScoringFunctionFactory;
+import org.matsim.run.RunMatsimConfigGroup.RouterFactory;
 
 /**
  * @author nagel
  *
  */
 public class RunMatsim {
+	private static final Logger log = Logger.getLogger( RunMatsim.class ) ;
 
 	public static void main(String[] args) {
 		Gbl.assertIf(args.length >=1 && args[0]!="" );
-		run(ConfigUtils.loadConfig(args[0]));
+		run(ConfigUtils.loadConfig(args[0], new RunMatsimConfigGroup()));
 		// makes some sense to not modify the config here but in the run method to help  with regression testing.
 	}
 	
-	static void run(Config config) {
+	/**
+	 * @return The controler after its run, e.g. to look at the bound objects through its injector.
+	 */
+	static Controler run(Config config) {
 		
 		// possibly modify config here
+
+		final RunMatsimConfigGroup runMatsimConfig = ConfigUtils.addOrGetModule( config, RunMatsimConfigGroup.GROUP_NAME, RunMatsimConfigGroup.class ) ;
+		if ( runMatsimConfig.getPathCacheSize() > 0 && config.plansCalcRoute().getRoutingRandomness() != 0. ) {
+			// the default car disutility draws a cost factor per person, while the cache shares paths between all persons:
+			throw new IllegalArgumentException( "the path cache needs plansCalcRoute.routingRandomness=0, but it is "
+					+ config.plansCalcRoute().getRoutingRandomness() ) ;
+		}
 		
 		// ---
 		
-		Scenario scenario = ScenarioUtils.loadScenario(config) ;
+		final File checkpointsDirectory = Checkpoints.getDirectory( config ) ;
+		Checkpoints.Checkpoint checkpoint = null ;
+		if ( runMatsimConfig.isResume() ) {
+			checkpoint = Checkpoints.findLatest( checkpointsDirectory ) ;
+			if ( checkpoint == null ) {
+				log.warn( "no checkpoint in " + checkpointsDirectory + ", starting from the first iteration." ) ;
+			} else {
+				log.info( "resuming at the checkpoint of iteration " + checkpoint.getIteration() + "." ) ;
+				// the checkpoint holds the plans after the replanning of its iteration, and MATSim does not replan in the first
+				// iteration of a run, so the resumed run executes them right away:
+				keepInnovationStop( config, checkpoint.getIteration() ) ;
+				config.controler().setFirstIteration( checkpoint.getIteration() ) ;
+				config.controler().setOverwriteFileSetting( OverwriteFileSetting.overwriteExistingFiles ) ;
+			}
+		}
+		
+		Scenario scenario = checkpoint == null ? BinaryScenarioLoader.loadScenario(config) : checkpoint.loadScenario(config) ;
+		// = ScenarioUtils.loadScenario, but reads network and population from .bin files next to the xml files if there are some
 		
 		// possibly modify scenario here
 		
@@ -53,10 +113,180 @@ public class RunMatsim {
 		Controler controler = new Controler( scenario ) ;
 		
 		// possibly modify controler here
+
+		controler.addControlerListener( new RoutingMetricsWriter() ) ;
+		if ( runMatsimConfig.getBinaryEventsInterval() > 0 ) {
+			controler.addControlerListener( new BinaryEventsOutput( runMatsimConfig.getBinaryEventsInterval() ) ) ;
+		}
+		final RingBufferEventsManager eventsManager = runMatsimConfig.getEventLanes() > 0 ?
+				new RingBufferEventsManager( runMatsimConfig.getEventLanes(), runMatsimConfig.getEventBatchSize(),
+						RingBufferEventsManager.DEFAULT_RING_SIZE ) : null ;
+		final LinkTravelTimeTable travelTimeTable = runMatsimConfig.isIncrementalTravelTimes() ?
+				new LinkTravelTimeTable( scenario.getNetwork(), LinkTravelTimeTable.DEFAULT_TIME_BIN_SIZE,
+						LinkTravelTimeTable.DEFAULT_END_TIME, runMatsimConfig.getTravelTimeChangeThreshold() ) : null ;
+		if ( checkpoint != null && travelTimeTable != null && !checkpoint.readTravelTimes( travelTimeTable ) ) {
+			log.warn( "the checkpoint has no travel times, starting from free speed travel times." ) ;
+		}
+		if ( runMatsimConfig.getCheckpointInterval() > 0 ) {
+			controler.addControlerListener( new Checkpoints( checkpointsDirectory, runMatsimConfig.getCheckpointInterval(),
+					travelTimeTable ) ) ;
+		}
+		controler.addOverridingModule( new AbstractModule() {
+			@Override
+			public void install() {
+				addPlanStrategyBinding( ReRouteByOrigin.STRATEGY_NAME ).toProvider(
+						new ReRouteByOriginProvider( runMatsimConfig.getReRouteByOriginTimeBinSize() ) ) ;
+				if ( travelTimeTable != null ) {
+					addTravelTimeBinding( TransportMode.car ).toInstance( travelTimeTable ) ;
+					addEventHandlerBinding().toInstance( travelTimeTable ) ;
+					addControlerListenerBinding().toInstance( travelTimeTable ) ;
+				}
+				if ( runMatsimConfig.getRouterFactory() != RouterFactory.matsimDefault ) {
+					LeastCostPathCalculatorFactory factory = createRouterFactory( runMatsimConfig.getRouterFactory(),
+							config.global().getNumberOfThreads() ) ;
+					if ( runMatsimConfig.getLinkRelaxationSampleInterval() > 0 ) {
+						LinkRelaxationCounters counters = new LinkRelaxationCounters( scenario.getNetwork(),
+								runMatsimConfig.getLinkRelaxationSampleInterval(), config.global().getNumberOfThreads() ) ;
+						if ( factory instanceof AStarEuclideanRecordFactory ) {
+							((AStarEuclideanRecordFactory) factory).setLinkRelaxationCounters( counters ) ;
+						} else if ( factory instanceof AStarLandmarksRecordFactory ) {
+							((AStarLandmarksRecordFactory) factory).setLinkRelaxationCounters( counters ) ;
+						} else {
+							throw new IllegalArgumentException( "link relaxations are only counted by astarEuclideanRecord and astarLandmarksRecord" ) ;
+						}
+						addControlerListenerBinding().toInstance( new LinkRelaxationWriter( counters ) ) ;
+					}
+					if ( runMatsimConfig.isOptimizeLandmarks() ) {
+						if ( !( factory instanceof GraphAStarLandmarksFactory ) ) {
+							throw new IllegalArgumentException( "landmarks are only optimized for graphAStarLandmarks" ) ;
+						}
+						((GraphAStarLandmarksFactory) factory).setOptimizedLandmarks( scenario.getPopulation(), getLandmarksFile( config ) ) ;
+					}
+					if ( runMatsimConfig.isCongestedLandmarks() ) {
+						if ( !( factory instanceof GraphAStarLandmarksFactory ) ) {
+							throw new IllegalArgumentException( "congested landmarks are only used by graphAStarLandmarks" ) ;
+						}
+						((GraphAStarLandmarksFactory) factory).setCongestedBounds( true ) ;
+						// updates the landmarks after every iteration and stops their background thread at shutdown:
+						addControlerListenerBinding().toInstance( (GraphAStarLandmarksFactory) factory ) ;
+					}
+					if ( runMatsimConfig.getCheckpointInterval() > 0 ) {
+						// the landmarks are the router preprocessing that survives a restart:
+						if ( factory instanceof GraphAStarLandmarksFactory ) {
+							((GraphAStarLandmarksFactory) factory).setLandmarksDirectory( Checkpoints.getLandmarksDirectory( checkpointsDirectory ) ) ;
+						} else if ( factory instanceof GraphBidirectionalAStarLandmarksFactory ) {
+							((GraphBidirectionalAStarLandmarksFactory) factory).setLandmarksDirectory( Checkpoints.getLandmarksDirectory( checkpointsDirectory ) ) ;
+						}
+					}
+					if ( travelTimeTable != null && factory instanceof GraphAStarLandmarksFactory ) {
+						((GraphAStarLandmarksFactory) factory).setTravelTimeTable( travelTimeTable ) ;
+					}
+					if ( runMatsimConfig.getPathCacheSize() > 0 ) {
+						CachingLeastCostPathCalculatorFactory cachingFactory = new CachingLeastCostPathCalculatorFactory( factory,
+								runMatsimConfig.getPathCacheSize(), runMatsimConfig.getPathCacheTimeBinSize() ) ;
+						addControlerListenerBinding().toInstance( cachingFactory ) ;
+						if ( travelTimeTable != null ) {
+							cachingFactory.setTravelTimeTable( travelTimeTable ) ;
+						}
+						factory = cachingFactory ;
+					}
+					bind( LeastCostPathCalculatorFactory.class ).toInstance( factory ) ;
+				} else if ( runMatsimConfig.getPathCacheSize() > 0 || runMatsimConfig.getLinkRelaxationSampleInterval() > 0
+						|| runMatsimConfig.isOptimizeLandmarks() || runMatsimConfig.isCongestedLandmarks() ) {
+					throw new IllegalArgumentException( "the path cache, the link relaxation counters, optimized and congested landmarks "
+							+ "need one of the router factories of this project" ) ;
+				}
+				if ( runMatsimConfig.isWorkStealingReplanning() ) {
+					WorkStealingReRouteProvider reRouteProvider = new WorkStealingReRouteProvider() ;
+					addPlanStrategyBinding( DefaultStrategy.ReRoute.toString() ).toProvider( reRouteProvider ) ;
+					addControlerListenerBinding().toInstance( reRouteProvider ) ;
+				}
+				if ( runMatsimConfig.getRoutingServicePort() > 0 ) {
+					addControlerListenerBinding().to( RoutingService.ControlerListener.class ) ;
+				}
+				if ( eventsManager != null ) {
+					bind( EventsManager.class ).toInstance( eventsManager ) ;
+				}
+				if ( runMatsimConfig.isParallelScoring() ) {
+					if ( config.transit().isUseTransit() ) {
+						throw new IllegalArgumentException( "parallel scoring does not score transit legs" ) ;
+					}
+					bind( ScoringFunctionFactory.class ).toInstance( new ParallelScoringFunctionFactory( scenario ) ) ;
+				}
+			}
+		} ) ;
 		
 		// ---
 		
-		controler.run();
+		try {
+			controler.run();
+		} finally {
+			if ( eventsManager != null ) {
+				eventsManager.shutdown() ;
+			}
+		}
+		return controler ;
+	}
+
+	/**
+	 * @return <code>network.landmarks.properties</code> next to <code>network.xml(.gz)</code>, or
+	 * <code>null</code> if the network is not read from a file.
+	 */
+	static File getLandmarksFile( Config config ) {
+		URL url = config.network().getInputFile() == null ? null : config.network().getInputFileURL( config.getContext() ) ;
+		if ( url == null || !"file".equals( url.getProtocol() ) ) {
+			return null ;
+		}
+		try {
+			File binaryFile = BinaryScenarioLoader.getBinaryFile( new File( url.toURI() ) ) ;
+			String name = binaryFile.getName() ;
+			return new File( binaryFile.getParentFile(),
+					name.substring( 0, name.length() - BinaryScenarioLoader.SUFFIX.length() ) + ".landmarks.properties" ) ;
+		} catch ( URISyntaxException | IllegalArgumentException e ) {
+			return null ;
+		}
+	}
+
+	/**
+	 * MATSim computes the iteration that disables innovative strategies from the first iteration, so
+	 * the fraction is adapted such that a resumed run stops innovating where the original one would.
+	 */
+	private static void keepInnovationStop( Config config, int newFirstIteration ) {
+		double fraction = config.strategy().getFractionOfIterationsToDisableInnovation() ;
+		int firstIteration = config.controler().getFirstIteration() ;
+		int lastIteration = config.controler().getLastIteration() ;
+		if ( Double.isInfinite( fraction ) || Double.isNaN( fraction ) || lastIteration <= newFirstIteration ) {
+			return ;
+		}
+		int innovationStop = (int) ( ( lastIteration - firstIteration ) * fraction + firstIteration ) ;
+		// half an iteration more, so that rounding down gives the same iteration again:
+		double newFraction = ( innovationStop - newFirstIteration + 0.5 ) / ( lastIteration - newFirstIteration ) ;
+		config.strategy().setFractionOfIterationsToDisableInnovation( Math.min( 1., Math.max( 0., newFraction ) ) ) ;
+	}
+
+	static LeastCostPathCalculatorFactory createRouterFactory( RouterFactory routerFactory, int numberOfThreads ) {
+		switch ( routerFactory ) {
+			case dijkstraRecord:
+				return new DijkstraRecordFactory() ;
+			case astarEuclideanRecord:
+				return new AStarEuclideanRecordFactory() ;
+			case astarLandmarksRecord:
+				return new AStarLandmarksRecordFactory( numberOfThreads ) ;
+			case graphDijkstra:
+				return new GraphDijkstraFactory() ;
+			case graphAStarEuclidean:
+				return new GraphAStarEuclideanFactory() ;
+			case graphAStarLandmarks:
+				return new GraphAStarLandmarksFactory( numberOfThreads ) ;
+			case graphBidirectionalAStarLandmarks:
+				return new GraphBidirectionalAStarLandmarksFactory() ;
+			case contractionHierarchies:
+				return new ContractionHierarchiesFactory() ;
+			case graphAStarArcFlags:
+				return new GraphAStarArcFlagsFactory( numberOfThreads ) ;
+			default:
+				throw new IllegalArgumentException( "no factory for " + routerFactory ) ;
+		}
 	}
 	
 }
@@ -0,0 +1,313 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RunMatsimConfigGroup.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.run;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.matsim.core.config.ReflectiveConfigGroup;
+
+/**
+ * Options of {@link RunMatsim}: which of the router factories of this project the trip routers use,
+ * whether <code>ReRoute</code> is scheduled on work-stealing threads, the port of the
+ * {@link RoutingService}, and how events are dispatched.
+ */
+public class RunMatsimConfigGroup extends ReflectiveConfigGroup {
+
+	public static final String GROUP_NAME = "runMatsim";
+
+	private static final String ROUTER_FACTORY = "routerFactory";
+	private static final String WORK_STEALING_REPLANNING = "workStealingReplanning";
+	private static final String PATH_CACHE_SIZE = "pathCacheSize";
+	private static final String PATH_CACHE_TIME_BIN_SIZE = "pathCacheTimeBinSize";
+	private static final String ROUTING_SERVICE_PORT = "routingServicePort";
+	private static final String ROUTING_SERVICE_ADDRESS = "routingServiceAddress";
+	private static final String LINK_RELAXATION_SAMPLE_INTERVAL = "linkRelaxationSampleInterval";
+	private static final String OPTIMIZE_LANDMARKS = "optimizeLandmarks";
+	private static final String CONGESTED_LANDMARKS = "congestedLandmarks";
+	private static final String EVENT_LANES = "eventLanes";
+	private static final String EVENT_BATCH_SIZE = "eventBatchSize";
+	private static final String BINARY_EVENTS_INTERVAL = "binaryEventsInterval";
+	private static final String INCREMENTAL_TRAVEL_TIMES = "incrementalTravelTimes";
+	private static final String TRAVEL_TIME_CHANGE_THRESHOLD = "travelTimeChangeThreshold";
+	private static final String CHECKPOINT_INTERVAL = "checkpointInterval";
+	private static final String RESUME = "resume";
+	private static final String PARALLEL_SCORING = "parallelScoring";
+	private static final String RE_ROUTE_BY_ORIGIN_TIME_BIN_SIZE = "reRouteByOriginTimeBinSize";
+
+	public enum RouterFactory {
+		/** keep the factory MATSim binds */
+		matsimDefault,
+		dijkstraRecord, astarEuclideanRecord, astarLandmarksRecord,
+		graphDijkstra, graphAStarEuclidean, graphAStarLandmarks, graphBidirectionalAStarLandmarks,
+		contractionHierarchies, graphAStarArcFlags
+	}
+
+	private RouterFactory routerFactory = RouterFactory.matsimDefault;
+	private boolean workStealingReplanning = false;
+	private int pathCacheSize = 0;
+	private double pathCacheTimeBinSize = 900.0;
+	private int routingServicePort = 0;
+	private String routingServiceAddress = "";
+	private int linkRelaxationSampleInterval = 0;
+	private boolean optimizeLandmarks = false;
+	private boolean congestedLandmarks = false;
+	private int eventLanes = 0;
+	private int eventBatchSize = 1024;
+	private int binaryEventsInterval = 0;
+	private boolean incrementalTravelTimes = false;
+	private double travelTimeChangeThreshold = 0.05;
+	private int checkpointInterval = 0;
+	private boolean resume = false;
+	private boolean parallelScoring = false;
+	private double reRouteByOriginTimeBinSize = 900.0;
+
+	public RunMatsimConfigGroup() {
+		super(GROUP_NAME);
+	}
+
+	@Override
+	public Map<String, String> getComments() {
+		Map<String, String> comments = super.getComments();
+		comments.put(ROUTER_FACTORY, "The LeastCostPathCalculatorFactory of the trip routers, one of "
+				+ Arrays.toString(RouterFactory.values()) + ".");
+		comments.put(WORK_STEALING_REPLANNING, "If true, ReRoute routes the plans on global.numberOfThreads work-stealing "
+				+ "threads and writes their utilization to ITERS/it.N/N.replanningUtilization.csv.");
+		comments.put(PATH_CACHE_SIZE, "If positive, the routers of the routerFactory share a cache of at most this many paths, "
+				+ "emptied at the end of every iteration. 0 (the default) disables the cache. The cache shares paths between "
+				+ "persons and thus needs plansCalcRoute.routingRandomness=0.");
+		comments.put(PATH_CACHE_TIME_BIN_SIZE, "Departures within the same time bin of this many seconds share their cached paths.");
+		comments.put(ROUTING_SERVICE_PORT, "If positive, a RoutingService answers routing queries on this port while the "
+				+ "simulation runs. 0 (the default) disables it.");
+		comments.put(ROUTING_SERVICE_ADDRESS, "The host name or IP address the RoutingService listens on. Empty (the default) "
+				+ "is the loopback address; 0.0.0.0 exposes the unauthenticated service on all interfaces.");
+		comments.put(LINK_RELAXATION_SAMPLE_INTERVAL, "If positive, the astarEuclideanRecord and astarLandmarksRecord routers "
+				+ "count per link how often one in this many queries relaxes it or hits a cost tie, and write the counts to "
+				+ "ITERS/it.N/N.linkRelaxations.csv and .geojson. 0 (the default) disables counting.");
+		comments.put(OPTIMIZE_LANDMARKS, "If true, the graphAStarLandmarks routers use landmarks and control parameters chosen "
+				+ "for the trips of the selected plans, stored in <network>.landmarks.properties next to the network file.");
+		comments.put(CONGESTED_LANDMARKS, "If true, the graphAStarLandmarks routers compute their landmark distances from the "
+				+ "minimum congested travel disutility of every link over the day, updated in the background after every "
+				+ "iteration, instead of from the free-flow one. Takes precedence over optimizeLandmarks.");
+		comments.put(EVENT_LANES, "If positive, events are handed over in batches to this many threads, each running some "
+				+ "of the event handlers in order (RingBufferEventsManager). 0 (the default) keeps MATSim's events manager.");
+		comments.put(EVENT_BATCH_SIZE, "The number of events handed over at once if eventLanes is positive.");
+		comments.put(BINARY_EVENTS_INTERVAL, "If positive, the events of every this many iterations are also written to "
+				+ "ITERS/it.N/N.events.bin, a compressed binary format read by BinaryEventsReader. 0 (the default) disables it.");
+		comments.put(INCREMENTAL_TRAVEL_TIMES, "If true, the car travel times come from a LinkTravelTimeTable of link and 15-minute "
+				+ "bin, filled from the link events of the mobsim and swapped in after it, instead of MATSim's travel time "
+				+ "calculator. The path cache and congestedLandmarks then only update the links whose travel times changed.");
+		comments.put(TRAVEL_TIME_CHANGE_THRESHOLD, "With incrementalTravelTimes, a link counts as changed if its travel time in any "
+				+ "time bin differs from the one last reported for it by more than this fraction of it (0.05, the default, is 5%).");
+		comments.put(CHECKPOINT_INTERVAL, "If positive, the plans and travel times of every this many iterations are written to "
+				+ "checkpoints/it.N in the output directory after replanning, and the landmarks to checkpoints/landmarks. "
+				+ "0 (the default) disables it.");
+		comments.put(RESUME, "If true, the run continues at the iteration of the latest checkpoint in the output directory, "
+				+ "if there is one.");
+		comments.put(PARALLEL_SCORING, "If true, the scoring functions only record activities and legs, which a "
+				+ "ParallelScoringFunctionFactory then scores at once on all cores. The scores are those of the default scoring; "
+				+ "transit and distance-dependent leg utilities are not supported.");
+		comments.put(RE_ROUTE_BY_ORIGIN_TIME_BIN_SIZE, "The ReRouteByOrigin strategy routes the legs leaving the same link "
+				+ "within the same time bin of this many seconds with one search.");
+		return comments;
+	}
+
+	@StringGetter(ROUTER_FACTORY)
+	public RouterFactory getRouterFactory() {
+		return this.routerFactory;
+	}
+
+	@StringSetter(ROUTER_FACTORY)
+	public void setRouterFactory(final RouterFactory routerFactory) {
+		this.routerFactory = routerFactory;
+	}
+
+	@StringGetter(WORK_STEALING_REPLANNING)
+	public boolean isWorkStealingReplanning() {
+		return this.workStealingReplanning;
+	}
+
+	@StringSetter(WORK_STEALING_REPLANNING)
+	public void setWorkStealingReplanning(final boolean workStealingReplanning) {
+		this.workStealingReplanning = workStealingReplanning;
+	}
+
+	@StringGetter(PATH_CACHE_SIZE)
+	public int getPathCacheSize() {
+		return this.pathCacheSize;
+	}
+
+	@StringSetter(PATH_CACHE_SIZE)
+	public void setPathCacheSize(final int pathCacheSize) {
+		this.pathCacheSize = pathCacheSize;
+	}
+
+	@StringGetter(PATH_CACHE_TIME_BIN_SIZE)
+	public double getPathCacheTimeBinSize() {
+		return this.pathCacheTimeBinSize;
+	}
+
+	@StringSetter(PATH_CACHE_TIME_BIN_SIZE)
+	public void setPathCacheTimeBinSize(final double pathCacheTimeBinSize) {
+		this.pathCacheTimeBinSize = pathCacheTimeBinSize;
+	}
+
+	@StringGetter(ROUTING_SERVICE_PORT)
+	public int getRoutingServicePort() {
+		return this.routingServicePort;
+	}
+
+	@StringSetter(ROUTING_SERVICE_PORT)
+	public void setRoutingServicePort(final int routingServicePort) {
+		this.routingServicePort = routingServicePort;
+	}
+
+	@StringGetter(ROUTING_SERVICE_ADDRESS)
+	public String getRoutingServiceAddress() {
+		return this.routingServiceAddress;
+	}
+
+	@StringSetter(ROUTING_SERVICE_ADDRESS)
+	public void setRoutingServiceAddress(final String routingServiceAddress) {
+		this.routingServiceAddress = routingServiceAddress == null ? "" : routingServiceAddress.trim();
+	}
+
+	@StringGetter(LINK_RELAXATION_SAMPLE_INTERVAL)
+	public int getLinkRelaxationSampleInterval() {
+		return this.linkRelaxationSampleInterval;
+	}
+
+	@StringSetter(LINK_RELAXATION_SAMPLE_INTERVAL)
+	public void setLinkRelaxationSampleInterval(final int linkRelaxationSampleInterval) {
+		this.linkRelaxationSampleInterval = linkRelaxationSampleInterval;
+	}
+
+	@StringGetter(OPTIMIZE_LANDMARKS)
+	public boolean isOptimizeLandmarks() {
+		return this.optimizeLandmarks;
+	}
+
+	@StringSetter(OPTIMIZE_LANDMARKS)
+	public void setOptimizeLandmarks(final boolean optimizeLandmarks) {
+		this.optimizeLandmarks = optimizeLandmarks;
+	}
+
+	@StringGetter(CONGESTED_LANDMARKS)
+	public boolean isCongestedLandmarks() {
+		return this.congestedLandmarks;
+	}
+
+	@StringSetter(CONGESTED_LANDMARKS)
+	public void setCongestedLandmarks(final boolean congestedLandmarks) {
+		this.congestedLandmarks = congestedLandmarks;
+	}
+
+	@StringGetter(EVENT_LANES)
+	public int getEventLanes() {
+		return this.eventLanes;
+	}
+
+	@StringSetter(EVENT_LANES)
+	public void setEventLanes(final int eventLanes) {
+		this.eventLanes = eventLanes;
+	}
+
+	@StringGetter(EVENT_BATCH_SIZE)
+	public int getEventBatchSize() {
+		return this.eventBatchSize;
+	}
+
+	@StringSetter(EVENT_BATCH_SIZE)
+	public void setEventBatchSize(final int eventBatchSize) {
+		this.eventBatchSize = eventBatchSize;
+	}
+
+	@StringGetter(BINARY_EVENTS_INTERVAL)
+	public int getBinaryEventsInterval() {
+		return this.binaryEventsInterval;
+	}
+
+	@StringSetter(BINARY_EVENTS_INTERVAL)
+	public void setBinaryEventsInterval(final int binaryEventsInterval) {
+		this.binaryEventsInterval = binaryEventsInterval;
+	}
+
+	@StringGetter(INCREMENTAL_TRAVEL_TIMES)
+	public boolean isIncrementalTravelTimes() {
+		return this.incrementalTravelTimes;
+	}
+
+	@StringSetter(INCREMENTAL_TRAVEL_TIMES)
+	public void setIncrementalTravelTimes(final boolean incrementalTravelTimes) {
+		this.incrementalTravelTimes = incrementalTravelTimes;
+	}
+
+	@StringGetter(TRAVEL_TIME_CHANGE_THRESHOLD)
+	public double getTravelTimeChangeThreshold() {
+		return this.travelTimeChangeThreshold;
+	}
+
+	@StringSetter(TRAVEL_TIME_CHANGE_THRESHOLD)
+	public void setTravelTimeChangeThreshold(final double travelTimeChangeThreshold) {
+		this.travelTimeChangeThreshold = travelTimeChangeThreshold;
+	}
+
+	@StringGetter(CHECKPOINT_INTERVAL)
+	public int getCheckpointInterval() {
+		return this.checkpointInterval;
+	}
+
+	@StringSetter(CHECKPOINT_INTERVAL)
+	public void setCheckpointInterval(final int checkpointInterval) {
+		this.checkpointInterval = checkpointInterval;
+	}
+
+	@StringGetter(RESUME)
+	public boolean isResume() {
+		return this.resume;
+	}
+
+	@StringSetter(RESUME)
+	public void setResume(final boolean resume) {
+		this.resume = resume;
+	}
+
+	@StringGetter(PARALLEL_SCORING)
+	public boolean isParallelScoring() {
+		return this.parallelScoring;
+	}
+
+	@StringSetter(PARALLEL_SCORING)
+	public void setParallelScoring(final boolean parallelScoring) {
+		this.parallelScoring = parallelScoring;
+	}
+
+	@StringGetter(RE_ROUTE_BY_ORIGIN_TIME_BIN_SIZE)
+	public double getReRouteByOriginTimeBinSize() {
+		return this.reRouteByOriginTimeBinSize;
+	}
+
+	@StringSetter(RE_ROUTE_BY_ORIGIN_TIME_BIN_SIZE)
+	public void setReRouteByOriginTimeBinSize(final double reRouteByOriginTimeBinSize) {
+		this.reRouteByOriginTimeBinSize = reRouteByOriginTimeBinSize;
+	}
+}
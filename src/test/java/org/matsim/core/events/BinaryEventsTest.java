@@ -0,0 +1,145 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BinaryEventsTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.events;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Writes events with a {@link BinaryEventsWriter} and checks that the {@link BinaryEventsReader}
+ * returns the same attributes, for all events and for a time window.
+ */
+public class BinaryEventsTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		for (boolean compress : new boolean[] { true, false }) {
+			List<Event> written = createEvents();
+			File file = this.folder.newFile();
+			BinaryEventsWriter writer = new BinaryEventsWriter(file, compress, 1024);
+			for (Event event : written) {
+				writer.handleEvent(event);
+			}
+			writer.closeFile();
+
+			try (BinaryEventsReader reader = new BinaryEventsReader(file)) {
+				Assert.assertTrue(reader.getBlockCount() > 1);
+				Assert.assertEquals(written.size(), reader.getEventCount());
+				Assert.assertEquals(0.0, reader.getMinTime(), 0);
+				Assert.assertEquals(written.get(written.size() - 1).getTime(), reader.getMaxTime(), 0);
+
+				List<Map<String, String>> read = read(reader, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+				Assert.assertEquals(written.size(), read.size());
+				for (int i = 0; i < written.size(); i++) {
+					Assert.assertEquals(written.get(i).getAttributes(), read.get(i));
+				}
+
+				read = read(reader, 1000.0, 2000.5);
+				List<Map<String, String>> expected = new ArrayList<>();
+				for (Event event : written) {
+					if (event.getTime() >= 1000.0 && event.getTime() <= 2000.5) {
+						expected.add(event.getAttributes());
+					}
+				}
+				Assert.assertEquals(expected, read);
+			}
+		}
+	}
+
+	@Test
+	public void testEmpty() throws IOException {
+		File file = this.folder.newFile();
+		new BinaryEventsWriter(file, true, 1024).closeFile();
+		try (BinaryEventsReader reader = new BinaryEventsReader(file)) {
+			Assert.assertEquals(0, reader.getBlockCount());
+			Assert.assertEquals(0, read(reader, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY).size());
+		}
+	}
+
+	private static List<Event> createEvents() {
+		List<Event> events = new ArrayList<>();
+		for (int i = 0; i < 3000; i++) {
+			double time = i;
+			events.add(new LinkEnterEvent(time, Id.create(i % 17, Vehicle.class), Id.createLinkId(i % 101)));
+			events.add(new TestEvent(time + 0.25, Integer.toString(-i), Double.toString(i / 7.0), i % 3 == 0 ? "\u00e4 " + i : "0" + i));
+		}
+		return events;
+	}
+
+	private static List<Map<String, String>> read(final BinaryEventsReader reader, final double fromTime, final double toTime) {
+		final List<Map<String, String>> read = new ArrayList<>();
+		EventsManager events = EventsUtils.createEventsManager();
+		events.addHandler(new BasicEventHandler() {
+			@Override
+			public void handleEvent(final Event event) {
+				read.add(event.getAttributes());
+			}
+
+			@Override
+			public void reset(final int iteration) {
+			}
+		});
+		reader.readEvents(events, fromTime, toTime);
+		return read;
+	}
+
+	private static final class TestEvent extends Event {
+		private final Map<String, String> attributes = new LinkedHashMap<>();
+
+		TestEvent(final double time, final String count, final String value, final String name) {
+			super(time);
+			this.attributes.put("count", count);
+			this.attributes.put("value", value);
+			this.attributes.put("name", name);
+		}
+
+		@Override
+		public String getEventType() {
+			return "test";
+		}
+
+		@Override
+		public Map<String, String> getAttributes() {
+			Map<String, String> attributes = super.getAttributes();
+			attributes.putAll(this.attributes);
+			return attributes;
+		}
+	}
+}
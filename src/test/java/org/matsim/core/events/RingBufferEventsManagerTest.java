@@ -0,0 +1,122 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RingBufferEventsManagerTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.events;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.events.handler.BasicEventHandler;
+
+/**
+ * Checks that every handler of a {@link RingBufferEventsManager} sees all events in order, whatever
+ * lane it runs on, and that failing handlers are reported.
+ */
+public class RingBufferEventsManagerTest {
+
+	@Test
+	public void testOrderPerHandler() {
+		RingBufferEventsManager events = new RingBufferEventsManager(3, 16, 4);
+		List<RecordingHandler> handlers = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			RecordingHandler handler = new RecordingHandler();
+			handlers.add(handler);
+			events.addHandler(handler);
+		}
+		events.resetHandlers(0);
+		events.initProcessing();
+		for (int i = 0; i < 1000; i++) {
+			events.processEvent(createEvent(i));
+		}
+		events.finishProcessing();
+		for (RecordingHandler handler : handlers) {
+			Assert.assertEquals(1, handler.resets);
+			Assert.assertEquals(1000, handler.times.size());
+			for (int i = 0; i < 1000; i++) {
+				Assert.assertEquals(i, handler.times.get(i), 0);
+			}
+		}
+
+		events.removeHandler(handlers.get(0));
+		events.initProcessing();
+		events.processEvent(createEvent(1000));
+		events.finishProcessing();
+		Assert.assertEquals(1000, handlers.get(0).times.size());
+		Assert.assertEquals(1001, handlers.get(1).times.size());
+		events.shutdown();
+	}
+
+	@Test
+	public void testFailingHandler() {
+		RingBufferEventsManager events = new RingBufferEventsManager(2, 16, 4);
+		RecordingHandler handler = new RecordingHandler();
+		events.addHandler(handler);
+		events.addHandler(new BasicEventHandler() {
+			@Override
+			public void handleEvent(final Event event) {
+				throw new IllegalStateException("failing on purpose");
+			}
+
+			@Override
+			public void reset(final int iteration) {
+			}
+		});
+		events.initProcessing();
+		for (int i = 0; i < 100; i++) {
+			events.processEvent(createEvent(i));
+		}
+		try {
+			events.finishProcessing();
+			Assert.fail("the exception of the handler should have been rethrown");
+		} catch (RuntimeException e) {
+			Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+		Assert.assertEquals(100, handler.times.size());
+		events.shutdown();
+	}
+
+	private static Event createEvent(final double time) {
+		return new Event(time) {
+			@Override
+			public String getEventType() {
+				return "test";
+			}
+		};
+	}
+
+	private static final class RecordingHandler implements BasicEventHandler {
+		final List<Double> times = new ArrayList<>();
+		int resets = 0;
+
+		@Override
+		public void handleEvent(final Event event) {
+			this.times.add(event.getTime());
+		}
+
+		@Override
+		public void reset(final int iteration) {
+			this.resets++;
+		}
+	}
+}
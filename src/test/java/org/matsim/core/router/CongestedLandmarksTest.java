@@ -0,0 +1,113 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CongestedLandmarksTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import static org.matsim.core.router.RouterTestUtils.createGridNetwork;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.router.costcalculators.OnlyTimeDependentTravelDisutility;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
+
+public class CongestedLandmarksTest {
+
+	@Test
+	public void testCongestedLandmarks() throws Exception {
+		Network network = createGridNetwork();
+		RoutingGraph graph = RoutingGraph.createFromNetwork(network);
+		TravelTime freeSpeed = new FreeSpeedTravelTime();
+		TravelTime congested = (link, time, person, vehicle) -> {
+			double factor = 1.0 + (link.getId().hashCode() & 3) * 0.5;
+			if (time >= 7 * 3600 && time < 9 * 3600) {
+				factor *= 2;
+			}
+			return factor * freeSpeed.getLinkTravelTime(link, time, person, vehicle);
+		};
+		TravelDisutility travelDisutility = new OnlyTimeDependentTravelDisutility(congested);
+		CongestedLandmarks landmarks = CongestedLandmarks.create(graph, travelDisutility, 8,
+				CongestedLandmarks.DEFAULT_TIME_BIN_SIZE, CongestedLandmarks.DEFAULT_END_TIME);
+		Assert.assertSame(landmarks.getFreeFlowLandmarks(), landmarks.get());
+
+		landmarks.update(travelDisutility).get();
+		Assert.assertNotSame(landmarks.getFreeFlowLandmarks(), landmarks.get());
+
+		LeastCostPathCalculator reference = new DijkstraRecordFactory().createPathCalculator(network, travelDisutility, congested);
+		LeastCostPathCalculator router = new GraphAStarLandmarks(graph, landmarks,
+				landmarks.getFreeFlowLandmarks().getMinTravelCostPerLength(), travelDisutility, congested, 1.0);
+		List<Node> nodes = new ArrayList<>(network.getNodes().values());
+		Random random = new Random(4711);
+		for (int i = 0; i < 200; i++) {
+			Node from = nodes.get(random.nextInt(nodes.size()));
+			Node to = nodes.get(random.nextInt(nodes.size()));
+			double time = random.nextInt(24) * 3600.0;
+			Path expected = reference.calcLeastCostPath(from, to, time, null, null);
+			Path actual = router.calcLeastCostPath(from, to, time, null, null);
+			Assert.assertEquals(expected.travelCost, actual.travelCost, 1e-8);
+		}
+
+		// free flow again: the congested bounds are no longer admissible
+		landmarks.update(new OnlyTimeDependentTravelDisutility(freeSpeed));
+		Assert.assertSame(landmarks.getFreeFlowLandmarks(), landmarks.get());
+
+		landmarks.shutdown();
+		try {
+			landmarks.update(travelDisutility);
+			Assert.fail("updates after shutdown must be rejected");
+		} catch (RejectedExecutionException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testCongestedBoundsFingerprintPerCostFunction() {
+		Network network = createGridNetwork();
+		TravelTime travelTime = new FreeSpeedTravelTime();
+		AtomicInteger minimumCalls = new AtomicInteger();
+		TravelDisutility travelDisutility = new OnlyTimeDependentTravelDisutility(travelTime) {
+			@Override
+			public double getLinkMinimumTravelDisutility(final Link link) {
+				minimumCalls.incrementAndGet();
+				return super.getLinkMinimumTravelDisutility(link);
+			}
+		};
+		GraphAStarLandmarksFactory factory = new GraphAStarLandmarksFactory(1);
+		factory.setCongestedBounds(true, 4);
+		factory.createPathCalculator(network, travelDisutility, travelTime);
+		int calls = minimumCalls.get();
+		Assert.assertTrue(calls > 0);
+		factory.createPathCalculator(network, travelDisutility, travelTime);
+		Assert.assertEquals(calls, minimumCalls.get());
+		factory.notifyShutdown(null);
+	}
+}
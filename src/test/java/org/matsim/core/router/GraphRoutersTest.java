@@ -0,0 +1,182 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * GraphRoutersTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import static org.matsim.core.router.RouterTestUtils.assertSameCosts;
+import static org.matsim.core.router.RouterTestUtils.createGridNetwork;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.router.costcalculators.OnlyTimeDependentTravelDisutility;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
+
+/**
+ * Checks that the routers on the {@link RoutingGraph} find paths of the same cost as {@link DijkstraRecord}.
+ */
+public class GraphRoutersTest {
+
+	@Test
+	public void testGraphDijkstra() {
+		assertSameCosts(new GraphDijkstraFactory());
+	}
+
+	@Test
+	public void testGraphAStarEuclidean() {
+		assertSameCosts(new GraphAStarEuclideanFactory());
+	}
+
+	@Test
+	public void testGraphAStarLandmarks() {
+		assertSameCosts(new GraphAStarLandmarksFactory(1));
+	}
+
+	@Test
+	public void testGraphBidirectionalAStarLandmarks() {
+		assertSameCosts(new GraphBidirectionalAStarLandmarksFactory());
+	}
+
+	@Test
+	public void testContractionHierarchies() {
+		assertSameCosts(new ContractionHierarchiesFactory());
+	}
+
+	@Test
+	public void testGraphAStarArcFlags() {
+		GraphAStarArcFlagsFactory factory = new GraphAStarArcFlagsFactory(2);
+		factory.setCellCount(70);
+		assertSameCosts(factory);
+	}
+
+	@Test
+	public void testFourAryHeap() {
+		AStarLandmarksRecordFactory factory = new AStarLandmarksRecordFactory(1);
+		factory.setUseFourAryHeap(true);
+		assertSameCosts(factory);
+	}
+
+	@Test
+	public void testUnreachableTarget() {
+		Network network = createGridNetwork();
+		Node grid = network.getNodes().get(Id.createNodeId(0));
+		// only leaves towards the grid, so nothing can reach it
+		Node island = network.getFactory().createNode(Id.createNodeId("island"), new Coord(-500.0, -500.0));
+		network.addNode(island);
+		Link link = network.getFactory().createLink(Id.createLinkId("island_0"), island, grid);
+		link.setLength(700.0);
+		link.setFreespeed(10.0);
+		link.setCapacity(1000.0);
+		link.setNumberOfLanes(1.0);
+		link.setAllowedModes(Collections.singleton("car"));
+		network.addLink(link);
+
+		TravelTime travelTime = new FreeSpeedTravelTime();
+		TravelDisutility travelDisutility = new OnlyTimeDependentTravelDisutility(travelTime);
+		Node far = network.getNodes().get(Id.createNodeId(network.getNodes().size() - 2));
+		for (LeastCostPathCalculatorFactory factory : createFactories()) {
+			LeastCostPathCalculator router = factory.createPathCalculator(network, travelDisutility, travelTime);
+			String name = factory.getClass().getSimpleName();
+			Assert.assertNull(name, router.calcLeastCostPath(far, island, 0.0, null, null));
+			// and the router still works afterwards
+			Path back = router.calcLeastCostPath(island, far, 0.0, null, null);
+			Assert.assertNotNull(name, back);
+			Assert.assertSame(name, link, back.links.get(0));
+		}
+	}
+
+	@Test
+	public void testSameFromAndTo() {
+		Network network = createGridNetwork();
+		TravelTime travelTime = new FreeSpeedTravelTime();
+		TravelDisutility travelDisutility = new OnlyTimeDependentTravelDisutility(travelTime);
+		Node node = network.getNodes().get(Id.createNodeId(112));
+		for (LeastCostPathCalculatorFactory factory : createFactories()) {
+			Path path = factory.createPathCalculator(network, travelDisutility, travelTime).calcLeastCostPath(node, node, 0.0, null, null);
+			String name = factory.getClass().getSimpleName();
+			Assert.assertEquals(name, Collections.singletonList(node), path.nodes);
+			Assert.assertTrue(name, path.links.isEmpty());
+			Assert.assertEquals(name, 0.0, path.travelCost, 0.0);
+			Assert.assertEquals(name, 0.0, path.travelTime, 0.0);
+		}
+	}
+
+	@Test
+	public void testOneToMany() {
+		Network network = createGridNetwork();
+		TravelTime travelTime = new FreeSpeedTravelTime();
+		TravelDisutility travelDisutility = new OnlyTimeDependentTravelDisutility(travelTime);
+		LeastCostPathCalculator reference = new DijkstraRecordFactory().createPathCalculator(network, travelDisutility, travelTime);
+		GraphDijkstra router = (GraphDijkstra) new GraphDijkstraFactory().createPathCalculator(network, travelDisutility, travelTime);
+
+		List<Node> nodes = new ArrayList<>(network.getNodes().values());
+		Random random = new Random(4711);
+		for (int i = 0; i < 20; i++) {
+			Node node = nodes.get(random.nextInt(nodes.size()));
+			List<Node> others = new ArrayList<>();
+			for (int j = 0; j < 20; j++) {
+				others.add(nodes.get(random.nextInt(nodes.size())));
+			}
+			List<Path> fromNode = router.calcLeastCostPaths(node, others, 0.0, null, null);
+			List<Path> toNode = router.calcLeastCostPathsTo(others, node, 0.0, null, null);
+			for (int j = 0; j < others.size(); j++) {
+				Path expected = reference.calcLeastCostPath(node, others.get(j), 0.0, null, null);
+				Assert.assertEquals(expected.travelCost, fromNode.get(j).travelCost, 1e-8);
+				Assert.assertSame(others.get(j), fromNode.get(j).nodes.get(fromNode.get(j).nodes.size() - 1));
+				expected = reference.calcLeastCostPath(others.get(j), node, 0.0, null, null);
+				Assert.assertEquals(expected.travelCost, toNode.get(j).travelCost, 1e-8);
+				Assert.assertSame(others.get(j), toNode.get(j).nodes.get(0));
+			}
+		}
+	}
+
+	private static List<LeastCostPathCalculatorFactory> createFactories() {
+		List<LeastCostPathCalculatorFactory> factories = new ArrayList<>();
+		factories.add(new DijkstraRecordFactory());
+		factories.add(new AStarEuclideanRecordFactory());
+		factories.add(new AStarLandmarksRecordFactory(1));
+		AStarLandmarksRecordFactory withHeap = new AStarLandmarksRecordFactory(1);
+		withHeap.setUseFourAryHeap(true);
+		factories.add(withHeap);
+		factories.add(new GraphDijkstraFactory());
+		factories.add(new GraphAStarEuclideanFactory());
+		factories.add(new GraphAStarLandmarksFactory(1));
+		factories.add(new GraphBidirectionalAStarLandmarksFactory());
+		factories.add(new ContractionHierarchiesFactory());
+		GraphAStarArcFlagsFactory arcFlags = new GraphAStarArcFlagsFactory(2);
+		arcFlags.setCellCount(16);
+		factories.add(arcFlags);
+		return factories;
+	}
+}
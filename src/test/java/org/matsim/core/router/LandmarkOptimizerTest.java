@@ -0,0 +1,93 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * LandmarkOptimizerTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import static org.matsim.core.router.RouterTestUtils.assertSameCosts;
+import static org.matsim.core.router.RouterTestUtils.createGridNetwork;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.router.costcalculators.OnlyTimeDependentTravelDisutility;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
+
+public class LandmarkOptimizerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testLandmarkOptimizer() throws IOException {
+		Network network = createGridNetwork();
+		Population population = ScenarioUtils.createScenario(ConfigUtils.createConfig()).getPopulation();
+		PopulationFactory populationFactory = population.getFactory();
+		List<Link> links = new ArrayList<>(network.getLinks().values());
+		Random random = new Random(4711);
+		for (int i = 0; i < 100; i++) {
+			Plan plan = populationFactory.createPlan();
+			Activity home = populationFactory.createActivityFromLinkId("h", links.get(random.nextInt(links.size())).getId());
+			home.setEndTime(7 * 3600);
+			plan.addActivity(home);
+			plan.addLeg(populationFactory.createLeg("car"));
+			plan.addActivity(populationFactory.createActivityFromLinkId("w", links.get(random.nextInt(links.size())).getId()));
+			Person person = populationFactory.createPerson(Id.createPersonId(i));
+			person.addPlan(plan);
+			person.setSelectedPlan(plan);
+			population.addPerson(person);
+		}
+
+		File file = new File(this.folder.getRoot(), "network.landmarks.properties");
+		GraphAStarLandmarksFactory factory = new GraphAStarLandmarksFactory(1);
+		factory.setOptimizedLandmarks(population, file);
+		assertSameCosts(factory);
+		Assert.assertTrue(file.exists());
+
+		TravelTime travelTime = new FreeSpeedTravelTime();
+		TravelDisutility travelDisutility = new OnlyTimeDependentTravelDisutility(travelTime);
+		RoutingGraph graph = RoutingGraph.createFromNetwork(network);
+		LandmarkOptimizer optimizer = new LandmarkOptimizer(network, graph, travelDisutility, travelTime);
+		optimizer.setLandmarkCount(4);
+		LandmarkOptimizer.Result optimized = optimizer.optimize(population);
+		Assert.assertEquals(4, optimized.getLandmarks().getLandmarkCount());
+		LandmarkOptimizer.Result read = new LandmarkOptimizer(network, graph, travelDisutility, travelTime).loadOrOptimize(population, file);
+		Assert.assertEquals(LandmarkOptimizer.DEFAULT_LANDMARK_COUNT, read.getLandmarks().getLandmarkCount());
+		Assert.assertFalse(Double.isNaN(read.getMeanVisitedNodes()));
+	}
+}
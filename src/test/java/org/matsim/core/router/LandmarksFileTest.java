@@ -0,0 +1,64 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * LandmarksFileTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import static org.matsim.core.router.RouterTestUtils.createGridNetwork;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.router.costcalculators.OnlyTimeDependentTravelDisutility;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
+
+public class LandmarksFileTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testLandmarksFile() throws IOException {
+		Network network = createGridNetwork();
+		RoutingGraph graph = RoutingGraph.createFromNetwork(network);
+		TravelDisutility travelDisutility = new OnlyTimeDependentTravelDisutility(new FreeSpeedTravelTime());
+		long costFingerprint = graph.computeCostFingerprint(travelDisutility);
+		GraphDirectedLandmarks landmarks = GraphDirectedLandmarks.create(graph, travelDisutility, 8);
+		File file = LandmarksFile.getFile(this.folder.getRoot(), "directed", graph, costFingerprint);
+		LandmarksFile.writeLandmarks(file, graph, costFingerprint, landmarks);
+
+		GraphDirectedLandmarks mapped = LandmarksFile.readDirectedLandmarks(file, graph, costFingerprint);
+		Assert.assertEquals(landmarks.getLandmarkCount(), mapped.getLandmarkCount());
+		for (int i = 0; i < landmarks.getLandmarkCount(); i++) {
+			Assert.assertEquals(landmarks.getLandmark(i), mapped.getLandmark(i));
+			for (int n = 0; n < graph.getNodeCount(); n++) {
+				Assert.assertEquals(landmarks.getCostToLandmark(n, i), mapped.getCostToLandmark(n, i), 0.0);
+				Assert.assertEquals(landmarks.getCostFromLandmark(n, i), mapped.getCostFromLandmark(n, i), 0.0);
+			}
+		}
+		Assert.assertNull(LandmarksFile.readDirectedLandmarks(file, graph, costFingerprint + 1));
+		Assert.assertNull(LandmarksFile.readLandmarks(file, graph, costFingerprint));
+	}
+}
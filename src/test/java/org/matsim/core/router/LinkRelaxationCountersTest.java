@@ -0,0 +1,60 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * LinkRelaxationCountersTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import static org.matsim.core.router.RouterTestUtils.createGridNetwork;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.router.costcalculators.OnlyTimeDependentTravelDisutility;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
+
+public class LinkRelaxationCountersTest {
+
+	@Test
+	public void testLinkRelaxationCounters() {
+		Network network = createGridNetwork();
+		TravelTime travelTime = new FreeSpeedTravelTime();
+		TravelDisutility travelDisutility = new OnlyTimeDependentTravelDisutility(travelTime);
+		LinkRelaxationCounters counters = new LinkRelaxationCounters(network, 1, 1);
+		AStarEuclideanRecordFactory factory = new AStarEuclideanRecordFactory();
+		factory.setLinkRelaxationCounters(counters);
+		LeastCostPathCalculator router = factory.createPathCalculator(network, travelDisutility, travelTime);
+		List<Node> nodes = new ArrayList<>(network.getNodes().values());
+		Path path = router.calcLeastCostPath(nodes.get(0), nodes.get(nodes.size() - 1), 0.0, null, null);
+		Assert.assertEquals(1, counters.getSampledQueries());
+		for (Link link : path.links) {
+			Assert.assertTrue(counters.getCount(link.getId(), LinkRelaxationCounters.Kind.relaxed) > 0);
+		}
+		counters.reset();
+		Assert.assertEquals(0, counters.getCount(path.links.get(0).getId(), LinkRelaxationCounters.Kind.relaxed));
+	}
+}
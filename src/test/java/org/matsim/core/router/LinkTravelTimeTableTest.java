@@ -0,0 +1,101 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * LinkTravelTimeTableTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import static org.matsim.core.router.RouterTestUtils.createGridNetwork;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.router.costcalculators.OnlyTimeDependentTravelDisutility;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.vehicles.Vehicle;
+
+public class LinkTravelTimeTableTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testLinkTravelTimeTable() throws IOException {
+		Network network = createGridNetwork();
+		LinkTravelTimeTable table = new LinkTravelTimeTable(network, 900.0, 24 * 3600.0, 0.1);
+		CachingLeastCostPathCalculatorFactory factory = new CachingLeastCostPathCalculatorFactory(new DijkstraRecordFactory());
+		factory.setTravelTimeTable(table);
+		LeastCostPathCalculator router = factory.createPathCalculator(network, new OnlyTimeDependentTravelDisutility(table), table);
+		List<Link> links = new ArrayList<>(network.getLinks().values());
+		Link slow = links.get(0);
+		Link other = links.get(links.size() - 1);
+		double freeSpeed = slow.getLength() / slow.getFreespeed();
+		Id<Vehicle> vehicle = Id.create("v", Vehicle.class);
+		Path slowPath = router.calcLeastCostPath(slow.getFromNode(), slow.getToNode(), 8 * 3600.0, null, null);
+		Path otherPath = router.calcLeastCostPath(other.getFromNode(), other.getToNode(), 8 * 3600.0, null, null);
+		Assert.assertEquals(Collections.singletonList(slow), slowPath.links);
+		Assert.assertFalse(otherPath.links.contains(slow));
+
+		table.reset(0);
+		double time = 8 * 3600.0;
+		for (double travelTime : new double[] { 3 * freeSpeed, freeSpeed }) {
+			table.handleEvent(new LinkEnterEvent(time, vehicle, slow.getId()));
+			table.handleEvent(new LinkLeaveEvent(time + travelTime, vehicle, slow.getId()));
+			time += 60.0;
+		}
+		table.handleEvent(new LinkEnterEvent(time, vehicle, other.getId()));
+		table.handleEvent(new VehicleLeavesTrafficEvent(time + 1000.0, null, other.getId(), vehicle, "car", 1.0));
+		Assert.assertEquals(freeSpeed, table.getLinkTravelTime(slow, 8 * 3600.0, null, null), 1e-3);
+
+		LinkTravelTimeTable.ChangedLinks changed = table.swap();
+		Assert.assertEquals(1, changed.size());
+		Assert.assertTrue(changed.contains(slow));
+		Assert.assertFalse(changed.contains(other));
+		Assert.assertEquals(2 * freeSpeed, table.getLinkTravelTime(slow, 8 * 3600.0 + 899.0, null, null), 1e-3);
+		Assert.assertEquals(freeSpeed, table.getLinkTravelTime(slow, 7 * 3600.0, null, null), 1e-3);
+		Assert.assertNotSame(slowPath, router.calcLeastCostPath(slow.getFromNode(), slow.getToNode(), 8 * 3600.0, null, null));
+		Assert.assertSame(otherPath, router.calcLeastCostPath(other.getFromNode(), other.getToNode(), 8 * 3600.0, null, null));
+
+		File file = this.folder.newFile();
+		table.snapshot().write(file, true);
+		LinkTravelTimeTable copy = new LinkTravelTimeTable(network, 900.0, 24 * 3600.0, 0.1);
+		copy.read(file);
+		Assert.assertEquals(2 * freeSpeed, copy.getLinkTravelTime(slow, 8 * 3600.0 + 899.0, null, null), 1e-3);
+		Assert.assertEquals(other.getLength() / other.getFreespeed(), copy.getLinkTravelTime(other, 8 * 3600.0, null, null), 1e-3);
+
+		// nothing traversed: back to free speed
+		changed = table.swap();
+		Assert.assertTrue(changed.contains(slow));
+		Assert.assertEquals(freeSpeed, table.getLinkTravelTime(slow, 8 * 3600.0, null, null), 1e-3);
+		Assert.assertTrue(table.swap().isEmpty());
+	}
+}
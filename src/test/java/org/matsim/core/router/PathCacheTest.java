@@ -0,0 +1,143 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * PathCacheTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import static org.matsim.core.router.RouterTestUtils.assertSameCosts;
+import static org.matsim.core.router.RouterTestUtils.createGridNetwork;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.router.costcalculators.OnlyTimeDependentTravelDisutility;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
+
+public class PathCacheTest {
+
+	@Test
+	public void testCachingFactory() {
+		assertSameCosts(new CachingLeastCostPathCalculatorFactory(new DijkstraRecordFactory()));
+	}
+
+	@Test
+	public void testPathCache() {
+		Network network = createGridNetwork();
+		TravelTime travelTime = new FreeSpeedTravelTime();
+		TravelDisutility travelDisutility = new OnlyTimeDependentTravelDisutility(travelTime);
+		PathCache cache = new PathCache(2, 900.0);
+		LeastCostPathCalculator router = new CachingLeastCostPathCalculator(
+				new DijkstraRecordFactory().createPathCalculator(network, travelDisutility, travelTime), cache);
+		List<Node> nodes = new ArrayList<>(network.getNodes().values());
+
+		Path path = router.calcLeastCostPath(nodes.get(0), nodes.get(1), 0.0, null, null);
+		Assert.assertSame(path, router.calcLeastCostPath(nodes.get(0), nodes.get(1), 899.0, null, null));
+		Assert.assertNotSame(path, router.calcLeastCostPath(nodes.get(0), nodes.get(1), 900.0, null, null));
+		Assert.assertEquals(1, cache.getHits());
+		Assert.assertEquals(2, cache.getMisses());
+
+		router.calcLeastCostPath(nodes.get(0), nodes.get(2), 0.0, null, null);
+		Assert.assertTrue(cache.size() <= 2);
+		cache.clear();
+		Assert.assertEquals(0, cache.size());
+		Assert.assertEquals(0, cache.getHits());
+	}
+
+	@Test
+	public void testCachedPathTravelTime() {
+		Network network = createGridNetwork();
+		TravelTime travelTime = (link, time, person, vehicle) -> link.getLength() / link.getFreespeed() * (time < 450.0 ? 1.0 : 2.0);
+		TravelDisutility travelDisutility = new OnlyTimeDependentTravelDisutility(travelTime);
+		LeastCostPathCalculator router = new CachingLeastCostPathCalculatorFactory(new DijkstraRecordFactory())
+				.createPathCalculator(network, travelDisutility, travelTime);
+		List<Node> nodes = new ArrayList<>(network.getNodes().values());
+
+		Path first = router.calcLeastCostPath(nodes.get(0), nodes.get(nodes.size() - 1), 0.0, null, null);
+		Path cached = router.calcLeastCostPath(nodes.get(0), nodes.get(nodes.size() - 1), 600.0, null, null);
+		Assert.assertEquals(first.links, cached.links);
+		double expected = 0.0;
+		for (Link link : first.links) {
+			expected += travelTime.getLinkTravelTime(link, 600.0 + expected, null, null);
+		}
+		Assert.assertEquals(expected, cached.travelTime, 1e-9);
+		Assert.assertEquals(expected, cached.travelCost, 1e-9);
+		Assert.assertTrue(cached.travelTime > first.travelTime);
+	}
+
+	@Test
+	public void testConcurrentQueries() throws Exception {
+		Network network = createGridNetwork();
+		TravelTime travelTime = new FreeSpeedTravelTime();
+		LeastCostPathCalculator reference = new DijkstraRecordFactory().createPathCalculator(network,
+				new OnlyTimeDependentTravelDisutility(travelTime), travelTime);
+		List<Node> nodes = new ArrayList<>(network.getNodes().values());
+		Random random = new Random(4711);
+		Node[][] odPairs = new Node[100][];
+		double[] costs = new double[odPairs.length];
+		for (int i = 0; i < odPairs.length; i++) {
+			odPairs[i] = new Node[] { nodes.get(random.nextInt(nodes.size())), nodes.get(random.nextInt(nodes.size())) };
+			costs[i] = reference.calcLeastCostPath(odPairs[i][0], odPairs[i][1], 0.0, null, null).travelCost;
+		}
+
+		// a router per thread, as in replanning, which all share one cache
+		CachingLeastCostPathCalculatorFactory factory = new CachingLeastCostPathCalculatorFactory(new DijkstraRecordFactory(), 50, 900.0);
+		final int threads = 8;
+		final int rounds = 3;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				final int offset = t;
+				futures.add(executor.submit(() -> {
+					LeastCostPathCalculator router = factory.createPathCalculator(network,
+							new OnlyTimeDependentTravelDisutility(travelTime), travelTime);
+					for (int i = 0; i < rounds * odPairs.length; i++) {
+						int q = (i + offset * 10) % odPairs.length;
+						Path path = router.calcLeastCostPath(odPairs[q][0], odPairs[q][1], 0.0, null, null);
+						Assert.assertEquals(costs[q], path.travelCost, 1e-8);
+						Assert.assertSame(odPairs[q][0], path.nodes.get(0));
+						Assert.assertSame(odPairs[q][1], path.nodes.get(path.nodes.size() - 1));
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		factory.invalidate();
+		Assert.assertEquals(threads * rounds * odPairs.length, factory.getHits() + factory.getMisses());
+		Assert.assertTrue(factory.getHits() > 0);
+		Assert.assertTrue(factory.getMisses() > 0);
+	}
+}
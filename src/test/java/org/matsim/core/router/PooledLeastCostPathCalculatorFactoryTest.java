@@ -0,0 +1,114 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * PooledLeastCostPathCalculatorFactoryTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import static org.matsim.core.router.RouterTestUtils.assertSameCosts;
+import static org.matsim.core.router.RouterTestUtils.createGridNetwork;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.router.costcalculators.OnlyTimeDependentTravelDisutility;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
+
+public class PooledLeastCostPathCalculatorFactoryTest {
+
+	@Test
+	public void testPooledFactory() {
+		assertSameCosts(new PooledLeastCostPathCalculatorFactory(new GraphDijkstraFactory(), 2));
+	}
+
+	@Test
+	public void testPooledFactorySharesPool() {
+		Network network = createGridNetwork();
+		TravelTime travelTime = new FreeSpeedTravelTime();
+		TravelDisutility travelDisutility = new OnlyTimeDependentTravelDisutility(travelTime);
+		PooledLeastCostPathCalculatorFactory factory = new PooledLeastCostPathCalculatorFactory(new GraphDijkstraFactory(), 2);
+		LeastCostPathCalculator first = factory.createPathCalculator(network, travelDisutility, travelTime);
+		LeastCostPathCalculator second = factory.createPathCalculator(network, travelDisutility, travelTime);
+		Assert.assertSame(first, second);
+		Assert.assertEquals(1, factory.getPoolCount());
+
+		// another disutility of the same class must not be replaced by the pooled one
+		TravelDisutility other = new OnlyTimeDependentTravelDisutility(travelTime);
+		LeastCostPathCalculatorPool third = (LeastCostPathCalculatorPool) factory.createPathCalculator(network, other, travelTime);
+		Assert.assertSame(other, third.getTravelDisutility());
+		Assert.assertEquals(2, factory.getPoolCount());
+
+		factory.createPathCalculator(network, travelDisutility, new FreeSpeedTravelTime());
+		Assert.assertEquals(3, factory.getPoolCount());
+	}
+
+	@Test
+	public void testConcurrentQueries() throws Exception {
+		Network network = createGridNetwork();
+		TravelTime travelTime = new FreeSpeedTravelTime();
+		TravelDisutility travelDisutility = new OnlyTimeDependentTravelDisutility(travelTime);
+		LeastCostPathCalculator reference = new DijkstraRecordFactory().createPathCalculator(network, travelDisutility, travelTime);
+		List<Node> nodes = new ArrayList<>(network.getNodes().values());
+		Random random = new Random(4711);
+		Node[][] odPairs = new Node[400][];
+		double[] costs = new double[odPairs.length];
+		for (int i = 0; i < odPairs.length; i++) {
+			odPairs[i] = new Node[] { nodes.get(random.nextInt(nodes.size())), nodes.get(random.nextInt(nodes.size())) };
+			costs[i] = reference.calcLeastCostPath(odPairs[i][0], odPairs[i][1], 0.0, null, null).travelCost;
+		}
+
+		// more threads than routers, so that threads wait for each other's routers
+		PooledLeastCostPathCalculatorFactory factory = new PooledLeastCostPathCalculatorFactory(new GraphDijkstraFactory(), 3);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < 8; t++) {
+				final int offset = t;
+				futures.add(executor.submit(() -> {
+					LeastCostPathCalculator router = factory.createPathCalculator(network, travelDisutility, travelTime);
+					for (int i = 0; i < odPairs.length; i++) {
+						int q = (i + offset * 50) % odPairs.length;
+						Path path = router.calcLeastCostPath(odPairs[q][0], odPairs[q][1], 0.0, null, null);
+						Assert.assertEquals(costs[q], path.travelCost, 1e-8);
+						Assert.assertSame(odPairs[q][1], path.nodes.get(path.nodes.size() - 1));
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		Assert.assertEquals(1, factory.getPoolCount());
+		LeastCostPathCalculatorPool pool = (LeastCostPathCalculatorPool) factory.createPathCalculator(network, travelDisutility, travelTime);
+		Assert.assertTrue(pool.getCreatedCount() <= 3);
+	}
+}
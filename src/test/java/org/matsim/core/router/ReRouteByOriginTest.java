@@ -0,0 +1,66 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ReRouteByOriginTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import static org.matsim.core.router.RouterTestUtils.addGridNetwork;
+import static org.matsim.core.router.RouterTestUtils.assertSameLegs;
+import static org.matsim.core.router.RouterTestUtils.createDurationOnlyPlans;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.router.costcalculators.RandomizingTimeDistanceTravelDisutilityFactory;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
+
+public class ReRouteByOriginTest {
+
+	@Test
+	public void testReRouteByOrigin() {
+		Config config = ConfigUtils.createConfig();
+		config.plansCalcRoute().setRoutingRandomness(0.0);
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		Network network = addGridNetwork(scenario.getNetwork());
+		List<Plan> expected = createDurationOnlyPlans(scenario, 7);
+		List<Plan> actual = createDurationOnlyPlans(scenario, 7);
+
+		PlanRouter planRouter = new PlanRouter(TripRouterFactoryBuilderWithDefaults.createDefaultTripRouterFactoryImpl(scenario).get(),
+				scenario.getActivityFacilities());
+		for (Plan plan : expected) {
+			planRouter.run(plan);
+		}
+		ReRouteByOrigin reRoute = new ReRouteByOrigin(network, RoutingGraph.createFromNetwork(network), TransportMode.car,
+				new FreeSpeedTravelTime(), new RandomizingTimeDistanceTravelDisutilityFactory(TransportMode.car, config.planCalcScore()),
+				config, ReRouteByOrigin.DEFAULT_TIME_BIN_SIZE, 2);
+		reRoute.prepareReplanning(null);
+		for (Plan plan : actual) {
+			reRoute.handlePlan(plan);
+		}
+		reRoute.finishReplanning();
+		assertSameLegs(expected, actual);
+	}
+}
@@ -0,0 +1,173 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RouterTestUtils.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.router.costcalculators.OnlyTimeDependentTravelDisutility;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
+
+/**
+ * The networks, plans and assertions shared by the router tests.
+ */
+/*package*/ final class RouterTestUtils {
+
+	private static final int SIDE = 15;
+
+	private RouterTestUtils() {
+	}
+
+	/**
+	 * Asserts that the factory's routers find paths of the same cost as {@link DijkstraRecord} between
+	 * random nodes of the {@link #createGridNetwork() grid}.
+	 */
+	static void assertSameCosts(final LeastCostPathCalculatorFactory factory) {
+		Network network = createGridNetwork();
+		TravelTime travelTime = new FreeSpeedTravelTime();
+		TravelDisutility travelDisutility = new OnlyTimeDependentTravelDisutility(travelTime);
+		LeastCostPathCalculator reference = new DijkstraRecordFactory().createPathCalculator(network, travelDisutility, travelTime);
+		LeastCostPathCalculator router = factory.createPathCalculator(network, travelDisutility, travelTime);
+
+		List<Node> nodes = new ArrayList<>(network.getNodes().values());
+		Random random = new Random(4711);
+		for (int i = 0; i < 200; i++) {
+			Node from = nodes.get(random.nextInt(nodes.size()));
+			Node to = nodes.get(random.nextInt(nodes.size()));
+			Path expected = reference.calcLeastCostPath(from, to, 0.0, null, null);
+			Path actual = router.calcLeastCostPath(from, to, 0.0, null, null);
+			Assert.assertEquals(expected.travelCost, actual.travelCost, 1e-8);
+			Assert.assertEquals(expected.travelTime, actual.travelTime, 1e-8);
+			Assert.assertSame(from, actual.nodes.get(0));
+			Assert.assertSame(to, actual.nodes.get(actual.nodes.size() - 1));
+			Assert.assertEquals(actual.nodes.size(), actual.links.size() + 1);
+		}
+	}
+
+	/**
+	 * Asserts that the legs of both plans have the same departure times, travel times and routes.
+	 */
+	static void assertSameLegs(final List<Plan> expected, final List<Plan> actual) {
+		for (int p = 0; p < expected.size(); p++) {
+			List<PlanElement> expectedElements = expected.get(p).getPlanElements();
+			List<PlanElement> actualElements = actual.get(p).getPlanElements();
+			Assert.assertEquals(expectedElements.size(), actualElements.size());
+			for (int i = 1; i < expectedElements.size(); i += 2) {
+				Leg expectedLeg = (Leg) expectedElements.get(i);
+				Leg actualLeg = (Leg) actualElements.get(i);
+				Assert.assertEquals(expectedLeg.getDepartureTime(), actualLeg.getDepartureTime(), 1e-6);
+				Assert.assertEquals(expectedLeg.getTravelTime(), actualLeg.getTravelTime(), 1e-6);
+				Assert.assertEquals(((NetworkRoute) expectedLeg.getRoute()).getLinkIds(), ((NetworkRoute) actualLeg.getRoute()).getLinkIds());
+			}
+		}
+	}
+
+	/**
+	 * Plans home - work - shop - home by car, where only the first activity has an end time and the
+	 * others only a duration, with the homes on a few links so that departures share an origin.
+	 */
+	static List<Plan> createDurationOnlyPlans(final Scenario scenario, final long seed) {
+		PopulationFactory factory = scenario.getPopulation().getFactory();
+		List<Link> links = new ArrayList<>(scenario.getNetwork().getLinks().values());
+		Random random = new Random(seed);
+		List<Plan> plans = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			Person person = factory.createPerson(Id.createPersonId(i));
+			Plan plan = factory.createPlan();
+			Id<Link> home = links.get(random.nextInt(4)).getId();
+			Activity first = factory.createActivityFromLinkId("h", home);
+			first.setEndTime(7 * 3600 + random.nextInt(4) * 300);
+			plan.addActivity(first);
+			for (String type : new String[] { "w", "s" }) {
+				plan.addLeg(factory.createLeg(TransportMode.car));
+				Activity activity = factory.createActivityFromLinkId(type, links.get(random.nextInt(links.size())).getId());
+				activity.setMaximumDuration(600 + random.nextInt(3) * 600);
+				plan.addActivity(activity);
+			}
+			plan.addLeg(factory.createLeg(TransportMode.car));
+			plan.addActivity(factory.createActivityFromLinkId("h", home));
+			person.addPlan(plan);
+			plans.add(plan);
+		}
+		return plans;
+	}
+
+	/**
+	 * @return A 15 x 15 grid with links in both directions of random length and free speed.
+	 */
+	static Network createGridNetwork() {
+		return addGridNetwork(ScenarioUtils.createScenario(ConfigUtils.createConfig()).getNetwork());
+	}
+
+	static Network addGridNetwork(final Network network) {
+		Random random = new Random(42);
+		Node[] nodes = new Node[SIDE * SIDE];
+		for (int i = 0; i < nodes.length; i++) {
+			nodes[i] = network.getFactory().createNode(Id.createNodeId(i), new Coord((i % SIDE) * 100.0, (i / SIDE) * 100.0));
+			network.addNode(nodes[i]);
+		}
+		for (int i = 0; i < nodes.length; i++) {
+			if (i % SIDE + 1 < SIDE) {
+				addLinks(network, nodes[i], nodes[i + 1], random);
+			}
+			if (i + SIDE < nodes.length) {
+				addLinks(network, nodes[i], nodes[i + SIDE], random);
+			}
+		}
+		return network;
+	}
+
+	private static void addLinks(final Network network, final Node a, final Node b, final Random random) {
+		for (Node[] fromTo : new Node[][] { { a, b }, { b, a } }) {
+			Link link = network.getFactory().createLink(Id.createLinkId(fromTo[0].getId() + "_" + fromTo[1].getId()), fromTo[0], fromTo[1]);
+			link.setLength(100.0 + random.nextInt(50));
+			link.setFreespeed(5.0 + random.nextInt(25));
+			link.setCapacity(1000.0);
+			link.setNumberOfLanes(1.0);
+			link.setAllowedModes(Collections.singleton("car"));
+			network.addLink(link);
+		}
+	}
+}
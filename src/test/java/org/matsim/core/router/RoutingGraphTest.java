@@ -0,0 +1,82 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RoutingGraphTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import static org.matsim.core.router.RouterTestUtils.createGridNetwork;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.router.costcalculators.OnlyTimeDependentTravelDisutility;
+import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
+
+public class RoutingGraphTest {
+
+	@Test
+	public void testSnapshotLayout() {
+		Network network = createGridNetwork();
+		RoutingGraph graph = RoutingGraph.createFromNetwork(network);
+		Assert.assertEquals(network.getNodes().size(), graph.getNodeCount());
+		Assert.assertEquals(network.getLinks().size(), graph.getLinkCount());
+		for (int n = 0; n < graph.getNodeCount(); n++) {
+			Node node = graph.getNode(n);
+			Assert.assertEquals(n, graph.getNodeIndex(node.getId()));
+			Assert.assertEquals(n, graph.getNodeIndex(node));
+			Assert.assertEquals(node.getOutLinks().size(), graph.getOutEnd(n) - graph.getOutStart(n));
+			Assert.assertEquals(node.getInLinks().size(), graph.getInEnd(n) - graph.getInStart(n));
+			for (int l = graph.getOutStart(n); l < graph.getOutEnd(n); l++) {
+				Assert.assertSame(node, graph.getLink(l).getFromNode());
+				Assert.assertEquals(graph.getLink(l).getLength(), graph.getLength(l), 0.0);
+			}
+			for (int i = graph.getInStart(n); i < graph.getInEnd(n); i++) {
+				Assert.assertSame(node, graph.getLink(graph.getInLink(i)).getToNode());
+			}
+		}
+		// a node of another network with the same id
+		Assert.assertEquals(-1, graph.getNodeIndex(createGridNetwork().getNodes().get(graph.getNode(0).getId())));
+	}
+
+	@Test
+	public void testGraphWithoutNetworkObjects() {
+		RoutingGraph.Builder builder = new RoutingGraph.Builder(2, 1);
+		int from = builder.addNode(Id.createNodeId("a"), 0.0, 0.0, null);
+		int to = builder.addNode(Id.createNodeId("b"), 100.0, 0.0, null);
+		builder.addLink(Id.createLinkId("ab"), from, to, 100.0, 10.0, null);
+		RoutingGraph graph = builder.build();
+		Assert.assertFalse(graph.hasNetworkObjects());
+		Assert.assertEquals(1, graph.getNodeIndex(Id.createNodeId("b")));
+		try {
+			graph.computeCostFingerprint(new OnlyTimeDependentTravelDisutility(new FreeSpeedTravelTime()));
+			Assert.fail("the fingerprint needs the links");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		try {
+			IndexedFourAryHeap.createForNodes(graph);
+			Assert.fail("the heap needs the nodes");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		Assert.assertTrue(RoutingGraph.createFromNetwork(createGridNetwork()).hasNetworkObjects());
+	}
+}
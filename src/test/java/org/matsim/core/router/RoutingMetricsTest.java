@@ -0,0 +1,80 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RoutingMetricsTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+
+import org.HdrHistogram.Histogram;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RoutingMetricsTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testRoutingMetrics() throws InterruptedException, IOException {
+		RoutingMetrics metrics = RoutingMetrics.getInstance("RoutingMetricsTest");
+		metrics.reset();
+		for (int i = 1; i <= 100; i++) {
+			metrics.record(i, 2 * i, 3 * i, i * 1000L);
+		}
+		Thread thread = new Thread(() -> {
+			for (int i = 1; i <= 100; i++) {
+				metrics.record(i, 2 * i, 3 * i, i * 1000L);
+			}
+		});
+		thread.start();
+		thread.join();
+
+		Histogram[] interval = metrics.nextInterval();
+		Histogram visitedNodes = interval[RoutingMetrics.Metric.visitedNodes.ordinal()];
+		Assert.assertEquals(200, visitedNodes.getTotalCount());
+		Assert.assertEquals(50, visitedNodes.getValueAtPercentile(50));
+		Assert.assertEquals(99, visitedNodes.getValueAtPercentile(99));
+		Assert.assertEquals(101.0, interval[RoutingMetrics.Metric.relaxedLinks.ordinal()].getMean(), 1e-9);
+		Assert.assertEquals(100, interval[RoutingMetrics.Metric.wallTimeMicros.ordinal()].getMaxValue());
+		Assert.assertEquals(200, metrics.getQueryCount());
+		Assert.assertEquals(151.5, metrics.getMeanQueueOperations(), 1e-9);
+
+		metrics.record(7, 7, 7, 7000L);
+		Assert.assertEquals(1, metrics.nextInterval()[RoutingMetrics.Metric.visitedNodes.ordinal()].getTotalCount());
+		Assert.assertEquals(201, metrics.getQueryCount());
+
+		metrics.record(8, 8, 8, 8000L);
+		File file = this.folder.newFile(RoutingMetricsWriter.FILENAME);
+		RoutingMetricsWriter.write(Collections.singletonList(metrics), file.getPath());
+		List<String> lines = Files.readAllLines(file.toPath());
+		Assert.assertEquals("router,metric,count,mean,min,p50,p90,p99,max", lines.get(0));
+		Assert.assertEquals(1 + RoutingMetrics.Metric.values().length, lines.size());
+		Assert.assertEquals("RoutingMetricsTest,visitedNodes,1,8.0,8,8,8,8,8", lines.get(1));
+		Assert.assertEquals(0, metrics.nextInterval()[RoutingMetrics.Metric.visitedNodes.ordinal()].getTotalCount());
+		metrics.reset();
+		Assert.assertEquals(0, metrics.getQueryCount());
+	}
+}
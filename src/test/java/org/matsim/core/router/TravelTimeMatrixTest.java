@@ -0,0 +1,75 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TravelTimeMatrixTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import static org.matsim.core.router.RouterTestUtils.createGridNetwork;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.router.costcalculators.OnlyTimeDependentTravelDisutility;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
+
+public class TravelTimeMatrixTest {
+
+	@Test
+	public void testTravelTimeMatrix() {
+		Network network = createGridNetwork();
+		TravelTime travelTime = new FreeSpeedTravelTime();
+		TravelDisutility travelDisutility = new OnlyTimeDependentTravelDisutility(travelTime);
+		LeastCostPathCalculator reference = new DijkstraRecordFactory().createPathCalculator(network, travelDisutility, travelTime);
+
+		List<Node> nodes = new ArrayList<>(network.getNodes().values());
+		Random random = new Random(4711);
+		Node[] origins = new Node[20];
+		Node[] destinations = new Node[30];
+		for (int i = 0; i < origins.length; i++) {
+			origins[i] = nodes.get(random.nextInt(nodes.size()));
+		}
+		for (int j = 0; j < destinations.length; j++) {
+			destinations[j] = nodes.get(random.nextInt(nodes.size()));
+		}
+		TravelTimeMatrix matrix = TravelTimeMatrix.calculate(RoutingGraph.createFromNetwork(network), origins, destinations,
+				0.0, travelDisutility, travelTime);
+		for (int i = 0; i < origins.length; i++) {
+			for (int j = 0; j < destinations.length; j++) {
+				Path expected = reference.calcLeastCostPath(origins[i], destinations[j], 0.0, null, null);
+				double distance = 0;
+				for (Link link : expected.links) {
+					distance += link.getLength();
+				}
+				Assert.assertEquals(expected.travelTime, matrix.getTravelTimes()[i][j], 1e-8);
+				Assert.assertEquals(expected.travelCost, matrix.getTravelCosts()[i][j], 1e-8);
+				Assert.assertEquals(distance, matrix.getDistances()[i][j], 1e-8);
+			}
+		}
+	}
+}
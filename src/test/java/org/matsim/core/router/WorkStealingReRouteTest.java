@@ -0,0 +1,88 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * WorkStealingReRouteTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import static org.matsim.core.router.RouterTestUtils.addGridNetwork;
+import static org.matsim.core.router.RouterTestUtils.assertSameLegs;
+import static org.matsim.core.router.RouterTestUtils.createDurationOnlyPlans;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import javax.inject.Provider;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.controler.OutputDirectoryHierarchy;
+import org.matsim.core.controler.OutputDirectoryHierarchy.OverwriteFileSetting;
+import org.matsim.core.scenario.ScenarioUtils;
+
+public class WorkStealingReRouteTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testWorkStealingReRoute() throws IOException {
+		Config config = ConfigUtils.createConfig();
+		config.plansCalcRoute().setRoutingRandomness(0.0);
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		addGridNetwork(scenario.getNetwork());
+		List<Plan> expected = createDurationOnlyPlans(scenario, 11);
+		List<Plan> actual = createDurationOnlyPlans(scenario, 11);
+
+		Provider<TripRouter> tripRouterProvider = TripRouterFactoryBuilderWithDefaults.createDefaultTripRouterFactoryImpl(scenario);
+		PlanRouter planRouter = new PlanRouter(tripRouterProvider.get(), scenario.getActivityFacilities());
+		for (Plan plan : expected) {
+			planRouter.run(plan);
+		}
+		OutputDirectoryHierarchy controlerIO = new OutputDirectoryHierarchy(new File(this.folder.getRoot(), "output").getPath(), null,
+				OverwriteFileSetting.overwriteExistingFiles);
+		controlerIO.createIterationDirectory(0);
+		WorkStealingReRoute reRoute = new WorkStealingReRoute(tripRouterProvider, scenario.getActivityFacilities(), 2, controlerIO);
+		try {
+			reRoute.prepareReplanning(() -> 0);
+			for (Plan plan : actual) {
+				reRoute.handlePlan(plan);
+			}
+			reRoute.finishReplanning();
+		} finally {
+			reRoute.shutdown();
+		}
+		assertSameLegs(expected, actual);
+
+		List<String> lines = Files.readAllLines(new File(controlerIO.getIterationFilename(0, WorkStealingReRoute.FILENAME)).toPath());
+		Assert.assertEquals("thread,plans,busyMs,wallMs,utilization", lines.get(0));
+		int plans = 0;
+		for (String line : lines.subList(1, lines.size())) {
+			plans += Integer.parseInt(line.split(",")[1]);
+		}
+		Assert.assertEquals(actual.size(), plans);
+	}
+}
@@ -0,0 +1,99 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BinaryScenarioTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.scenario;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.core.config.ConfigUtils;
+
+/**
+ * Checks that the equil network and population survive {@link BinaryNetworkIO} and {@link BinaryPopulationIO}.
+ */
+public class BinaryScenarioTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		Scenario expected = ScenarioUtils.loadScenario(ConfigUtils.loadConfig("scenarios/equil/config.xml"));
+		for (boolean compress : new boolean[] { false, true }) {
+			File network = this.folder.newFile();
+			File population = this.folder.newFile();
+			BinaryNetworkIO.write(expected.getNetwork(), network, compress);
+			BinaryPopulationIO.write(expected.getPopulation(), population, compress);
+
+			Scenario actual = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+			BinaryNetworkIO.read(network, actual.getNetwork());
+			BinaryPopulationIO.read(population, actual.getPopulation());
+
+			Assert.assertEquals(expected.getNetwork().getNodes().keySet(), actual.getNetwork().getNodes().keySet());
+			for (Link link : expected.getNetwork().getLinks().values()) {
+				Link copy = actual.getNetwork().getLinks().get(link.getId());
+				Assert.assertEquals(link.getFromNode().getId(), copy.getFromNode().getId());
+				Assert.assertEquals(link.getToNode().getId(), copy.getToNode().getId());
+				Assert.assertEquals(link.getLength(), copy.getLength(), 0.0);
+				Assert.assertEquals(link.getFreespeed(), copy.getFreespeed(), 0.0);
+				Assert.assertEquals(link.getCapacity(), copy.getCapacity(), 0.0);
+				Assert.assertEquals(link.getAllowedModes(), copy.getAllowedModes());
+			}
+
+			Assert.assertEquals(expected.getPopulation().getPersons().keySet(), actual.getPopulation().getPersons().keySet());
+			for (Person person : expected.getPopulation().getPersons().values()) {
+				Person copy = actual.getPopulation().getPersons().get(person.getId());
+				Assert.assertEquals(person.getPlans().size(), copy.getPlans().size());
+				List<PlanElement> elements = person.getSelectedPlan().getPlanElements();
+				List<PlanElement> copiedElements = copy.getSelectedPlan().getPlanElements();
+				Assert.assertEquals(elements.size(), copiedElements.size());
+				for (int i = 0; i < elements.size(); i++) {
+					if (elements.get(i) instanceof Activity) {
+						Activity activity = (Activity) elements.get(i);
+						Activity copiedActivity = (Activity) copiedElements.get(i);
+						Assert.assertEquals(activity.getType(), copiedActivity.getType());
+						Assert.assertEquals(activity.getLinkId(), copiedActivity.getLinkId());
+						Assert.assertEquals(activity.getCoord(), copiedActivity.getCoord());
+						Assert.assertEquals(activity.getEndTime(), copiedActivity.getEndTime(), 0.0);
+						Assert.assertEquals(activity.getMaximumDuration(), copiedActivity.getMaximumDuration(), 0.0);
+					} else {
+						Leg leg = (Leg) elements.get(i);
+						Leg copiedLeg = (Leg) copiedElements.get(i);
+						Assert.assertEquals(leg.getMode(), copiedLeg.getMode());
+						Assert.assertEquals(leg.getRoute().getRouteType(), copiedLeg.getRoute().getRouteType());
+						Assert.assertEquals(leg.getRoute().getRouteDescription(), copiedLeg.getRoute().getRouteDescription());
+					}
+				}
+			}
+		}
+	}
+}
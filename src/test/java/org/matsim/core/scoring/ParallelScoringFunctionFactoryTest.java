@@ -0,0 +1,144 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ParallelScoringFunctionFactoryTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.scoring;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.scoring.functions.CharyparNagelScoringFunctionFactory;
+import org.matsim.core.utils.misc.Time;
+
+/**
+ * Scores random h-w-h days with the planCalcScore parameters of equil, both with a
+ * {@link ParallelScoringFunctionFactory} and with a {@link CharyparNagelScoringFunctionFactory},
+ * and expects exactly the same scores.
+ */
+public class ParallelScoringFunctionFactoryTest {
+
+	@Test
+	public void testSameScoresAsCharyparNagel() {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.loadConfig("scenarios/equil/config.xml"));
+		ScoringFunctionFactory expectedFactory = new CharyparNagelScoringFunctionFactory(scenario);
+		ParallelScoringFunctionFactory factory = new ParallelScoringFunctionFactory(scenario);
+		PopulationFactory populationFactory = scenario.getPopulation().getFactory();
+		Random random = new Random(4711);
+		List<Person> persons = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			persons.add(populationFactory.createPerson(Id.createPersonId(i)));
+		}
+
+		List<ScoringFunction> earlierFunctions = null;
+		for (int iteration = 0; iteration < 2; iteration++) {
+			List<ScoringFunction> expectedFunctions = new ArrayList<>();
+			List<ScoringFunction> functions = new ArrayList<>();
+			for (Person person : persons) {
+				ScoringFunction expected = expectedFactory.createNewScoringFunction(person);
+				ScoringFunction function = factory.createNewScoringFunction(person);
+				for (PlanElement element : createDay(populationFactory, random)) {
+					if (element instanceof Activity) {
+						expected.handleActivity((Activity) element);
+						function.handleActivity((Activity) element);
+					} else {
+						expected.handleLeg((Leg) element);
+						function.handleLeg((Leg) element);
+					}
+				}
+				if (random.nextInt(20) == 0) {
+					expected.agentStuck(30 * 3600.0);
+					function.agentStuck(30 * 3600.0);
+				}
+				if (random.nextInt(10) == 0) {
+					double amount = random.nextGaussian();
+					expected.addMoney(amount);
+					function.addMoney(amount);
+				}
+				expectedFunctions.add(expected);
+				functions.add(function);
+			}
+			if (earlierFunctions != null) {
+				try {
+					earlierFunctions.get(0).getScore();
+					Assert.fail("the scores of the last iteration are gone");
+				} catch (IllegalStateException expected) {
+				}
+			}
+			for (int i = 0; i < persons.size(); i++) {
+				expectedFunctions.get(i).finish();
+				functions.get(i).finish();
+				Assert.assertEquals(expectedFunctions.get(i).getScore(), functions.get(i).getScore(), 0.0);
+			}
+			earlierFunctions = functions;
+		}
+	}
+
+	/**
+	 * A day at home, at work and at home again, at random times; one in ten persons stays at home
+	 * and one in ten does not get home.
+	 */
+	private static List<PlanElement> createDay(final PopulationFactory factory, final Random random) {
+		List<PlanElement> day = new ArrayList<>();
+		int kind = random.nextInt(10);
+		if (kind == 0) {
+			return day;
+		}
+		double time = 5 * 3600.0 + random.nextInt(5 * 3600);
+		day.add(createActivity(factory, "h", Time.UNDEFINED_TIME, time));
+		time = addLeg(factory, random, day, time);
+		double workEnd = time + 4 * 3600.0 + random.nextInt(8 * 3600) + 0.5;
+		day.add(createActivity(factory, "w", time, workEnd));
+		if (kind > 1) {
+			time = addLeg(factory, random, day, workEnd);
+			day.add(createActivity(factory, "h", time, Time.UNDEFINED_TIME));
+		}
+		return day;
+	}
+
+	private static Activity createActivity(final PopulationFactory factory, final String type, final double startTime,
+			final double endTime) {
+		Activity activity = factory.createActivityFromLinkId(type, Id.createLinkId(1));
+		activity.setStartTime(startTime);
+		activity.setEndTime(endTime);
+		return activity;
+	}
+
+	private static double addLeg(final PopulationFactory factory, final Random random, final List<PlanElement> day,
+			final double departureTime) {
+		Leg leg = factory.createLeg(TransportMode.car);
+		leg.setDepartureTime(departureTime);
+		leg.setTravelTime(600.0 + random.nextInt(3600));
+		day.add(leg);
+		return departureTime + leg.getTravelTime();
+	}
+}
@@ -0,0 +1,127 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CheckpointsTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.run;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.router.LinkTravelTimeTable;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Writes checkpoints of the equil scenario and resumes from them.
+ */
+public class CheckpointsTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		Config config = ConfigUtils.loadConfig("scenarios/equil/config.xml");
+		Scenario expected = ScenarioUtils.loadScenario(config);
+		int i = 0;
+		for (Person person : expected.getPopulation().getPersons().values()) {
+			// one plan without score, as after replanning
+			person.getSelectedPlan().setScore(i % 10 == 0 ? null : 100.0 + 0.25 * i);
+			i++;
+		}
+		LinkTravelTimeTable travelTimes = new LinkTravelTimeTable(expected.getNetwork());
+		travelTimes.reset(0);
+		Id<Vehicle> vehicle = Id.create("v", Vehicle.class);
+		List<Link> links = new ArrayList<>(expected.getNetwork().getLinks().values());
+		for (int l = 0; l < links.size(); l++) {
+			Link link = links.get(l);
+			double time = 6 * 3600.0 + 60.0 * l;
+			travelTimes.handleEvent(new LinkEnterEvent(time, vehicle, link.getId()));
+			travelTimes.handleEvent(new LinkLeaveEvent(time + 2 * link.getLength() / link.getFreespeed() + l, vehicle, link.getId()));
+		}
+		travelTimes.swap();
+
+		File directory = new File(this.folder.getRoot(), Checkpoints.DIRECTORY);
+		Assert.assertNull(Checkpoints.findLatest(directory));
+		Checkpoints checkpoints = new Checkpoints(directory, 1, travelTimes);
+		for (int iteration : new int[] { 3, 5, 7 }) {
+			checkpoints.write(iteration, expected);
+		}
+		checkpoints.waitForPending();
+		Assert.assertFalse(new File(directory, "it.3").exists());
+		Assert.assertTrue(new File(directory, "it.5").isDirectory());
+
+		Checkpoints.Checkpoint checkpoint = Checkpoints.findLatest(directory);
+		Assert.assertEquals(7, checkpoint.getIteration());
+		String plansFile = config.plans().getInputFile();
+		Scenario actual = checkpoint.loadScenario(config);
+		Assert.assertEquals(plansFile, config.plans().getInputFile());
+		Assert.assertEquals(expected.getPopulation().getPersons().keySet(), actual.getPopulation().getPersons().keySet());
+		for (Person person : expected.getPopulation().getPersons().values()) {
+			Person copy = actual.getPopulation().getPersons().get(person.getId());
+			Assert.assertEquals(person.getPlans().size(), copy.getPlans().size());
+			for (int p = 0; p < person.getPlans().size(); p++) {
+				Plan plan = person.getPlans().get(p);
+				Plan copiedPlan = copy.getPlans().get(p);
+				Assert.assertEquals(plan.getScore(), copiedPlan.getScore());
+				Assert.assertEquals(plan.getPlanElements().size(), copiedPlan.getPlanElements().size());
+			}
+			Assert.assertEquals(person.getPlans().indexOf(person.getSelectedPlan()), copy.getPlans().indexOf(copy.getSelectedPlan()));
+		}
+
+		LinkTravelTimeTable restored = new LinkTravelTimeTable(actual.getNetwork());
+		Assert.assertTrue(checkpoint.readTravelTimes(restored));
+		for (Link link : links) {
+			Link copy = actual.getNetwork().getLinks().get(link.getId());
+			for (double time = 0.0; time < 24 * 3600.0; time += 900.0) {
+				Assert.assertEquals(travelTimes.getLinkTravelTime(link, time, null, null), restored.getLinkTravelTime(copy, time, null, null), 0.0);
+			}
+		}
+		// the same changes are found on both tables in the next iteration
+		Assert.assertEquals(travelTimes.swap().size(), restored.swap().size());
+	}
+
+	@Test
+	public void testWithoutTravelTimes() throws Exception {
+		Config config = ConfigUtils.loadConfig("scenarios/equil/config.xml");
+		Scenario scenario = ScenarioUtils.loadScenario(config);
+		File directory = new File(this.folder.getRoot(), Checkpoints.DIRECTORY);
+		Checkpoints checkpoints = new Checkpoints(directory, 1, null);
+		checkpoints.write(2, scenario);
+		checkpoints.waitForPending();
+
+		Checkpoints.Checkpoint checkpoint = Checkpoints.findLatest(directory);
+		Assert.assertEquals(2, checkpoint.getIteration());
+		Assert.assertFalse(checkpoint.readTravelTimes(new LinkTravelTimeTable(scenario.getNetwork())));
+	}
+}
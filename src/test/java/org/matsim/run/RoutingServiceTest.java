@@ -0,0 +1,152 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RoutingServiceTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.run;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.router.GraphDijkstraFactory;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
+import org.matsim.vehicles.Vehicle;
+
+public class RoutingServiceTest {
+
+	@Test
+	public void testRouteMetricsAndRejection() throws Exception {
+		Network network = createLineNetwork();
+		TravelTime travelTime = new FreeSpeedTravelTime();
+		final AtomicBoolean block = new AtomicBoolean(false);
+		final CountDownLatch routing = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		TravelDisutility travelDisutility = new TravelDisutility() {
+			@Override
+			public double getLinkTravelDisutility(final Link link, final double time, final Person person, final Vehicle vehicle) {
+				if (block.compareAndSet(true, false)) {
+					routing.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				return travelTime.getLinkTravelTime(link, time, person, vehicle);
+			}
+
+			@Override
+			public double getLinkMinimumTravelDisutility(final Link link) {
+				return link.getLength() / link.getFreespeed();
+			}
+		};
+		// two threads serve the requests where there are no virtual threads, but only one request is accepted at once:
+		RoutingService service = new RoutingService(network, new GraphDijkstraFactory(), travelDisutility, travelTime, 2, 1);
+		service.start(RoutingService.createAddress("", 0));
+		ExecutorService client = Executors.newSingleThreadExecutor();
+		try {
+			String route = get(service, "/route?from=N1&to=N3", 200);
+			Assert.assertTrue(route, route.contains("\"nodes\":[\"N1\",\"N2\",\"N3\"]"));
+			Assert.assertTrue(route, route.contains("\"links\":[\"L12\",\"L23\"]"));
+			Assert.assertTrue(route, route.contains("\"distance\":300.0"));
+			get(service, "/route?from=N1&to=N9", 400);
+
+			// the only permit is held by a request stuck in routing, so the next one is turned away:
+			block.set(true);
+			Future<String> blocked = client.submit(() -> get(service, "/route?from=N1&to=N3", 200));
+			Assert.assertTrue(routing.await(10, TimeUnit.SECONDS));
+			get(service, "/route?from=N1&to=N3", 503);
+			release.countDown();
+			Assert.assertTrue(blocked.get(10, TimeUnit.SECONDS).contains("\"travelTime\""));
+
+			// a request is counted once its response is sent:
+			String metrics = get(service, "/metrics", 200);
+			for (int i = 0; i < 100 && !metrics.contains("\"requests\":3"); i++) {
+				Thread.sleep(10);
+				metrics = get(service, "/metrics", 200);
+			}
+			Assert.assertTrue(metrics, metrics.contains("\"requests\":3"));
+			Assert.assertTrue(metrics, metrics.contains("\"rejected\":1"));
+			Assert.assertTrue(metrics, metrics.contains("\"inFlight\":0"));
+		} finally {
+			release.countDown();
+			client.shutdownNow();
+			service.stop();
+		}
+	}
+
+	private static String get(final RoutingService service, final String path, final int expectedStatus) throws IOException {
+		URL url = new URL("http", "127.0.0.1", service.getPort(), path);
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		try {
+			Assert.assertEquals(path, expectedStatus, connection.getResponseCode());
+			try (InputStream in = expectedStatus < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+				ByteArrayOutputStream body = new ByteArrayOutputStream();
+				byte[] buffer = new byte[4096];
+				for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+					body.write(buffer, 0, n);
+				}
+				return new String(body.toByteArray(), StandardCharsets.UTF_8);
+			}
+		} finally {
+			connection.disconnect();
+		}
+	}
+
+	private static Network createLineNetwork() {
+		Network network = ScenarioUtils.createScenario(ConfigUtils.createConfig()).getNetwork();
+		Node[] nodes = new Node[3];
+		for (int i = 0; i < nodes.length; i++) {
+			nodes[i] = network.getFactory().createNode(Id.createNodeId("N" + (i + 1)), new Coord(i * 150.0, 0.0));
+			network.addNode(nodes[i]);
+		}
+		for (int i = 0; i + 1 < nodes.length; i++) {
+			Link link = network.getFactory().createLink(Id.createLinkId("L" + (i + 1) + (i + 2)), nodes[i], nodes[i + 1]);
+			link.setLength(150.0);
+			link.setFreespeed(10.0);
+			link.setCapacity(1000.0);
+			link.setNumberOfLanes(1.0);
+			link.setAllowedModes(Collections.singleton("car"));
+			network.addLink(link);
+		}
+		return network;
+	}
+}
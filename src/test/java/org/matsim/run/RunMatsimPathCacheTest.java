@@ -0,0 +1,71 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RunMatsimPathCacheTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.run;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.controler.Controler;
+import org.matsim.core.controler.OutputDirectoryHierarchy.OverwriteFileSetting;
+import org.matsim.core.router.CachingLeastCostPathCalculatorFactory;
+import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+import org.matsim.testcases.MatsimTestUtils;
+
+/**
+ * Runs the equil scenario with <code>runMatsim.pathCacheSize</code> set.
+ */
+public class RunMatsimPathCacheTest {
+
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils() ;
+
+	@Test(expected = IllegalArgumentException.class)
+	public final void testPathCacheNeedsDeterministicCosts() {
+		Config config = createConfig() ;
+		config.plansCalcRoute().setRoutingRandomness( 3. );
+		RunMatsim.run( config );
+	}
+
+	@Test
+	public final void testPathCache() {
+		Config config = createConfig() ;
+		config.controler().setLastIteration(2);
+		config.plansCalcRoute().setRoutingRandomness( 0. );
+		Controler controler = RunMatsim.run( config );
+
+		LeastCostPathCalculatorFactory factory = controler.getInjector().getInstance( LeastCostPathCalculatorFactory.class ) ;
+		Assert.assertTrue( factory instanceof CachingLeastCostPathCalculatorFactory );
+		CachingLeastCostPathCalculatorFactory cachingFactory = (CachingLeastCostPathCalculatorFactory) factory ;
+		// ReRoute routes some of the 100 agents from home to work every iteration, most of them departing at 06:00:
+		Assert.assertTrue( cachingFactory.getMisses() > 0 );
+		Assert.assertTrue( cachingFactory.getHits() > 0 );
+	}
+
+	private Config createConfig() {
+		Config config = ConfigUtils.loadConfig( "scenarios/equil/config.xml", new RunMatsimConfigGroup() ) ;
+		config.controler().setOutputDirectory( utils.getOutputDirectory() );
+		config.controler().setOverwriteFileSetting(OverwriteFileSetting.deleteDirectoryIfExists);
+		RunMatsimConfigGroup runMatsimConfig = ConfigUtils.addOrGetModule( config, RunMatsimConfigGroup.GROUP_NAME, RunMatsimConfigGroup.class ) ;
+		runMatsimConfig.setRouterFactory( RunMatsimConfigGroup.RouterFactory.dijkstraRecord );
+		runMatsimConfig.setPathCacheSize( 1000 );
+		return config;
+	}
+}